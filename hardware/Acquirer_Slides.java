@@ -11,6 +11,11 @@ import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.ServoImplEx;
 import com.qualcomm.robotcore.util.ElapsedTime;
 
+import org.firstinspires.ftc.teamcode.util.command.Command;
+import org.firstinspires.ftc.teamcode.util.command.WaitCommand;
+import org.firstinspires.ftc.teamcode.util.motion.MotionProfiler;
+import org.firstinspires.ftc.teamcode.util.motion.ProfileFollower;
+
 
 /**
  * Acquirer_Slides is the class that is used to define all of the hardware for a robot's acquirer + cascading slides.
@@ -23,13 +28,27 @@ public class Acquirer_Slides extends Mechanism {
     /* CONSTANTS */
     private static final double MIN_POS = 0.0;
     private static final double MAX_POS = 1.0;
+    // Encoder speed of the slides motor at full power in RUN_USING_ENCODER
+    private static final double MAX_TICKS_PER_SECOND = 2790;
+    // Profile limits in ticks and seconds
+    private static final double MAX_VELOCITY = 2400;
+    private static final double MAX_ACCELERATION = 10000;
+    private static final double MAX_JERK = 100000;
+    private static final int TOLERANCE = 15;
 
     /* Hardware members */
     private DcMotorEx cascadingSlides;
+    private int slidesSlot = -1;
+    private int slidesOutput = -1;
 //    private DcMotorEx intakeMotor;
     private  CRServo intakeMotor;
+    private int intakeOutput = -1;
     public ServoImplEx acquirerRotation;
 
+    private final ProfileFollower follower = new ProfileFollower(
+            new MotionProfiler(MAX_VELOCITY, MAX_ACCELERATION, MAX_JERK),
+            1 / MAX_TICKS_PER_SECOND, 0, 0, 0.003);
+
     /**
      * Default constructor for Acquirer_Slides.
      */
@@ -55,6 +74,24 @@ public class Acquirer_Slides extends Mechanism {
         intakeMotor = hwMap.get(CRServo.class, RCConfig.INTAKE_MOTOR);
         acquirerRotation = hwMap.get(ServoImplEx.class, RCConfig.ACQUIRER_ROTATION);
 //        acquirerRotation.setPwmRange(new PwmControl.PwmRange(880,2200));
+        configureMotors();
+        encoderInit();
+
+        slidesSlot = registerMotor(cascadingSlides);
+        slidesOutput = registerOutput(cascadingSlides);
+        intakeOutput = registerOutput(intakeMotor);
+    }
+
+    /**
+     * Applies the slides and intake settings again without resetting the slides encoder.
+     */
+    @Override
+    public void resume() {
+        configureMotors();
+        cascadingSlides.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
+    }
+
+    private void configureMotors() {
         // Set polarity
         cascadingSlides.setDirection(DcMotorSimple.Direction.FORWARD);
         intakeMotor.setDirection(DcMotorSimple.Direction.REVERSE);
@@ -62,7 +99,6 @@ public class Acquirer_Slides extends Mechanism {
         // Set initial power
         cascadingSlides.setPower(0);
         intakeMotor.setPower(0);
-        encoderInit();
     }
 
     public void encoderInit() {
@@ -76,48 +112,94 @@ public class Acquirer_Slides extends Mechanism {
      * @param power        Motor power with range of (-1 to 1)
      */
     public void setIntakePower(double power) {
-        intakeMotor.setPower(power);
+        setPower(intakeMotor, intakeOutput, power);
     }
 
 //    public double getAcquirerIntakeTicks() { return intakeMotor.getCurrentPosition() * Constants.INCHES_PER_TICK_26; }
 
     public void setCascadingSlidesPower(double power) {
-        cascadingSlides.setPower(power);
+        setPower(cascadingSlides, slidesOutput, power);
     }
 
-    public double getAcquirerSlidesTicks() { return cascadingSlides.getCurrentPosition() * Constants.INCHES_PER_TICK_ACQUIRER; }
+    /**
+     * Returns the cascading slides' encoder position in ticks.
+     */
+    public int getSlidesTicks() { return getCurrentPosition(cascadingSlides, slidesSlot); }
+
+    public double getAcquirerSlidesTicks() { return getCurrentPosition(cascadingSlides, slidesSlot) * Constants.INCHES_PER_TICK_ACQUIRER; }
 
     public void acquirerSlideToPos(double speed, double inches, double timeoutS) {
-        // Target position variables
-        int newDistanceTarget;
-
-        // Determine new target position, and pass to motor controller
-        newDistanceTarget = cascadingSlides.getCurrentPosition() + (int)(inches / Constants.INCHES_PER_TICK_ACQUIRER);
-        cascadingSlides.setTargetPosition(newDistanceTarget);
-
-        // Turn On RUN_TO_POSITION
-        cascadingSlides.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        cascadingSlides.setPower(Math.abs(speed));
-
-        // Reset the timeout time
-        ElapsedTime runtime = new ElapsedTime();
-        runtime.reset();
-
-        // Loop until a condition is met
-        while (opMode.opModeIsActive() &&
-                (runtime.seconds() < timeoutS) && (cascadingSlides.isBusy())) {
-            // Display it for the driver.
-            opMode.telemetry.addData("Path1",  "Running to %7d", newDistanceTarget);
-            opMode.telemetry.addData("Path2",  "Running at %7d", cascadingSlides.getCurrentPosition());
-            opMode.telemetry.update();
-        }
-
-        // Stop all motion
-        cascadingSlides.setPower(0);
+        runCommand(slideToPosCommand(speed, inches, timeoutS));
+    }
 
-        // Turn off RUN_TO_POSITION
-        cascadingSlides.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
-        cascadingSlides.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+    /**
+     * Returns a command that moves the cascading slides a relative distance using encoders.
+     * @param speed         maximum power of the slides motor
+     * @param inches        number of inches to move the slides
+     * @param timeoutS      amount of time before the move should stop
+     */
+    public Command slideToPosCommand(final double speed, final double inches, double timeoutS) {
+        return new Command() {
+            {
+                requires(Acquirer_Slides.this);
+            }
+
+            @Override
+            public void initialize() {
+                // Determine new target position, and pass to motor controller
+                int newDistanceTarget = getCurrentPosition(cascadingSlides, slidesSlot) + (int)(inches / Constants.INCHES_PER_TICK_ACQUIRER);
+                cascadingSlides.setTargetPosition(newDistanceTarget);
+
+                // Turn On RUN_TO_POSITION
+                setMode(cascadingSlides, slidesOutput, DcMotor.RunMode.RUN_TO_POSITION);
+                setPower(cascadingSlides, slidesOutput, Math.abs(speed));
+                refreshBulkData();
+            }
+
+            @Override
+            public boolean isFinished() { return !isBusy(cascadingSlides, slidesSlot); }
+
+            @Override
+            public void end(boolean interrupted) {
+                // Stop all motion and turn off RUN_TO_POSITION
+                setMode(cascadingSlides, slidesOutput, DcMotor.RunMode.RUN_USING_ENCODER);
+                setMode(cascadingSlides, slidesOutput, DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+            }
+        }.withTimeout(timeoutS);
+    }
+
+    /**
+     * Returns a command that moves the cascading slides to a position along a jerk-limited
+     * profile. A new position while the slides are moving takes over from their current motion.
+     * @param inches        position of the slides in inches from where the encoder was last reset
+     * @param timeoutS      amount of time before the move should stop
+     */
+    public Command slideToCommand(double inches, double timeoutS) {
+        int target = (int) (inches / Constants.INCHES_PER_TICK_ACQUIRER);
+        return profiledMoveCommand(cascadingSlides, slidesSlot, slidesOutput, follower, target, TOLERANCE)
+                .withTimeout(timeoutS);
+    }
+
+    /**
+     * Returns a command that runs the intake at a set power for a number of seconds.
+     * @param power         intake power with range of (-1 to 1)
+     * @param seconds       time to run the intake
+     */
+    public Command intakeCommand(final double power, double seconds) {
+        return new WaitCommand(seconds) {
+            {
+                requires(Acquirer_Slides.this);
+            }
+
+            @Override
+            public void initialize() {
+                super.initialize();
+                setIntakePower(power);
+            }
+
+            @Override
+            public void end(boolean interrupted) { setIntakePower(0); }
+        };
     }
 
     /**
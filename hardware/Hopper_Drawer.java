@@ -11,6 +11,9 @@ import com.qualcomm.robotcore.hardware.ServoImplEx;
 import com.qualcomm.robotcore.util.ElapsedTime;
 
 import org.firstinspires.ftc.robotcontroller.external.samples.ConceptTelemetry;
+import org.firstinspires.ftc.teamcode.util.command.Command;
+import org.firstinspires.ftc.teamcode.util.motion.MotionProfiler;
+import org.firstinspires.ftc.teamcode.util.motion.ProfileFollower;
 
 
 /**
@@ -24,9 +27,21 @@ public class Hopper_Drawer extends Mechanism {
     /* CONSTANTS */
     private static final double SERVO_INIT_POS = 0;
     private static final double SERVO_CENTER_POS = 1;
+    // Encoder speed of the drawer motor at full power in RUN_USING_ENCODER
+    private static final double MAX_TICKS_PER_SECOND = 2790;
+    // Profile limits in ticks and seconds
+    private static final double MAX_VELOCITY = 2400;
+    private static final double MAX_ACCELERATION = 12000;
+    private static final double MAX_JERK = 120000;
+    private static final int TOLERANCE = 10;
 
     /* Hardware members */
     private DcMotorEx drawerSlide;
+    private int drawerSlot = -1;
+    private int drawerOutput = -1;
+    private final ProfileFollower follower = new ProfileFollower(
+            new MotionProfiler(MAX_VELOCITY, MAX_ACCELERATION, MAX_JERK),
+            1 / MAX_TICKS_PER_SECOND, 0, 0, 0.004);
     public ServoImplEx hopperRotation;
 
     /**
@@ -53,6 +68,23 @@ public class Hopper_Drawer extends Mechanism {
         hopperRotation = hwMap.get(ServoImplEx.class, RCConfig.HOPPER_ROTATION);
 //        hopperRotation.setPwmRange(new PwmControl.PwmRange(800,2200));
 
+        configureMotor();
+        encoderInit();
+
+        drawerSlot = registerMotor(drawerSlide);
+        drawerOutput = registerOutput(drawerSlide);
+    }
+
+    /**
+     * Applies the drawer motor's settings again without resetting its encoder.
+     */
+    @Override
+    public void resume() {
+        configureMotor();
+        drawerSlide.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
+    }
+
+    private void configureMotor() {
         // Set braking behavior
         drawerSlide.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
 
@@ -61,7 +93,6 @@ public class Hopper_Drawer extends Mechanism {
 
         // Set initial power
         drawerSlide.setPower(0);
-        encoderInit();
     }
 
     public void encoderInit() {
@@ -76,30 +107,54 @@ public class Hopper_Drawer extends Mechanism {
      * @param power        Motor power with range of (-1 to 1)
      */
     public void setDrawerSlidePower(double power) {
-        drawerSlide.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
-        drawerSlide.setPower(power);
+        setMode(drawerSlide, drawerOutput, DcMotor.RunMode.RUN_USING_ENCODER);
+        setPower(drawerSlide, drawerOutput, power);
     }
 
     public void setDrawerSlideUp(double time){
-        drawerSlide.setTargetPosition((int)(33 / Constants.INCHES_PER_TICK_HOPPER));
-        drawerSlide.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        ElapsedTime elapsedTime = new ElapsedTime();
-        while(opMode.opModeIsActive() && drawerSlide.isBusy() && elapsedTime.milliseconds() < time){ drawerSlide.setPower(1); }
-        drawerSlide.setPower(0);
+        runCommand(drawerSlideUpCommand(time));
     }
 
     public void setDrawerSlideDown(double time){
-        drawerSlide.setTargetPosition(0);
-        drawerSlide.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        ElapsedTime elapsedTime = new ElapsedTime();
-        while(opMode.opModeIsActive() && drawerSlide.isBusy() && elapsedTime.milliseconds() < time){ drawerSlide.setPower(-1); }
-        drawerSlide.setPower(0);
+        runCommand(drawerSlideDownCommand(time));
+    }
+
+    /**
+     * Returns a command that raises the drawer slides to the scoring height.
+     * @param time          amount of time in milliseconds before the move should stop
+     */
+    public Command drawerSlideUpCommand(double time) {
+        return drawerSlideCommand((int)(33 / Constants.INCHES_PER_TICK_HOPPER), time);
+    }
+
+    /**
+     * Returns a command that lowers the drawer slides to the bottom.
+     * @param time          amount of time in milliseconds before the move should stop
+     */
+    public Command drawerSlideDownCommand(double time) {
+        return drawerSlideCommand(0, time);
+    }
+
+    /**
+     * Returns a command that moves the drawer slides to an encoder target along a jerk-limited
+     * profile. A new target while the slides are moving takes over from their current motion.
+     * @param target        encoder target in ticks
+     * @param time          amount of time in milliseconds before the move should stop
+     */
+    private Command drawerSlideCommand(int target, double time) {
+        return profiledMoveCommand(drawerSlide, drawerSlot, drawerOutput, follower, target, TOLERANCE)
+                .withTimeout(time / 1000.0);
     }
 
     public double getPositions() {
-        return drawerSlide.getCurrentPosition() * Constants.INCHES_PER_TICK_HOPPER;
+        return getCurrentPosition(drawerSlide, drawerSlot) * Constants.INCHES_PER_TICK_HOPPER;
     }
 
+    /**
+     * Returns the drawer slide's encoder position in ticks.
+     */
+    public int getDrawerTicks() { return getCurrentPosition(drawerSlide, drawerSlot); }
+
     /**
      * Inits the drawer rotation servo to fit inside the sizing cube.
      */
@@ -7,6 +7,10 @@ import com.qualcomm.robotcore.hardware.DcMotorSimple;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.util.ElapsedTime;
 
+import org.firstinspires.ftc.teamcode.util.command.Command;
+import org.firstinspires.ftc.teamcode.util.motion.MotionProfiler;
+import org.firstinspires.ftc.teamcode.util.motion.ProfileFollower;
+
 
 /**
  * Lift is the class that is used to define all of the hardware for a robot's hanging mechanism.
@@ -17,9 +21,27 @@ import com.qualcomm.robotcore.util.ElapsedTime;
 public class Lift extends Mechanism {
 
     /* CONSTANTS */
+    // Encoder speed of the lift motor at full power in RUN_USING_ENCODER
+    private static final double MAX_TICKS_PER_SECOND = 2940;
+    // Profile limits in ticks and seconds
+    private static final double MAX_VELOCITY = 2600;
+    private static final double MAX_ACCELERATION = 8000;
+    private static final double MAX_JERK = 60000;
+    private static final int TOLERANCE = 20;
+    // Landing and lowering targets in ticks, and how long each may take
+    private static final int LAND_TARGET = 12020;
+    private static final int LOWER_TARGET = 9000;
+    private static final double LAND_TIMEOUT_S = 6;
+    private static final double LOWER_TIMEOUT_S = 3;
 
     /* Hardware members */
     public DcMotorEx liftMotor;
+    private int liftSlot = -1;
+    private int liftOutput = -1;
+
+    private final ProfileFollower follower = new ProfileFollower(
+            new MotionProfiler(MAX_VELOCITY, MAX_ACCELERATION, MAX_JERK),
+            1 / MAX_TICKS_PER_SECOND, 0, 0, 0.002);
 
     /**
      * Default constructor for Acquirer_Slides.
@@ -43,6 +65,24 @@ public class Lift extends Mechanism {
         // Retrieve motor from hardware map and assign to instance vars
         liftMotor = hwMap.get(DcMotorEx.class, RCConfig.LIFT);
 
+        configureMotor();
+        encoderInit();
+
+        liftSlot = registerMotor(liftMotor);
+        liftOutput = registerOutput(liftMotor);
+
+    }
+
+    /**
+     * Applies the lift motor's settings again without resetting its encoder.
+     */
+    @Override
+    public void resume() {
+        configureMotor();
+        liftMotor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
+    }
+
+    private void configureMotor() {
         // Set braking behavior
         liftMotor.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
 
@@ -51,8 +91,6 @@ public class Lift extends Mechanism {
 
         // Set initial power
         liftMotor.setPower(0);
-        encoderInit();
-
     }
 
     /**
@@ -83,7 +121,7 @@ public class Lift extends Mechanism {
      * Sets power for lift motor.
      */
     public void setLiftPower(double power) {
-            liftMotor.setPower(power);
+            setPower(liftMotor, liftOutput, power);
     }
 
     /**
@@ -100,65 +138,121 @@ public class Lift extends Mechanism {
      * @param inches    number of inches to move the lift
      */
     public void liftToPos(double speed, double inches) {
-        // Target position variables
-        int target;
+        runCommand(liftToPosCommand(speed, inches));
+    }
 
-        // Determine new target position, and pass to motor controller
-        target = liftMotor.getCurrentPosition() + (int)(inches / LiftConstants.TICKS_PER_LINEAR_LIFT_INCH);
+    /**
+     * Returns a command that moves the lift a relative distance using encoders.
+     * @param speed         maximum power of the lift motor
+     * @param inches        number of inches to move the lift
+     */
+    public Command liftToPosCommand(final double speed, final double inches) {
+        return new Command() {
+            {
+                requires(Lift.this);
+            }
 
-        liftMotor.setTargetPosition(target);
+            @Override
+            public void initialize() {
+                // Determine new target position, and pass to motor controller
+                int target = getLiftTicks() + (int)(inches / LiftConstants.TICKS_PER_LINEAR_LIFT_INCH);
+                liftMotor.setTargetPosition(target);
 
-        // Turn On RUN_TO_POSITION
-        liftMotor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+                // Turn On RUN_TO_POSITION
+                setMode(liftMotor, liftOutput, DcMotor.RunMode.RUN_TO_POSITION);
+                refreshBulkData();
+            }
 
-        // Reset the timeout time
-        //ElapsedTime runtime = new ElapsedTime();
-        //runtime.reset();
+            @Override
+            public void execute() { setLiftPower(speed); }
 
-        // Loop until a condition is met
-        while (opMode.opModeIsActive() && liftMotor.isBusy()) {
+            @Override
+            public boolean isFinished() { return !isBusy(liftMotor, liftSlot); }
 
-            // Set power of lift motor accounting for adjustment
-            setLiftPower(speed);
+            @Override
+            public void end(boolean interrupted) {
+                // Stop all motion and turn off RUN_TO_POSITION
+                setMode(liftMotor, liftOutput, DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+                setMode(liftMotor, liftOutput, DcMotor.RunMode.RUN_USING_ENCODER);
+            }
+        };
+    }
 
-            // Display info for the driver.
-            opMode.telemetry.addData("Path1", "Running to %7d", target);
-            opMode.telemetry.addData("current", liftMotor.getCurrentPosition());
-            opMode.telemetry.update();
-        }
+    public void liftToPosJank(){
+        runCommand(landCommand());
+    }
 
-        // Stop all motion
-        liftMotor.setPower(0);
+    public void dropoPosJank(){
+        runCommand(lowerCommand());
+    }
 
-        // Turn off RUN_TO_POSITION
-        liftMotor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        liftMotor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
+    /**
+     * Returns a command that raises the lift to the landing position.
+     */
+    public Command landCommand() {
+        return runToTargetCommand(LAND_TARGET, 1).withTimeout(LAND_TIMEOUT_S);
     }
 
-    public void liftToPosJank(){
-        liftMotor.setTargetPosition(12020);
-        liftMotor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        liftMotor.setPower(1);
-        int current;
-        int past = -10000;
-        while(opMode.opModeIsActive() && liftMotor.isBusy()){
-            current = liftMotor.getCurrentPosition();
-            if (current == past) break;
-        }
-        liftMotor.setPower(0);
-        liftMotor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
+    /**
+     * Returns a command that lowers the lift after landing.
+     */
+    public Command lowerCommand() {
+        return runToTargetCommand(LOWER_TARGET, 1).withTimeout(LOWER_TIMEOUT_S);
     }
-    public void dropoPosJank(){
-        liftMotor.setTargetPosition(9000);
-        liftMotor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        liftMotor.setPower(-1);
-        while(opMode.opModeIsActive() && liftMotor.isBusy());
-        liftMotor.setPower(0);
-        liftMotor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
+
+    /**
+     * Returns a command that runs the lift to an absolute encoder target in RUN_TO_POSITION.
+     * @param target        encoder target in ticks
+     * @param power         maximum power of the lift motor
+     */
+    private Command runToTargetCommand(final int target, final double power) {
+        return new Command() {
+            {
+                requires(Lift.this);
+            }
+
+            @Override
+            public void initialize() {
+                liftMotor.setTargetPosition(target);
+                setMode(liftMotor, liftOutput, DcMotor.RunMode.RUN_TO_POSITION);
+                refreshBulkData();
+            }
+
+            @Override
+            public void execute() { setLiftPower(power); }
+
+            @Override
+            public boolean isFinished() { return !isBusy(liftMotor, liftSlot); }
+
+            @Override
+            public void end(boolean interrupted) {
+                setMode(liftMotor, liftOutput, DcMotor.RunMode.RUN_USING_ENCODER);
+            }
+        };
+    }
+
+    /**
+     * Returns a command that moves the lift to an absolute encoder target along a jerk-limited
+     * profile, so that it slows down before the end of its travel. The follower gains are first
+     * estimates; near the target their output is too small to lift the robot's weight, so the
+     * landing does not use this until they are tuned.
+     * @param target        encoder target in ticks
+     * @param timeoutS      amount of time before the move should stop
+     */
+    public Command liftToTargetCommand(int target, double timeoutS) {
+        return profiledMoveCommand(liftMotor, liftSlot, liftOutput, follower, target, TOLERANCE)
+                .withTimeout(timeoutS);
     }
 
     public double getPositions() {
-        return liftMotor.getCurrentPosition() / LiftConstants.TICKS_PER_LEADSCREW;
+        return getLiftTicks() / LiftConstants.TICKS_PER_LEADSCREW;
+    }
+
+    /**
+     * Returns the lift's encoder position in ticks.
+     */
+    public int getLiftTicks() {
+        return getCurrentPosition(liftMotor, liftSlot);
     }
 
     public double getLftPower() {
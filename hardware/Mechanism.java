@@ -3,22 +3,50 @@ package org.firstinspires.ftc.teamcode.hardware;
 
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
+import org.firstinspires.ftc.teamcode.util.actuators.MotorWriteCache;
+import org.firstinspires.ftc.teamcode.util.command.Command;
+import org.firstinspires.ftc.teamcode.util.command.CommandScheduler;
+import org.firstinspires.ftc.teamcode.util.command.Subsystem;
+import org.firstinspires.ftc.teamcode.util.motion.ProfileFollower;
+import org.firstinspires.ftc.teamcode.util.sensors.BulkReadCache;
+
 
 /**
  * Mechanism is an abstract class for all mechanisms on a robot. It contains methods and/or instance
  * variables common to all mechanisms.
  *
  * All robot mechanisms, including the main hardware map, should extend this abstract class.
+ * Mechanisms are {@link Subsystem}s so that commands can declare which mechanisms they use.
  */
-public abstract class Mechanism {
+public abstract class Mechanism implements Subsystem {
 
     /**
      * OpMode context for a Mechanism class.
      */
     protected LinearOpMode opMode;
 
+    /**
+     * Bulk read cache shared by all mechanisms. Null when the mechanism is used on its own, in
+     * which case reads go directly to the motor.
+     */
+    protected BulkReadCache bulkData;
+
+    /**
+     * Motor write cache shared by all mechanisms. Null when the mechanism is used on its own, in
+     * which case writes go directly to the motor.
+     */
+    protected MotorWriteCache outputs;
+
+    /**
+     * Command scheduler shared by all mechanisms. Created on first use when the mechanism is used
+     * on its own.
+     */
+    protected CommandScheduler scheduler;
+
     /**
      * Initializes hardware on the robot. Gets and stores references to the robot configuration and
      * sets motors and servos to their starting positions.
@@ -26,4 +54,160 @@ public abstract class Mechanism {
      */
     public abstract void init(HardwareMap hwMap);
 
+    /**
+     * Sets the mechanism up for a new OpMode after <code>init()</code> was called in an earlier
+     * one. The SDK resets the direction, zero power behavior and run mode of every motor between
+     * OpModes but keeps the encoder counts, so only those settings are applied again. Does
+     * nothing by default.
+     */
+    public void resume() { }
+
+    /**
+     * Sets the OpMode context used by the blocking actions of this mechanism.
+     * @param opMode    the LinearOpMode that is currently running, or null
+     */
+    public void setOpMode(LinearOpMode opMode) { this.opMode = opMode; }
+
+    /**
+     * Sets the bulk read cache used by this mechanism. Must be called before <code>init()</code>
+     * so that motors can be registered.
+     * @param bulkData  robot's bulk read cache
+     */
+    public void setBulkData(BulkReadCache bulkData) { this.bulkData = bulkData; }
+
+    /**
+     * Sets the motor write cache used by this mechanism. Must be called before <code>init()</code>
+     * so that motors can be registered.
+     * @param outputs   robot's motor write cache
+     */
+    public void setOutputs(MotorWriteCache outputs) { this.outputs = outputs; }
+
+    /**
+     * Sets the command scheduler used by the blocking actions of this mechanism.
+     * @param scheduler robot's command scheduler
+     */
+    public void setScheduler(CommandScheduler scheduler) { this.scheduler = scheduler; }
+
+    /**
+     * Runs a command until it finishes or the OpMode stops. Commands already scheduled on the
+     * shared scheduler keep running in the meantime.
+     * @param command   command to run
+     */
+    protected void runCommand(Command command) {
+        if (scheduler == null) {
+            scheduler = new CommandScheduler();
+            scheduler.setCycleHook(new Runnable() {
+                @Override
+                public void run() { refreshBulkData(); }
+            });
+        }
+        scheduler.runUntilFinished(opMode, command);
+    }
+
+    /**
+     * Registers a motor with the bulk read cache.
+     * @return slot of the motor, or -1 if there is no cache
+     */
+    protected int registerMotor(DcMotor motor) {
+        return bulkData != null ? bulkData.register(motor) : -1;
+    }
+
+    /**
+     * Registers a motor or continuous rotation servo with the motor write cache.
+     * @return slot of the motor, or -1 if there is no cache
+     */
+    protected int registerOutput(DcMotorSimple motor) {
+        return outputs != null ? outputs.register(motor) : -1;
+    }
+
+    /**
+     * Sets the power of a motor through the motor write cache if possible.
+     */
+    protected void setPower(DcMotorSimple motor, int slot, double power) {
+        if (outputs != null && slot >= 0) outputs.setPower(slot, power);
+        else motor.setPower(power);
+    }
+
+    /**
+     * Changes the run mode of a motor. The mode goes to the hub right away while powers set
+     * during a cycle wait for the flush, so the motor is stopped first, and its cached power is
+     * invalidated afterwards as the hub's power may no longer match it. Does nothing if the motor
+     * is already in the mode, except for STOP_AND_RESET_ENCODER.
+     * @param motor     motor to change
+     * @param slot      motor write slot of the motor, or -1
+     * @param mode      new run mode
+     */
+    protected void setMode(DcMotor motor, int slot, DcMotor.RunMode mode) {
+        if (mode != DcMotor.RunMode.STOP_AND_RESET_ENCODER && motor.getMode() == mode) return;
+        boolean cached = outputs != null && slot >= 0;
+        if (cached) outputs.stop(slot);
+        else motor.setPower(0);
+        motor.setMode(mode);
+        if (cached) outputs.invalidate(slot);
+    }
+
+    /**
+     * Takes a new bulk read. Called by blocking actions that loop on their own.
+     */
+    protected void refreshBulkData() {
+        if (bulkData != null) bulkData.update();
+    }
+
+    /**
+     * Returns the encoder position of a motor from the bulk read cache if possible.
+     */
+    protected int getCurrentPosition(DcMotor motor, int slot) {
+        return bulkData != null ? bulkData.getEncoder(slot, motor) : motor.getCurrentPosition();
+    }
+
+    /**
+     * Returns whether a motor in RUN_TO_POSITION is still busy from the bulk read cache if possible.
+     */
+    protected boolean isBusy(DcMotor motor, int slot) {
+        return bulkData != null ? bulkData.isBusy(slot, motor) : motor.isBusy();
+    }
+
+    /**
+     * Returns a command that moves a motor to an encoder target along a jerk-limited profile. The
+     * motor is put in RUN_USING_ENCODER. The follower is stopped however the command ends; if it
+     * is interrupted by another move of the same follower, that move starts right away and takes
+     * over from the state this one was in.
+     * @param motor     motor to move
+     * @param slot      bulk read slot of the motor
+     * @param output    motor write slot of the motor
+     * @param follower  follower with the profile and gains of the mechanism
+     * @param target    encoder target in ticks
+     * @param tolerance largest position error in ticks at which the move is finished
+     */
+    protected Command profiledMoveCommand(final DcMotor motor, final int slot, final int output,
+                                          final ProfileFollower follower, final int target, final int tolerance) {
+        return new Command() {
+            {
+                requires(Mechanism.this);
+            }
+
+            @Override
+            public void initialize() {
+                setMode(motor, output, DcMotor.RunMode.RUN_USING_ENCODER);
+                follower.setTarget(System.nanoTime() / 1e9, getCurrentPosition(motor, slot), target);
+            }
+
+            @Override
+            public void execute() {
+                setPower(motor, output, follower.update(System.nanoTime() / 1e9, getCurrentPosition(motor, slot)));
+            }
+
+            @Override
+            public boolean isFinished() {
+                return follower.isFinished(System.nanoTime() / 1e9, getCurrentPosition(motor, slot), tolerance);
+            }
+
+            @Override
+            public void end(boolean interrupted) {
+                setPower(motor, output, 0);
+                follower.stop(System.nanoTime() / 1e9);
+            }
+        };
+    }
+
 }
\ No newline at end of file
@@ -34,6 +34,7 @@ public class RCConfig {
      * I2C.
      */
     public static final String IMU = "imu";
+    public static final String IMU_2 = "imu 1";
     public static final String FRONT_RANGE_SENSOR = "front_range";
     public static final String BACK_RANGE_SENSOR = "back_range";
 
@@ -41,4 +42,6 @@ public class RCConfig {
      * Misc.
      */
     public static final String WEBCAM = "Webcam 1";
+    public static final String EXPANSION_HUB_1 = "Expansion Hub 1";
+    public static final String EXPANSION_HUB_2 = "Expansion Hub 2";
 }
\ No newline at end of file
@@ -34,6 +34,23 @@ public class DriveConstants {
     public static double kA = 0;
     public static double kStatic = 0;
 
+    /*
+     * Read only the heading registers of the IMU through the read-window-less I2C device. Pitch
+     * and roll are then read on demand.
+     */
+    public static boolean FAST_HEADING_IMU = false;
+
+    /*
+     * Fuse the IMUs of both hubs into the heading (see DoubleIMU). Each is read on its own thread.
+     */
+    public static boolean DOUBLE_IMU = false;
+
+    /*
+     * Fastest wheel speed, in ticks per second, at which the robot still counts as standing still
+     * for the IMU's zero velocity updates.
+     */
+    public static int STATIONARY_TICKS_PER_S = 5;
+
 
     public static double encoderTicksToInches(int ticks) {
         return WHEEL_RADIUS * 2 * Math.PI * GEAR_RATIO * ticks / TICKS_PER_REV;
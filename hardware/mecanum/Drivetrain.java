@@ -1,8 +1,10 @@
 package org.firstinspires.ftc.teamcode.hardware.mecanum;
 
 
+import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.control.PIDCoefficients;
 import com.acmerobotics.roadrunner.drive.MecanumDrive;
+import com.qualcomm.hardware.bosch.BNO055IMU;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
@@ -12,23 +14,32 @@ import com.qualcomm.robotcore.hardware.PIDFCoefficients;
 import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.Range;
 
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaLocalizer;
 import org.firstinspires.ftc.teamcode.hardware.Mechanism;
 import org.firstinspires.ftc.teamcode.hardware.RCConfig;
 import org.firstinspires.ftc.teamcode.hardware.Constants;
+import org.firstinspires.ftc.teamcode.util.command.Command;
+import org.firstinspires.ftc.teamcode.util.command.WaitCommand;
+import org.firstinspires.ftc.teamcode.util.motion.Odometry;
 import org.firstinspires.ftc.teamcode.util.motion.PIDController;
+import org.firstinspires.ftc.teamcode.util.sensors.BulkSnapshot;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.DoubleIMU;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.FastHeadingIMU;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.IMU;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.IMUSession;
 import org.firstinspires.ftc.teamcode.util.sensors.imu.SingleIMU;
+import org.firstinspires.ftc.teamcode.util.sim.SimImu;
+import org.firstinspires.ftc.teamcode.util.vision.EKFVuforiaLocalizer;
 import org.jetbrains.annotations.NotNull;
 import org.openftc.revextensions2.ExpansionHubEx;
-import org.openftc.revextensions2.ExpansionHubMotor;
 import org.openftc.revextensions2.RevBulkData;
 import org.openftc.revextensions2.RevExtensions2;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import static org.apache.commons.math3.stat.StatUtils.normalize;
 import static org.firstinspires.ftc.teamcode.hardware.mecanum.DriveConstants.encoderTicksToInches;
 
 /**
@@ -42,18 +53,43 @@ import static org.firstinspires.ftc.teamcode.hardware.mecanum.DriveConstants.enc
  */
 public class Drivetrain extends MecanumDriveBase {
 
+    /* CONSTANTS */
+    private static final double METERS_PER_INCH = 0.0254;
+    /**
+     * Longest wait in <code>driveToPositionIMUCommand()</code> for the accelerometer bias to be
+     * estimated.
+     */
+    private static final double IMU_SETTLE_S = 0.5;
+
     /* Hardware members */
     private ExpansionHubEx hub;
     private ExpansionHubEx hub2;
-    private ExpansionHubMotor leftFront, leftBack, rightBack, rightFront;
-    private List<ExpansionHubMotor> motors;
+    private DcMotorEx leftFront, leftBack, rightBack, rightFront;
+    private List<DcMotorEx> motors;
+    private final int[] slots = { -1, -1, -1, -1 };
+    private final int[] outputSlots = { -1, -1, -1, -1 };
 
     public PIDController pidRotate, pidDrive;
     public SingleIMU singleImu = new SingleIMU();
+    public IMU headingImu = singleImu;
+    /**
+     * Fused heading of both hubs' IMUs, or null unless DriveConstants.DOUBLE_IMU is set.
+     */
+    public DoubleIMU doubleImu;
+    private volatile boolean imuReady = false;
+
+    /**
+     * Pose tracking from the drive encoders and IMU. Installed as the Road Runner localizer by
+     * <code>init()</code>; <code>startOdometry()</code> moves it to its own thread.
+     */
+    public Odometry odometry;
+    // Bulk read cycle during which the drive encoders were last reset
+    private volatile long resetCycle = -1;
 
     private final double power = .40, turningPower = .40, ticksPerInch = Constants.TICKS_PER_INCH_26;
 
     double flPower = 0.0, frPower = 0.0, blPower = 0.0, brPower = 0.0;
+    private final double[] powers = new double[4];
 
     /**
      * Default constructor for Drivetrain.
@@ -76,35 +112,92 @@ public class Drivetrain extends MecanumDriveBase {
      * @param hwMap        robot's hardware map
      */
     public void init(HardwareMap hwMap) {
-        RevExtensions2.init();
-        hub = hwMap.get(ExpansionHubEx.class, "Expansion Hub 1");
-        hub = hwMap.get(ExpansionHubEx.class, "Expansion Hub 2");
+        // Hubs are missing on simulated hardware; reads then go through the motors
+        if (bulkData != null) {
+            // Already looked up by the bulk read cache
+            hub = bulkData.getHub(0);
+            hub2 = bulkData.getHub(1);
+        } else {
+            try {
+                RevExtensions2.init();
+                hub = hwMap.get(ExpansionHubEx.class, RCConfig.EXPANSION_HUB_1);
+                hub2 = hwMap.get(ExpansionHubEx.class, RCConfig.EXPANSION_HUB_2);
+            } catch (Exception e) {
+                hub = null;
+                hub2 = null;
+            }
+        }
 
         // Retrieve motors from hardware map and assign to instance vars
-        leftFront = hwMap.get(ExpansionHubMotor.class, RCConfig.LEFT_FRONT);
-        leftBack = hwMap.get(ExpansionHubMotor.class, RCConfig.LEFT_BACK);
-        rightFront = hwMap.get(ExpansionHubMotor.class, RCConfig.RIGHT_FRONT);
-        rightBack = hwMap.get(ExpansionHubMotor.class, RCConfig.RIGHT_BACK);
+        leftFront = hwMap.get(DcMotorEx.class, RCConfig.LEFT_FRONT);
+        leftBack = hwMap.get(DcMotorEx.class, RCConfig.LEFT_BACK);
+        rightFront = hwMap.get(DcMotorEx.class, RCConfig.RIGHT_FRONT);
+        rightBack = hwMap.get(DcMotorEx.class, RCConfig.RIGHT_BACK);
+
+        motors = Arrays.asList(leftFront, leftBack, rightFront, rightBack);
+        configureMotors();
+
+        // Register motors with the bulk read cache in the same order as motors
+        if (bulkData != null) {
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = bulkData.register(motors.get(i));
+            }
+        }
+        // Register motors with the motor write cache in the same order as motors
+        for (int i = 0; i < outputSlots.length; i++) {
+            outputSlots[i] = registerOutput(motors.get(i));
+        }
+
+        odometry = new Odometry(new Odometry.Source() {
+            @Override
+            public boolean getWheelPositions(double[] positions) {
+                // The odometry thread runs between bulk reads of the control loop, so it reads the hub itself
+                boolean fresh = odometry.isRunning();
+                // A bulk read from before the last encoder reset would undo it
+                if (!fresh && bulkData != null && bulkData.getSnapshot().getCycle() <= resetCycle) return false;
+                return readWheelPositions(positions, fresh);
+            }
+
+            @Override
+            public double getHeading() {
+                return imuReady ? Math.toRadians(headingImu.getHeading()) : Double.NaN;
+            }
+        }, DriveConstants.TRACK_WIDTH);
+        setLocalizer(odometry);
+
+        // Set PID proportional value to start reducing power at about 50 degrees of rotation.
+        pidRotate = new PIDController(0.055, 0.002, 0.00);
+
+        // Set PID proportional value to produce non-zero correction value when robot veers off
+        // straight line. P value controls how sensitive the correction is.
+        pidDrive = new PIDController(.0, .0, .0);
+    }
 
+    /**
+     * Sets the drivetrain up for a new OpMode after <code>init()</code> was called in an earlier
+     * one. The SDK resets the direction, zero power behavior and run mode of every motor between
+     * OpModes but keeps the encoder counts, so only those settings are applied again; pose
+     * tracking carries on from the same counts.
+     */
+    public void resume() {
+        configureMotors();
+        for (DcMotorEx motor: motors) {
+            motor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
+        }
+    }
+
+    private void configureMotors() {
         // Set motor direction (AndyMark configuration)
         leftFront.setDirection(DcMotorSimple.Direction.FORWARD);
         leftBack.setDirection(DcMotorSimple.Direction.FORWARD);
         rightFront.setDirection(DcMotorSimple.Direction.REVERSE);
         rightBack.setDirection(DcMotorSimple.Direction.REVERSE);
 
-        motors = Arrays.asList(leftFront, leftBack, rightFront, rightBack);
-        for (ExpansionHubMotor motor: motors) {
+        for (DcMotorEx motor: motors) {
             // Set motor brake behavior
             motor.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
             motor.setPower(0);
         }
-
-        // Set PID proportional value to start reducing power at about 50 degrees of rotation.
-        pidRotate = new PIDController(0.055, 0.002, 0.00);
-
-        // Set PID proportional value to produce non-zero correction value when robot veers off
-        // straight line. P value controls how sensitive the correction is.
-        pidDrive = new PIDController(.0, .0, .0);
     }
 
     /**
@@ -113,10 +206,14 @@ public class Drivetrain extends MecanumDriveBase {
      */
     public void encoderInit() {
         motors = Arrays.asList(leftFront, leftBack, rightFront, rightBack);
-        for (ExpansionHubMotor motor: motors) {
+        // Pose tracking takes the reset counts as its new baseline
+        if (odometry != null) odometry.beginWheelReset();
+        for (DcMotorEx motor: motors) {
             motor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
             motor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
         }
+        if (bulkData != null) resetCycle = bulkData.getSnapshot().getCycle();
+        if (odometry != null) odometry.endWheelReset();
     }
 
     /**
@@ -126,7 +223,7 @@ public class Drivetrain extends MecanumDriveBase {
      * @param behavior FLOAT, BRAKE
      */
     public void setDriveZeroPowers(DcMotor.ZeroPowerBehavior behavior) {
-        for (ExpansionHubMotor motor: motors) {
+        for (DcMotorEx motor: motors) {
             motor.setZeroPowerBehavior(behavior);
         }
     }
@@ -137,7 +234,36 @@ public class Drivetrain extends MecanumDriveBase {
      */
     public void imuInit(HardwareMap hwMap) {
         // Retrieve and initialize the IMU
-        singleImu.init(hub, hwMap, AxesOrder.ZYX,0D);
+        SimImu simImu = hwMap.tryGet(SimImu.class, RCConfig.IMU);
+        if (simImu != null) {
+            // Configured as a SimulatedRobot's IMU, which only serves the heading registers
+            FastHeadingIMU fastHeading = new FastHeadingIMU(simImu);
+            singleImu.setFastHeading(fastHeading);
+            headingImu = fastHeading;
+        } else if (DriveConstants.FAST_HEADING_IMU && hub != null) {
+            // Read-window-less I2C device; heading reads only touch the 2 heading registers
+            singleImu.init(IMUSession.getEmbeddedImu(hub.getStandardModule()), AxesOrder.ZYX, 0D);
+            FastHeadingIMU fastHeading = new FastHeadingIMU(singleImu.imu);
+            singleImu.setFastHeading(fastHeading);
+            headingImu = fastHeading;
+        } else {
+            singleImu.init(hub, hwMap, AxesOrder.ZYX,0D);
+            headingImu = singleImu;
+        }
+        if (hub2 != null && DriveConstants.DOUBLE_IMU) {
+            // Second IMU on the other hub, fused with the first
+            SingleIMU secondImu = new SingleIMU();
+            if (DriveConstants.FAST_HEADING_IMU) {
+                secondImu.init(IMUSession.getEmbeddedImu(hub2.getStandardModule()), AxesOrder.ZYX, 0D);
+                secondImu.setFastHeading(new FastHeadingIMU(secondImu.imu));
+            } else {
+                secondImu.init(hwMap.get(BNO055IMU.class, RCConfig.IMU_2), AxesOrder.ZYX, 0D);
+            }
+            doubleImu = new DoubleIMU(singleImu, secondImu);
+            doubleImu.start();
+            headingImu = doubleImu;
+        }
+        imuReady = true;
         // Set the starting angle to make automating hanging easier
     }
 
@@ -149,7 +275,7 @@ public class Drivetrain extends MecanumDriveBase {
 
     @Override
     public double getExternalHeading() {
-        return singleImu.getHeading();
+        return headingImu.getHeading();
     }
 
     @Override
@@ -160,7 +286,7 @@ public class Drivetrain extends MecanumDriveBase {
 
     @Override
     public void setPIDCoefficients(DcMotor.RunMode runMode, PIDCoefficients coefficients) {
-        for (ExpansionHubMotor motor : motors) {
+        for (DcMotorEx motor : motors) {
             motor.setPIDFCoefficients(runMode, new PIDFCoefficients(
                     coefficients.kP, coefficients.kI, coefficients.kD, 1
             ));
@@ -170,25 +296,121 @@ public class Drivetrain extends MecanumDriveBase {
     @NotNull
     @Override
     public List<Double> getWheelPositions() {
-        RevBulkData bulkData = hub.getBulkInputData();
+        double[] positions = new double[4];
+        readWheelPositions(positions, false);
+        return Arrays.asList(positions[0], positions[1], positions[2], positions[3]);
+    }
+
+    /**
+     * Reads the wheel positions in inches without boxing them.
+     * @param positions     array filled in the order lf, lb, rf, rb
+     * @param fresh         whether to take a new bulk read instead of using the bulk read cache
+     * @return whether the positions were read; they are left at zero otherwise
+     */
+    public boolean readWheelPositions(double[] positions, boolean fresh) {
+        if (!fresh && bulkData != null) {
+            // All four from the same cycle
+            BulkSnapshot snapshot = bulkData.getSnapshot();
+            if (bulkData.isValid(snapshot, slots[0])) {
+                for (int i = 0; i < slots.length; i++) {
+                    positions[i] = encoderTicksToInches(bulkData.getEncoder(snapshot, slots[i]));
+                }
+                return true;
+            }
+        }
+
+        if (hub == null) {
+            for (int i = 0; i < motors.size(); i++) {
+                positions[i] = encoderTicksToInches(motors.get(i).getCurrentPosition());
+            }
+            return true;
+        }
 
-        if (bulkData == null) {
-            return Arrays.asList(0.0, 0.0, 0.0, 0.0);
+        RevBulkData data = hub.getBulkInputData();
+
+        if (data == null) {
+            Arrays.fill(positions, 0);
+            return false;
         }
 
-        List<Double> wheelPositions = new ArrayList<>();
-        for (ExpansionHubMotor motor : motors) {
-            wheelPositions.add(DriveConstants.encoderTicksToInches(bulkData.getMotorCurrentPosition(motor)));
+        for (int i = 0; i < motors.size(); i++) {
+            positions[i] = encoderTicksToInches(data.getMotorCurrentPosition(motors.get(i)));
         }
-        return wheelPositions;
+        return true;
+    }
+
+    /**
+     * Moves pose tracking to the odometry thread, which steps at Odometry.DEFAULT_RATE.
+     */
+    public void startOdometry() { odometry.start(); }
+
+    /**
+     * Stops the odometry thread. Pose tracking goes back to <code>update()</code>.
+     */
+    public void stopOdometry() { odometry.stop(); }
+
+    /**
+     * Corrects pose tracking with Vuforia target fixes from now on. The current pose is kept.
+     * @param vuforia           running Vuforia instance
+     * @param cameraDirection   camera used for tracking
+     */
+    public void enableVuforiaLocalization(VuforiaLocalizer vuforia, VuforiaLocalizer.CameraDirection cameraDirection) {
+        Pose2d pose = getPoseEstimate();
+        setLocalizer(new EKFVuforiaLocalizer(vuforia, cameraDirection, odometry));
+        setPoseEstimate(pose);
+    }
+
+    /**
+     * Returns the encoder position of a drive motor from the bulk read cache if possible.
+     * @param i         index of the motor in motors (lf, lb, rf, rb)
+     */
+    private int getCurrentPosition(int i) {
+        return bulkData != null ? bulkData.getEncoder(slots[i], motors.get(i)) : motors.get(i).getCurrentPosition();
+    }
+
+    /**
+     * Returns the encoder position of a drive motor in ticks.
+     * @param i         index of the motor in motors (lf, lb, rf, rb)
+     */
+    public int getDriveTicks(int i) { return getCurrentPosition(i); }
+
+    /**
+     * Returns whether a drive motor is still running to its target from the bulk read cache if possible.
+     * @param i         index of the motor in motors (lf, lb, rf, rb)
+     */
+    private boolean isBusy(int i) {
+        return bulkData != null ? bulkData.isBusy(slots[i], motors.get(i)) : motors.get(i).isBusy();
+    }
+
+    /**
+     * Sets the power of a drive motor through the motor write cache if possible.
+     * @param i         index of the motor in motors (lf, lb, rf, rb)
+     */
+    private void setDrivePower(int i, double power) {
+        setPower(motors.get(i), outputSlots[i], power);
+    }
+
+    /**
+     * Changes the run mode of a drive motor, stopping it first. See <code>setMode()</code>.
+     * @param i         index of the motor in motors (lf, lb, rf, rb)
+     */
+    private void setDriveMode(int i, DcMotor.RunMode mode) {
+        setMode(motors.get(i), outputSlots[i], mode);
+    }
+
+    /**
+     * Changes the run mode of every drive motor, stopping them first.
+     */
+    private void setDriveModes(DcMotor.RunMode mode) {
+        for (int i = 0; i < motors.size(); i++) setDriveMode(i, mode);
     }
 
     @Override
     public void setMotorPowers(double v0, double v1, double v2, double v3) {
-        leftFront.setPower(v0);
-        leftBack.setPower(v1);
-        rightFront.setPower(v2);
-        rightBack.setPower(v3);
+        setDrivePower(0, v0);
+        setDrivePower(1, v1);
+        setDrivePower(2, v2);
+        setDrivePower(3, v3);
     }
 
     /**
@@ -199,104 +421,170 @@ public class Drivetrain extends MecanumDriveBase {
      * @param turn      turn vector
      */
     public void driveTrig(double x, double y, double turn) {
+        trigPowers(x, y, turn, powers);
+        applyPowers();
+    }
+
+    /**
+     * Computes the motor powers used by <code>driveTrig()</code>.
+     * @param out       array of 4 to write the powers to (lf, lb, rf, rb)
+     */
+    public static void trigPowers(double x, double y, double turn, double[] out) {
         double r = Math.hypot(x, y);
         double robotAngle = Math.atan2(y, x) - Math.PI / 4;
         double v1 = r * Math.cos(robotAngle) + turn, v2 = r * Math.sin(robotAngle) - turn,
                 v3 = r * Math.sin(robotAngle) + turn, v4 = r * Math.cos(robotAngle) - turn;
 
-        leftFront.setPower(Range.clip(v3,-1,1)); // v2
-        leftBack.setPower(Range.clip(v1,-1,1));  // v4
-        rightBack.setPower(Range.clip(v2,-1,1)); // v3
-        rightFront.setPower(Range.clip(v4,-1,1));// v1
+        out[0] = Range.clip(v3,-1,1); // v2
+        out[1] = Range.clip(v1,-1,1); // v4
+        out[2] = Range.clip(v4,-1,1); // v1
+        out[3] = Range.clip(v2,-1,1); // v3
     }
 
     public void driveVector(double y, double x, double turn) {
-        flPower = y + x + turn;
-        frPower = y - x - turn;
-        blPower = y - x + turn;
-        brPower = y + x - turn;
+        vectorPowers(y, x, turn, powers);
+        applyPowers();
+    }
 
-        leftFront.setPower(Range.clip(flPower,-1,1));
-        leftBack.setPower(Range.clip(blPower,-1,1));
-        rightBack.setPower(Range.clip(brPower,-1,1));
-        rightFront.setPower(Range.clip(frPower,-1,1));
+    /**
+     * Computes the motor powers used by <code>driveVector()</code>.
+     * @param out       array of 4 to write the powers to (lf, lb, rf, rb)
+     */
+    public static void vectorPowers(double y, double x, double turn, double[] out) {
+        out[0] = Range.clip(y + x + turn,-1,1);
+        out[1] = Range.clip(y - x + turn,-1,1);
+        out[2] = Range.clip(y - x - turn,-1,1);
+        out[3] = Range.clip(y + x - turn,-1,1);
     }
 
     public void tankVectorDrive(double leftY, double rightY, double slide) {
-        flPower = leftY - slide;
-        blPower = leftY + slide;
-        frPower = rightY + slide;
-        brPower = rightY - slide;
+        tankVectorPowers(leftY, rightY, slide, powers);
+        applyPowers();
+    }
 
-        leftFront.setPower(Range.clip(flPower,-1,1));
-        leftBack.setPower(Range.clip(blPower,-1,1));
-        rightBack.setPower(Range.clip(brPower,-1,1));
-        rightFront.setPower(Range.clip(frPower,-1,1));
+    /**
+     * Computes the motor powers used by <code>tankVectorDrive()</code>.
+     * @param out       array of 4 to write the powers to (lf, lb, rf, rb)
+     */
+    public static void tankVectorPowers(double leftY, double rightY, double slide, double[] out) {
+        out[0] = Range.clip(leftY - slide,-1,1);
+        out[1] = Range.clip(leftY + slide,-1,1);
+        out[2] = Range.clip(rightY + slide,-1,1);
+        out[3] = Range.clip(rightY - slide,-1,1);
     }
 
     // power is positive = right
     public void strafe(double power){
-        leftFront.setPower(-power);
-        rightFront.setPower(power);
-        leftBack.setPower(power);
-        rightBack.setPower(-power);
+        setDrivePower(0, -power);
+        setDrivePower(2, power);
+        setDrivePower(1, power);
+        setDrivePower(3, -power);
     }
 
-    public double trueScaledInput(double joystickValue){
+    public static double trueScaledInput(double joystickValue){
         double signum = Math.signum(joystickValue);
         double joystickScale = Math.pow(joystickValue,2) * signum;
         return joystickScale;
     }
 
     public void tankDriveScaled(double leftY, double rightY, double slide){
-        flPower = trueScaledInput(leftY) - trueScaledInput(slide);
-        frPower = trueScaledInput(rightY) + trueScaledInput(slide);
-        blPower = trueScaledInput(leftY) + trueScaledInput(slide);
-        brPower = trueScaledInput(rightY) - trueScaledInput(slide);
+        scaledTankPowers(leftY, rightY, slide, powers);
+        applyPowers();
+    }
 
-        leftFront.setPower(Range.clip(flPower,-1,1));
-        leftBack.setPower(Range.clip(blPower,-1,1));
-        rightBack.setPower(Range.clip(brPower,-1,1));
-        rightFront.setPower(Range.clip(frPower,-1,1));
+    /**
+     * Computes the motor powers used by <code>tankDriveScaled()</code>.
+     * @param out       array of 4 to write the powers to (lf, lb, rf, rb)
+     */
+    public static void scaledTankPowers(double leftY, double rightY, double slide, double[] out) {
+        tankVectorPowers(trueScaledInput(leftY), trueScaledInput(rightY), trueScaledInput(slide), out);
     }
 
-    public void fieldCentric(double forward, double strafe, double rotate, double gyro) {
-        // reset the power of all motors
-        flPower = 0;
-        frPower = 0;
-        blPower = 0;
-        brPower = 0;
+    /**
+     * Drives relative to the field, taking the heading from <code>getFieldHeading()</code>.
+     */
+    public void fieldCentric(double forward, double strafe, double rotate) {
+        fieldCentric(forward, strafe, rotate, getFieldHeading());
+    }
 
-        double forwardIn = forward, strafeIn = strafe;
-        double[] temp = new double[2];
-        temp = rotateVector(strafeIn, forwardIn, gyro);
+    /**
+     * Returns the heading of the robot relative to its heading at the start of autonomous (see
+     * <code>imuStartingRot()</code>), in degrees. Carried into TeleOp by
+     * <code>HardwareMecanum.restoreHandoff()</code>.
+     */
+    public double getFieldHeading() {
+        return AngleUnit.DEGREES.normalize(singleImu.getHeading() - SingleIMU.startingAngle);
+    }
 
-        forwardIn = temp[0];
-        strafeIn = temp[1];
-        double allWheels[] = new double[4];
+    /**
+     * Returns whether the IMU has been initialized.
+     */
+    public boolean isImuReady() { return imuReady; }
 
-        allWheels[0] = forwardIn + strafeIn + rotate;
-        allWheels[1] = forwardIn - strafeIn - rotate;
-        allWheels[2] = forwardIn - strafeIn + rotate;
-        allWheels[3] = forwardIn + strafeIn - rotate;
-        normalize(allWheels);
+    /**
+     * Drives relative to the field.
+     *
+     * @param forward   forward component of the drive vector, relative to the field
+     * @param strafe    strafe component of the drive vector, relative to the field
+     * @param rotate    turn power
+     * @param gyro      heading of the robot in degrees
+     */
+    public void fieldCentric(double forward, double strafe, double rotate, double gyro) {
+        fieldCentricPowers(forward, strafe, rotate, gyro, powers);
+        applyPowers();
+    }
 
-        flPower = allWheels[0];
-        frPower = allWheels[1];
-        blPower = allWheels[2];
-        brPower = allWheels[3];
+    /**
+     * Computes the motor powers used by <code>fieldCentric()</code>. The powers are scaled down
+     * together so that none is above 1.
+     * @param out       array of 4 to write the powers to (lf, lb, rf, rb)
+     */
+    public static void fieldCentricPowers(double forward, double strafe, double rotate, double gyro, double[] out) {
+        double cosA = Math.cos(gyro * Math.PI / 180);
+        double sinA = Math.sin(gyro * Math.PI / 180);
+        double forwardIn = strafe * cosA - forward * sinA;
+        double strafeIn = forward * cosA + strafe * sinA;
+
+        out[0] = forwardIn + strafeIn + rotate;
+        out[1] = forwardIn - strafeIn + rotate;
+        out[2] = forwardIn - strafeIn - rotate;
+        out[3] = forwardIn + strafeIn - rotate;
+
+        double max = Math.max(Math.max(Math.abs(out[0]), Math.abs(out[1])), Math.max(Math.abs(out[2]), Math.abs(out[3])));
+        if (max > 1) {
+            for (int i = 0; i < 4; i++) out[i] /= max;
+        }
     }
 
     public static double[] rotateVector(double x, double y, double angle) {
         double out[] = new double[2];
+        rotateVector(x, y, angle, out);
+        return out;
+    }
+
+    /**
+     * Rotates a vector by an angle in degrees without allocating.
+     * @param out       array of 2 to write the rotated vector to
+     */
+    public static void rotateVector(double x, double y, double angle, double[] out) {
         double cosA = Math.cos(angle * Math.PI / 180);
         double sinA = Math.sin(angle * Math.PI / 180);
 
         out[0] = x * cosA - y * sinA;
         out[1] = y * cosA + x * sinA;
+    }
 
-        return out;
+    /**
+     * Sends the powers computed into <code>powers</code> (lf, lb, rf, rb) to the drive motors.
+     */
+    private void applyPowers() {
+        flPower = powers[0];
+        blPower = powers[1];
+        frPower = powers[2];
+        brPower = powers[3];
+        setMotorPowers(powers[0], powers[1], powers[2], powers[3]);
     }
+
     /**
      * Drive to a relative position using encoders and an IMU. Note (You must pass in the same
      * distance for both left and right inches for this method to work correctly)
@@ -315,95 +603,173 @@ public class Drivetrain extends MecanumDriveBase {
      */
 
     public void driveToPos(double speed, double leftInches, double rightInches, double timeoutS) {
-        // Target position variables
-        int newLeftFrontTarget, newLeftBackTarget;
-        int newRightFrontTarget, newRightBackTarget;
-
-        // Determine new target position, and pass to motor controller
-        newLeftFrontTarget = leftFront.getCurrentPosition() + (int)(leftInches * ticksPerInch);
-        newRightFrontTarget = rightFront.getCurrentPosition() + (int)(leftInches * ticksPerInch);
-        newLeftBackTarget = leftFront.getCurrentPosition() + (int)(leftInches * ticksPerInch);
-        newRightBackTarget = rightFront.getCurrentPosition() + (int)(leftInches * ticksPerInch);
-        leftFront.setTargetPosition(newLeftFrontTarget);
-        rightFront.setTargetPosition(newRightFrontTarget);
-        leftBack.setTargetPosition(newLeftBackTarget);
-        rightBack.setTargetPosition(newRightBackTarget);
-
-        // Turn On RUN_TO_POSITION
-        leftFront.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        rightFront.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        leftBack.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        rightBack.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-
-        // Reset the timeout time
-        ElapsedTime runtime = new ElapsedTime();
-        runtime.reset();
-
-        // Loop until a condition is met
-        while (opMode.opModeIsActive() &&
-                (runtime.seconds() < timeoutS) &&
-                leftFront.isBusy() && rightFront.isBusy() && leftBack.isBusy() && rightBack.isBusy()) {
-
-            // Set power of drivetrain motors accounting for adjustment
-            driveStraightPID(speed, leftInches);
-
-            // Display info for the driver.
-            opMode.telemetry.addData("Path1", "Running to %.2f :%.2f :%.2f :%.2f",
-                    newLeftFrontTarget / ticksPerInch,
-                    newRightFrontTarget / ticksPerInch,
-                    newLeftBackTarget / ticksPerInch,
-                    newRightBackTarget / ticksPerInch);
-            double[] positions = getPositions();
-            opMode.telemetry.addData("Path2", "Running at %.2f :%.2f :%.2f :%.2f",
-                    positions[0],
-                    positions[1],
-                    positions[2],
-                    positions[3]);
-            opMode.telemetry.update();
-        }
-
-        // Stop all motion
-        leftFront.setPower(0);
-        rightFront.setPower(0);
-        leftBack.setPower(0);
-        rightBack.setPower(0);
-
-        // Turn off RUN_TO_POSITION
-        leftFront.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        rightFront.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        leftBack.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        rightBack.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-
-        leftFront.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
-        rightFront.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
-        leftBack.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
-        rightBack.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
+        runCommand(driveToPosCommand(speed, leftInches, timeoutS));
     }
 
     public void driveToPos(double speed, double distance, double timeoutS) {
         driveToPos(speed, distance, distance, timeoutS);
     }
 
-    public void driveToPositionIMU(double inches, double power){
-        ElapsedTime runtime = new ElapsedTime();
-        runtime.reset();
-        double startError = singleImu.getXAccel();
-        double startPos = singleImu.getXDistance();
-        double currentPos = singleImu.getXDistance();
-        double endPos = startPos + inches;
-        double error;
-        leftBack.setPower(power);
-        leftFront.setPower(power);
-        rightBack.setPower(power);
-        rightFront.setPower(power);
-        while(opMode.opModeIsActive() && currentPos < endPos){
-            error = startError * runtime.seconds() * runtime.seconds();
-            currentPos = singleImu.getXDistance() - error;
+    /**
+     * Returns a command that drives to a relative position using encoders and an IMU.
+     *
+     * @param speed         maximum power of drivetrain motors when driving
+     * @param inches        number of inches to move
+     * @param timeoutS      amount of time before the move should stop
+     */
+    public Command driveToPosCommand(final double speed, final double inches, double timeoutS) {
+        return new Command() {
+            {
+                requires(Drivetrain.this);
+            }
+
+            @Override
+            public void initialize() {
+                // Target position variables
+                int newLeftFrontTarget, newLeftBackTarget;
+                int newRightFrontTarget, newRightBackTarget;
+
+                // Determine new target position, and pass to motor controller
+                // Relative to each wheel's count in this cycle's bulk read, as encoders are not
+                // reset between moves
+                newLeftFrontTarget = getCurrentPosition(0) + (int)(inches * ticksPerInch);
+                newRightFrontTarget = getCurrentPosition(2) + (int)(inches * ticksPerInch);
+                newLeftBackTarget = getCurrentPosition(1) + (int)(inches * ticksPerInch);
+                newRightBackTarget = getCurrentPosition(3) + (int)(inches * ticksPerInch);
+                leftFront.setTargetPosition(newLeftFrontTarget);
+                rightFront.setTargetPosition(newRightFrontTarget);
+                leftBack.setTargetPosition(newLeftBackTarget);
+                rightBack.setTargetPosition(newRightBackTarget);
+
+                // Turn On RUN_TO_POSITION
+                setDriveModes(DcMotor.RunMode.RUN_TO_POSITION);
+            }
+
+            @Override
+            public void execute() {
+                // Set power of drivetrain motors accounting for adjustment
+                driveStraightPID(speed, inches);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return !(isBusy(0) && isBusy(2) && isBusy(1) && isBusy(3));
+            }
+
+            @Override
+            public void end(boolean interrupted) {
+                // Stop all motion and turn off RUN_TO_POSITION; the counts are kept for pose tracking
+                setDriveModes(DcMotor.RunMode.RUN_USING_ENCODER);
+            }
+        }.withTimeout(timeoutS);
+    }
+
+    /**
+     * Returns a command that strafes at a set power for a number of seconds.
+     * @param power         strafe power, positive is right
+     * @param seconds       time to strafe
+     */
+    public Command strafeCommand(final double power, double seconds) {
+        return new WaitCommand(seconds) {
+            {
+                requires(Drivetrain.this);
+            }
+
+            @Override
+            public void initialize() {
+                super.initialize();
+                strafe(power);
+            }
+
+            @Override
+            public void end(boolean interrupted) { strafe(0); }
+        };
+    }
+
+    /**
+     * Tells the IMU's acceleration integrator whether the robot is standing still: no drive motor
+     * may be commanded to move, and no wheel may be turning by the bulk read cache if possible.
+     * A wheel that has not started turning yet under power does not count as still. Only does
+     * anything while acceleration is being integrated; should then be called every control cycle.
+     */
+    public void updateZeroVelocity() {
+        if (!singleImu.isIntegrating()) return;
+        boolean stationary = true;
+        for (int i = 0; i < motors.size() && stationary; i++) {
+            double velocity = bulkData != null ? bulkData.getVelocity(slots[i], motors.get(i)) : motors.get(i).getVelocity();
+            stationary = getPower(motors.get(i), outputSlots[i]) == 0
+                    && Math.abs(velocity) <= DriveConstants.STATIONARY_TICKS_PER_S;
         }
-        leftFront.setPower(0);
-        rightFront.setPower(0);
-        leftBack.setPower(0);
-        rightBack.setPower(0);
+        singleImu.integrator.setStationary(stationary);
+    }
+
+    @Override
+    protected void updateSensors() {
+        super.updateSensors();
+        updateZeroVelocity();
+    }
+
+    /**
+     * Drives forward a distance measured by integrating the IMU's acceleration.
+     * @param inches        distance to drive
+     * @param power         drive power
+     * @param timeoutS      amount of time before the move should stop
+     */
+    public void driveToPositionIMU(double inches, double power, double timeoutS) {
+        runCommand(driveToPositionIMUCommand(inches, power, timeoutS));
+    }
+
+    /**
+     * Returns a command that drives forward a distance measured by integrating the IMU's
+     * acceleration. The robot must be standing still when the command starts, so that the
+     * accelerometer bias can be estimated first; the wait for it counts toward the timeout.
+     * Finishes at once if there is no IMU.
+     * @param inches        distance to drive
+     * @param power         drive power
+     * @param timeoutS      amount of time before the move should stop
+     */
+    public Command driveToPositionIMUCommand(final double inches, final double power, double timeoutS) {
+        return new Command() {
+            private final ElapsedTime settleTime = new ElapsedTime();
+            private boolean integrating, driving;
+            private double startPos;
+
+            {
+                requires(Drivetrain.this);
+            }
+
+            @Override
+            public void initialize() {
+                integrating = singleImu.startIntegration();
+                driving = false;
+                setMotorPowers(0, 0, 0, 0);
+                settleTime.reset();
+            }
+
+            @Override
+            public void execute() {
+                if (!integrating || driving) return;
+                // Stand still until the bias is estimated
+                if (!singleImu.integrator.isSettled() && settleTime.seconds() < IMU_SETTLE_S) return;
+                startPos = singleImu.getXDistance();
+                driving = true;
+                setMotorPowers(power, power, power, power);
+                // Standing still was reported at the start of this cycle
+                singleImu.integrator.setStationary(false);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return !integrating
+                        || (driving && Math.abs(singleImu.getXDistance() - startPos) >= Math.abs(inches) * METERS_PER_INCH);
+            }
+
+            @Override
+            public void end(boolean interrupted) {
+                setMotorPowers(0, 0, 0, 0);
+                if (integrating) singleImu.stopIntegration();
+            }
+        }.withTimeout(timeoutS);
     }
 
     /**
@@ -422,15 +788,15 @@ public class Drivetrain extends MecanumDriveBase {
         double corrections = pidDrive.performPID(singleImu.getAngle());
 
         if (Math.signum(distance) >= 0) {
-            leftFront.setPower(leftSpeed + corrections);
-            leftBack.setPower(leftSpeed + corrections);
-            rightBack.setPower(rightSpeed);
-            rightFront.setPower(rightSpeed);
+            setDrivePower(0, leftSpeed + corrections);
+            setDrivePower(1, leftSpeed + corrections);
+            setDrivePower(3, rightSpeed);
+            setDrivePower(2, rightSpeed);
         } else if (Math.signum(distance) < 0){
-            leftFront.setPower(leftSpeed);
-            leftBack.setPower(leftSpeed);
-            rightBack.setPower(rightSpeed + (Math.signum(speed) * corrections));
-            rightFront.setPower(rightSpeed + (Math.signum(speed) * corrections));
+            setDrivePower(0, leftSpeed);
+            setDrivePower(1, leftSpeed);
+            setDrivePower(3, rightSpeed + (Math.signum(speed) * corrections));
+            setDrivePower(2, rightSpeed + (Math.signum(speed) * corrections));
         }
     }
 
@@ -460,77 +826,142 @@ public class Drivetrain extends MecanumDriveBase {
      * @param power  Maximum power set to the motors
      */
     private void pidDriveRotate(int degrees, double power) {
-        singleImu.resetAngle();
-        pidRotate.reset();
-        pidRotate.setSetpoint(degrees);
-        pidRotate.setInputRange(0, 90);
-        pidRotate.setOutputRange(.05, power);
-        pidRotate.setTolerance(0.6);
-        pidRotate.enable();
-
-        // getAngle() returns + when rotating counter clockwise (left) and - when rotating
-        // clockwise (right).
-
-        // rotate until turn is completed.
-
-        if (degrees < 0) { // On right turn we have to get off zero first.
-            while (opMode.opModeIsActive() && singleImu.getAngle() == 0) {
-                leftFront.setPower(power);
-                leftBack.setPower(power);
-                rightBack.setPower(-power);
-                rightFront.setPower(-power);
-            } do {
-                power = pidRotate.performPID(singleImu.getAngle()); // power will be - on right turn.
-                leftFront.setPower(power);
-                leftBack.setPower(power);
-                rightBack.setPower(-power);
-                rightFront.setPower(-power);
-                opMode.telemetry.addData("angle", singleImu.getAngle());
-                opMode.telemetry.update();
-            } while (opMode.opModeIsActive() && !pidRotate.onTarget());
-        } else do { // left turn.
-            power = pidRotate.performPID(singleImu.getAngle()); // power will be + on left turn.
-            leftFront.setPower(power);
-            leftBack.setPower(power);
-            rightBack.setPower(-power);
-            rightFront.setPower(-power);
-            opMode.telemetry.addData("angle", singleImu.getAngle());
-            opMode.telemetry.update();
-        } while (opMode.opModeIsActive() && !pidRotate.onTarget());
-
-        leftFront.setPower(0);
-        leftBack.setPower(0);
-        rightBack.setPower(0);
-        rightFront.setPower(0);
-
-        // reset angle tracking on new heading.
-        singleImu.resetAngle();
+        runCommand(turnCommand(degrees, power));
+    }
+
+    /**
+     * Returns a command that rotates left or right the number of degrees using a PID loop. See
+     * <code>pidDriveRotate()</code>.
+     *
+     * @param degrees Degrees to turn, + is left - is right
+     * @param power  Maximum power set to the motors
+     */
+    public Command turnCommand(final int degrees, final double power) {
+        return new Command() {
+            private boolean offZero;
+
+            {
+                requires(Drivetrain.this);
+            }
+
+            @Override
+            public void initialize() {
+                singleImu.resetAngle();
+                pidRotate.reset();
+                pidRotate.setSetpoint(degrees);
+                pidRotate.setInputRange(0, 90);
+                pidRotate.setOutputRange(.05, power);
+                pidRotate.setTolerance(0.6);
+                pidRotate.enable();
+
+                // On right turn we have to get off zero first.
+                offZero = degrees < 0;
+            }
+
+            @Override
+            public void execute() {
+                // getAngle() returns + when rotating counter clockwise (left) and - when rotating
+                // clockwise (right).
+                double angle = singleImu.getAngle();
+                if (offZero && angle == 0) {
+                    setTurnPower(power);
+                    return;
+                }
+                offZero = false;
+
+                setTurnPower(pidRotate.performPID(angle)); // power will be - on right turn.
+            }
+
+            @Override
+            public boolean isFinished() { return !offZero && pidRotate.onTarget(); }
+
+            @Override
+            public void end(boolean interrupted) {
+                setTurnPower(0);
+
+                // reset angle tracking on new heading.
+                singleImu.resetAngle();
+            }
+        };
+    }
+
+    private void setTurnPower(double power) {
+        setDrivePower(0, power);
+        setDrivePower(1, power);
+        setDrivePower(3, -power);
+        setDrivePower(2, -power);
     }
 
+    /**
+     * Turns along a curve by driving the front wheels different distances. See
+     * <code>curveTurnCommand()</code>.
+     */
     public void curveTurn(int counts, double speed, double turnFraction, boolean turnRight) {
-        double reducedSpeed = speed * (1 - turnFraction);
-        double reducedCount = counts * (1- turnFraction);
-
-        if (turnRight) {
-            leftFront.setTargetPosition(counts);
-            leftFront.setPower(speed);
-            rightFront.setTargetPosition((int)reducedCount);
-            rightFront.setPower(reducedSpeed);
-        }
-        else {
-            leftFront.setTargetPosition((int)reducedCount);
-            leftFront.setPower(reducedSpeed);
-            rightFront.setTargetPosition(counts);
-            rightFront.setPower(speed);
-        }
+        runCommand(curveTurnCommand(counts, speed, turnFraction, turnRight));
+    }
+
+    /**
+     * Returns a command that turns along a curve by running the front wheels to positions. The
+     * wheel on the inside of the turn drives a fraction of the distance at the same fraction of
+     * the speed.
+     *
+     * @param counts        encoder counts for the outside wheel to drive
+     * @param speed         power of the outside wheel
+     * @param turnFraction  fraction by which the inside wheel's distance and speed are reduced
+     * @param turnRight     whether to turn right
+     */
+    public Command curveTurnCommand(final int counts, final double speed, final double turnFraction, final boolean turnRight) {
+        return new Command() {
+            {
+                requires(Drivetrain.this);
+            }
+
+            @Override
+            public void initialize() {
+                double reducedSpeed = speed * (1 - turnFraction);
+                int reducedCount = (int) (counts * (1 - turnFraction));
+
+                leftFront.setTargetPosition(getCurrentPosition(0) + (turnRight ? counts : reducedCount));
+                rightFront.setTargetPosition(getCurrentPosition(2) + (turnRight ? reducedCount : counts));
+                setDriveMode(0, DcMotor.RunMode.RUN_TO_POSITION);
+                setDriveMode(2, DcMotor.RunMode.RUN_TO_POSITION);
+                setDrivePower(0, turnRight ? speed : reducedSpeed);
+                setDrivePower(2, turnRight ? reducedSpeed : speed);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return !(isBusy(0) || isBusy(2));
+            }
+
+            @Override
+            public void end(boolean interrupted) {
+                setDriveMode(0, DcMotor.RunMode.RUN_USING_ENCODER);
+                setDriveMode(2, DcMotor.RunMode.RUN_USING_ENCODER);
+            }
+        };
+    }
+
+    /**
+     * Returns the motor write cache slot of a drive motor, or -1 if there is no cache.
+     * @param i         index of the motor in motors (lf, lb, rf, rb)
+     */
+    public int getOutputSlot(int i) { return outputSlots[i]; }
+
+    /**
+     * Returns the distance driven by one wheel in inches.
+     * @param i         index of the motor in motors (lf, lb, rf, rb)
+     */
+    public double getPosition(int i) {
+        return getCurrentPosition(i) / ticksPerInch;
     }
 
     public double[] getPositions() {
         double[] positions = new double[4];
-        positions[0] = leftFront.getCurrentPosition() / ticksPerInch;
-        positions[1] = rightFront.getCurrentPosition() / ticksPerInch;
-        positions[2] = leftBack.getCurrentPosition() / ticksPerInch;
-        positions[3] = rightBack.getCurrentPosition() / ticksPerInch;
+        positions[0] = getCurrentPosition(0) / ticksPerInch;
+        positions[1] = getCurrentPosition(2) / ticksPerInch;
+        positions[2] = getCurrentPosition(1) / ticksPerInch;
+        positions[3] = getCurrentPosition(3) / ticksPerInch;
 
         return positions;
     }
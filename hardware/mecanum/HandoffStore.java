@@ -0,0 +1,177 @@
+package org.firstinspires.ftc.teamcode.hardware.mecanum;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * HandoffStore keeps the state of the robot at the end of autonomous in a memory-mapped file, so
+ * that TeleOp can pick it up even if the app restarted in between, which loses everything
+ * {@link HardwareSession} carries over.
+ *
+ * The file holds two fixed-layout records, each with a sequence number and a CRC32. Writes
+ * alternate between them, so a write that is cut off by a crash only damages the record being
+ * written and the previous one is still read back. A write is a copy into the mapping and
+ * allocates nothing; the OS writes the mapping to flash on its own, and <code>force()</code> does
+ * it right away.
+ */
+public class HandoffStore {
+
+    /* CONSTANTS */
+    /**
+     * Oldest handoff TeleOp restores, in milliseconds. Older ones are from an earlier match.
+     */
+    public static final long MAX_AGE_MS = 120000;
+    private static final String FILE = "handoff.bin";
+    private static final int MAGIC = 0x48414E44; // "HAND"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int BODY_BYTES = 8 + 8 + 4 * 8 + 4 * 4 + 3 * 4;
+    private static final int RECORD_BYTES = BODY_BYTES + 4;
+    private static final int FILE_BYTES = HEADER_BYTES + 2 * RECORD_BYTES;
+
+    /**
+     * State of the robot at one point in time.
+     */
+    public static class Record {
+        /**
+         * Sequence number of the record; higher is newer.
+         */
+        public long sequence;
+        /**
+         * Wall clock time the record was written, in milliseconds since the epoch, which unlike
+         * <code>System.nanoTime()</code> holds across app restarts.
+         */
+        public long time;
+        /**
+         * Field relative pose in inches and radians.
+         */
+        public double x, y, heading;
+        /**
+         * Heading of the robot relative to its heading at the start of autonomous, in degrees.
+         */
+        public double headingOffset;
+        /**
+         * Drive encoder positions in ticks, in the order lf, lb, rf, rb.
+         */
+        public final int[] driveTicks = new int[4];
+        /**
+         * Mechanism encoder positions in ticks.
+         */
+        public int liftTicks, slidesTicks, drawerTicks;
+    }
+
+    private final MappedByteBuffer mapping;
+    private final byte[] scratch = new byte[RECORD_BYTES];
+    private final ByteBuffer record = ByteBuffer.wrap(scratch).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private long sequence;
+
+    /**
+     * Opens the store in the FIRST folder, creating it if needed.
+     * @throws IOException if the file cannot be opened
+     */
+    public static HandoffStore open() throws IOException {
+        return new HandoffStore(new File(AppUtil.FIRST_FOLDER, FILE));
+    }
+
+    /**
+     * Opens a store, creating the file if needed. A file of another layout is cleared.
+     * @param file      file to map
+     * @throws IOException if the file cannot be opened
+     */
+    public HandoffStore(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(FILE_BYTES);
+            mapping = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+        } finally {
+            // The mapping stays valid after the file is closed
+            raf.close();
+        }
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (mapping.getInt(0) != MAGIC || mapping.getInt(4) != VERSION) {
+            for (int i = 0; i < FILE_BYTES; i++) mapping.put(i, (byte) 0);
+            mapping.putInt(0, MAGIC);
+            mapping.putInt(4, VERSION);
+        }
+        sequence = Math.max(0, Math.max(readSequence(0), readSequence(1)));
+    }
+
+    /**
+     * Writes a record over the older of the two. Its sequence number is filled in.
+     * @param state     state to write; <code>time</code> should be set by the caller
+     */
+    public synchronized void write(Record state) {
+        state.sequence = ++sequence;
+        record.clear();
+        record.putLong(state.sequence).putLong(state.time);
+        record.putDouble(state.x).putDouble(state.y).putDouble(state.heading).putDouble(state.headingOffset);
+        for (int ticks : state.driveTicks) record.putInt(ticks);
+        record.putInt(state.liftTicks).putInt(state.slidesTicks).putInt(state.drawerTicks);
+        crc.reset();
+        crc.update(scratch, 0, BODY_BYTES);
+        record.putInt((int) crc.getValue());
+
+        mapping.position(offset((int) (state.sequence & 1)));
+        mapping.put(scratch);
+    }
+
+    /**
+     * Reads the newest record that checks out.
+     * @param state     record to read into
+     * @return false if neither record checks out, in which case <code>state</code> is unchanged
+     */
+    public synchronized boolean read(Record state) {
+        long first = readSequence(0), second = readSequence(1);
+        if (first < 0 && second < 0) return false;
+        load(first > second ? 0 : 1);
+
+        record.clear();
+        state.sequence = record.getLong();
+        state.time = record.getLong();
+        state.x = record.getDouble();
+        state.y = record.getDouble();
+        state.heading = record.getDouble();
+        state.headingOffset = record.getDouble();
+        for (int i = 0; i < state.driveTicks.length; i++) state.driveTicks[i] = record.getInt();
+        state.liftTicks = record.getInt();
+        state.slidesTicks = record.getInt();
+        state.drawerTicks = record.getInt();
+        return true;
+    }
+
+    /**
+     * Writes the mapping to flash now rather than when the OS gets to it.
+     */
+    public synchronized void force() { mapping.force(); }
+
+    /**
+     * Returns the sequence number of a record, or -1 if it does not check out.
+     */
+    private long readSequence(int slot) {
+        load(slot);
+        crc.reset();
+        crc.update(scratch, 0, BODY_BYTES);
+        if (record.getInt(BODY_BYTES) != (int) crc.getValue()) return -1;
+        long sequence = record.getLong(0);
+        return sequence > 0 ? sequence : -1;
+    }
+
+    private void load(int slot) {
+        mapping.position(offset(slot));
+        mapping.get(scratch);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * RECORD_BYTES;
+    }
+}
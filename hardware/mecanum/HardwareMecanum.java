@@ -2,17 +2,15 @@ package org.firstinspires.ftc.teamcode.hardware.mecanum;
 
 import android.util.Log;
 
+import com.acmerobotics.roadrunner.Pose2d;
 import com.qualcomm.hardware.bosch.BNO055IMU;
-import com.qualcomm.hardware.lynx.LynxModuleIntf;
-import com.qualcomm.hardware.lynx.commands.core.LynxGetBulkInputDataCommand;
-import com.qualcomm.hardware.lynx.commands.core.LynxGetBulkInputDataResponse;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.hardware.DcMotor;
-import com.qualcomm.robotcore.hardware.DcMotorController;
-import com.qualcomm.robotcore.hardware.DcMotorSimple;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.util.ElapsedTime;
 
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.teamcode.FieldConstants;
 import org.firstinspires.ftc.teamcode.hardware.Acquirer_Slides;
 import org.firstinspires.ftc.teamcode.hardware.Constants;
@@ -21,10 +19,16 @@ import org.firstinspires.ftc.teamcode.hardware.Hopper_Drawer;
 import org.firstinspires.ftc.teamcode.hardware.Lift;
 import org.firstinspires.ftc.teamcode.hardware.LiftConstants;
 import org.firstinspires.ftc.teamcode.hardware.Mechanism;
+import org.firstinspires.ftc.teamcode.util.StartupGraph;
+import org.firstinspires.ftc.teamcode.util.actuators.MotorWriteCache;
+import org.firstinspires.ftc.teamcode.util.command.CommandScheduler;
+import org.firstinspires.ftc.teamcode.util.sensors.BulkReadCache;
+import org.firstinspires.ftc.teamcode.util.sensors.BulkSnapshot;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.ImuFrame;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.SingleIMU;
 import org.firstinspires.ftc.teamcode.util.vision.TensorFlowManager;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
 
 
 /**
@@ -42,7 +46,8 @@ public class HardwareMecanum extends Mechanism {
     private static final int RIGHT_SAMPLE_TURN = 150;
     private static final int DIAGONAL_TURN = 45;
     private static final double DRIVE_SPEED = .4;
-    private boolean updated = false;
+    private static final int INIT_THREADS = 4;
+    private static final String TAG = "HardwareMecanum";
 
     /* Mechanisms */
     /**
@@ -71,9 +76,28 @@ public class HardwareMecanum extends Mechanism {
 //    public Sensors sensors;
 
     /* Miscellaneous mechanisms */
+    /**
+     * Instance variable containing the bulk read cache shared by all mechanisms.
+     */
+    public BulkReadCache bulkData = new BulkReadCache();
+    /**
+     * Instance variable containing the motor write cache shared by all mechanisms.
+     */
+    public MotorWriteCache outputs = new MotorWriteCache();
+    /**
+     * Instance variable containing the command scheduler shared by all mechanisms. Each cycle of
+     * the scheduler starts with <code>updateSubsystems()</code> and ends with
+     * <code>flushOutputs()</code>.
+     */
+    public CommandScheduler scheduler = new CommandScheduler();
 
-    private Map<DcMotorController, LynxModuleIntf> hubs;
-    private Map<LynxModuleIntf, LynxGetBulkInputDataResponse> responses;
+    private StartupGraph startup;
+    private int initThreads = INIT_THREADS;
+
+    private HandoffStore handoff;
+    private final HandoffStore.Record handoffState = new HandoffStore.Record();
+    private boolean handoffRecording = false;
+    private boolean handoffRestored = false;
 
     /**
      * Default constructor for HardwareMain. Instantiates public mechanism instance variables.
@@ -143,51 +167,260 @@ public class HardwareMecanum extends Mechanism {
      * @param hwMap     robot's hardware map
      */
     public void init(HardwareMap hwMap) {
-        try {
-            drivetrain.init(hwMap);
-            drivetrain.encoderInit();
-        } catch (Exception e) {
-//            opMode.telemetry.addData("Status", "problem initializing drivetrain");
-        }
-        try { acquirer.init(hwMap); }
-        catch (Exception e) {
-//            opMode.telemetry.addData("Status", "problem initializing acquirer");
-        }
-        try { hopper.init(hwMap); }
-        catch (Exception e) {
-//            opMode.telemetry.addData("Status", "problem initializing hopper");
-        }
-        try { lift.init(hwMap); }
-        catch (Exception e) {
-//            opMode.telemetry.addData("Status", "problem initializing lift");
-        }
-        try { gimbal.init(hwMap); }
-        catch (Exception e) {
-//            opMode.telemetry.addData("Status", "problem initializing gimbal");
+        init(hwMap, false);
+    }
+
+    /**
+     * Initializes all mechanisms on the robot, and the drivetrain IMU if asked to. Mechanisms are
+     * initialized in parallel once the hubs have been looked up, and the IMU initializes while the
+     * drivetrain encoders are reset. The timeline of the steps is logged and kept for
+     * <code>getStartup()</code>; a step that fails is logged with its cause and the other
+     * mechanisms are still initialized.
+     * @param hwMap     robot's hardware map
+     * @param imu       whether to initialize the IMU, as <code>imuInit()</code> would
+     */
+    public void init(final HardwareMap hwMap, boolean imu) {
+        setBulkData(bulkData);
+        setOutputs(outputs);
+        scheduler.setCycleHook(new Runnable() {
+            @Override
+            public void run() {
+                updateSubsystems();
+                holdOutputs();
+            }
+        });
+        scheduler.setCycleEndHook(new Runnable() {
+            @Override
+            public void run() {
+                flushOutputs();
+                saveHandoff();
+            }
+        });
+        setScheduler(scheduler);
+
+        StartupGraph graph = new StartupGraph();
+        // Bulk read hubs must be known before mechanisms register their motors
+        int hubs = graph.add("Hubs", new StartupGraph.Step() {
+            @Override
+            public void run() { bulkData.init(hwMap); }
+        });
+        int drive = graph.add("Drivetrain", new StartupGraph.Step() {
+            @Override
+            public void run() { drivetrain.init(hwMap); }
+        }, hubs);
+        graph.add("Drive encoders", new StartupGraph.Step() {
+            @Override
+            public void run() { drivetrain.encoderInit(); }
+        }, drive);
+        if (imu) {
+            // Mostly waiting on the IMU; the other steps keep the hubs busy meanwhile
+            graph.add("IMU", new StartupGraph.Step() {
+                @Override
+                public void run() { drivetrain.imuInit(hwMap); }
+            }, drive);
+        }
+        graph.add("Acquirer", new StartupGraph.Step() {
+            @Override
+            public void run() { acquirer.init(hwMap); }
+        }, hubs);
+        graph.add("Hopper", new StartupGraph.Step() {
+            @Override
+            public void run() { hopper.init(hwMap); }
+        }, hubs);
+        graph.add("Lift", new StartupGraph.Step() {
+            @Override
+            public void run() { lift.init(hwMap); }
+        }, hubs);
+        graph.add("Gimbal", new StartupGraph.Step() {
+            @Override
+            public void run() { gimbal.init(hwMap); }
+        }, hubs);
+//        graph.add("Sensors", new StartupGraph.Step() {
+//            @Override
+//            public void run() { sensors.init(hwMap); }
+//        }, hubs);
+        graph.run(initThreads);
+        graph.log();
+        startup = graph;
+
+        // Take the first snapshot so reads are valid before the first loop
+        bulkData.update();
+    }
+
+    /**
+     * Prepares a robot that was initialized by a previous OpMode (see {@link HardwareSession}) for
+     * a new one. The SDK resets the direction, zero power behavior and run mode of every motor
+     * between OpModes, so each mechanism applies those again and every motor power is sent again.
+     * Nothing else is initialized again: encoders keep their counts, and the IMU keeps running.
+     * A mechanism that fails to resume is logged and the others still are.
+     */
+    @Override
+    public void resume() {
+        // The handoff autonomous wrote is for the next OpMode to read, not to write over
+        handoffRecording = false;
+        scheduler.cancelAll();
+        try { drivetrain.resume(); }
+        catch (RuntimeException e) {
+            Log.e(TAG, "problem resuming drivetrain", e);
+        }
+        for (Mechanism mechanism : new Mechanism[] {acquirer, hopper, lift, gimbal}) {
+            try { mechanism.resume(); }
+            catch (RuntimeException e) {
+                Log.e(TAG, "problem resuming " + mechanism.getClass().getSimpleName(), e);
+            }
         }
-//        try { sensors.init(hwMap); }
-//        catch (Exception e) {
-//            opMode.telemetry.addData("Status", "problem initializing sensors");
-//        }
+        outputs.invalidateAll();
+        bulkData.update();
+    }
 
-        hubs = new HashMap<>(2);
-        responses = new HashMap<>(2);
+    /**
+     * Starts writing the state of the robot to the {@link HandoffStore} at the end of every
+     * scheduler cycle, for TeleOp to restore with <code>restoreHandoff()</code>. Should be called
+     * by autonomous after init. Also starts the drivetrain's odometry thread, as nothing else
+     * steps the pose estimate during autonomous.
+     */
+    public void startHandoff() {
+        drivetrain.startOdometry();
         try {
-            hubs.put(
-                    hwMap.get(DcMotorController.class, "Expansion Hub 1"),
-                    hwMap.get(LynxModuleIntf.class, "Expansion Hub 1"));
-        } catch (Exception e) {
-//            opMode.telemetry.addData("Status", "problem with hub1");
+            if (handoff == null) handoff = HandoffStore.open();
+        } catch (IOException e) {
+            Log.e(TAG, "problem opening handoff store", e);
+            return;
         }
+        handoffRecording = true;
+        saveHandoff();
+    }
+
+    /**
+     * Writes the state of the robot to the handoff store now, if <code>startHandoff()</code> was
+     * called. Only reads what this cycle has already read; the heading comes from the last IMU
+     * frame.
+     */
+    public void saveHandoff() {
+        if (!handoffRecording) return;
+        Pose2d pose = drivetrain.getPoseEstimate();
+        handoffState.time = System.currentTimeMillis();
+        handoffState.x = pose.getX();
+        handoffState.y = pose.getY();
+        handoffState.heading = pose.getHeading();
+        ImuFrame frame = drivetrain.singleImu.peekFrame();
+        if (frame != null) {
+            handoffState.headingOffset = AngleUnit.DEGREES.normalize(frame.heading - SingleIMU.startingAngle);
+        }
+        for (int i = 0; i < handoffState.driveTicks.length; i++) {
+            handoffState.driveTicks[i] = drivetrain.getDriveTicks(i);
+        }
+        handoffState.liftTicks = lift.getLiftTicks();
+        handoffState.slidesTicks = acquirer.getSlidesTicks();
+        handoffState.drawerTicks = hopper.getDrawerTicks();
+        handoff.write(handoffState);
+    }
+
+    /**
+     * Restores the pose and the heading offset that autonomous left in the handoff store, so
+     * that pose tracking and <code>fieldCentric()</code> carry on where autonomous stopped. Works
+     * after an app restart too. Should be called by TeleOp after the IMU is initialized.
+     * @param maxAgeMs  oldest handoff to restore, in milliseconds
+     * @return whether a handoff was restored
+     */
+    public boolean restoreHandoff(long maxAgeMs) {
+        handoffRestored = false;
         try {
-            hubs.put(
-                    hwMap.get(DcMotorController.class, "Expansion Hub 2"),
-                    hwMap.get(LynxModuleIntf.class, "Expansion Hub 2"));
-        } catch (Exception e) {
-//            opMode.telemetry.addData("Status", "problem with hub2");
-        }
+            if (handoff == null) handoff = HandoffStore.open();
+        } catch (IOException e) {
+            Log.e(TAG, "problem opening handoff store", e);
+            return false;
+        }
+        if (!handoff.read(handoffState)) return false;
+        long age = System.currentTimeMillis() - handoffState.time;
+        if (age < 0 || age > maxAgeMs) return false;
+
+        drivetrain.setPoseEstimate(new Pose2d(handoffState.x, handoffState.y, handoffState.heading));
+        if (drivetrain.isImuReady()) {
+            // Lines the IMU up with the heading autonomous ended at, whether or not it was
+            // initialized again since
+            SingleIMU.startingAngle = AngleUnit.DEGREES.normalize(drivetrain.singleImu.getHeading() - handoffState.headingOffset);
+        }
+        handoffRestored = true;
+        Log.i(TAG, String.format("restored handoff %d from %.1f s ago", handoffState.sequence, age / 1e3));
+        return true;
+    }
+
+    /**
+     * Returns the state restored by the last <code>restoreHandoff()</code>, including the
+     * mechanism positions autonomous ended at, or null if nothing was restored.
+     */
+    public HandoffStore.Record getHandoff() { return handoffRestored ? handoffState : null; }
+
+    /**
+     * Sets the OpMode context of the robot and every mechanism.
+     * @param opMode    the LinearOpMode that is currently running, or null
+     */
+    @Override
+    public void setOpMode(LinearOpMode opMode) {
+        super.setOpMode(opMode);
+        if (drivetrain != null) drivetrain.setOpMode(opMode);
+        if (acquirer != null) acquirer.setOpMode(opMode);
+        if (hopper != null) hopper.setOpMode(opMode);
+        if (lift != null) lift.setOpMode(opMode);
+        if (gimbal != null) gimbal.setOpMode(opMode);
+    }
+
+    /**
+     * Shares the bulk read cache with every mechanism.
+     * @param bulkData  robot's bulk read cache
+     */
+    @Override
+    public void setBulkData(BulkReadCache bulkData) {
+        super.setBulkData(bulkData);
+        if (drivetrain != null) drivetrain.setBulkData(bulkData);
+        if (acquirer != null) acquirer.setBulkData(bulkData);
+        if (hopper != null) hopper.setBulkData(bulkData);
+        if (lift != null) lift.setBulkData(bulkData);
+        if (gimbal != null) gimbal.setBulkData(bulkData);
+    }
+
+    /**
+     * Shares the motor write cache with every mechanism.
+     * @param outputs   robot's motor write cache
+     */
+    @Override
+    public void setOutputs(MotorWriteCache outputs) {
+        super.setOutputs(outputs);
+        if (drivetrain != null) drivetrain.setOutputs(outputs);
+        if (acquirer != null) acquirer.setOutputs(outputs);
+        if (hopper != null) hopper.setOutputs(outputs);
+        if (lift != null) lift.setOutputs(outputs);
+        if (gimbal != null) gimbal.setOutputs(outputs);
     }
 
+    /**
+     * Shares the command scheduler with every mechanism.
+     * @param scheduler robot's command scheduler
+     */
+    @Override
+    public void setScheduler(CommandScheduler scheduler) {
+        super.setScheduler(scheduler);
+        if (drivetrain != null) drivetrain.setScheduler(scheduler);
+        if (acquirer != null) acquirer.setScheduler(scheduler);
+        if (hopper != null) hopper.setScheduler(scheduler);
+        if (lift != null) lift.setScheduler(scheduler);
+        if (gimbal != null) gimbal.setScheduler(scheduler);
+    }
+
+    /**
+     * Sets the number of steps that <code>init()</code> may run at the same time. 1 initializes
+     * the robot one step after the other.
+     * @param threads   number of threads
+     */
+    public void setInitThreads(int threads) { initThreads = threads; }
+
+    /**
+     * Returns the steps of the last <code>init()</code> with their timeline, or null before the
+     * robot has been initialized.
+     */
+    public StartupGraph getStartup() { return startup; }
+
     /**
      * Initializes drivetrain imu on the robot.
      * @param hwMap     robot's hardware map
@@ -204,18 +437,34 @@ public class HardwareMecanum extends Mechanism {
         return drivetrain.imuAngle();
     }
 
-    public void updateSubsystems() {
-        for (LynxModuleIntf hub : hubs.values()) {
-            LynxGetBulkInputDataCommand command = new LynxGetBulkInputDataCommand(hub);
-            try {
-                responses.put(hub, command.sendReceive());
-                updated = true;
-            } catch (Exception e) {
-                Log.e("get bulk data error", e.getMessage());
-                updated = false;
-            }
-        }
-        //opMode.telemetry.addData("REV Hubs Updated:", updated);
+    /**
+     * Takes one bulk read per hub for this control cycle, marks the cached IMU frame as old and,
+     * while acceleration is integrated, tells the IMU whether the robot is standing still.
+     * Should be called once at the start of every loop, before any mechanism reads its sensors.
+     * @return snapshot for this cycle
+     */
+    public BulkSnapshot updateSubsystems() {
+        if (drivetrain != null) drivetrain.singleImu.invalidate();
+        BulkSnapshot snapshot = bulkData.update();
+        if (drivetrain != null) drivetrain.updateZeroVelocity();
+        return snapshot;
+    }
+
+    /**
+     * Sends the motor powers that changed during this control cycle, grouped by hub. Until then,
+     * powers set after <code>holdOutputs()</code> are only recorded. Should be called once at the
+     * end of every loop.
+     */
+    public void flushOutputs() {
+        outputs.flush();
+    }
+
+    /**
+     * Starts recording motor powers without sending them. Should be called at the start of every
+     * loop, after <code>updateSubsystems()</code>.
+     */
+    public void holdOutputs() {
+        outputs.hold();
     }
 
     /**
@@ -238,18 +487,33 @@ public class HardwareMecanum extends Mechanism {
         }
     }
 
-    public int getEncoderPosition(DcMotor motor) {
-        if (!updated) return 0;
-        synchronized (responses) {
-            return responses.get(hubs.get(motor.getController())).getEncoder(motor.getPortNumber()) * (motor.getDirection() == DcMotorSimple.Direction.FORWARD ? 1 : -1);
-        }
+    /**
+     * Registers a motor outside of the mechanisms with the bulk read cache. Should be called once
+     * during init; the slot is passed to <code>getEncoderPosition()</code> and
+     * <code>getMotorVelocity()</code>.
+     * @param motor     motor to register
+     * @return slot of the motor, or -1 if it is not on a known hub
+     */
+    public int registerMotor(DcMotor motor) {
+        return bulkData.register(motor);
     }
 
-    public int getMotorVelocity(DcMotor motor) {
-        if (!updated) return 0;
-        synchronized (responses) {
-            return responses.get(hubs.get(motor.getController())).getVelocity(motor.getPortNumber());
-        }
+    /**
+     * Returns the encoder position of a motor from the bulk read cache if possible.
+     * @param motor     motor to read
+     * @param slot      slot returned by <code>registerMotor()</code>
+     */
+    public int getEncoderPosition(DcMotor motor, int slot) {
+        return bulkData.getEncoder(slot, motor);
+    }
+
+    /**
+     * Returns the velocity of a motor in ticks per second from the bulk read cache if possible.
+     * @param motor     motor to read
+     * @param slot      slot returned by <code>registerMotor()</code>
+     */
+    public double getMotorVelocity(DcMotorEx motor, int slot) {
+        return bulkData.getVelocity(slot, motor);
     }
 
 
@@ -268,14 +532,11 @@ public class HardwareMecanum extends Mechanism {
         if (opMode.opModeIsActive()) {
             drivetrain.turnPID(-3,4);
             drivetrain.turnPID(-3,4);
-            drivetrain.driveToPos(.4,-8, 3);
-            ElapsedTime time = new ElapsedTime();
-            while (time.milliseconds() < .700) {
-                drivetrain.strafe(.5);
-            }
-            drivetrain.strafe(0);
-            drivetrain.driveToPos(.4,4, 3);
-            lift.dropoPosJank();
+            // Lower the lift while driving away from the lander
+            runCommand(drivetrain.driveToPosCommand(.4,-8, 3)
+                    .andThen(drivetrain.strafeCommand(.5, .700 / 1000),
+                            drivetrain.driveToPosCommand(.4,4, 3))
+                    .alongWith(lift.lowerCommand()));
 
         }
     }
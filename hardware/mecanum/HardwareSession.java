@@ -0,0 +1,89 @@
+package org.firstinspires.ftc.teamcode.hardware.mecanum;
+
+import android.util.Log;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+/**
+ * HardwareSession carries an initialized robot from one OpMode to the next, usually from
+ * autonomous to TeleOp. Initializing the robot from scratch takes seconds, most of it spent
+ * initializing the IMU; a robot carried over only has its motor settings applied again, and
+ * keeps its encoder counts.
+ *
+ * A robot is only carried over to an OpMode on the same hardware map, since a new hardware map
+ * means the configuration or the hubs changed.
+ */
+public class HardwareSession {
+
+    /* CONSTANTS */
+    private static final String TAG = "HardwareSession";
+
+    private static HardwareMecanum robot;
+    private static HardwareMap hardwareMap;
+    private static long keptAt;
+    private static long lastHandoff = -1;
+
+    private HardwareSession() { }
+
+    /**
+     * Keeps a robot for the next OpMode. Replaces any robot kept before, stopping its odometry.
+     * @param robot     initialized robot
+     * @param hwMap     hardware map the robot was initialized with
+     */
+    public static synchronized void keep(HardwareMecanum robot, HardwareMap hwMap) {
+        if (HardwareSession.robot != robot) release(HardwareSession.robot);
+        HardwareSession.robot = robot;
+        HardwareSession.hardwareMap = hwMap;
+        keptAt = System.nanoTime();
+    }
+
+    /**
+     * Takes the kept robot, ready for a new OpMode. Its odometry keeps running if it was started.
+     * A robot kept for another hardware map is dropped and its odometry stopped.
+     * @param hwMap     hardware map of the new OpMode
+     * @param opMode    the LinearOpMode that is currently running, or null
+     * @return the robot, or null if none was kept for this hardware map
+     */
+    public static synchronized HardwareMecanum take(HardwareMap hwMap, LinearOpMode opMode) {
+        HardwareMecanum kept = robot;
+        boolean sameMap = hardwareMap == hwMap;
+        robot = null;
+        hardwareMap = null;
+        if (kept == null) return null;
+        if (!sameMap) {
+            release(kept);
+            return null;
+        }
+
+        kept.setOpMode(opMode);
+        kept.resume();
+        lastHandoff = System.nanoTime() - keptAt;
+        Log.i(TAG, String.format("robot carried over in %.1f ms", lastHandoff / 1e6));
+        return kept;
+    }
+
+    /**
+     * Returns the kept robot ready for a new OpMode, or a new robot initialized with its IMU if
+     * none was kept.
+     * @param hwMap     hardware map of the new OpMode
+     * @param opMode    the LinearOpMode that is currently running, or null
+     */
+    public static HardwareMecanum open(HardwareMap hwMap, LinearOpMode opMode) {
+        HardwareMecanum kept = take(hwMap, opMode);
+        if (kept != null) return kept;
+        HardwareMecanum robot = opMode != null ? new HardwareMecanum(opMode) : new HardwareMecanum();
+        robot.init(hwMap, true);
+        return robot;
+    }
+
+    private static void release(HardwareMecanum robot) {
+        if (robot != null) robot.drivetrain.stopOdometry();
+    }
+
+    /**
+     * Returns the time from <code>keep()</code> until the robot was ready in the last
+     * <code>take()</code>, in nanoseconds, or -1 if no robot has been carried over.
+     */
+    public static synchronized long getLastHandoff() { return lastHandoff; }
+}
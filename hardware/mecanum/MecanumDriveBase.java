@@ -13,8 +13,15 @@ import com.acmerobotics.roadrunner.trajectory.constraints.DriveConstraints;
 import com.acmerobotics.roadrunner.trajectory.constraints.MecanumConstraints;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
+import org.firstinspires.ftc.teamcode.util.actuators.MotorWriteCache;
+import org.firstinspires.ftc.teamcode.util.command.Command;
+import org.firstinspires.ftc.teamcode.util.command.CommandScheduler;
+import org.firstinspires.ftc.teamcode.util.command.Subsystem;
+import org.firstinspires.ftc.teamcode.util.sensors.BulkReadCache;
+
 import kotlin.jvm.JvmOverloads;
 
 
@@ -26,13 +33,28 @@ import kotlin.jvm.JvmOverloads;
  *
  */
 @Config
-public abstract class MecanumDriveBase extends MecanumDrive{
+public abstract class MecanumDriveBase extends MecanumDrive implements Subsystem {
 
     /**
      * OpMode context for a Mechanism class.
      */
     protected LinearOpMode opMode;
 
+    /**
+     * Bulk read cache shared by all mechanisms.
+     */
+    protected BulkReadCache bulkData;
+
+    /**
+     * Motor write cache shared by all mechanisms.
+     */
+    protected MotorWriteCache outputs;
+
+    /**
+     * Command scheduler shared by all mechanisms.
+     */
+    protected CommandScheduler scheduler;
+
     /**
      * Initializes hardware on the robot. Gets and stores references to the robot configuration and
      * sets motors and servos to their starting positions.
@@ -40,6 +62,95 @@ public abstract class MecanumDriveBase extends MecanumDrive{
      */
     public abstract void init(HardwareMap hwMap);
 
+    /**
+     * Sets the OpMode context used by the blocking actions of the drivetrain.
+     * @param opMode    the LinearOpMode that is currently running, or null
+     */
+    public void setOpMode(LinearOpMode opMode) { this.opMode = opMode; }
+
+    /**
+     * Sets the bulk read cache used by the drivetrain. Must be called before <code>init()</code>
+     * so that motors can be registered.
+     * @param bulkData  robot's bulk read cache
+     */
+    public void setBulkData(BulkReadCache bulkData) { this.bulkData = bulkData; }
+
+    /**
+     * Sets the motor write cache used by the drivetrain. Must be called before <code>init()</code>
+     * so that motors can be registered.
+     * @param outputs   robot's motor write cache
+     */
+    public void setOutputs(MotorWriteCache outputs) { this.outputs = outputs; }
+
+    /**
+     * Sets the command scheduler used by the blocking actions of the drivetrain.
+     * @param scheduler robot's command scheduler
+     */
+    public void setScheduler(CommandScheduler scheduler) { this.scheduler = scheduler; }
+
+    /**
+     * Runs a command until it finishes or the OpMode stops.
+     * @param command   command to run
+     */
+    protected void runCommand(Command command) {
+        if (scheduler == null) {
+            scheduler = new CommandScheduler();
+            scheduler.setCycleHook(new Runnable() {
+                @Override
+                public void run() { updateSensors(); }
+            });
+        }
+        scheduler.runUntilFinished(opMode, command);
+    }
+
+    /**
+     * Reads the sensors for a cycle of a command run without the robot's scheduler.
+     */
+    protected void updateSensors() {
+        if (bulkData != null) bulkData.update();
+    }
+
+    /**
+     * Registers a motor with the motor write cache.
+     * @return slot of the motor, or -1 if there is no cache
+     */
+    protected int registerOutput(DcMotorSimple motor) {
+        return outputs != null ? outputs.register(motor) : -1;
+    }
+
+    /**
+     * Sets the power of a motor through the motor write cache if possible.
+     */
+    protected void setPower(DcMotorSimple motor, int slot, double power) {
+        if (outputs != null && slot >= 0) outputs.setPower(slot, power);
+        else motor.setPower(power);
+    }
+
+    /**
+     * Returns the power last set for a motor, from the motor write cache if possible.
+     */
+    protected double getPower(DcMotorSimple motor, int slot) {
+        return outputs != null && slot >= 0 ? outputs.getPower(slot) : motor.getPower();
+    }
+
+    /**
+     * Changes the run mode of a motor. The mode goes to the hub right away while powers set
+     * during a cycle wait for the flush, so the motor is stopped first, and its cached power is
+     * invalidated afterwards as the hub's power may no longer match it. Does nothing if the motor
+     * is already in the mode, except for STOP_AND_RESET_ENCODER.
+     * @param motor     motor to change
+     * @param slot      motor write slot of the motor, or -1
+     * @param mode      new run mode
+     */
+    protected void setMode(DcMotor motor, int slot, DcMotor.RunMode mode) {
+        if (mode != DcMotor.RunMode.STOP_AND_RESET_ENCODER && motor.getMode() == mode) return;
+        boolean cached = outputs != null && slot >= 0;
+        if (cached) outputs.stop(slot);
+        else motor.setPower(0);
+        motor.setMode(mode);
+        if (cached) outputs.invalidate(slot);
+    }
+
     public static PIDCoefficients TRANSLATIONAL_PID = new PIDCoefficients(0, 0, 0);
     public static PIDCoefficients HEADING_PID = new PIDCoefficients(0, 0, 0);
 
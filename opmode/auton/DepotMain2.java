@@ -34,14 +34,16 @@ public class DepotMain2 extends LinearOpMode {
     @Override
     public void runOpMode() {
         // Initialize robot
-        robot.init(hardwareMap);
-        robot.imuInit(hardwareMap);
+        robot.init(hardwareMap, true);
+        // Track the pose and keep the state of the robot for TeleOp, even if the app restarts in between
+        robot.startHandoff();
 
         // Initialize CV
         visionManager.init(hardwareMap, false);
         visionManager.vuforiaLights(true);
         visionManager.start();
-        AutoTransitioner.transitionOnStop(this, "Linear Teleop [Use for World Champs]");
+        visionManager.startWorker();
+        AutoTransitioner.transitionOnStop(this, "Linear Teleop [Use for World Champs]", robot);
 
         // Wait until we're told to go
         while (!opModeIsActive() && !isStopRequested()) {
@@ -49,6 +51,7 @@ public class DepotMain2 extends LinearOpMode {
             telemetry.addData("Status", "Waiting in Init");
             telemetry.addData("Gyro Is Calibrated", robot.imuCalibrated());
             telemetry.addData("Gold location", goldLocation);
+            telemetry.addData("Vote confidence", "%.2f", visionManager.getVote().confidence);
             telemetry.update();
         }
 
@@ -7,9 +7,13 @@ import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.Range;
 
 import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareMecanum;
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HandoffStore;
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareSession;
+import org.firstinspires.ftc.teamcode.util.benchmark.LoopProfiler;
 import org.firstinspires.ftc.teamcode.util.gamepad.JoystickTransform;
 import org.firstinspires.ftc.teamcode.util.gamepad.StickyGamepad;
 import org.firstinspires.ftc.teamcode.util.signals.BackgroundColorManager;
+import org.firstinspires.ftc.teamcode.util.signals.TelemetryManager;
 
 /**
  * TeleopMain is the primary TeleOp OpMode for mecanum drivetrains. All driver-controlled actions should
@@ -21,7 +25,7 @@ public class LinearTeleopMain extends LinearOpMode {
     private ElapsedTime runtime = new ElapsedTime();
 
     /* Robot hardware map */
-    private HardwareMecanum robot = new HardwareMecanum();
+    private HardwareMecanum robot;
 
     private JoystickTransform transform = new JoystickTransform();
     private StickyGamepad stickyGamepad1, stickyGamepad2;
@@ -29,29 +33,37 @@ public class LinearTeleopMain extends LinearOpMode {
     /* Robot controller's background manager */
     private BackgroundColorManager background = new BackgroundColorManager();
 
+    /* Driver station telemetry, sampled and sent off the control loop */
+    private TelemetryManager telemetryManager;
+
+    /* Loop timing, shown in telemetry and logged at the end */
+    private LoopProfiler profiler = new LoopProfiler();
+    private final int BULK_READ = profiler.addPhase("Bulk read");
+    private final int INPUT = profiler.addPhase("Input");
+    private final int DRIVE_WRITE = profiler.addPhase("Drive write");
+    private final int MECHANISM_WRITE = profiler.addPhase("Mechanism write");
+    private final int FLUSH = profiler.addPhase("Output flush");
+    private final int TELEMETRY = profiler.addPhase("Telemetry");
+
     /* Holds Gamepad 1 joystick's values */
     double leftInput, rightInput, slideInput, hangerInput;
     boolean driveMode;
 
     /* Holds Gamepad 2 joystick's values */
     double cascadingSlidesInput, hopperInput, acquirerInput;
-    double acquirerPosition = 0.0, hopperPosition = 0.0, verticalPosition = 0.0, horizontalPosition = 0.0;
-    double acquirerSlidesDistance = 0.0, hopperSlidesDistance = 0.0, liftDistance = 0.0;
 
-    private boolean driverState, driverDebounce;
-    private boolean acquirerState, acquirerDebounce;
-    private boolean acquirerflipState, acquirerFlipDebounce;
-    private boolean hopperflipState, hopperFlipDebounce;
-    private boolean hopperUpDebounce, hopperState;
+    private boolean acquirerState, acquirerflipState, hopperflipState, hopperState;
 
     @Override
     public void runOpMode() {
         //telemetry.addData("Status", "Initialized");
         //telemetry.update();
 
-        /* Robot Init */
-        robot.init(hardwareMap);
-        robot.imuInit(hardwareMap);
+        /* Robot Init, carried over from autonomous if it ran before, with the pose autonomous ended at */
+        robot = HardwareSession.open(hardwareMap, null);
+        robot.restoreHandoff(HandoffStore.MAX_AGE_MS);
+        // Already running if the robot was carried over from autonomous
+        robot.drivetrain.startOdometry();
 
         /* Background Color */
         background.init(hardwareMap);
@@ -61,13 +73,12 @@ public class LinearTeleopMain extends LinearOpMode {
         stickyGamepad1 = new StickyGamepad(gamepad1);
         stickyGamepad2 = new StickyGamepad(gamepad2);
 
-        driverState = false;
-        driverDebounce = false;
+        /* Telemetry init */
+        telemetryManager = new TelemetryManager(telemetry);
+        addTelemetry();
+
         acquirerState = false;
-        acquirerDebounce = false;
         acquirerflipState = false;
-        acquirerFlipDebounce = false;
-        hopperUpDebounce = false;
 
         // Wait until we're told to go
         while (!opModeIsActive() && !isStopRequested()) {
@@ -78,13 +89,21 @@ public class LinearTeleopMain extends LinearOpMode {
 
         waitForStart();
         runtime.reset();  // Start counting run time from now.
+        profiler.reset();
+        telemetryManager.start();
 
         // run until the end of the match (driver presses STOP)
         while (opModeIsActive()) {
-            /* Adds runtime data to telemetry */
-            //telemetry.addData("Status", "Run Time: " + runtime.toString());
-            telemetry.addData("lift", robot.lift.liftMotor.getCurrentPosition());
-            telemetry.update();
+            profiler.startLoop();
+
+            /* One bulk read per hub for this cycle */
+            robot.updateSubsystems();
+            robot.holdOutputs();
+            profiler.mark(BULK_READ);
+
+            /* Button edges of this cycle */
+            stickyGamepad1.update();
+            stickyGamepad2.update();
 
             /**
              * Gamepad 1
@@ -97,16 +116,11 @@ public class LinearTeleopMain extends LinearOpMode {
             rightInput = gamepad1.right_stick_y;
             slideInput = -gamepad1.left_trigger + gamepad1.right_trigger;
 
-            if (gamepad1.right_stick_button) {
-                if (!driverDebounce) {
-                    driverState = !driverState;
-                    if (driverState) { driveMode = true; }
-                    else { driveMode = false; }
-                    driverDebounce = true;
-                }
-            } else { driverDebounce = false; }
+            if (stickyGamepad1.wasPressed(StickyGamepad.RIGHT_STICK_BUTTON)) driveMode = !driveMode;
+            profiler.mark(INPUT);
 
             robot.drivetrain.tankDriveScaled(leftInput, rightInput, slideInput);
+            profiler.mark(DRIVE_WRITE);
 
             /**
              * Controls the Lift via the up and down dpad || Slow mode = left  button
@@ -123,14 +137,11 @@ public class LinearTeleopMain extends LinearOpMode {
             /**
              * Controls the Acquirer speed via the right bumper
              */
-            if (gamepad2.y) {
-                if (!acquirerDebounce) {
-                    acquirerState = !acquirerState;
-                    if (acquirerState) { robot.acquirer.setIntakePower(1); }
-                    else { robot.acquirer.setIntakePower(0); }
-                    acquirerDebounce = true;
-                }
-            } else { acquirerDebounce = false; }
+            if (stickyGamepad2.wasPressed(StickyGamepad.Y)) {
+                acquirerState = !acquirerState;
+                if (acquirerState) { robot.acquirer.setIntakePower(1); }
+                else { robot.acquirer.setIntakePower(0); }
+            }
 
             /**
              * Controls the Acquirer slides via the right analog stick
@@ -142,19 +153,16 @@ public class LinearTeleopMain extends LinearOpMode {
              * Rotates the Acquirer via the right trigger
              */
 
-            if (gamepad2.right_bumper) {
-                if (!acquirerFlipDebounce) {
-                    acquirerflipState = !acquirerflipState;
-                    if (acquirerflipState) {
-                        robot.acquirer.setAcquirerRotation(0);
-                    } else {
-                        robot.acquirer.acquirerRotation.setPwmEnable();
-                         robot.acquirer.setAcquirerRotation(0.45);
-//                        robot.acquirer.acquirerRotation.setPwmDisable();
-                    }
-                    acquirerFlipDebounce = true;
+            if (stickyGamepad2.wasPressed(StickyGamepad.RIGHT_BUMPER)) {
+                acquirerflipState = !acquirerflipState;
+                if (acquirerflipState) {
+                    robot.acquirer.setAcquirerRotation(0);
+                } else {
+                    robot.acquirer.acquirerRotation.setPwmEnable();
+                    robot.acquirer.setAcquirerRotation(0.45);
+//                    robot.acquirer.acquirerRotation.setPwmDisable();
                 }
-            } else { acquirerFlipDebounce = false; }
+            }
 
             /**
              * Controls the Hopper slides via the left analog stick
@@ -165,53 +173,87 @@ public class LinearTeleopMain extends LinearOpMode {
             /**
              * Rotates the Hopper via the left trigger
              */
-            if (gamepad2.left_bumper) {
-                if (!hopperFlipDebounce) {
-                    hopperflipState = !hopperflipState;
-                    if (hopperflipState) { robot.hopper.hopperRotation.setPosition(0.55); }
-                    else {
-                        robot.hopper.setHopperRotation(1); }
-                    hopperFlipDebounce = true;
-                }
-            } else { hopperFlipDebounce = false; }
+            if (stickyGamepad2.wasPressed(StickyGamepad.LEFT_BUMPER)) {
+                hopperflipState = !hopperflipState;
+                if (hopperflipState) { robot.hopper.hopperRotation.setPosition(0.55); }
+                else {
+                    robot.hopper.setHopperRotation(1); }
+            }
+            profiler.mark(MECHANISM_WRITE);
+
+            /* Send the powers that changed this cycle, one hub at a time */
+            robot.flushOutputs();
+            profiler.mark(FLUSH);
 
 //            if (gamepad2.left_stick_button) {34aa
 
-            /**
-             * Telemetry
-             */
-            /* Drivetrain's encoder */
-            double[] positions = robot.drivetrain.getPositions();
-            acquirerSlidesDistance = robot.acquirer.getAcquirerSlidesTicks();
-            hopperSlidesDistance = robot.hopper.getPositions();
-            liftDistance = robot.lift.getPositions();
-            /* Acquirer and Hopper servo's position */
-            acquirerPosition = robot.acquirer.getAcquirerRotation();
-            hopperPosition = robot.hopper.getHopperRotation();
-            /* Gimbal's servo's position */
-            verticalPosition = robot.gimbal.getVerticalPosition();
-            horizontalPosition = robot.gimbal.getHorizontalPosition();
-
-            telemetry.addData("Encoder counts", "lf: %.2f | rf: %.2f | lb: %.2f | rb: %.2f",
-                    positions[0],
-                    positions[1],
-                    positions[2],
-                    positions[3]);
-            telemetry.addData("Lift counts", liftDistance);
-//            telemetry.addData("Intake counts", robot.acquirer.getAcquirerIntakeTicks());
-            telemetry.addData("Acquirer counts", acquirerSlidesDistance);
-            telemetry.addData("Hopper counts", hopperSlidesDistance);
-
-            telemetry.addData("Acquirer Position", acquirerPosition);
-            telemetry.addData("Hopper Position", hopperPosition);
-            telemetry.addData("Gimbal Positions", "Vert: %.2f | Horiz: %.2f", verticalPosition, horizontalPosition);
+            /* Telemetry, sampled a few times per second and sent from its own thread */
+            telemetryManager.update();
+            profiler.mark(TELEMETRY);
 
-            stickyGamepad1.update();
-            stickyGamepad2.update();
-            robot.updateSubsystems();
 //            telemetry.update();
         }
+        telemetryManager.stop();
+        profiler.log();
+        robot.drivetrain.stopOdometry();
         background.resetBackgroundColor();
     }
 
+    /**
+     * Adds the driver station items. Values are sampled a few times per second by
+     * <code>telemetryManager.update()</code> and sent from its own thread.
+     */
+    private void addTelemetry() {
+        telemetryManager.addItem("lift", "%.0f", new TelemetryManager.Value() {
+            @Override
+            public double get() { return robot.lift.getLiftTicks(); }
+        });
+        telemetryManager.addItem("Encoder counts", "lf: %.2f | rf: %.2f | lb: %.2f | rb: %.2f",
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.drivetrain.getPosition(0); }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.drivetrain.getPosition(2); }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.drivetrain.getPosition(1); }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.drivetrain.getPosition(3); }
+                });
+        telemetryManager.addItem("Lift counts", "%.2f", new TelemetryManager.Value() {
+            @Override
+            public double get() { return robot.lift.getPositions(); }
+        });
+        telemetryManager.addItem("Acquirer counts", "%.2f", new TelemetryManager.Value() {
+            @Override
+            public double get() { return robot.acquirer.getAcquirerSlidesTicks(); }
+        });
+        telemetryManager.addItem("Hopper counts", "%.2f", new TelemetryManager.Value() {
+            @Override
+            public double get() { return robot.hopper.getPositions(); }
+        });
+        telemetryManager.addItem("Acquirer Position", "%.2f", new TelemetryManager.Value() {
+            @Override
+            public double get() { return robot.acquirer.getAcquirerRotation(); }
+        });
+        telemetryManager.addItem("Hopper Position", "%.2f", new TelemetryManager.Value() {
+            @Override
+            public double get() { return robot.hopper.getHopperRotation(); }
+        });
+        telemetryManager.addItem("Gimbal Positions", "Vert: %.2f | Horiz: %.2f",
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.gimbal.getVerticalPosition(); }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.gimbal.getHorizontalPosition(); }
+                });
+        profiler.addTo(telemetryManager);
+    }
 }
@@ -7,9 +7,14 @@ import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.Range;
 
 import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareMecanum;
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HandoffStore;
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareSession;
+import org.firstinspires.ftc.teamcode.util.benchmark.LatencyTracer;
+import org.firstinspires.ftc.teamcode.util.benchmark.LoopProfiler;
 import org.firstinspires.ftc.teamcode.util.gamepad.JoystickTransform;
 import org.firstinspires.ftc.teamcode.util.gamepad.StickyGamepad;
 import org.firstinspires.ftc.teamcode.util.signals.BackgroundColorManager;
+import org.firstinspires.ftc.teamcode.util.signals.TelemetryManager;
 
 import static java.lang.Math.abs;
 
@@ -28,7 +33,7 @@ public class TeleopMain extends OpMode {
     private ElapsedTime runtime = new ElapsedTime();
 
     /* Robot hardware map */
-    private HardwareMecanum robot = new HardwareMecanum();
+    private HardwareMecanum robot;
 
     private JoystickTransform transform = new JoystickTransform();
     private StickyGamepad stickyGamepad1, stickyGamepad2;
@@ -36,26 +41,38 @@ public class TeleopMain extends OpMode {
     /* Robot controller's background manager */
     private BackgroundColorManager background = new BackgroundColorManager();
 
+    /* Driver station telemetry, sampled and sent off the control loop */
+    private TelemetryManager telemetryManager;
+
+    /* Loop timing, shown in telemetry and logged at the end */
+    private LoopProfiler profiler = new LoopProfiler();
+    private final int BULK_READ = profiler.addPhase("Bulk read");
+    private final int INPUT = profiler.addPhase("Input");
+    private final int DRIVE_WRITE = profiler.addPhase("Drive write");
+    private final int MECHANISM_WRITE = profiler.addPhase("Mechanism write");
+    private final int FLUSH = profiler.addPhase("Output flush");
+    private final int TELEMETRY = profiler.addPhase("Telemetry");
+
+    /* Gamepad to drive motor latency, traced only when set by a subclass */
+    protected boolean traceLatency = false;
+    private LatencyTracer latencyTracer;
+
     /* Holds Gamepad 1 joystick's values */
     double leftInput, rightInput, slideInput, hangerInput;
     boolean driveMode;
 
     /* Holds Gamepad 2 joystick's values */
     double cascadingSlidesInput, hopperInput, acquirerInput;
-    double acquirerPosition = 0.0, hopperPosition = 0.0, verticalPosition = 0.0, horizontalPosition = 0.0;
-    double acquirerSlidesDistance = 0.0, hopperSlidesDistance = 0.0, liftDistance = 0.0;
 
-    private boolean driverState, driverDebounce;
-    private boolean acquirerState, acquirerDebounce;
-    private boolean acquirerflipState, acquirerFlipDebounce;
-    private boolean hopperflipState, hopperFlipDebounce;
-    private boolean hopperUpDebounce, hopperState;
+    private boolean acquirerState, acquirerflipState, hopperflipState, hopperState;
 
     @Override
     public void init() {
-        /* Robot Init */
-        robot.init(hardwareMap);
-        robot.imuInit(hardwareMap);
+        /* Robot Init, carried over from autonomous if it ran before, with the pose autonomous ended at */
+        robot = HardwareSession.open(hardwareMap, null);
+        robot.restoreHandoff(HandoffStore.MAX_AGE_MS);
+        // Already running if the robot was carried over from autonomous
+        robot.drivetrain.startOdometry();
 
         /* Background Color */
         background.init(hardwareMap);
@@ -65,13 +82,19 @@ public class TeleopMain extends OpMode {
         stickyGamepad1 = new StickyGamepad(gamepad1);
         stickyGamepad2 = new StickyGamepad(gamepad2);
 
-        driverState = false;
-        driverDebounce = false;
+        /* Latency tracer init, on the drive motors */
+        if (traceLatency) {
+            latencyTracer = new LatencyTracer(robot.outputs, robot.drivetrain.getOutputSlot(0),
+                    robot.drivetrain.getOutputSlot(1), robot.drivetrain.getOutputSlot(2),
+                    robot.drivetrain.getOutputSlot(3));
+        }
+
+        /* Telemetry init */
+        telemetryManager = new TelemetryManager(telemetry);
+        addTelemetry();
+
         acquirerState = false;
-        acquirerDebounce = false;
         acquirerflipState = false;
-        acquirerFlipDebounce = false;
-        hopperUpDebounce = false;
     }
 
     /**
@@ -93,6 +116,8 @@ public class TeleopMain extends OpMode {
     @Override
     public void start() {
         runtime.reset();
+        profiler.reset();
+        telemetryManager.start();
     }
 
     /**
@@ -102,8 +127,17 @@ public class TeleopMain extends OpMode {
      */
     @Override
     public void loop() {
-        /* Adds runtime data to telemetry */
-        telemetry.addData("Status", "Run Time: " + runtime.toString());
+        profiler.startLoop();
+
+        /* One bulk read per hub for this cycle, then advance any running commands */
+        robot.scheduler.run();
+        robot.holdOutputs();
+        profiler.mark(BULK_READ);
+
+        /* Button edges of this cycle */
+        stickyGamepad1.update();
+        stickyGamepad2.update();
+        if (latencyTracer != null) latencyTracer.input(gamepad1.timestamp);
 
         /**
          * Gamepad 1
@@ -116,16 +150,11 @@ public class TeleopMain extends OpMode {
         rightInput = gamepad1.right_stick_y;
         slideInput = -gamepad1.left_trigger + gamepad1.right_trigger;
 
-        if (gamepad1.right_stick_button) {
-            if (!driverDebounce) {
-                driverState = !driverState;
-                if (driverState) { driveMode = true; }
-                else { driveMode = false; }
-                driverDebounce = true;
-            }
-        } else { driverDebounce = false; }
+        if (stickyGamepad1.wasPressed(StickyGamepad.RIGHT_STICK_BUTTON)) driveMode = !driveMode;
+        profiler.mark(INPUT);
 
        robot.drivetrain.tankDriveScaled(leftInput, rightInput, slideInput);
+        profiler.mark(DRIVE_WRITE);
 
         /**
          * Controls the Lift via the up and down dpad || Slow mode = left  button
@@ -142,14 +171,11 @@ public class TeleopMain extends OpMode {
         /**
          * Controls the Acquirer speed via the right bumper
          */
-        if (gamepad2.y) {
-            if (!acquirerDebounce) {
-                acquirerState = !acquirerState;
-                if (acquirerState) { robot.acquirer.setIntakePower(1); }
-                else { robot.acquirer.setIntakePower(0); }
-                acquirerDebounce = true;
-            }
-        } else { acquirerDebounce = false; }
+        if (stickyGamepad2.wasPressed(StickyGamepad.Y)) {
+            acquirerState = !acquirerState;
+            if (acquirerState) { robot.acquirer.setIntakePower(1); }
+            else { robot.acquirer.setIntakePower(0); }
+        }
 
         /**
          * Controls the Acquirer slides via the right analog stick
@@ -161,85 +187,116 @@ public class TeleopMain extends OpMode {
          * Rotates the Acquirer via the right trigger
          */
 
-//        if (gamepad2.right_bumper) {
-//            if (!acquirerFlipDebounce) {
-//                acquirerflipState = !acquirerflipState;
-//                if (acquirerflipState) {
-//                    robot.acquirer.setAcquirerRotation(1);
-////                    robot.acquirer.acquirerRotation.setPwmDisable();
-////                    robot.acquirer.setIntakePower(1);
-//                } else {
-////                    robot.acquirer.acquirerRotation.setPwmEnable();
-//                    robot.acquirer.setAcquirerRotation(0);
-////                    robot.acquirer.setIntakePower(0);
-//                }
-//                acquirerFlipDebounce = true;
+//        if (stickyGamepad2.wasPressed(StickyGamepad.RIGHT_BUMPER)) {
+//            acquirerflipState = !acquirerflipState;
+//            if (acquirerflipState) {
+//                robot.acquirer.setAcquirerRotation(1);
+////                robot.acquirer.acquirerRotation.setPwmDisable();
+////                robot.acquirer.setIntakePower(1);
+//            } else {
+////                robot.acquirer.acquirerRotation.setPwmEnable();
+//                robot.acquirer.setAcquirerRotation(0);
+////                robot.acquirer.setIntakePower(0);
 //            }
-//        } else { acquirerFlipDebounce = false; }
+//        }
 
         /**
          * Controls the Hopper slides via the left analog stick
          */
         hopperInput = -gamepad2.left_stick_y;
-        robot.hopper.setDrawerSlidePower(hopperInput);
+        if (!robot.scheduler.isRequired(robot.hopper)) { robot.hopper.setDrawerSlidePower(hopperInput); }
 
         /**
          * Rotates the Hopper via the left trigger
          */
-        if (gamepad2.left_bumper) {
-            if (!hopperFlipDebounce) {
-                hopperflipState = !hopperflipState;
-                if (hopperflipState) { robot.hopper.hopperRotation.setPwmDisable(); }
-                else {
-                    robot.hopper.hopperRotation.setPwmEnable();
-                    robot.hopper.setHopperRotation(0.5); }
-                hopperFlipDebounce = true;
-            }
-        } else { hopperFlipDebounce = false; }
-
-        if (gamepad2.left_stick_button) {
-            if (!hopperUpDebounce) {
-                hopperState = !hopperState;
-                if (hopperState) { robot.hopper.setDrawerSlideUp(2500); }
-                else { robot.hopper.setDrawerSlideDown(2500); }
-                hopperUpDebounce = true;
-            }
-        } else { hopperUpDebounce = false; }
+        if (stickyGamepad2.wasPressed(StickyGamepad.LEFT_BUMPER)) {
+            hopperflipState = !hopperflipState;
+            if (hopperflipState) { robot.hopper.hopperRotation.setPwmDisable(); }
+            else {
+                robot.hopper.hopperRotation.setPwmEnable();
+                robot.hopper.setHopperRotation(0.5); }
+        }
+
+        if (stickyGamepad2.wasPressed(StickyGamepad.LEFT_STICK_BUTTON)) {
+            hopperState = !hopperState;
+            if (hopperState) { robot.scheduler.schedule(robot.hopper.drawerSlideUpCommand(2500)); }
+            else { robot.scheduler.schedule(robot.hopper.drawerSlideDownCommand(2500)); }
+        }
+        profiler.mark(MECHANISM_WRITE);
+
+        /* Send the powers that changed this cycle, one hub at a time */
+        robot.flushOutputs();
+        if (latencyTracer != null) latencyTracer.output();
+        profiler.mark(FLUSH);
+
+        /* Telemetry, sampled a few times per second and sent from its own thread */
+        telemetryManager.update();
+        profiler.mark(TELEMETRY);
 
-        /**
-         * Telemetry
-         */
-        /* Drivetrain's encoder */
-        double[] positions = robot.drivetrain.getPositions();
-        acquirerSlidesDistance = robot.acquirer.getAcquirerSlidesTicks();
-        hopperSlidesDistance = robot.hopper.getPositions();
-        liftDistance = robot.lift.getPositions();
-        /* Acquirer and Hopper servo's position */
-//        acquirerPosition = robot.acquirer.getAcquirerRotation();
-        hopperPosition = robot.hopper.getHopperRotation();
-        /* Gimbal's servo's position */
-        verticalPosition = robot.gimbal.getVerticalPosition();
-        horizontalPosition = robot.gimbal.getHorizontalPosition();
-
-        telemetry.addData("Encoder counts", "lf: %.2f | rf: %.2f | lb: %.2f | rb: %.2f",
-                positions[0],
-                positions[1],
-                positions[2],
-                positions[3]);
-        telemetry.addData("Lift counts", liftDistance);
-//        telemetry.addData("Intake counts", robot.acquirer.getAcquirerIntakeTicks());
-        telemetry.addData("Acquirer counts", acquirerSlidesDistance);
-        telemetry.addData("Hopper counts", hopperSlidesDistance);
-
-        telemetry.addData("Acquirer Position", acquirerPosition);
-        telemetry.addData("Hopper Position", hopperPosition);
-        telemetry.addData("Gimbal Positions", "Vert: %.2f | Horiz: %.2f", verticalPosition, horizontalPosition);
-
-        stickyGamepad1.update();
-        stickyGamepad2.update();
-        robot.updateSubsystems();
     }
 
     @Override
-    public void stop() { background.resetBackgroundColor(); }
-}
\ No newline at end of file
+    public void stop() {
+        telemetryManager.stop();
+        profiler.log();
+        if (latencyTracer != null) latencyTracer.log();
+        robot.scheduler.cancelAll();
+        robot.drivetrain.stopOdometry();
+        background.resetBackgroundColor();
+    }
+
+    /**
+     * Adds the driver station items. Values are sampled a few times per second by
+     * <code>telemetryManager.update()</code> and sent from its own thread.
+     */
+    private void addTelemetry() {
+        telemetryManager.addItem("Status", "Run Time: %.1f s", new TelemetryManager.Value() {
+            @Override
+            public double get() { return runtime.seconds(); }
+        });
+        telemetryManager.addItem("Encoder counts", "lf: %.2f | rf: %.2f | lb: %.2f | rb: %.2f",
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.drivetrain.getPosition(0); }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.drivetrain.getPosition(2); }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.drivetrain.getPosition(1); }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.drivetrain.getPosition(3); }
+                });
+        telemetryManager.addItem("Lift counts", "%.2f", new TelemetryManager.Value() {
+            @Override
+            public double get() { return robot.lift.getPositions(); }
+        });
+        telemetryManager.addItem("Acquirer counts", "%.2f", new TelemetryManager.Value() {
+            @Override
+            public double get() { return robot.acquirer.getAcquirerSlidesTicks(); }
+        });
+        telemetryManager.addItem("Hopper counts", "%.2f", new TelemetryManager.Value() {
+            @Override
+            public double get() { return robot.hopper.getPositions(); }
+        });
+        telemetryManager.addItem("Hopper Position", "%.2f", new TelemetryManager.Value() {
+            @Override
+            public double get() { return robot.hopper.getHopperRotation(); }
+        });
+        telemetryManager.addItem("Gimbal Positions", "Vert: %.2f | Horiz: %.2f",
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.gimbal.getVerticalPosition(); }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return robot.gimbal.getHorizontalPosition(); }
+                });
+        profiler.addTo(telemetryManager);
+        if (latencyTracer != null) latencyTracer.addTo(telemetryManager);
+    }
+}
@@ -0,0 +1,47 @@
+package org.firstinspires.ftc.teamcode.opmode.test;
+
+import com.qualcomm.robotcore.eventloop.opmode.Disabled;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.firstinspires.ftc.teamcode.util.motion.AssetsTrajectoryLoader;
+
+import java.io.IOException;
+
+/**
+ * CompileTrajectories compiles every trajectory asset into its binary after the app is updated,
+ * so that autonomous init only maps files. A second pass shows how long loading takes once the
+ * binaries exist.
+ */
+@Disabled
+@TeleOp(name = "Compile Trajectories", group = "Test")
+public class CompileTrajectories extends LinearOpMode {
+
+    @Override
+    public void runOpMode() {
+        telemetry.addData("Status", "Ready, press start");
+        telemetry.update();
+        waitForStart();
+
+        try {
+            long start = System.nanoTime();
+            int count = AssetsTrajectoryLoader.compileAll();
+            double compileMs = (System.nanoTime() - start) / 1e6;
+
+            // Load again from the binaries only
+            AssetsTrajectoryLoader.clearCache();
+            start = System.nanoTime();
+            AssetsTrajectoryLoader.compileAll();
+            double mapMs = (System.nanoTime() - start) / 1e6;
+
+            telemetry.addData("Trajectories", count);
+            telemetry.addData("First load", "%.1f ms", compileMs);
+            telemetry.addData("Load from binary", "%.1f ms", mapMs);
+        } catch (IOException e) {
+            telemetry.addData("Status", "Failed: " + e.getMessage());
+        }
+        telemetry.update();
+
+        while (opModeIsActive()) idle();
+    }
+}
@@ -0,0 +1,261 @@
+package org.firstinspires.ftc.teamcode.opmode.test;
+
+import android.util.Log;
+
+import com.acmerobotics.dashboard.canvas.Canvas;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.trajectory.Trajectory;
+import com.qualcomm.robotcore.eventloop.opmode.Disabled;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.Gamepad;
+
+import org.firstinspires.ftc.teamcode.hardware.mecanum.Drivetrain;
+import org.firstinspires.ftc.teamcode.util.benchmark.MicroBenchmark;
+import org.firstinspires.ftc.teamcode.util.gamepad.JoystickTransform;
+import org.firstinspires.ftc.teamcode.util.gamepad.StickyGamepad;
+import org.firstinspires.ftc.teamcode.util.motion.DashboardUtil;
+import org.firstinspires.ftc.teamcode.util.motion.MultiAxisPID;
+import org.firstinspires.ftc.teamcode.util.motion.PIDController;
+import org.firstinspires.ftc.teamcode.util.motion.TuningUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ControlMathBenchmark times the drive, control and tuning math used in the loop and reports the
+ * time and bytes allocated per call. No hardware is used: the drive math is called through
+ * Drivetrain's static power functions and the gamepad is a plain SDK {@link Gamepad}.
+ *
+ * Calls that run every loop have an allocation budget; the report shows FAIL when one is exceeded.
+ */
+@Disabled
+@TeleOp(name = "Control Math Benchmark", group = "Test")
+public class ControlMathBenchmark extends LinearOpMode {
+
+    /* CONSTANTS */
+    private static final String TAG = "ControlMathBenchmark";
+    private static final int INPUTS = 256;
+    private static final int TUNING_SAMPLES = 200;
+
+    /* Inputs, precomputed so that the timed code does not allocate */
+    private final double[] x = new double[INPUTS];
+    private final double[] y = new double[INPUTS];
+    private final double[] turn = new double[INPUTS];
+    private final double[] out = new double[4];
+
+    @Override
+    public void runOpMode() {
+        for (int i = 0; i < INPUTS; i++) {
+            x[i] = Math.sin(i * 0.37);
+            y[i] = Math.cos(i * 0.11);
+            turn[i] = Math.sin(i * 0.05) * 0.5;
+        }
+
+        telemetry.addData("Status", "Ready, press start");
+        telemetry.update();
+        waitForStart();
+
+        telemetry.addData("Status", "Running...");
+        telemetry.update();
+
+        MicroBenchmark loop = new MicroBenchmark();
+        MicroBenchmark tuning = new MicroBenchmark().setIterations(10, 100);
+        runDriveSuite(loop);
+        runControlSuite(loop);
+        runInputSuite(loop);
+        runTuningSuite(tuning);
+        loop.finish();
+        tuning.finish();
+
+        while (opModeIsActive()) {
+            telemetry.addData("Budgets", loop.allPassed() && tuning.allPassed() ? "PASS" : "FAIL");
+            report(loop);
+            report(tuning);
+            telemetry.update();
+            idle();
+        }
+    }
+
+    private void runDriveSuite(MicroBenchmark bench) {
+        bench.run("driveTrig", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                int n = i % INPUTS;
+                Drivetrain.trigPowers(x[n], y[n], turn[n], out);
+                return out[0];
+            }
+        }, 0);
+        bench.run("driveVector", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                int n = i % INPUTS;
+                Drivetrain.vectorPowers(y[n], x[n], turn[n], out);
+                return out[0];
+            }
+        }, 0);
+        bench.run("tankVectorDrive", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                int n = i % INPUTS;
+                Drivetrain.tankVectorPowers(y[n], x[n], turn[n], out);
+                return out[0];
+            }
+        }, 0);
+        bench.run("tankDriveScaled", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                int n = i % INPUTS;
+                Drivetrain.scaledTankPowers(y[n], x[n], turn[n], out);
+                return out[0];
+            }
+        }, 0);
+        bench.run("fieldCentric", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                int n = i % INPUTS;
+                Drivetrain.fieldCentricPowers(y[n], x[n], turn[n], n, out);
+                return out[0];
+            }
+        }, 0);
+        bench.run("rotateVector", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                int n = i % INPUTS;
+                Drivetrain.rotateVector(x[n], y[n], n, out);
+                return out[0];
+            }
+        }, 0);
+    }
+
+    private void runControlSuite(MicroBenchmark bench) {
+        final PIDController pidController = new PIDController(0.055, 0.002, 0.01);
+        pidController.setSetpoint(90);
+        pidController.enable();
+        bench.run("PIDController.performPID", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                return pidController.performPID(x[i % INPUTS] * 90);
+            }
+        }, 0);
+
+        final MultiAxisPID multiAxisPID = new MultiAxisPID(1);
+        multiAxisPID.setGains(0, 0.055, 0.2, 0.0001);
+        multiAxisPID.setSetpoint(0, 90);
+        bench.run("MultiAxisPID.update", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                return multiAxisPID.update(0, x[i % INPUTS] * 90, i * 10000000L);
+            }
+        }, 0);
+    }
+
+    private void runInputSuite(MicroBenchmark bench) {
+        final JoystickTransform transform = new JoystickTransform();
+        transform.setMode(JoystickTransform.MODE.DUAL_ZONE);
+        final Pose2d[] commands = new Pose2d[INPUTS];
+        for (int i = 0; i < INPUTS; i++) commands[i] = new Pose2d(x[i], y[i], turn[i]);
+        bench.run("JoystickTransform.transform", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                return transform.transform(commands[i % INPUTS]).getX();
+            }
+        });
+
+        final Gamepad gamepad = new Gamepad();
+        final StickyGamepad stickyGamepad = new StickyGamepad(gamepad);
+        bench.run("StickyGamepad.update", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                gamepad.a = (i & 1) == 0;
+                gamepad.dpad_up = (i & 2) == 0;
+                gamepad.right_trigger = (i & 4) == 0 ? 1 : 0;
+                stickyGamepad.update();
+                return stickyGamepad.wasPressed(StickyGamepad.A) ? 1 : 0;
+            }
+        }, 0);
+    }
+
+    private void runTuningSuite(MicroBenchmark bench) {
+        // Ramp test: power rises linearly, velocity follows it
+        final List<Double> time = new ArrayList<>();
+        final List<Double> position = new ArrayList<>();
+        final List<Double> power = new ArrayList<>();
+        for (int i = 0; i < TUNING_SAMPLES; i++) {
+            double t = i * 0.02;
+            time.add(t);
+            power.add(t / 4);
+            position.add(20 * t * t / 8);
+        }
+        bench.run("TuningUtil.fitRampData", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                return TuningUtil.fitRampData(time, position, power, true).kV;
+            }
+        });
+        bench.run("TuningUtil.fitConstantPowerData", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                return TuningUtil.fitConstantPowerData(time, position, 0.5, 0.02, 0.05).kA;
+            }
+        });
+
+        // Streaming fits take one sample per call and must not allocate
+        final TuningUtil.RampFitter rampFitter = new TuningUtil.RampFitter(true);
+        bench.run("TuningUtil.RampFitter.addSample", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                double t = i * 0.02;
+                rampFitter.addSample(t, 20 * t * t / 8, t / 4);
+                return rampFitter.getKV();
+            }
+        }, 0);
+        final TuningUtil.ConstantPowerFitter constantPowerFitter = new TuningUtil.ConstantPowerFitter(0.02, 0.05);
+        bench.run("TuningUtil.ConstantPowerFitter.addSample", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                double t = i * 0.02;
+                constantPowerFitter.addSample(t, 20 * t * t / 8, 0.5);
+                return constantPowerFitter.getKA();
+            }
+        }, 0);
+
+        final Trajectory trajectory = new Drivetrain().trajectoryBuilder()
+                .forward(48)
+                .turn(Math.toRadians(90))
+                .forward(24)
+                .build();
+        final Canvas canvas = new Canvas();
+        // First draw of a trajectory, as every packet paid before polylines were cached
+        bench.run("DashboardUtil.drawSampledTrajectory (1000 samples, uncached)", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                DashboardUtil.clearCache();
+                DashboardUtil.drawSampledTrajectory(canvas, trajectory, 1000);
+                return i;
+            }
+        });
+        bench.run("DashboardUtil.drawSampledTrajectory (adaptive, uncached)", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                DashboardUtil.clearCache();
+                DashboardUtil.drawSampledTrajectory(canvas, trajectory);
+                return i;
+            }
+        });
+        bench.run("DashboardUtil.drawSampledTrajectory", new MicroBenchmark.Op() {
+            @Override
+            public double run(int i) {
+                DashboardUtil.drawSampledTrajectory(canvas, trajectory);
+                return i;
+            }
+        });
+    }
+
+    private void report(MicroBenchmark bench) {
+        for (MicroBenchmark.Result result : bench.getResults()) {
+            telemetry.addData(result.name, result.toString());
+            Log.i(TAG, result.name + ": " + result);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.firstinspires.ftc.teamcode.opmode.test;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareMecanum;
+import org.firstinspires.ftc.teamcode.util.motion.TuningUtil;
+import org.firstinspires.ftc.teamcode.util.signals.TelemetryManager;
+
+/*
+ * Finds the drive feedforward constants. The robot first drives forward while the power ramps up
+ * slowly, which gives kV and kStatic. After it is put back at the start, it drives forward at a
+ * constant power, which gives kA. Both fits are updated every loop and shown while the robot
+ * moves, so a run can be stopped as soon as the fit settles.
+ */
+@Config
+@Autonomous(group = "Test")
+public class FeedforwardTuner extends LinearOpMode {
+    public static double MAX_POWER = 0.7;
+    public static double RAMP_SECONDS = 5;
+    public static double DISTANCE = 72;
+    public static boolean FIT_K_STATIC = true;
+    public static double CONSTANT_POWER = 0.7;
+    public static double CONSTANT_POWER_SECONDS = 2;
+
+    private final HardwareMecanum robot = new HardwareMecanum(this);
+    private final TuningUtil.RampFitter ramp = new TuningUtil.RampFitter(FIT_K_STATIC);
+    private TuningUtil.ConstantPowerFitter constantPower;
+
+    @Override
+    public void runOpMode() {
+        robot.init(hardwareMap);
+
+        TelemetryManager telemetryManager = new TelemetryManager(telemetry);
+        telemetryManager.addItem("Ramp", "kV %.5f | kStatic %.5f | R^2 %.4f | %.0f samples",
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return ramp.getKV(); }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return ramp.getKStatic(); }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return ramp.getRSquared(); }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return ramp.getCount(); }
+                });
+        telemetryManager.addItem("Constant power", "kA %.5f | R^2 %.4f | %.0f samples",
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return constantPower != null ? constantPower.getKA() : 0; }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return constantPower != null ? constantPower.getRSquared() : 0; }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return constantPower != null ? constantPower.getCount() : 0; }
+                });
+
+        telemetry.log().add("Press play to begin the feedforward ramp test");
+        telemetry.log().add("Make sure the robot has " + DISTANCE + " in of clearance in front of it");
+        telemetry.update();
+
+        waitForStart();
+        if (isStopRequested()) return;
+        telemetry.log().clear();
+        telemetryManager.start();
+
+        // Ramp test: power rises slowly so that acceleration stays small
+        double start = System.nanoTime() / 1e9;
+        double startPosition = position();
+        while (opModeIsActive()) {
+            robot.updateSubsystems();
+            double t = System.nanoTime() / 1e9 - start;
+            double distance = position() - startPosition;
+            double power = MAX_POWER * t / RAMP_SECONDS;
+            if (power > MAX_POWER || distance > DISTANCE) break;
+
+            ramp.addSample(t, distance, power);
+            robot.drivetrain.setMotorPowers(power, power, power, power);
+            telemetryManager.update();
+        }
+        robot.drivetrain.setMotorPowers(0, 0, 0, 0);
+
+        telemetry.log().add("Put the robot back at the start and press A for the constant power test");
+        telemetry.log().add("Press B to skip it");
+        while (opModeIsActive() && !gamepad1.a && !gamepad1.b) {
+            telemetryManager.update();
+            idle();
+        }
+
+        if (gamepad1.a) {
+            telemetry.log().clear();
+            constantPower = new TuningUtil.ConstantPowerFitter(ramp.getKV(), ramp.getKStatic());
+            start = System.nanoTime() / 1e9;
+            startPosition = position();
+            while (opModeIsActive()) {
+                robot.updateSubsystems();
+                double t = System.nanoTime() / 1e9 - start;
+                double distance = position() - startPosition;
+                if (t > CONSTANT_POWER_SECONDS || distance > DISTANCE) break;
+
+                constantPower.addSample(t, distance, CONSTANT_POWER);
+                robot.drivetrain.setMotorPowers(CONSTANT_POWER, CONSTANT_POWER, CONSTANT_POWER, CONSTANT_POWER);
+                telemetryManager.update();
+            }
+            robot.drivetrain.setMotorPowers(0, 0, 0, 0);
+        }
+
+        telemetry.log().add("Tuning complete");
+        while (opModeIsActive()) {
+            telemetryManager.update();
+            idle();
+        }
+        telemetryManager.stop();
+    }
+
+    /**
+     * Returns the average distance driven by the four wheels in inches.
+     */
+    private double position() {
+        return (robot.drivetrain.getPosition(0) + robot.drivetrain.getPosition(1)
+                + robot.drivetrain.getPosition(2) + robot.drivetrain.getPosition(3)) / 4;
+    }
+}
@@ -3,14 +3,12 @@ package org.firstinspires.ftc.teamcode.opmode.test;
 import com.qualcomm.hardware.bosch.BNO055IMU;
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
-import com.qualcomm.robotcore.util.ReadWriteFile;
 
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
 import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
-import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
-
-import java.io.File;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.IMUSession;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.ImuCalibration;
 
 @Autonomous(name = "Sensor: BNO055 IMU Calibration", group = "Sensor")
 //@Disabled
@@ -40,6 +38,8 @@ public class IMUCalibrate extends OpMode {
     public void start() {
         telemetry.clear();
         imu.initialize(parameters);
+        // Initialized without the robot's parameters; the robot must initialize it again
+        IMUSession.invalidate();
     }
 
     @Override
@@ -47,10 +47,8 @@ public class IMUCalibrate extends OpMode {
 
         if (imu.isGyroCalibrated() && calib) {
             BNO055IMU.CalibrationData calibrationData = imu.readCalibrationData();
-            String filename = "BNO055IMUCalibration.json";
-            File file = AppUtil.getInstance().getSettingsFile(filename);
-            ReadWriteFile.writeFile(file, calibrationData.serialize());
-            telemetry.log().add("saved to '%s'", filename);
+            ImuCalibration.save(calibrationData);
+            telemetry.log().add("saved to '%s'", ImuCalibration.FILE);
             calib = false;
         }
         if (!calib) {
@@ -0,0 +1,100 @@
+package org.firstinspires.ftc.teamcode.opmode.test;
+
+import com.qualcomm.hardware.bosch.BNO055IMU;
+import com.qualcomm.robotcore.eventloop.opmode.Disabled;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
+import org.firstinspires.ftc.teamcode.hardware.RCConfig;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.FastHeadingIMU;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.IMUSession;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.SimulatedImuRegisters;
+import org.openftc.revextensions2.ExpansionHubEx;
+import org.openftc.revextensions2.RevExtensions2;
+
+/**
+ * IMUReadBenchmark measures how long a heading read takes through the stock BNO055 driver and
+ * through {@link FastHeadingIMU}.
+ *
+ * The simulated results come from {@link SimulatedImuRegisters} and need no hardware. The robot
+ * results are only shown when the hub and IMU are found in the hardware map.
+ */
+@Disabled
+@TeleOp(name = "IMU Read Benchmark", group = "Test")
+public class IMUReadBenchmark extends LinearOpMode {
+
+    /* CONSTANTS */
+    private static final int READS = 200;
+    // The stock driver's read window runs from the Euler heading through the temperature register
+    private static final int STOCK_WINDOW = 26;
+    private static final int EULER_BLOCK = 6;
+
+    @Override
+    public void runOpMode() {
+        telemetry.addData("Status", "Ready, press start");
+        telemetry.update();
+        waitForStart();
+
+        // Simulated hub
+        SimulatedImuRegisters sim = new SimulatedImuRegisters(90);
+        FastHeadingIMU simFast = new FastHeadingIMU(sim);
+        double simStock = timeReads(sim, STOCK_WINDOW);
+        double simEuler = timeReads(sim, EULER_BLOCK);
+        long start = System.nanoTime();
+        for (int i = 0; i < READS; i++) simFast.getHeading();
+        double simHeading = (System.nanoTime() - start) / 1e6 / READS;
+
+        telemetry.addData("Sim stock window", "%.3f ms/read", simStock);
+        telemetry.addData("Sim optimized euler", "%.3f ms/read", simEuler);
+        telemetry.addData("Sim heading only", "%.3f ms/read", simHeading);
+        telemetry.update();
+
+        // Robot
+        double robotStock = Double.NaN, robotHeading = Double.NaN;
+        try {
+            BNO055IMU imu = hardwareMap.get(BNO055IMU.class, "imu");
+            BNO055IMU.Parameters parameters = new BNO055IMU.Parameters();
+            parameters.angleUnit = BNO055IMU.AngleUnit.DEGREES;
+            imu.initialize(parameters);
+            IMUSession.invalidate();
+
+            start = System.nanoTime();
+            for (int i = 0; i < READS && opModeIsActive(); i++) {
+                imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES);
+            }
+            robotStock = (System.nanoTime() - start) / 1e6 / READS;
+
+            RevExtensions2.init();
+            ExpansionHubEx hub = hardwareMap.get(ExpansionHubEx.class, RCConfig.EXPANSION_HUB_1);
+            FastHeadingIMU fast = new FastHeadingIMU();
+            fast.init(hub, AxesOrder.ZYX, 0);
+
+            start = System.nanoTime();
+            for (int i = 0; i < READS && opModeIsActive(); i++) {
+                fast.getHeading();
+            }
+            robotHeading = (System.nanoTime() - start) / 1e6 / READS;
+        } catch (Exception e) {
+            telemetry.addData("Robot", "no imu found");
+        }
+
+        while (opModeIsActive()) {
+            telemetry.addData("Sim stock window", "%.3f ms/read", simStock);
+            telemetry.addData("Sim optimized euler", "%.3f ms/read", simEuler);
+            telemetry.addData("Sim heading only", "%.3f ms/read", simHeading);
+            telemetry.addData("Robot stock orientation", "%.3f ms/read", robotStock);
+            telemetry.addData("Robot heading only", "%.3f ms/read", robotHeading);
+            telemetry.update();
+            idle();
+        }
+    }
+
+    private double timeReads(SimulatedImuRegisters sim, int registers) {
+        long start = System.nanoTime();
+        for (int i = 0; i < READS; i++) sim.read(BNO055IMU.Register.EUL_H_LSB, registers);
+        return (System.nanoTime() - start) / 1e6 / READS;
+    }
+}
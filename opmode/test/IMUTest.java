@@ -49,17 +49,21 @@ import java.util.Locale;
 
 @TeleOp(name = "IMU Test", group = "Sensor")
 public class IMUTest extends LinearOpMode {
-    private HardwareMecanum robot = new HardwareMecanum();
+    private HardwareMecanum robot = new HardwareMecanum(this);
 
     @Override
     public void runOpMode() {
-        robot.imuInit(hardwareMap);
+        robot.init(hardwareMap, true);
         telemetry.addData("Gyro Is Calibrated", robot.imuCalibrated());
         telemetry.update();
 
         waitForStart();
+        robot.drivetrain.singleImu.startIntegration();
 
         while (opModeIsActive()) {
+            // Tells the integrator when the robot is standing still
+            robot.updateSubsystems();
+
             telemetry.addData("getAccelY", robot.drivetrain.singleImu.getYAccel());
             telemetry.addData("getAccelX", robot.drivetrain.singleImu.getXAccel());
             telemetry.addData("getAccelZ", robot.drivetrain.singleImu.getZAccel());
@@ -72,9 +76,13 @@ public class IMUTest extends LinearOpMode {
             telemetry.addData("getXDistance", robot.drivetrain.singleImu.getXDistance());
             telemetry.addData("getZDistance", robot.drivetrain.singleImu.getZDistance());
 
-            telemetry.addData("pos", robot.drivetrain.singleImu.imu.getPosition());
+            telemetry.addData("biasX", robot.drivetrain.singleImu.integrator.getBias(0));
+            telemetry.addData("biasY", robot.drivetrain.singleImu.integrator.getBias(1));
+            telemetry.addData("zupts", robot.drivetrain.singleImu.integrator.getZeroVelocityUpdates());
             telemetry.update();
         }
+        robot.drivetrain.singleImu.stopIntegration();
+        robot.drivetrain.singleImu.integrator.dump();
 
     }
 }
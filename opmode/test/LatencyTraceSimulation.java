@@ -0,0 +1,131 @@
+package org.firstinspires.ftc.teamcode.opmode.test;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.Gamepad;
+
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareMecanum;
+import org.firstinspires.ftc.teamcode.util.benchmark.LatencyHistogram;
+import org.firstinspires.ftc.teamcode.util.benchmark.LatencyTracer;
+import org.firstinspires.ftc.teamcode.util.sim.SimulatedRobot;
+
+import java.util.Random;
+
+/**
+ * LatencyTraceSimulation runs the TeleOp drive path (gamepad, <code>tankDriveScaled()</code>,
+ * flush) on a {@link SimulatedRobot} with a {@link LatencyTracer} and needs no hardware attached
+ * to the robot controller.
+ *
+ * A driver station thread sends stick packets stamped with its own clock and delivers each after
+ * a random link delay. Motor writes take TRANSACTION_S, like hub transactions. The simulation and
+ * the loop run in real time, so the traced latency can be compared with the delays put in.
+ *
+ * This is still an OpMode: it runs on the robot controller phone and is started from the driver
+ * station, so its latencies include the phone's own scheduling and hold only for that phone.
+ * There is no off-robot runner; the driver station link itself is not traced, only modeled by the
+ * injected delay.
+ */
+@TeleOp(name = "Latency Trace Simulation", group = "Test")
+public class LatencyTraceSimulation extends LinearOpMode {
+
+    /* CONSTANTS */
+    private static final double TRANSACTION_S = 0.0015;
+    private static final int MIN_PACKET_MS = 10, MAX_PACKET_MS = 40;
+    private static final int MIN_LINK_MS = 2, MAX_LINK_MS = 20;
+    // Driver station clock, far from the robot controller's
+    private static final long DS_CLOCK_OFFSET_MS = 123456789;
+    private static final double WARMUP_S = 1, RUN_S = 10;
+
+    private final Gamepad gamepad = new Gamepad();
+    private final LatencyHistogram link = new LatencyHistogram();
+    private volatile boolean sending = false;
+
+    @Override
+    public void runOpMode() {
+        SimulatedRobot sim = new SimulatedRobot();
+        sim.setTransactionTime(TRANSACTION_S);
+        HardwareMecanum robot = new HardwareMecanum(this);
+        robot.init(sim.getHardwareMap());
+        LatencyTracer tracer = new LatencyTracer(robot.outputs, robot.drivetrain.getOutputSlot(0),
+                robot.drivetrain.getOutputSlot(1), robot.drivetrain.getOutputSlot(2),
+                robot.drivetrain.getOutputSlot(3));
+
+        telemetry.addData("Status", "Ready, press start");
+        telemetry.update();
+        waitForStart();
+
+        telemetry.addData("Status", "Running...");
+        telemetry.update();
+
+        sim.start(1);
+        Thread driverStation = startDriverStation();
+        long start = System.nanoTime();
+        boolean warm = false;
+        while (opModeIsActive() && System.nanoTime() - start < (WARMUP_S + RUN_S) * 1e9) {
+            if (!warm && System.nanoTime() - start > WARMUP_S * 1e9) {
+                // The clock offset has settled; start counting from here
+                tracer.reset();
+                synchronized (link) { link.reset(); }
+                warm = true;
+            }
+            robot.updateSubsystems();
+            robot.holdOutputs();
+            tracer.input(gamepad.timestamp);
+            robot.drivetrain.tankDriveScaled(gamepad.left_stick_y, gamepad.right_stick_y,
+                    -gamepad.left_trigger + gamepad.right_trigger);
+            robot.flushOutputs();
+            tracer.output();
+        }
+        sending = false;
+        driverStation.interrupt();
+        robot.drivetrain.setMotorPowers(0, 0, 0, 0);
+        sim.stop();
+        tracer.log();
+
+        String linkReport;
+        synchronized (link) { linkReport = LatencyTracer.format(link); }
+        while (opModeIsActive()) {
+            telemetry.addData("Packets", "%d traced | %d unchanged", tracer.getTotal().getCount(), tracer.getUnchangedCount());
+            telemetry.addData("Link delay put in", linkReport);
+            telemetry.addData("Input latency", LatencyTracer.format(tracer.getTotal()));
+            telemetry.addData("Input pickup", LatencyTracer.format(tracer.getPickup()));
+            telemetry.addData("Input actuation", LatencyTracer.format(tracer.getActuation()));
+            telemetry.update();
+            idle();
+        }
+    }
+
+    /**
+     * Starts the thread that sends stick packets to the gamepad.
+     */
+    private Thread startDriverStation() {
+        sending = true;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(0);
+                int packet = 0;
+                try {
+                    while (sending) {
+                        Thread.sleep(MIN_PACKET_MS + random.nextInt(MAX_PACKET_MS - MIN_PACKET_MS + 1));
+                        long sent = System.nanoTime();
+                        float stick = (float) Math.sin(packet++ * 0.2);
+                        int delay = MIN_LINK_MS + random.nextInt(MAX_LINK_MS - MIN_LINK_MS + 1);
+                        Thread.sleep(delay);
+
+                        gamepad.left_stick_y = stick;
+                        gamepad.right_stick_y = -stick;
+                        gamepad.timestamp = sent / 1000000 + DS_CLOCK_OFFSET_MS;
+                        // Delay beyond the fastest possible link, which is what the tracer reports
+                        synchronized (link) { link.record(System.nanoTime() - sent - MIN_LINK_MS * 1000000L); }
+                    }
+                } catch (InterruptedException e) {
+                    // Stopped
+                }
+            }
+        }, "Driver station");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,18 @@
+package org.firstinspires.ftc.teamcode.opmode.test;
+
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.firstinspires.ftc.teamcode.opmode.teleop.TeleopMain;
+
+/**
+ * LatencyTraceTeleop is the main TeleOp with input latency tracing turned on. Drives exactly like
+ * {@link TeleopMain} and adds the gamepad packet to drive motor latency to telemetry; the full
+ * distribution is logged when the OpMode stops.
+ */
+@TeleOp(name = "Main Teleop [Latency Trace]", group = "Test")
+public class LatencyTraceTeleop extends TeleopMain {
+
+    public LatencyTraceTeleop() {
+        traceLatency = true;
+    }
+}
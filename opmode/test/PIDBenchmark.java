@@ -0,0 +1,235 @@
+package org.firstinspires.ftc.teamcode.opmode.test;
+
+import com.qualcomm.robotcore.eventloop.opmode.Disabled;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.firstinspires.ftc.teamcode.util.motion.MultiAxisPID;
+import org.firstinspires.ftc.teamcode.util.motion.PIDController;
+
+/**
+ * PIDBenchmark compares {@link MultiAxisPID} against {@link PIDController} on the robot controller
+ * phone. No hardware is used.
+ *
+ * It first checks that both controllers give the same output at a fixed period, for a PD loop
+ * and for a PID loop that does not saturate (the golden checks). PIDController has no
+ * anti-windup, so the integral limit and the saturation check are compared against a plain
+ * reference implementation instead, on a loop that saturates in both directions. Each controller
+ * is then timed on the same recorded input.
+ */
+@Disabled
+@TeleOp(name = "PID Benchmark", group = "Test")
+public class PIDBenchmark extends LinearOpMode {
+
+    /* CONSTANTS */
+    private static final int SAMPLES = 1000;
+    private static final int ITERATIONS = 200;
+    private static final int AXES = 5;
+    private static final long PERIOD_NS = 10000000;     // 10 ms loop
+    private static final double DT = PERIOD_NS / 1e9;
+    private static final double P = 0.055, I = 0.0005, D = 0.01;
+    /* Saturating loop for the anti-windup check */
+    private static final double WINDUP_KI = 0.5, WINDUP_OUTPUT = 0.5, WINDUP_INTEGRAL = 0.2;
+    private static final double SETPOINT = 90, SECOND_SETPOINT = 45;
+    private static final double TOLERANCE = 1e-9;
+
+    private final double[] input = new double[SAMPLES];
+
+    @Override
+    public void runOpMode() {
+        // Recorded input: a turn that settles on its setpoint with some sensor noise
+        for (int i = 0; i < SAMPLES; i++) {
+            input[i] = 90 * (1 - Math.exp(-i / 100.0)) + Math.sin(i * 0.7) * 0.5;
+        }
+
+        telemetry.addData("Status", "Ready, press start");
+        telemetry.update();
+        waitForStart();
+
+        double maxError = goldenCheck(0);
+        double integralError = goldenCheck(I);
+        double windupError = windupCheck();
+        report(maxError, integralError, windupError);
+        telemetry.update();
+
+        // Warm up both paths before timing
+        benchmarkOld();
+        benchmarkNew();
+        benchmarkNewAxes();
+
+        double oldNs = benchmarkOld();
+        double newNs = benchmarkNew();
+        double axesNs = benchmarkNewAxes();
+
+        report(maxError, integralError, windupError);
+        telemetry.addData("PIDController", "%.1f ns/call", oldNs);
+        telemetry.addData("MultiAxisPID", "%.1f ns/call", newNs);
+        telemetry.addData("MultiAxisPID x" + AXES, "%.1f ns/axis", axesNs);
+        telemetry.update();
+
+        while (opModeIsActive()) {
+            idle();
+        }
+    }
+
+    private void report(double pd, double pid, double windup) {
+        telemetry.addData("Golden PD", "%s (%.3e)", pd < TOLERANCE ? "PASS" : "FAIL", pd);
+        telemetry.addData("Golden PID", "%s (%.3e)", pid < TOLERANCE ? "PASS" : "FAIL", pid);
+        telemetry.addData("Anti-windup", "%s (%.3e)", windup < TOLERANCE ? "PASS" : "FAIL", windup);
+    }
+
+    /**
+     * Runs both controllers with a constant setpoint and returns the largest difference in
+     * output. MultiAxisPID is first given a sample at the setpoint, so that its first real sample
+     * differentiates and integrates like PIDController's does against an error of zero.
+     * @param ki        PIDController integral gain; small enough that the output never saturates
+     */
+    private double goldenCheck(double ki) {
+        PIDController old = newOld(ki);
+        MultiAxisPID pid = newPid(1, ki);
+        pid.update(0, SETPOINT, -PERIOD_NS);
+
+        double maxError = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            double a = old.performPID(input[i]);
+            double b = pid.update(0, input[i], i * PERIOD_NS);
+            maxError = Math.max(maxError, Math.abs(a - b));
+        }
+        return maxError;
+    }
+
+    /**
+     * Runs MultiAxisPID and the reference implementation on a loop whose output saturates, first
+     * positive and then negative after a setpoint change, with a limited integral. Returns the
+     * largest difference in output.
+     */
+    private double windupCheck() {
+        MultiAxisPID pid = new MultiAxisPID(1);
+        pid.setGains(0, P, WINDUP_KI, D * DT);
+        pid.setOutputRange(0, -WINDUP_OUTPUT, WINDUP_OUTPUT);
+        pid.setIntegralLimit(0, WINDUP_INTEGRAL);
+        ReferencePID reference = new ReferencePID(P, WINDUP_KI, D * DT, WINDUP_OUTPUT, WINDUP_INTEGRAL);
+
+        double maxError = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            double setpoint = i < SAMPLES / 2 ? SETPOINT : SECOND_SETPOINT;
+            pid.setSetpoint(0, setpoint);
+            double a = reference.update(setpoint, input[i], i * DT);
+            double b = pid.update(0, input[i], i * PERIOD_NS);
+            maxError = Math.max(maxError, Math.abs(a - b));
+        }
+        return maxError;
+    }
+
+    /**
+     * Straightforward statement of MultiAxisPID's documented behavior for one axis, without
+     * derivative filtering or wrapping: the integral is clamped to the limit and does not grow
+     * while the output is saturated in the direction of the error.
+     */
+    private static class ReferencePID {
+        private final double kP, kI, kD, maxOutput, maxIntegral;
+        private double integral, lastMeasurement, lastTime, output;
+        private boolean started = false;
+
+        ReferencePID(double kP, double kI, double kD, double maxOutput, double maxIntegral) {
+            this.kP = kP;
+            this.kI = kI;
+            this.kD = kD;
+            this.maxOutput = maxOutput;
+            this.maxIntegral = maxIntegral;
+        }
+
+        double update(double setpoint, double measurement, double time) {
+            double error = setpoint - measurement;
+            if (!started) {
+                started = true;
+                lastMeasurement = measurement;
+                lastTime = time;
+                output = clamp(kP * error, maxOutput);
+                return output;
+            }
+            double dt = time - lastTime;
+            double rate = -(measurement - lastMeasurement) / dt;
+            lastTime = time;
+            lastMeasurement = measurement;
+
+            boolean windingUp = (output >= maxOutput && error > 0) || (output <= -maxOutput && error < 0);
+            if (!windingUp) integral = clamp(integral + error * dt, maxIntegral / kI);
+            output = clamp(kP * error + kI * integral + kD * rate, maxOutput);
+            return output;
+        }
+
+        private static double clamp(double value, double max) {
+            return Math.max(-max, Math.min(max, value));
+        }
+    }
+
+    private double benchmarkOld() {
+        PIDController old = newOld(0);
+        double sink = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < ITERATIONS; n++) {
+            for (int i = 0; i < SAMPLES; i++) {
+                sink += old.performPID(input[i]);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == Double.MAX_VALUE) telemetry.addData("sink", sink);
+        return elapsed / (double) (ITERATIONS * SAMPLES);
+    }
+
+    private double benchmarkNew() {
+        MultiAxisPID pid = newPid(1, 0);
+        double sink = 0;
+        long time = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < ITERATIONS; n++) {
+            for (int i = 0; i < SAMPLES; i++) {
+                time += PERIOD_NS;
+                sink += pid.update(0, input[i], time);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == Double.MAX_VALUE) telemetry.addData("sink", sink);
+        return elapsed / (double) (ITERATIONS * SAMPLES);
+    }
+
+    private double benchmarkNewAxes() {
+        MultiAxisPID pid = newPid(AXES, 0);
+        double[] measurements = new double[AXES];
+        double[] out = new double[AXES];
+        double sink = 0;
+        long time = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < ITERATIONS; n++) {
+            for (int i = 0; i < SAMPLES; i++) {
+                time += PERIOD_NS;
+                for (int axis = 0; axis < AXES; axis++) measurements[axis] = input[i];
+                pid.update(measurements, time, out);
+                sink += out[0];
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == Double.MAX_VALUE) telemetry.addData("sink", sink);
+        return elapsed / (double) (ITERATIONS * SAMPLES * AXES);
+    }
+
+    private PIDController newOld(double ki) {
+        PIDController old = new PIDController(P, ki, D);
+        old.setSetpoint(SETPOINT);
+        old.setOutputRange(0, 1000);
+        old.enable();
+        return old;
+    }
+
+    private MultiAxisPID newPid(int axes, double ki) {
+        MultiAxisPID pid = new MultiAxisPID(axes);
+        for (int axis = 0; axis < axes; axis++) {
+            // PIDController gains are per call; convert to per second at the fixed period
+            pid.setGains(axis, P, ki / DT, D * DT);
+            pid.setOutputRange(axis, -1000, 1000);
+            pid.setSetpoint(axis, SETPOINT);
+        }
+        return pid;
+    }
+}
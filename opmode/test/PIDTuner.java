@@ -7,7 +7,6 @@ import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.Range;
 
 import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareMecanum;
-import org.firstinspires.ftc.teamcode.util.motion.PIDController;
 import org.firstinspires.ftc.teamcode.util.signals.BackgroundColorManager;
 
 import static java.lang.Math.abs;
@@ -80,29 +79,29 @@ public class PIDTuner extends OpMode {
 
         if (gamepad1.dpad_up) {
             coefPValue += .010;
-            robot.drivetrain.pidRotate = new PIDController(coefPValue, coefIValue, coefDValue);
+            robot.drivetrain.pidRotate.setPID(coefPValue, coefIValue, coefDValue);
         }
         if (gamepad1.dpad_down) {
             coefPValue -= .010;
-            robot.drivetrain.pidRotate = new PIDController(coefPValue, coefIValue, coefDValue);
+            robot.drivetrain.pidRotate.setPID(coefPValue, coefIValue, coefDValue);
         }
 
         if (gamepad1.dpad_right) {
             coefDValue += .010;
-            robot.drivetrain.pidRotate = new PIDController(coefPValue, coefIValue, coefDValue);
+            robot.drivetrain.pidRotate.setPID(coefPValue, coefIValue, coefDValue);
         }
         if (gamepad1.dpad_left) {
             coefDValue -= .010;
-            robot.drivetrain.pidRotate = new PIDController(coefPValue, coefIValue, coefDValue);
+            robot.drivetrain.pidRotate.setPID(coefPValue, coefIValue, coefDValue);
         }
 
         if (gamepad2.dpad_up) {
             coefIValue += .010;
-            robot.drivetrain.pidRotate = new PIDController(coefPValue, coefIValue, coefDValue);
+            robot.drivetrain.pidRotate.setPID(coefPValue, coefIValue, coefDValue);
         }
         if (gamepad2.dpad_down) {
             coefIValue -= .010;
-            robot.drivetrain.pidRotate = new PIDController(coefPValue, coefIValue, coefDValue);
+            robot.drivetrain.pidRotate.setPID(coefPValue, coefIValue, coefDValue);
         }
         /**
          * Telemetry
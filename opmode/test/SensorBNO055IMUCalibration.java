@@ -34,16 +34,15 @@ import com.qualcomm.hardware.bosch.BNO055IMU;
 import com.qualcomm.robotcore.eventloop.opmode.Disabled;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
-import com.qualcomm.robotcore.util.ReadWriteFile;
 
 import org.firstinspires.ftc.robotcore.external.Func;
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
 import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
 import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
-import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.IMUSession;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.ImuCalibration;
 
-import java.io.File;
 import java.util.Locale;
 
 /**
@@ -135,6 +134,8 @@ public class SensorBNO055IMUCalibration extends LinearOpMode
         parameters.loggingTag     = "IMU";
         imu = hardwareMap.get(BNO055IMU.class, "imu");
         imu.initialize(parameters);
+        // Initialized without the robot's parameters; the robot must initialize it again
+        IMUSession.invalidate();
 
         composeTelemetry();
         telemetry.log().add("Waiting for start...");
@@ -154,15 +155,10 @@ public class SensorBNO055IMUCalibration extends LinearOpMode
                 // Get the calibration data
                 BNO055IMU.CalibrationData calibrationData = imu.readCalibrationData();
 
-                // Save the calibration data to a file. You can choose whatever file
-                // name you wish here, but you'll want to indicate the same file name
-                // when you initialize the IMU in an opmode in which it is used. If you
-                // have more than one IMU on your robot, you'll of course want to use
-                // different configuration file names for each.
-                String filename = "BNO055IMUCalibration.json";
-                File file = AppUtil.getInstance().getSettingsFile(filename);
-                ReadWriteFile.writeFile(file, calibrationData.serialize());
-                telemetry.log().add("saved to '%s'", filename);
+                // Save the calibration data in the binary form the robot loads, and as
+                // JSON for the SDK's samples
+                ImuCalibration.save(calibrationData);
+                telemetry.log().add("saved to '%s'", ImuCalibration.FILE);
 
                 // Wait for the button to be released
                 while (gamepad1.a) {
@@ -0,0 +1,90 @@
+package org.firstinspires.ftc.teamcode.opmode.test;
+
+import com.qualcomm.robotcore.eventloop.opmode.Disabled;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareMecanum;
+import org.firstinspires.ftc.teamcode.util.command.Command;
+import org.firstinspires.ftc.teamcode.util.sim.SimulatedRobot;
+
+/**
+ * SimulatorBenchmark runs the robot's hardware classes on a {@link SimulatedRobot} and needs no
+ * hardware attached to the robot controller. It runs on the phone, and its numbers are the
+ * phone's.
+ *
+ * The autonomous is a stand-in built from the same commands as the competition autonomous, without
+ * sampling; the TeleOp loop drives in a circle instead of running TeleopMain. Neither OpMode can
+ * run against the simulation (see {@link SimulatedRobot}).
+ *
+ * The simulation runs in lock step with the command scheduler: each cycle advances it by one
+ * control period without sleeping, so encoder and IMU driven moves finish faster than real time.
+ * Moves that wait on a timer still take real time.
+ */
+@Disabled
+@TeleOp(name = "Simulator Benchmark", group = "Test")
+public class SimulatorBenchmark extends LinearOpMode {
+
+    /* CONSTANTS */
+    private static final double CYCLE_S = 0.01;
+    private static final int TELEOP_LOOPS = 5000;
+
+    @Override
+    public void runOpMode() {
+        final SimulatedRobot sim = new SimulatedRobot();
+        final HardwareMecanum robot = new HardwareMecanum(this);
+        robot.init(sim.getHardwareMap());
+        robot.imuInit(sim.getHardwareMap());
+
+        // Lock step: every scheduler cycle advances the simulation by one control period
+        robot.scheduler.setPeriod(0);
+        robot.scheduler.setCycleHook(new Runnable() {
+            @Override
+            public void run() {
+                sim.advance(CYCLE_S);
+                robot.updateSubsystems();
+            }
+        });
+
+        telemetry.addData("Status", "Ready, press start");
+        telemetry.update();
+        waitForStart();
+
+        // Autonomous: land, back away from the lander, turn and drive to the depot
+        Command auto = robot.lift.landCommand()
+                .andThen(robot.drivetrain.driveToPosCommand(.4, -8, 3),
+                        robot.drivetrain.turnCommand(90, .4),
+                        robot.drivetrain.driveToPosCommand(.4, 36, 5))
+                .alongWith(robot.hopper.drawerSlideDownCommand(1000));
+        double simStart = sim.getTime();
+        long start = System.nanoTime();
+        robot.scheduler.runUntilFinished(this, auto);
+        double autoWall = (System.nanoTime() - start) / 1e9;
+        double autoSim = sim.getTime() - simStart;
+
+        // TeleOp: control loop throughput with the simulation stepped every loop
+        int loops = 0;
+        start = System.nanoTime();
+        for (; loops < TELEOP_LOOPS && opModeIsActive(); loops++) {
+            sim.advance(CYCLE_S);
+            robot.updateSubsystems();
+            robot.drivetrain.driveTrig(Math.sin(loops * .01), Math.cos(loops * .01), 0);
+            robot.drivetrain.getExternalHeading();
+            robot.drivetrain.getWheelPositions();
+        }
+        robot.drivetrain.setMotorPowers(0, 0, 0, 0);
+        double loopsPerSecond = loops / ((System.nanoTime() - start) / 1e9);
+
+        while (opModeIsActive()) {
+            telemetry.addData("Auto simulated time", "%.2f s", autoSim);
+            telemetry.addData("Auto real time", "%.2f s", autoWall);
+            telemetry.addData("Auto speedup", "%.1fx", autoSim / autoWall);
+            telemetry.addData("Pose", "x %.1f in, y %.1f in, heading %.1f deg",
+                    sim.drive.getX(), sim.drive.getY(), Math.toDegrees(sim.drive.getHeading()));
+            telemetry.addData("Lift", "%.0f ticks", sim.lift.getPosition());
+            telemetry.addData("TeleOp loops", "%.0f loops/s", loopsPerSecond);
+            telemetry.update();
+            idle();
+        }
+    }
+}
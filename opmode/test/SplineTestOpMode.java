@@ -47,6 +47,7 @@ public class SplineTestOpMode extends LinearOpMode {
 
         waitForStart();
         if (isStopRequested()) return;
+        robot.drivetrain.startOdometry();
         while (!isStopRequested()) {
             robot.drivetrain.followTrajectory(trajectory);
 
@@ -70,8 +71,10 @@ public class SplineTestOpMode extends LinearOpMode {
 
                 dashboard.sendTelemetryPacket(packet);
 
+                robot.updateSubsystems();
                 robot.drivetrain.update();
             }
         }
+        robot.drivetrain.stopOdometry();
     }
 }
@@ -0,0 +1,65 @@
+package org.firstinspires.ftc.teamcode.opmode.test;
+
+import com.qualcomm.robotcore.eventloop.opmode.Disabled;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareMecanum;
+import org.firstinspires.ftc.teamcode.util.StartupGraph;
+import org.firstinspires.ftc.teamcode.util.benchmark.LatencyHistogram;
+import org.firstinspires.ftc.teamcode.util.benchmark.LatencyTracer;
+import org.firstinspires.ftc.teamcode.util.sim.SimulatedRobot;
+
+/**
+ * StartupSimulation times <code>HardwareMecanum.init()</code> on a {@link SimulatedRobot}, one
+ * step after the other and in parallel, and needs no hardware attached to the robot controller.
+ *
+ * Motor writes take TRANSACTION_S, like hub transactions. The simulated IMU has no
+ * initialization delay, so the IMU step here is much shorter than the BNO055's on the robot.
+ * The timeline of the last parallel start is shown, as it is logged on the robot.
+ */
+@Disabled
+@TeleOp(name = "Startup Simulation", group = "Test")
+public class StartupSimulation extends LinearOpMode {
+
+    /* CONSTANTS */
+    private static final double TRANSACTION_S = 0.0015;
+    private static final int RUNS = 10;
+
+    @Override
+    public void runOpMode() {
+        SimulatedRobot sim = new SimulatedRobot();
+        sim.setTransactionTime(TRANSACTION_S);
+
+        telemetry.addData("Status", "Ready, press start");
+        telemetry.update();
+        waitForStart();
+
+        telemetry.addData("Status", "Running...");
+        telemetry.update();
+
+        LatencyHistogram sequential = new LatencyHistogram();
+        LatencyHistogram parallel = new LatencyHistogram();
+        StartupGraph timeline = null;
+        for (int run = 0; run < RUNS && opModeIsActive(); run++) {
+            HardwareMecanum robot = new HardwareMecanum(this);
+            robot.setInitThreads(1);
+            robot.init(sim.getHardwareMap(), true);
+            sequential.record(robot.getStartup().getTotalTime());
+
+            robot = new HardwareMecanum(this);
+            robot.init(sim.getHardwareMap(), true);
+            parallel.record(robot.getStartup().getTotalTime());
+            timeline = robot.getStartup();
+        }
+
+        while (opModeIsActive()) {
+            telemetry.addData("One at a time", LatencyTracer.format(sequential));
+            telemetry.addData("In parallel", LatencyTracer.format(parallel));
+            telemetry.addData("Speedup", "%.1fx", sequential.getMean() / parallel.getMean());
+            if (timeline != null) timeline.report(telemetry);
+            telemetry.update();
+            idle();
+        }
+    }
+}
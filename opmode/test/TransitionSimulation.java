@@ -0,0 +1,79 @@
+package org.firstinspires.ftc.teamcode.opmode.test;
+
+import com.qualcomm.robotcore.eventloop.opmode.Disabled;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareMecanum;
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareSession;
+import org.firstinspires.ftc.teamcode.util.benchmark.LatencyHistogram;
+import org.firstinspires.ftc.teamcode.util.benchmark.LatencyTracer;
+import org.firstinspires.ftc.teamcode.util.sim.SimulatedRobot;
+
+/**
+ * TransitionSimulation times the hardware part of the autonomous to TeleOp transition on a
+ * {@link SimulatedRobot} and needs no hardware attached to the robot controller.
+ *
+ * A cold start initializes a new robot and its IMU, as a TeleOp does when nothing was carried
+ * over. A warm start keeps the robot at the end of a simulated autonomous, the way
+ * AutoTransitioner does when autonomous stops, and takes it back through {@link HardwareSession}.
+ * Motor writes take TRANSACTION_S; the simulated IMU has no initialization delay, so the cold
+ * start here leaves out the BNO055 initialization, which takes over a second on the robot.
+ *
+ * This is an OpMode that runs on the robot controller phone, not an off-robot harness, so its
+ * times are the phone's.
+ */
+@Disabled
+@TeleOp(name = "Transition Simulation", group = "Test")
+public class TransitionSimulation extends LinearOpMode {
+
+    /* CONSTANTS */
+    private static final double TRANSACTION_S = 0.0015;
+    private static final double CYCLE_S = 0.01;
+    private static final int RUNS = 10;
+    private static final int AUTO_CYCLES = 50;
+
+    @Override
+    public void runOpMode() {
+        SimulatedRobot sim = new SimulatedRobot();
+        sim.setTransactionTime(TRANSACTION_S);
+
+        telemetry.addData("Status", "Ready, press start");
+        telemetry.update();
+        waitForStart();
+
+        telemetry.addData("Status", "Running...");
+        telemetry.update();
+
+        LatencyHistogram cold = new LatencyHistogram();
+        LatencyHistogram warm = new LatencyHistogram();
+        for (int run = 0; run < RUNS && opModeIsActive(); run++) {
+            long start = System.nanoTime();
+            HardwareMecanum robot = HardwareSession.open(sim.getHardwareMap(), null);
+            cold.record(System.nanoTime() - start);
+
+            // Autonomous: drive for a while with the robot, then stop and hand it over
+            for (int i = 0; i < AUTO_CYCLES; i++) {
+                sim.advance(CYCLE_S);
+                robot.updateSubsystems();
+                robot.holdOutputs();
+                robot.drivetrain.setMotorPowers(.5, .5, .5, .5);
+                robot.flushOutputs();
+            }
+            robot.drivetrain.setMotorPowers(0, 0, 0, 0);
+            HardwareSession.keep(robot, sim.getHardwareMap());
+
+            start = System.nanoTime();
+            HardwareSession.open(sim.getHardwareMap(), null);
+            warm.record(System.nanoTime() - start);
+        }
+
+        while (opModeIsActive()) {
+            telemetry.addData("Cold start", LatencyTracer.format(cold));
+            telemetry.addData("Carried over", LatencyTracer.format(warm));
+            telemetry.addData("Speedup", "%.1fx", cold.getMean() / warm.getMean());
+            telemetry.update();
+            idle();
+        }
+    }
+}
@@ -1,63 +1,100 @@
-package org.firstinspires.ftc.teamcode.util;
-
-import android.util.Log;
-
-import com.qualcomm.robotcore.eventloop.opmode.OpMode;
-
-import org.firstinspires.ftc.robotcontroller.internal.FtcRobotControllerActivity;
-import org.firstinspires.ftc.robotcore.internal.opmode.OpModeManagerImpl;
-
-public class AutoTransitioner extends Thread {
-    private static final AutoTransitioner INSTANCE = new AutoTransitioner(); //Create singleton instance
-
-    private OpMode onStop;
-    private String transitionTo;
-    private OpModeManagerImpl opModeManager;
-
-    private AutoTransitioner() {
-        this.start(); //Start the watcher thread
-    }
-
-    @Override
-    public void run() {
-        try {
-            while (true) { //Loop
-                synchronized (this) { //Synchronized to prevent weird conditions
-                    //If there is a transition set up and the active op mode is no longer the one
-                    //the transition was set up with, proceed with the transition
-                    if (onStop != null && opModeManager.getActiveOpMode() != onStop) {
-                        Thread.sleep(1000); //Wait 1 second to prevent weird conditions
-                        opModeManager.initActiveOpMode(transitionTo); //Request initialization of the teleop
-                        reset(); //Reset the AutoTransitioner
-                    }
-                }
-                Thread.sleep(50); //Sleep 50 seconds to minimize performance impact to the rest of your program
-            }
-        } catch (InterruptedException ex) {
-            Log.e(FtcRobotControllerActivity.TAG, "AutoTransitioner shutdown, thread interrupted");
-        }
-    }
-
-    private void setNewTransition(OpMode onStop, String transitionTo) {
-        synchronized (this) { //Synchronized to prevent wierd conditions
-            this.onStop = onStop;
-            this.transitionTo = transitionTo;
-            this.opModeManager = (OpModeManagerImpl) onStop.internalOpModeServices; //Store OpModeManagerImpl
-        }
-    }
-
-    private void reset() {
-        this.onStop = null;
-        this.transitionTo = null;
-        this.opModeManager = null;
-    }
-
-    /**
-     * Setup the next transition
-     * @param onStop The program you'll be transitioning from (usually 'this')
-     * @param transitionTo The name of the program you want to transition to
-     */
-    public static void transitionOnStop(OpMode onStop, String transitionTo) {
-        INSTANCE.setNewTransition(onStop, transitionTo);
-    }
-}
+package org.firstinspires.ftc.teamcode.util;
+
+import android.util.Log;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.eventloop.opmode.OpModeManagerNotifier;
+
+import org.firstinspires.ftc.robotcore.internal.opmode.OpModeManagerImpl;
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareMecanum;
+import org.firstinspires.ftc.teamcode.hardware.mecanum.HardwareSession;
+
+/**
+ * AutoTransitioner initializes the next OpMode (usually TeleOp) as soon as autonomous stops.
+ *
+ * It listens to the OpMode manager's lifecycle notifications rather than polling the active
+ * OpMode: the transition is requested when the manager reports that the autonomous OpMode has
+ * stopped. If the autonomous hands over its robot, the robot is kept in {@link HardwareSession}
+ * so that the TeleOp does not initialize the hardware again.
+ */
+public class AutoTransitioner implements OpModeManagerNotifier.Notifications {
+
+    /* CONSTANTS */
+    private static final String TAG = "AutoTransitioner";
+    private static final AutoTransitioner INSTANCE = new AutoTransitioner(); //Create singleton instance
+
+    private OpMode onStop;
+    private String transitionTo;
+    private HardwareMecanum robot;
+    private OpModeManagerImpl opModeManager;
+
+    private AutoTransitioner() { }
+
+    @Override
+    public void onOpModePreInit(OpMode opMode) { }
+
+    @Override
+    public void onOpModePreStart(OpMode opMode) { }
+
+    @Override
+    public void onOpModePostStop(OpMode opMode) {
+        final OpModeManagerImpl manager;
+        final String name;
+        synchronized (this) {
+            if (onStop == null || opMode != onStop) return;
+            if (robot != null) HardwareSession.keep(robot, opMode.hardwareMap);
+            manager = opModeManager;
+            name = transitionTo;
+            reset();
+        }
+
+        // Not from inside the notification: the manager is still stopping the OpMode and going
+        // through its listeners
+        final long stopped = System.nanoTime();
+        Thread transition = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                manager.unregisterListener(INSTANCE);
+                manager.initActiveOpMode(name); //Request initialization of the teleop
+                Log.i(TAG, String.format("%s requested %.1f ms after stop", name, (System.nanoTime() - stopped) / 1e6));
+            }
+        }, "AutoTransitioner");
+        transition.start();
+    }
+
+    private synchronized void setNewTransition(OpMode onStop, String transitionTo, HardwareMecanum robot) {
+        OpModeManagerImpl manager = (OpModeManagerImpl) onStop.internalOpModeServices; //Store OpModeManagerImpl
+        if (opModeManager != null && opModeManager != manager) opModeManager.unregisterListener(this);
+        this.onStop = onStop;
+        this.transitionTo = transitionTo;
+        this.robot = robot;
+        this.opModeManager = manager;
+        manager.registerListener(this);
+    }
+
+    private void reset() {
+        this.onStop = null;
+        this.transitionTo = null;
+        this.robot = null;
+        this.opModeManager = null;
+    }
+
+    /**
+     * Setup the next transition
+     * @param onStop The program you'll be transitioning from (usually 'this')
+     * @param transitionTo The name of the program you want to transition to
+     */
+    public static void transitionOnStop(OpMode onStop, String transitionTo) {
+        INSTANCE.setNewTransition(onStop, transitionTo, null);
+    }
+
+    /**
+     * Setup the next transition and hand the robot over to the next program
+     * @param onStop The program you'll be transitioning from (usually 'this')
+     * @param transitionTo The name of the program you want to transition to
+     * @param robot The initialized robot, taken by the next program from {@link HardwareSession}
+     */
+    public static void transitionOnStop(OpMode onStop, String transitionTo, HardwareMecanum robot) {
+        INSTANCE.setNewTransition(onStop, transitionTo, robot);
+    }
+}
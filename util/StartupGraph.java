@@ -0,0 +1,253 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import android.util.Log;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * StartupGraph runs the steps of robot initialization as a dependency graph on a small thread
+ * pool. A step starts as soon as every step it depends on has finished, so steps that talk to
+ * different hubs, or that mostly wait (such as initializing the IMU), overlap.
+ *
+ * A step that throws is reported instead of swallowed: every step that depends on it is skipped,
+ * and the steps that do not carry on. After <code>run()</code>, the graph holds a timeline of
+ * when each step started and finished, relative to the start of the run.
+ */
+public class StartupGraph {
+
+    /**
+     * One step of initialization.
+     */
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    /* CONSTANTS */
+    private static final String TAG = "StartupGraph";
+    private static final int BAR_WIDTH = 30;
+
+    private static final int PENDING = 0, RUNNING = 1, DONE = 2, FAILED = 3, SKIPPED = 4;
+    private static final String[] STATES = { "pending", "running", "done", "FAILED", "skipped" };
+
+    private static class Node {
+        final String name;
+        final Step step;
+        final int[] dependencies;
+        int state = PENDING;
+        long start, end;
+        Throwable failure;
+
+        Node(String name, Step step, int[] dependencies) {
+            this.name = name;
+            this.step = step;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final List<Node> nodes = new ArrayList<>();
+    private ExecutorService executor;
+    private int remaining;
+    private int threads;
+    private long t0, total;
+
+    /**
+     * Default constructor for StartupGraph.
+     */
+    public StartupGraph() { }
+
+    /**
+     * Adds a step. Steps can only depend on steps added before them, so the graph has no cycles.
+     * @param name          name shown in the timeline
+     * @param step          work to do
+     * @param dependencies  ids of the steps that must finish first
+     * @return id of the step
+     */
+    public int add(String name, Step step, int... dependencies) {
+        int id = nodes.size();
+        for (int dependency : dependencies) {
+            if (dependency < 0 || dependency >= id) throw new IllegalArgumentException("unknown dependency of " + name);
+        }
+        nodes.add(new Node(name, step, dependencies));
+        return id;
+    }
+
+    /**
+     * Runs every step and waits until all of them have finished or been skipped.
+     * @param threads   number of steps that may run at the same time
+     * @return true if every step succeeded
+     */
+    public boolean run(int threads) {
+        this.threads = threads;
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG + "-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        synchronized (this) {
+            try {
+                t0 = System.nanoTime();
+                remaining = nodes.size();
+                submitReady();
+                while (remaining > 0) wait();
+            } catch (InterruptedException e) {
+                // Stop requested during init; steps already running finish on their own
+                Thread.currentThread().interrupt();
+            } finally {
+                executor.shutdown();
+                total = System.nanoTime() - t0;
+            }
+            return remaining == 0 && getFailureCount() == 0;
+        }
+    }
+
+    /**
+     * Starts every pending step whose dependencies have finished, and skips those with a
+     * dependency that failed or was skipped. Must be called while holding the lock.
+     */
+    private void submitReady() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (final Node node : nodes) {
+                if (node.state != PENDING) continue;
+                boolean ready = true, blocked = false;
+                for (int dependency : node.dependencies) {
+                    int state = nodes.get(dependency).state;
+                    if (state == FAILED || state == SKIPPED) blocked = true;
+                    else if (state != DONE) ready = false;
+                }
+                if (blocked) {
+                    node.state = SKIPPED;
+                    node.start = node.end = System.nanoTime() - t0;
+                    remaining--;
+                    changed = true;
+                } else if (ready) {
+                    node.state = RUNNING;
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() { runNode(node); }
+                    });
+                }
+            }
+        }
+        if (remaining == 0) notifyAll();
+    }
+
+    private void runNode(Node node) {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            node.step.run();
+        } catch (Throwable t) {
+            failure = t;
+        }
+        long end = System.nanoTime();
+        synchronized (this) {
+            node.start = start - t0;
+            node.end = end - t0;
+            node.failure = failure;
+            node.state = failure == null ? DONE : FAILED;
+            remaining--;
+            submitReady();
+        }
+    }
+
+    /**
+     * Returns the time from the start of <code>run()</code> until every step had finished, in
+     * nanoseconds.
+     */
+    public synchronized long getTotalTime() { return total; }
+
+    /**
+     * Returns the number of steps that threw.
+     */
+    public synchronized int getFailureCount() {
+        int failures = 0;
+        for (Node node : nodes) {
+            if (node.state == FAILED) failures++;
+        }
+        return failures;
+    }
+
+    /**
+     * Returns the time a step took, in nanoseconds.
+     * @param id        id returned by <code>add()</code>
+     */
+    public synchronized long getDuration(int id) {
+        Node node = nodes.get(id);
+        return node.end - node.start;
+    }
+
+    /**
+     * Returns the exception a step threw, or null if it did not fail.
+     * @param id        id returned by <code>add()</code>
+     */
+    public synchronized Throwable getFailure(int id) { return nodes.get(id).failure; }
+
+    /**
+     * Returns the timeline as one line per step: when it ran, relative to the start of
+     * <code>run()</code>, and a bar showing where that falls within the whole run.
+     */
+    public synchronized String getTimeline() {
+        StringBuilder timeline = new StringBuilder();
+        timeline.append(String.format(Locale.US, "startup %.1f ms on %d threads, %d failed",
+                total / 1e6, threads, getFailureCount()));
+        for (Node node : nodes) {
+            timeline.append('\n').append(line(node));
+        }
+        return timeline.toString();
+    }
+
+    private String line(Node node) {
+        String times = String.format(Locale.US, "%-16s %7.1f - %7.1f ms ", node.name, node.start / 1e6, node.end / 1e6);
+        if (node.state != DONE) return times + STATES[node.state] + (node.failure != null ? ": " + node.failure : "");
+
+        char[] bar = new char[BAR_WIDTH];
+        double scale = total > 0 ? (double) BAR_WIDTH / total : 0;
+        int from = Math.min(BAR_WIDTH - 1, (int) (node.start * scale));
+        int to = Math.max(from + 1, Math.min(BAR_WIDTH, (int) Math.ceil(node.end * scale)));
+        for (int i = 0; i < BAR_WIDTH; i++) {
+            bar[i] = i >= from && i < to ? '#' : '.';
+        }
+        return times + '|' + new String(bar) + '|';
+    }
+
+    /**
+     * Adds a line per step with when it ran, or why it did not.
+     * @param telemetry     telemetry to add the report to
+     */
+    public synchronized void report(Telemetry telemetry) {
+        telemetry.addData("Startup", "%.0f ms | %d failed", total / 1e6, getFailureCount());
+        for (Node node : nodes) {
+            if (node.state == DONE) {
+                telemetry.addData(node.name, "%.0f - %.0f ms", node.start / 1e6, node.end / 1e6);
+            } else {
+                telemetry.addData(node.name, STATES[node.state] + (node.failure != null ? ": " + node.failure : ""));
+            }
+        }
+    }
+
+    /**
+     * Writes the timeline to the log, with the stack trace of every step that failed.
+     */
+    public synchronized void log() {
+        for (String line : getTimeline().split("\n")) {
+            Log.i(TAG, line);
+        }
+        for (Node node : nodes) {
+            if (node.failure != null) Log.e(TAG, node.name + " failed", node.failure);
+        }
+    }
+}
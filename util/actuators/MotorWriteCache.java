@@ -0,0 +1,169 @@
+package org.firstinspires.ftc.teamcode.util.actuators;
+
+import com.qualcomm.robotcore.hardware.CRServo;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+
+/**
+ * MotorWriteCache is the output side of {@link org.firstinspires.ftc.teamcode.util.sensors.BulkReadCache}.
+ * It remembers the last power sent to each motor and skips a write when the new power is within
+ * an epsilon of it, so a loop that sets the same power every cycle costs no USB transactions.
+ *
+ * Between <code>hold()</code> and <code>flush()</code> powers are only recorded. The flush then
+ * sends every changed power, grouped by hub, back to back at the end of the cycle. Outside of a
+ * hold, changed powers are written straight through so blocking actions keep working.
+ *
+ * Motors are registered once during init, possibly by several mechanisms at once, and addressed
+ * by slot afterwards. A write made directly to a registered motor must be followed by
+ * <code>invalidate()</code> so that the next power is sent. A mode change goes to the hub right
+ * away, even during a hold, so the motor should be stopped with <code>stop()</code> before it
+ * and invalidated after it.
+ */
+public class MotorWriteCache {
+
+    /* CONSTANTS */
+    /**
+     * Default smallest change in power that is sent.
+     */
+    public static final double DEFAULT_EPSILON = 0.005;
+    private static final int MAX_MOTORS = 16;
+
+    /* Motor table */
+    private final DcMotorSimple[] motors = new DcMotorSimple[MAX_MOTORS];
+    private final int[] hubOf = new int[MAX_MOTORS];
+    private final double[] pending = new double[MAX_MOTORS];
+    private final double[] sent = new double[MAX_MOTORS];
+    private final boolean[] known = new boolean[MAX_MOTORS];
+    private final long[] writeTimes = new long[MAX_MOTORS];
+    private int motorCount = 0;
+
+    /* Hubs, identified by their controller */
+    private final Object[] hubs = new Object[MAX_MOTORS];
+    private int hubCount = 0;
+
+    private double epsilon = DEFAULT_EPSILON;
+    private boolean holding = false;
+    private long writes = 0, skipped = 0;
+
+    /**
+     * Default constructor for MotorWriteCache.
+     */
+    public MotorWriteCache() { }
+
+    /**
+     * Sets the smallest change in power that is sent. A change to zero is always sent.
+     * @param epsilon   power change with range of (0 - 1)
+     */
+    public void setEpsilon(double epsilon) { this.epsilon = epsilon; }
+
+    /**
+     * Registers a motor or continuous rotation servo. Registering the same motor twice returns the
+     * same slot.
+     * @param motor     motor to register
+     * @return slot to use for writes
+     */
+    public synchronized int register(DcMotorSimple motor) {
+        for (int slot = 0; slot < motorCount; slot++) {
+            if (motors[slot] == motor) return slot;
+        }
+        if (motorCount == MAX_MOTORS) throw new IllegalStateException("too many motors");
+
+        Object controller = motor;
+        if (motor instanceof DcMotor) controller = ((DcMotor) motor).getController();
+        else if (motor instanceof CRServo) controller = ((CRServo) motor).getController();
+        int hub = 0;
+        while (hub < hubCount && hubs[hub] != controller) hub++;
+        if (hub == hubCount) hubs[hubCount++] = controller;
+
+        int slot = motorCount++;
+        motors[slot] = motor;
+        hubOf[slot] = hub;
+        known[slot] = false;
+        return slot;
+    }
+
+    /**
+     * Sets the power of a registered motor. Sent now, or at the next flush while held.
+     * @param slot      slot returned by <code>register()</code>
+     * @param power     power with range of (-1 to 1)
+     */
+    public void setPower(int slot, double power) {
+        pending[slot] = power;
+        if (!holding) write(slot);
+    }
+
+    /**
+     * Returns the last power set for a registered motor, whether or not it has been sent.
+     */
+    public double getPower(int slot) { return pending[slot]; }
+
+    /**
+     * Starts recording powers without sending them. Should be called at the start of a cycle.
+     */
+    public void hold() { holding = true; }
+
+    /**
+     * Sends every changed power, one hub at a time, and stops holding.
+     */
+    public void flush() {
+        for (int hub = 0; hub < hubCount; hub++) {
+            for (int slot = 0; slot < motorCount; slot++) {
+                if (hubOf[slot] == hub) write(slot);
+            }
+        }
+        holding = false;
+    }
+
+    /**
+     * Sends zero power to a motor right away, even while held. Should be called before changing
+     * the motor's run mode, so that the mode does not change under a power that is still to be
+     * replaced at the next flush.
+     */
+    public void stop(int slot) {
+        pending[slot] = 0;
+        known[slot] = false;
+        write(slot);
+    }
+
+    /**
+     * Forces the next power of a motor to be sent.
+     */
+    public void invalidate(int slot) { known[slot] = false; }
+
+    /**
+     * Forces the next power of every motor to be sent.
+     */
+    public void invalidateAll() {
+        for (int slot = 0; slot < motorCount; slot++) known[slot] = false;
+    }
+
+    /**
+     * Returns System.nanoTime() at which the last power sent to a motor was acknowledged, or 0 if
+     * none has been sent.
+     */
+    public long getWriteTime(int slot) { return writeTimes[slot]; }
+
+    /**
+     * Returns the number of powers sent.
+     */
+    public long getWrites() { return writes; }
+
+    /**
+     * Returns the number of powers skipped because they had not changed.
+     */
+    public long getSkipped() { return skipped; }
+
+    private void write(int slot) {
+        double power = pending[slot];
+        if (known[slot] && Math.abs(power - sent[slot]) <= epsilon && (power != 0 || sent[slot] == 0)) {
+            skipped++;
+            return;
+        }
+        motors[slot].setPower(power);
+        // setPower() returns once the hub has acknowledged the command
+        writeTimes[slot] = System.nanoTime();
+        sent[slot] = power;
+        known[slot] = true;
+        writes++;
+    }
+}
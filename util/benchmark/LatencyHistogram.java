@@ -0,0 +1,96 @@
+package org.firstinspires.ftc.teamcode.util.benchmark;
+
+/**
+ * LatencyHistogram counts durations in fixed log-linear buckets. Each power of two is split into
+ * 16 linear buckets, so a percentile is accurate to about 6% from nanoseconds up to a minute.
+ * Recording only increments a counter in a preallocated array and never allocates.
+ *
+ * Not thread safe; record and read from the same thread.
+ */
+public class LatencyHistogram {
+
+    /* CONSTANTS */
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Durations of 2^36 ns (about 69 s) and above share the last bucket
+    private static final int MAX_BITS = 36;
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_BITS - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long max = 0;
+    private long total = 0;
+
+    /**
+     * Default constructor for LatencyHistogram.
+     */
+    public LatencyHistogram() { }
+
+    /**
+     * Records one duration.
+     * @param nanos     duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[bucket(nanos)]++;
+        count++;
+        total += nanos;
+        if (nanos > max) max = nanos;
+    }
+
+    /**
+     * Returns the duration below which a fraction of the recorded durations fall, in nanoseconds.
+     * The upper edge of the bucket is returned, so the result errs on the slow side.
+     * @param quantile  fraction of durations (0 - 1), e.g. 0.99 for p99
+     */
+    public long getPercentile(double quantile) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the longest recorded duration in nanoseconds.
+     */
+    public long getMax() { return max; }
+
+    /**
+     * Returns the mean of the recorded durations in nanoseconds.
+     */
+    public double getMean() { return count == 0 ? 0 : total / (double) count; }
+
+    /**
+     * Returns the number of recorded durations.
+     */
+    public long getCount() { return count; }
+
+    /**
+     * Clears all recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts[i] = 0;
+        count = 0;
+        max = 0;
+        total = 0;
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int msb = 63 - Long.numberOfLeadingZeros(nanos);
+        if (msb > MAX_BITS) return BUCKETS - 1;
+        int shift = msb - SUB_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,165 @@
+package org.firstinspires.ftc.teamcode.util.benchmark;
+
+import android.util.Log;
+
+import org.firstinspires.ftc.teamcode.util.actuators.MotorWriteCache;
+import org.firstinspires.ftc.teamcode.util.signals.TelemetryManager;
+
+import java.util.Locale;
+
+/**
+ * LatencyTracer measures how long a gamepad packet takes to turn into motor power. Each new
+ * <code>Gamepad.timestamp</code> seen by the loop starts a trace; the trace ends when the powers
+ * derived from it have been acknowledged by the hub, as recorded by {@link MotorWriteCache}. The
+ * latency is split into pickup (packet until the loop read it) and actuation (read until the last
+ * traced motor's write completed), each counted in a {@link LatencyHistogram}.
+ *
+ * The packet timestamp comes from the driver station's clock, not the robot controller's. The
+ * offset between the two is taken as the smallest difference seen, so pickup is measured from the
+ * fastest delivery of a packet and leaves out the constant part of the Wi-Fi link. Packets whose
+ * input did not change any traced power are counted but not timed.
+ *
+ * Call <code>input()</code> right after reading the gamepad and <code>output()</code> right after
+ * the motor write cache is flushed, both from the loop thread. Nothing is allocated while tracing.
+ */
+public class LatencyTracer {
+
+    /* CONSTANTS */
+    private static final String TAG = "LatencyTracer";
+
+    private final MotorWriteCache outputs;
+    private final int[] slots;
+
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram pickup = new LatencyHistogram();
+    private final LatencyHistogram actuation = new LatencyHistogram();
+    private long unchanged = 0;
+
+    /* Current trace */
+    private long lastTimestamp = 0;
+    private long offset = Long.MAX_VALUE;
+    private boolean pending = false;
+    private long packetTime, sampleTime;
+
+    /**
+     * Constructor for LatencyTracer.
+     * @param outputs   motor write cache the traced motors are registered with
+     * @param slots     slots of the motors driven by the traced input
+     */
+    public LatencyTracer(MotorWriteCache outputs, int... slots) {
+        this.outputs = outputs;
+        this.slots = slots.clone();
+    }
+
+    /**
+     * Starts a trace if the gamepad holds a new packet.
+     * @param timestamp     <code>Gamepad.timestamp</code> of the gamepad just read, in milliseconds
+     */
+    public void input(long timestamp) {
+        if (timestamp == lastTimestamp || timestamp == 0) return;
+        long now = System.nanoTime();
+        lastTimestamp = timestamp;
+        packetTime = timestamp * 1000000;
+        offset = Math.min(offset, now - packetTime);
+        sampleTime = now;
+        pending = true;
+    }
+
+    /**
+     * Ends the current trace once the powers have been flushed.
+     */
+    public void output() {
+        if (!pending) return;
+        pending = false;
+
+        // Actuated when the last traced motor written since the input was acknowledged
+        long done = 0;
+        for (int slot : slots) {
+            long time = outputs.getWriteTime(slot);
+            if (time - sampleTime > 0 && (done == 0 || time - done > 0)) done = time;
+        }
+        if (done == 0) {
+            unchanged++;
+            return;
+        }
+
+        long pickupTime = sampleTime - packetTime - offset;
+        pickup.record(pickupTime);
+        actuation.record(done - sampleTime);
+        total.record(pickupTime + done - sampleTime);
+    }
+
+    /**
+     * Returns the histogram of packet to actuation times.
+     */
+    public LatencyHistogram getTotal() { return total; }
+
+    /**
+     * Returns the histogram of packet to loop read times.
+     */
+    public LatencyHistogram getPickup() { return pickup; }
+
+    /**
+     * Returns the histogram of loop read to actuation times.
+     */
+    public LatencyHistogram getActuation() { return actuation; }
+
+    /**
+     * Returns the number of packets that changed no traced power.
+     */
+    public long getUnchangedCount() { return unchanged; }
+
+    /**
+     * Clears all histograms, e.g. after the clock offset has settled.
+     */
+    public void reset() {
+        total.reset();
+        pickup.reset();
+        actuation.reset();
+        unchanged = 0;
+        pending = false;
+    }
+
+    /**
+     * Adds the report to a telemetry manager as one item per histogram.
+     * @param telemetry     telemetry manager to add the report to
+     */
+    public void addTo(TelemetryManager telemetry) {
+        addItem(telemetry, "Input latency", total);
+        addItem(telemetry, "Input pickup", pickup);
+        addItem(telemetry, "Input actuation", actuation);
+    }
+
+    private static void addItem(TelemetryManager telemetry, String name, final LatencyHistogram histogram) {
+        telemetry.addItem(name, "p50 %.2f | p99 %.2f | max %.2f ms",
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return histogram.getPercentile(0.5) / 1e6; }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return histogram.getPercentile(0.99) / 1e6; }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return histogram.getMax() / 1e6; }
+                });
+    }
+
+    /**
+     * Writes the report to the log, e.g. at the end of a match.
+     */
+    public void log() {
+        Log.i(TAG, "input latency (" + total.getCount() + " packets, " + unchanged + " unchanged): " + format(total));
+        Log.i(TAG, "pickup: " + format(pickup));
+        Log.i(TAG, "actuation: " + format(actuation));
+    }
+
+    /**
+     * Returns p50, p99 and max of a histogram in milliseconds.
+     */
+    public static String format(LatencyHistogram histogram) {
+        return String.format(Locale.US, "p50 %.2f | p99 %.2f | max %.2f ms",
+                histogram.getPercentile(0.5) / 1e6, histogram.getPercentile(0.99) / 1e6, histogram.getMax() / 1e6);
+    }
+}
@@ -0,0 +1,161 @@
+package org.firstinspires.ftc.teamcode.util.benchmark;
+
+import android.util.Log;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.teamcode.util.signals.TelemetryManager;
+
+import java.util.Locale;
+
+/**
+ * LoopProfiler breaks the time of a control loop down into named phases. Phases are added once
+ * during init and return an id. In the loop, <code>startLoop()</code> is called first and
+ * <code>mark(phase)</code> after each block of work, which charges the time since the previous
+ * mark to that phase. A phase may be marked more than once per loop; its time is summed.
+ *
+ * When the next loop starts, each phase's total and the full loop period are added to
+ * {@link LatencyHistogram}s. The loop period also includes any time spent outside of the loop
+ * body, such as the SDK sending telemetry between calls to <code>loop()</code>.
+ * Nothing is allocated until a report is requested.
+ */
+public class LoopProfiler {
+
+    /* CONSTANTS */
+    private static final String TAG = "LoopProfiler";
+    private static final int MAX_PHASES = 16;
+
+    private final String[] names = new String[MAX_PHASES];
+    private final LatencyHistogram[] histograms = new LatencyHistogram[MAX_PHASES];
+    private final long[] accumulated = new long[MAX_PHASES];
+    private final LatencyHistogram loop = new LatencyHistogram();
+    private int phaseCount = 0;
+
+    private long loopStart = 0;
+    private long lastMark = 0;
+
+    /**
+     * Default constructor for LoopProfiler.
+     */
+    public LoopProfiler() { }
+
+    /**
+     * Adds a phase. Should be called during init.
+     * @param name      name shown in reports
+     * @return id to pass to <code>mark()</code>
+     */
+    public int addPhase(String name) {
+        if (phaseCount == MAX_PHASES) throw new IllegalStateException("too many phases");
+        names[phaseCount] = name;
+        histograms[phaseCount] = new LatencyHistogram();
+        return phaseCount++;
+    }
+
+    /**
+     * Marks the start of a loop and records the loop that just finished.
+     */
+    public void startLoop() {
+        long now = System.nanoTime();
+        if (loopStart != 0) {
+            loop.record(now - loopStart);
+            for (int i = 0; i < phaseCount; i++) {
+                histograms[i].record(accumulated[i]);
+                accumulated[i] = 0;
+            }
+        }
+        loopStart = now;
+        lastMark = now;
+    }
+
+    /**
+     * Charges the time since the previous mark (or the start of the loop) to a phase.
+     * @param phase     id returned by <code>addPhase()</code>
+     */
+    public void mark(int phase) {
+        long now = System.nanoTime();
+        accumulated[phase] += now - lastMark;
+        lastMark = now;
+    }
+
+    /**
+     * Returns the histogram of a phase.
+     * @param phase     id returned by <code>addPhase()</code>
+     */
+    public LatencyHistogram getPhase(int phase) { return histograms[phase]; }
+
+    /**
+     * Returns the histogram of the full loop period.
+     */
+    public LatencyHistogram getLoop() { return loop; }
+
+    /**
+     * Clears all histograms and starts over on the next loop.
+     */
+    public void reset() {
+        for (int i = 0; i < phaseCount; i++) {
+            histograms[i].reset();
+            accumulated[i] = 0;
+        }
+        loop.reset();
+        loopStart = 0;
+    }
+
+    /**
+     * Adds a line per phase with its p50, p99 and max in milliseconds.
+     * @param telemetry     telemetry to add the report to
+     */
+    public void report(Telemetry telemetry) {
+        telemetry.addData("Loop", format(loop) + String.format(Locale.US, " | %.0f Hz", rate()));
+        for (int i = 0; i < phaseCount; i++) {
+            telemetry.addData(names[i], format(histograms[i]));
+        }
+    }
+
+    /**
+     * Adds the report to a telemetry manager as one item per phase. Must be called after every
+     * phase has been added.
+     * @param telemetry     telemetry manager to add the report to
+     */
+    public void addTo(TelemetryManager telemetry) {
+        addItem(telemetry, "Loop", loop);
+        for (int i = 0; i < phaseCount; i++) {
+            addItem(telemetry, names[i], histograms[i]);
+        }
+    }
+
+    private static void addItem(TelemetryManager telemetry, String name, final LatencyHistogram histogram) {
+        telemetry.addItem(name, "p50 %.2f | p99 %.2f | max %.2f ms",
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return histogram.getPercentile(0.5) / 1e6; }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return histogram.getPercentile(0.99) / 1e6; }
+                },
+                new TelemetryManager.Value() {
+                    @Override
+                    public double get() { return histogram.getMax() / 1e6; }
+                });
+    }
+
+    /**
+     * Writes the report to the log, e.g. at the end of a match.
+     */
+    public void log() {
+        Log.i(TAG, "loop (" + loop.getCount() + " loops): " + format(loop)
+                + String.format(Locale.US, " | %.0f Hz", rate()));
+        for (int i = 0; i < phaseCount; i++) {
+            Log.i(TAG, names[i] + ": " + format(histograms[i]));
+        }
+    }
+
+    private double rate() {
+        long p50 = loop.getPercentile(0.5);
+        return p50 == 0 ? 0 : 1e9 / p50;
+    }
+
+    private static String format(LatencyHistogram histogram) {
+        return String.format(Locale.US, "p50 %.2f | p99 %.2f | max %.2f ms",
+                histogram.getPercentile(0.5) / 1e6, histogram.getPercentile(0.99) / 1e6, histogram.getMax() / 1e6);
+    }
+}
@@ -0,0 +1,175 @@
+package org.firstinspires.ftc.teamcode.util.benchmark;
+
+import android.os.Debug;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * MicroBenchmark times small pieces of code on the robot controller and reports the time and the
+ * memory allocated per operation. Each operation may be given an allocation budget; an operation
+ * that allocates more than its budget fails, which catches hot-path regressions before they make
+ * the loop stutter on the robot.
+ *
+ * Allocations are counted with {@link Debug#getThreadAllocSize()}. Where that is not available
+ * (e.g. on a desktop JVM) bytes per operation are reported as NaN and budgets are not checked.
+ */
+public class MicroBenchmark {
+
+    /* CONSTANTS */
+    private static final int DEFAULT_WARMUP = 5000;
+    private static final int DEFAULT_ITERATIONS = 50000;
+    /**
+     * Budget value meaning the allocations of an operation are reported but not checked.
+     */
+    public static final double NO_BUDGET = -1;
+
+    /**
+     * A single operation to time. The return value is consumed so that the work is not optimized
+     * away.
+     */
+    public interface Op {
+        /**
+         * Runs the operation once.
+         * @param i         number of the iteration
+         */
+        double run(int i);
+    }
+
+    /**
+     * Timing and allocation of one operation.
+     */
+    public static class Result {
+        public final String name;
+        public final double nsPerOp;
+        public final double bytesPerOp;
+        public final double budget;
+
+        Result(String name, double nsPerOp, double bytesPerOp, double budget) {
+            this.name = name;
+            this.nsPerOp = nsPerOp;
+            this.bytesPerOp = bytesPerOp;
+            this.budget = budget;
+        }
+
+        /**
+         * Returns false if the operation allocated more than its budget.
+         */
+        public boolean passed() {
+            return budget < 0 || Double.isNaN(bytesPerOp) || bytesPerOp <= budget;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.1f ns/op | %.1f B/op%s", nsPerOp, bytesPerOp,
+                    passed() ? "" : String.format(Locale.US, " | FAIL > %.0f B", budget));
+        }
+    }
+
+    private final List<Result> results = new ArrayList<>();
+    private int warmup = DEFAULT_WARMUP;
+    private int iterations = DEFAULT_ITERATIONS;
+    private boolean allocCounting;
+
+    /**
+     * Prevents the JIT from discarding the results of an operation.
+     */
+    public static volatile double sink;
+
+    /**
+     * Default constructor for MicroBenchmark.
+     */
+    public MicroBenchmark() { }
+
+    /**
+     * Sets the number of untimed and timed runs of each operation.
+     * @param warmup        untimed runs
+     * @param iterations    timed runs
+     */
+    public MicroBenchmark setIterations(int warmup, int iterations) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+        return this;
+    }
+
+    /**
+     * Times an operation without an allocation budget.
+     * @param name      name shown in the report
+     * @param op        operation to time
+     */
+    public Result run(String name, Op op) {
+        return run(name, op, NO_BUDGET);
+    }
+
+    /**
+     * Times an operation.
+     * @param name      name shown in the report
+     * @param op        operation to time
+     * @param budget    maximum bytes allocated per operation, or NO_BUDGET
+     */
+    public Result run(String name, Op op, double budget) {
+        double total = 0;
+        for (int i = 0; i < warmup; i++) total += op.run(i);
+
+        startAllocCounting();
+        long startBytes = threadAllocSize();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) total += op.run(i);
+        long elapsed = System.nanoTime() - start;
+        long bytes = threadAllocSize() - startBytes;
+        sink = total;
+
+        Result result = new Result(name, elapsed / (double) iterations,
+                allocCounting ? bytes / (double) iterations : Double.NaN, budget);
+        results.add(result);
+        return result;
+    }
+
+    /**
+     * Returns the results of every operation run so far.
+     */
+    public List<Result> getResults() { return results; }
+
+    /**
+     * Returns true if every operation stayed within its allocation budget.
+     */
+    public boolean allPassed() {
+        for (Result result : results) {
+            if (!result.passed()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops allocation counting. Should be called once all operations have run.
+     */
+    public void finish() {
+        if (allocCounting) {
+            try {
+                Debug.stopAllocCounting();
+            } catch (Throwable ignored) { }
+            allocCounting = false;
+        }
+    }
+
+    private void startAllocCounting() {
+        if (allocCounting) return;
+        try {
+            Debug.startAllocCounting();
+            allocCounting = true;
+        } catch (Throwable e) {
+            allocCounting = false;
+        }
+    }
+
+    private long threadAllocSize() {
+        if (!allocCounting) return 0;
+        try {
+            return Debug.getThreadAllocSize();
+        } catch (Throwable e) {
+            allocCounting = false;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.firstinspires.ftc.teamcode.util.command;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Command is an abstract class for a non-blocking robot action. Commands are run by the
+ * {@link CommandScheduler}, which calls <code>initialize()</code> once, then <code>execute()</code>
+ * and <code>isFinished()</code> once per cycle, and finally <code>end()</code>.
+ *
+ * None of these methods may block; a command that needs to wait should do so by returning false
+ * from <code>isFinished()</code>.
+ */
+public abstract class Command {
+
+    private final Set<Subsystem> requirements = new HashSet<>();
+
+    /**
+     * Declares the subsystems this command uses. A newly scheduled command interrupts any running
+     * command that shares a requirement with it.
+     * @param subsystems    subsystems used by this command
+     */
+    protected final void requires(Subsystem... subsystems) {
+        Collections.addAll(requirements, subsystems);
+    }
+
+    /**
+     * Returns the subsystems this command uses.
+     */
+    public Set<Subsystem> getRequirements() { return requirements; }
+
+    /**
+     * Called once when the command is scheduled.
+     */
+    public void initialize() { }
+
+    /**
+     * Called once per cycle while the command is scheduled.
+     */
+    public void execute() { }
+
+    /**
+     * Returns true when the command has finished.
+     */
+    public abstract boolean isFinished();
+
+    /**
+     * Called once when the command finishes or is interrupted.
+     * @param interrupted   true if the command was cancelled before it finished
+     */
+    public void end(boolean interrupted) { }
+
+    /**
+     * Returns a command that runs this command and then the given commands in order.
+     */
+    public Command andThen(Command... next) {
+        Command[] commands = new Command[next.length + 1];
+        commands[0] = this;
+        System.arraycopy(next, 0, commands, 1, next.length);
+        return new SequentialCommandGroup(commands);
+    }
+
+    /**
+     * Returns a command that runs this command and the given commands at the same time, and
+     * finishes when all of them have finished.
+     */
+    public Command alongWith(Command... others) {
+        Command[] commands = new Command[others.length + 1];
+        commands[0] = this;
+        System.arraycopy(others, 0, commands, 1, others.length);
+        return new ParallelCommandGroup(commands);
+    }
+
+    /**
+     * Returns a command that runs this command and the given commands at the same time, and
+     * finishes as soon as any of them has finished.
+     */
+    public Command raceWith(Command... others) {
+        Command[] commands = new Command[others.length + 1];
+        commands[0] = this;
+        System.arraycopy(others, 0, commands, 1, others.length);
+        return new ParallelRaceGroup(commands);
+    }
+
+    /**
+     * Returns a command that interrupts this command after a number of seconds.
+     * @param seconds       timeout in seconds
+     */
+    public Command withTimeout(double seconds) {
+        return raceWith(new WaitCommand(seconds));
+    }
+}
@@ -0,0 +1,176 @@
+package org.firstinspires.ftc.teamcode.util.command;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CommandScheduler runs any number of {@link Command}s cooperatively from a single loop. Each call
+ * to <code>run()</code> is one cycle: the cycle hook (usually the bulk read) runs first, then every
+ * scheduled command executes once, then the cycle end hook (usually the motor write flush) runs.
+ *
+ * Commands that require the same {@link Subsystem} cannot run at the same time; scheduling a new
+ * command interrupts the old one. Commands may schedule and cancel others while executing; a
+ * command scheduled during a cycle first executes in the next one.
+ */
+public class CommandScheduler {
+
+    /* CONSTANTS */
+    /**
+     * Default loop period in milliseconds used by <code>runUntilFinished()</code>.
+     */
+    public static final long DEFAULT_PERIOD_MS = 10;
+
+    private final List<Command> scheduled = new ArrayList<>();
+    private final Map<Subsystem, Command> requirements = new HashMap<>();
+    /* Commands executed this cycle, copied so that scheduling and cancelling mid-cycle is safe */
+    private final List<Command> running = new ArrayList<>();
+    private Runnable cycleHook;
+    private Runnable cycleEndHook;
+    private long periodMs = DEFAULT_PERIOD_MS;
+
+    /**
+     * Default constructor for CommandScheduler.
+     */
+    public CommandScheduler() { }
+
+    /**
+     * Sets an action to run at the start of every cycle, before any command executes.
+     * @param cycleHook     action to run, or null for none
+     */
+    public void setCycleHook(Runnable cycleHook) { this.cycleHook = cycleHook; }
+
+    /**
+     * Sets an action to run at the end of every cycle, after every command has executed.
+     * @param cycleEndHook  action to run, or null for none
+     */
+    public void setCycleEndHook(Runnable cycleEndHook) { this.cycleEndHook = cycleEndHook; }
+
+    /**
+     * Sets the loop period used by <code>runUntilFinished()</code>.
+     * @param periodMs      loop period in milliseconds
+     */
+    public void setPeriod(long periodMs) { this.periodMs = periodMs; }
+
+    /**
+     * Schedules a command, interrupting any scheduled command that shares a subsystem with it.
+     * Scheduling a command that is already scheduled does nothing.
+     * @param command       command to schedule
+     */
+    public void schedule(Command command) {
+        if (scheduled.contains(command)) return;
+
+        for (Subsystem subsystem : command.getRequirements()) {
+            Command current = requirements.get(subsystem);
+            if (current != null) cancel(current);
+        }
+        for (Subsystem subsystem : command.getRequirements()) {
+            requirements.put(subsystem, command);
+        }
+        scheduled.add(command);
+        command.initialize();
+    }
+
+    /**
+     * Schedules several commands.
+     */
+    public void schedule(Command... commands) {
+        for (Command command : commands) schedule(command);
+    }
+
+    /**
+     * Runs one cycle of the scheduler.
+     */
+    public void run() {
+        if (cycleHook != null) cycleHook.run();
+
+        running.clear();
+        for (int i = 0; i < scheduled.size(); i++) running.add(scheduled.get(i));
+        for (int i = 0; i < running.size(); i++) {
+            Command command = running.get(i);
+            // Cancelled by a command that executed earlier in this cycle
+            if (!scheduled.contains(command)) continue;
+            command.execute();
+            if (command.isFinished()) {
+                command.end(false);
+                remove(command);
+            }
+        }
+        running.clear();
+
+        if (cycleEndHook != null) cycleEndHook.run();
+    }
+
+    /**
+     * Interrupts a scheduled command.
+     * @param command       command to cancel
+     */
+    public void cancel(Command command) {
+        if (!scheduled.contains(command)) return;
+        command.end(true);
+        remove(command);
+    }
+
+    /**
+     * Interrupts every scheduled command.
+     */
+    public void cancelAll() {
+        while (!scheduled.isEmpty()) {
+            cancel(scheduled.get(scheduled.size() - 1));
+        }
+    }
+
+    private void remove(Command command) {
+        scheduled.remove(command);
+        for (Subsystem subsystem : command.getRequirements()) {
+            if (requirements.get(subsystem) == command) requirements.remove(subsystem);
+        }
+    }
+
+    /**
+     * Returns whether a command is currently scheduled.
+     */
+    public boolean isScheduled(Command command) { return scheduled.contains(command); }
+
+    /**
+     * Returns whether a subsystem is used by a scheduled command.
+     */
+    public boolean isRequired(Subsystem subsystem) { return requirements.containsKey(subsystem); }
+
+    /**
+     * Returns true when no commands are scheduled.
+     */
+    public boolean isIdle() { return scheduled.isEmpty(); }
+
+    /**
+     * Schedules a command and runs the scheduler at a fixed rate until the command finishes or
+     * the OpMode stops. Other scheduled commands keep running while this waits. Without an OpMode,
+     * as in an iterative OpMode or off the robot, it runs until the command finishes or the
+     * calling thread is interrupted.
+     * @param opMode        the LinearOpMode that is currently running, or null
+     * @param command       command to run
+     */
+    public void runUntilFinished(LinearOpMode opMode, Command command) {
+        schedule(command);
+        while ((opMode == null || opMode.opModeIsActive()) && isScheduled(command)) {
+            long start = System.currentTimeMillis();
+            run();
+            long remaining = periodMs - (System.currentTimeMillis() - start);
+            if (remaining <= 0) continue;
+            if (opMode != null) {
+                opMode.sleep(remaining);
+                continue;
+            }
+            try {
+                Thread.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (isScheduled(command)) cancel(command);
+    }
+}
@@ -0,0 +1,26 @@
+package org.firstinspires.ftc.teamcode.util.command;
+
+/**
+ * InstantCommand runs a single action when it is initialized and finishes immediately. Used for
+ * servo moves and other actions that do not need to wait.
+ */
+public class InstantCommand extends Command {
+
+    private final Runnable action;
+
+    /**
+     * Constructor for InstantCommand.
+     * @param action        action to run
+     * @param subsystems    subsystems used by the action
+     */
+    public InstantCommand(Runnable action, Subsystem... subsystems) {
+        this.action = action;
+        requires(subsystems);
+    }
+
+    @Override
+    public void initialize() { action.run(); }
+
+    @Override
+    public boolean isFinished() { return true; }
+}
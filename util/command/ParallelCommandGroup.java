@@ -0,0 +1,65 @@
+package org.firstinspires.ftc.teamcode.util.command;
+
+/**
+ * ParallelCommandGroup runs a list of commands at the same time. It finishes when every command
+ * has finished. Commands in the group may not share a subsystem.
+ */
+public class ParallelCommandGroup extends Command {
+
+    private final Command[] commands;
+    private final boolean[] running;
+
+    /**
+     * Constructor for ParallelCommandGroup.
+     * @param commands      commands to run at the same time
+     */
+    public ParallelCommandGroup(Command... commands) {
+        this.commands = commands;
+        this.running = new boolean[commands.length];
+        for (Command command : commands) {
+            for (Subsystem subsystem : command.getRequirements()) {
+                if (!getRequirements().add(subsystem)) {
+                    throw new IllegalArgumentException("Parallel commands may not share a subsystem");
+                }
+            }
+        }
+    }
+
+    @Override
+    public void initialize() {
+        for (int i = 0; i < commands.length; i++) {
+            commands[i].initialize();
+            running[i] = true;
+        }
+    }
+
+    @Override
+    public void execute() {
+        for (int i = 0; i < commands.length; i++) {
+            if (!running[i]) continue;
+            commands[i].execute();
+            if (commands[i].isFinished()) {
+                commands[i].end(false);
+                running[i] = false;
+            }
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        for (boolean isRunning : running) {
+            if (isRunning) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        for (int i = 0; i < commands.length; i++) {
+            if (running[i]) {
+                commands[i].end(true);
+                running[i] = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.firstinspires.ftc.teamcode.util.command;
+
+/**
+ * ParallelRaceGroup runs a list of commands at the same time. It finishes as soon as any command
+ * has finished and interrupts the rest. Commands in the group may not share a subsystem.
+ */
+public class ParallelRaceGroup extends Command {
+
+    private final Command[] commands;
+    /* Commands that finished during the last execute(); the rest are interrupted when it ends */
+    private final boolean[] done;
+    private boolean finished = false;
+
+    /**
+     * Constructor for ParallelRaceGroup.
+     * @param commands      commands to race
+     */
+    public ParallelRaceGroup(Command... commands) {
+        this.commands = commands;
+        this.done = new boolean[commands.length];
+        for (Command command : commands) {
+            for (Subsystem subsystem : command.getRequirements()) {
+                if (!getRequirements().add(subsystem)) {
+                    throw new IllegalArgumentException("Parallel commands may not share a subsystem");
+                }
+            }
+        }
+    }
+
+    @Override
+    public void initialize() {
+        finished = false;
+        for (int i = 0; i < commands.length; i++) {
+            done[i] = false;
+            commands[i].initialize();
+        }
+    }
+
+    @Override
+    public void execute() {
+        for (int i = 0; i < commands.length; i++) {
+            commands[i].execute();
+            done[i] = commands[i].isFinished();
+            if (done[i]) finished = true;
+        }
+    }
+
+    @Override
+    public boolean isFinished() { return finished; }
+
+    @Override
+    public void end(boolean interrupted) {
+        for (int i = 0; i < commands.length; i++) {
+            commands[i].end(interrupted || !done[i]);
+        }
+    }
+}
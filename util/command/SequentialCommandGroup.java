@@ -0,0 +1,52 @@
+package org.firstinspires.ftc.teamcode.util.command;
+
+/**
+ * SequentialCommandGroup runs a list of commands one after another. It finishes when the last
+ * command has finished.
+ */
+public class SequentialCommandGroup extends Command {
+
+    private final Command[] commands;
+    private int current = -1;
+
+    /**
+     * Constructor for SequentialCommandGroup.
+     * @param commands      commands to run in order
+     */
+    public SequentialCommandGroup(Command... commands) {
+        this.commands = commands;
+        for (Command command : commands) {
+            getRequirements().addAll(command.getRequirements());
+        }
+    }
+
+    @Override
+    public void initialize() {
+        current = 0;
+        if (commands.length > 0) commands[0].initialize();
+    }
+
+    @Override
+    public void execute() {
+        if (current >= commands.length) return;
+
+        Command command = commands[current];
+        command.execute();
+        if (command.isFinished()) {
+            command.end(false);
+            current++;
+            if (current < commands.length) commands[current].initialize();
+        }
+    }
+
+    @Override
+    public boolean isFinished() { return current >= commands.length; }
+
+    @Override
+    public void end(boolean interrupted) {
+        if (interrupted && current >= 0 && current < commands.length) {
+            commands[current].end(true);
+        }
+        current = -1;
+    }
+}
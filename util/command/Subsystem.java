@@ -0,0 +1,10 @@
+package org.firstinspires.ftc.teamcode.util.command;
+
+/**
+ * Subsystem marks a piece of hardware that a {@link Command} can require. Only one scheduled
+ * command may require a subsystem at a time.
+ *
+ * All robot mechanisms implement this interface through {@link org.firstinspires.ftc.teamcode.hardware.Mechanism}.
+ */
+public interface Subsystem {
+}
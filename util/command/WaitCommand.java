@@ -0,0 +1,26 @@
+package org.firstinspires.ftc.teamcode.util.command;
+
+import com.qualcomm.robotcore.util.ElapsedTime;
+
+/**
+ * WaitCommand finishes after a set amount of time. Used for timeouts and timed actions.
+ */
+public class WaitCommand extends Command {
+
+    private final double seconds;
+    private final ElapsedTime timer = new ElapsedTime();
+
+    /**
+     * Constructor for WaitCommand.
+     * @param seconds       time to wait in seconds
+     */
+    public WaitCommand(double seconds) {
+        this.seconds = seconds;
+    }
+
+    @Override
+    public void initialize() { timer.reset(); }
+
+    @Override
+    public boolean isFinished() { return timer.seconds() >= seconds; }
+}
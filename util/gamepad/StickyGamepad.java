@@ -4,166 +4,205 @@ import com.qualcomm.robotcore.hardware.Gamepad;
 
 
 /**
- * This class handles the gamepad's functionality
+ * This class handles the gamepad's button edges.
+ *
+ * Each <code>update()</code> packs every button of the gamepad into one int, one bit per button,
+ * with the triggers and stick directions as virtual buttons. Presses and releases since the last
+ * update are then <code>state &amp; ~previous</code> and <code>previous &amp; ~state</code>, and
+ * are tested with the button constants, which can be or'ed together:
+ *
+ * <pre>
+ *     stickyGamepad.update();
+ *     if (stickyGamepad.wasPressed(StickyGamepad.A)) ...
+ * </pre>
+ *
+ * Every update with an edge is also written, with its time, into a ring buffer of the last
+ * EVENT_CAPACITY events, so that edges can be read later without missing any. Nothing is allocated
+ * after construction. Should be updated and read on one thread.
  */
 public class StickyGamepad {
-    public Gamepad gamepad;
-
-    public boolean dpad_up, dpad_down, dpad_left, dpad_right;
-    public boolean a, b, x, y;
-    public boolean left_bumper, right_bumper;
-    public boolean left_stick_button, right_stick_button;
 
-    private boolean dpad_up_down, dpad_down_down, dpad_left_down, dpad_right_down;
-    private boolean a_down, b_down, x_down, y_down;
-    private boolean left_bumper_down, right_bumper_down;
-    private boolean left_stick_button_down, right_stick_button_down;
-
-    public StickyGamepad(Gamepad gamepad) { this.gamepad = gamepad; }
-
-    public void update() {
-        if (gamepad.dpad_down) {
-            if (dpad_down_down) {
-                dpad_down = false;
-            } else {
-                dpad_down_down = true;
-                dpad_down = true;
-            }
-        } else {
-            dpad_down = false;
-            dpad_down_down = false;
-        }
+    /* CONSTANTS */
+    public static final int DPAD_UP = 1;
+    public static final int DPAD_DOWN = 1 << 1;
+    public static final int DPAD_LEFT = 1 << 2;
+    public static final int DPAD_RIGHT = 1 << 3;
+    public static final int A = 1 << 4;
+    public static final int B = 1 << 5;
+    public static final int X = 1 << 6;
+    public static final int Y = 1 << 7;
+    public static final int LEFT_BUMPER = 1 << 8;
+    public static final int RIGHT_BUMPER = 1 << 9;
+    public static final int LEFT_STICK_BUTTON = 1 << 10;
+    public static final int RIGHT_STICK_BUTTON = 1 << 11;
+    public static final int START = 1 << 12;
+    public static final int BACK = 1 << 13;
+    public static final int GUIDE = 1 << 14;
+    /* Virtual buttons, down while the trigger or stick is past the threshold */
+    public static final int LEFT_TRIGGER = 1 << 15;
+    public static final int RIGHT_TRIGGER = 1 << 16;
+    public static final int LEFT_STICK_UP = 1 << 17;
+    public static final int LEFT_STICK_DOWN = 1 << 18;
+    public static final int LEFT_STICK_LEFT = 1 << 19;
+    public static final int LEFT_STICK_RIGHT = 1 << 20;
+    public static final int RIGHT_STICK_UP = 1 << 21;
+    public static final int RIGHT_STICK_DOWN = 1 << 22;
+    public static final int RIGHT_STICK_LEFT = 1 << 23;
+    public static final int RIGHT_STICK_RIGHT = 1 << 24;
+
+    /**
+     * Number of events kept in the ring buffer. A power of two.
+     */
+    public static final int EVENT_CAPACITY = 64;
+    private static final int EVENT_MASK = EVENT_CAPACITY - 1;
 
-        if (gamepad.dpad_up) {
-            if (dpad_up_down) {
-                dpad_up = false;
-            } else {
-                dpad_up_down = true;
-                dpad_up = true;
-            }
-        } else {
-            dpad_up = false;
-            dpad_up_down = false;
-        }
+    public Gamepad gamepad;
 
-        if (gamepad.dpad_left) {
-            if (dpad_left_down) {
-                dpad_left = false;
-            } else {
-                dpad_left_down = true;
-                dpad_left = true;
-            }
-        } else {
-            dpad_left = false;
-            dpad_left_down = false;
-        }
+    /* Thresholds of the virtual buttons; they are released a little below, so they do not chatter */
+    private double triggerThreshold = 0.5;
+    private double stickThreshold = 0.5;
+    private double hysteresis = 0.1;
 
-        if (gamepad.dpad_right) {
-            if (dpad_right_down) {
-                dpad_right = false;
-            } else {
-                dpad_right_down = true;
-                dpad_right = true;
-            }
-        } else {
-            dpad_right = false;
-            dpad_right_down = false;
-        }
+    private int state, pressed, released;
+    private long updateTime;
 
-        if (gamepad.a) {
-            if (a_down) {
-                a = false;
-            } else {
-                a_down = true;
-                a = true;
-            }
-        } else {
-            a = false;
-            a_down = false;
-        }
-        
-        if (gamepad.b) {
-            if (b_down) {
-                b = false;
-            } else {
-                b_down = true;
-                b = true;
-            }
-        } else {
-            b = false;
-            b_down = false;
-        }
+    /* Event ring buffer */
+    private final long[] eventTimes = new long[EVENT_CAPACITY];
+    private final int[] eventPressed = new int[EVENT_CAPACITY];
+    private final int[] eventReleased = new int[EVENT_CAPACITY];
+    private long eventCount = 0;
 
-        if (gamepad.x) {
-            if (x_down) {
-                x = false;
-            } else {
-                x_down = true;
-                x = true;
-            }
-        } else {
-            x = false;
-            x_down = false;
-        }
-
-        if (gamepad.y) {
-            if (y_down) {
-                y = false;
-            } else {
-                y_down = true;
-                y = true;
-            }
-        } else {
-            y = false;
-            y_down = false;
-        }
-
-        if (gamepad.left_bumper) {
-            if (left_bumper_down) {
-                left_bumper = false;
-            } else {
-                left_bumper_down = true;
-                left_bumper = true;
-            }
-        } else {
-            left_bumper = false;
-            left_bumper_down = false;
-        }
+    public StickyGamepad(Gamepad gamepad) { this.gamepad = gamepad; }
 
-        if (gamepad.right_bumper) {
-            if (right_bumper_down) {
-                right_bumper = false;
-            } else {
-                right_bumper_down = true;
-                right_bumper = true;
-            }
-        } else {
-            right_bumper = false;
-            right_bumper_down = false;
-        }
+    /**
+     * Sets the thresholds of the virtual buttons.
+     * @param trigger   trigger value at which a trigger is pressed
+     * @param stick     stick deflection at which a stick direction is pressed
+     */
+    public void setThresholds(double trigger, double stick) {
+        triggerThreshold = trigger;
+        stickThreshold = stick;
+    }
 
-        if (gamepad.left_stick_button) {
-            if (left_stick_button_down) {
-                left_stick_button = false;
-            } else {
-                left_stick_button_down = true;
-                left_stick_button = true;
-            }
-        } else {
-            left_stick_button = false;
-            left_stick_button_down = false;
+    /**
+     * Reads the gamepad and computes the edges since the last update.
+     */
+    public void update() {
+        Gamepad g = gamepad;
+        int previous = state;
+        int current = (g.dpad_up ? DPAD_UP : 0)
+                | (g.dpad_down ? DPAD_DOWN : 0)
+                | (g.dpad_left ? DPAD_LEFT : 0)
+                | (g.dpad_right ? DPAD_RIGHT : 0)
+                | (g.a ? A : 0)
+                | (g.b ? B : 0)
+                | (g.x ? X : 0)
+                | (g.y ? Y : 0)
+                | (g.left_bumper ? LEFT_BUMPER : 0)
+                | (g.right_bumper ? RIGHT_BUMPER : 0)
+                | (g.left_stick_button ? LEFT_STICK_BUTTON : 0)
+                | (g.right_stick_button ? RIGHT_STICK_BUTTON : 0)
+                | (g.start ? START : 0)
+                | (g.back ? BACK : 0)
+                | (g.guide ? GUIDE : 0);
+
+        double trigger = triggerThreshold - ((previous & LEFT_TRIGGER) != 0 ? hysteresis : 0);
+        if (g.left_trigger >= trigger) current |= LEFT_TRIGGER;
+        trigger = triggerThreshold - ((previous & RIGHT_TRIGGER) != 0 ? hysteresis : 0);
+        if (g.right_trigger >= trigger) current |= RIGHT_TRIGGER;
+
+        // Stick y is negative when pushed up
+        current |= axis(-g.left_stick_y, previous, LEFT_STICK_UP, LEFT_STICK_DOWN)
+                | axis(g.left_stick_x, previous, LEFT_STICK_RIGHT, LEFT_STICK_LEFT)
+                | axis(-g.right_stick_y, previous, RIGHT_STICK_UP, RIGHT_STICK_DOWN)
+                | axis(g.right_stick_x, previous, RIGHT_STICK_RIGHT, RIGHT_STICK_LEFT);
+
+        state = current;
+        pressed = current & ~previous;
+        released = previous & ~current;
+        updateTime = System.nanoTime();
+
+        if ((pressed | released) != 0) {
+            int i = (int) (eventCount & EVENT_MASK);
+            eventTimes[i] = updateTime;
+            eventPressed[i] = pressed;
+            eventReleased[i] = released;
+            eventCount++;
         }
+    }
 
-        if (gamepad.right_stick_button) {
-            if (right_stick_button_down) {
-                right_stick_button = false;
-            } else {
-                right_stick_button_down = true;
-                right_stick_button = true;
-            }
-        } else {
-            right_stick_button = false;
-            right_stick_button_down = false;
-        }
+    /**
+     * Returns the bits of the two virtual buttons of a stick axis.
+     */
+    private int axis(double value, int previous, int positive, int negative) {
+        double positiveThreshold = stickThreshold - ((previous & positive) != 0 ? hysteresis : 0);
+        double negativeThreshold = stickThreshold - ((previous & negative) != 0 ? hysteresis : 0);
+        if (value >= positiveThreshold) return positive;
+        if (-value >= negativeThreshold) return negative;
+        return 0;
     }
+
+    /**
+     * Returns whether any of the given buttons is held down.
+     */
+    public boolean isDown(int buttons) { return (state & buttons) != 0; }
+
+    /**
+     * Returns whether any of the given buttons was pressed since the last update.
+     */
+    public boolean wasPressed(int buttons) { return (pressed & buttons) != 0; }
+
+    /**
+     * Returns whether any of the given buttons was released since the last update.
+     */
+    public boolean wasReleased(int buttons) { return (released & buttons) != 0; }
+
+    /**
+     * Returns the bits of the buttons held down.
+     */
+    public int getState() { return state; }
+
+    /**
+     * Returns the bits of the buttons pressed since the last update.
+     */
+    public int getPressed() { return pressed; }
+
+    /**
+     * Returns the bits of the buttons released since the last update.
+     */
+    public int getReleased() { return released; }
+
+    /**
+     * Returns System.nanoTime() of the last update.
+     */
+    public long getUpdateTime() { return updateTime; }
+
+    /**
+     * Returns the number of events written so far. Events are numbered from zero; the last
+     * EVENT_CAPACITY of them can be read.
+     */
+    public long getEventCount() { return eventCount; }
+
+    /**
+     * Returns the number of the oldest event that can still be read.
+     */
+    public long getOldestEvent() { return Math.max(0, eventCount - EVENT_CAPACITY); }
+
+    /**
+     * Returns System.nanoTime() of the update at which an event was seen.
+     * @param event     number of the event
+     */
+    public long getEventTime(long event) { return eventTimes[(int) (event & EVENT_MASK)]; }
+
+    /**
+     * Returns the bits of the buttons pressed in an event.
+     * @param event     number of the event
+     */
+    public int getEventPressed(long event) { return eventPressed[(int) (event & EVENT_MASK)]; }
+
+    /**
+     * Returns the bits of the buttons released in an event.
+     * @param event     number of the event
+     */
+    public int getEventReleased(long event) { return eventReleased[(int) (event & EVENT_MASK)]; }
 }
@@ -1,18 +1,37 @@
 package org.firstinspires.ftc.teamcode.util.motion;
 
+import android.util.Log;
+
 import com.acmerobotics.roadrunner.trajectory.Trajectory;
 import com.acmerobotics.roadrunner.trajectory.TrajectoryConfig;
+import com.acmerobotics.roadrunner.trajectory.TrajectorySegment;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.fasterxml.jackson.module.kotlin.KotlinModule;
 
 import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Set of utilities for loading trajectories from assets (the plugin save location).
+ *
+ * Parsing the YAML and generating the trajectory is slow on the phone, so <code>load()</code>
+ * compiles each trajectory once into a binary file of samples (see
+ * {@link SampledTrajectorySegment}) next to the other FIRST files. Later loads memory-map that
+ * file instead. The binary records a hash of the YAML it was made from and is recompiled when
+ * the asset changes. Loaded trajectories are also kept in a small LRU cache.
  */
 public class AssetsTrajectoryLoader {
     private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
@@ -21,19 +40,180 @@ public class AssetsTrajectoryLoader {
         MAPPER.registerModule(new KotlinModule((512)));
     }
 
+    /* CONSTANTS */
+    private static final String TAG = "AssetsTrajectoryLoader";
+    private static final String ASSET_DIR = "trajectory";
+    /**
+     * Time between samples of a compiled trajectory in seconds.
+     */
+    public static final double SAMPLE_STEP = 0.01;
+    private static final int CACHE_SIZE = 8;
+
+    // Binary layout: header, then SampledTrajectorySegment.CHANNELS float arrays
+    private static final int MAGIC = 0x52525442; // "RRTB"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+
+    private static final Map<String, Trajectory> CACHE = new LinkedHashMap<String, Trajectory>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Trajectory> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
     /**
      * Loads a trajectory config with the given name.
      */
     public static TrajectoryConfig loadConfig(String name) throws IOException {
-        InputStream inputStream = AppUtil.getDefContext().getAssets().open("trajectory/" + name + ".yaml");
+        InputStream inputStream = AppUtil.getDefContext().getAssets().open(ASSET_DIR + "/" + name + ".yaml");
         return MAPPER.readValue(inputStream, TrajectoryConfig.class);
     }
 
     /**
-     * Loads a trajectory with the given name.
+     * Loads a trajectory with the given name, from the cache or its compiled binary if possible.
      * @see #loadConfig(String)
      */
     public static Trajectory load(String name) throws IOException {
-        return loadConfig(name).toTrajectory();
+        byte[] yaml = readAsset(name);
+        long hash = hash(yaml);
+        String key = name + "@" + Long.toHexString(hash);
+        synchronized (CACHE) {
+            Trajectory cached = CACHE.get(key);
+            if (cached != null) return cached;
+        }
+
+        Trajectory trajectory = open(binaryFile(name), hash);
+        if (trajectory == null) trajectory = compile(name, yaml, hash);
+        synchronized (CACHE) {
+            CACHE.put(key, trajectory);
+        }
+        return trajectory;
+    }
+
+    /**
+     * Compiles every trajectory asset that has no up to date binary. Can be run during init so
+     * that autonomous routines only map files.
+     * @return number of trajectories loaded
+     */
+    public static int compileAll() throws IOException {
+        String[] assets = AppUtil.getDefContext().getAssets().list(ASSET_DIR);
+        int loaded = 0;
+        for (String asset : assets) {
+            if (!asset.endsWith(".yaml")) continue;
+            load(asset.substring(0, asset.length() - ".yaml".length()));
+            loaded++;
+        }
+        return loaded;
+    }
+
+    /**
+     * Empties the cache of loaded trajectories. Compiled binaries are kept.
+     */
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private static File binaryFile(String name) {
+        return new File(new File(AppUtil.FIRST_FOLDER, ASSET_DIR), name + ".bin");
+    }
+
+    /**
+     * Maps a compiled trajectory.
+     * @return the trajectory, or null if the file is missing, damaged or made from other YAML
+     */
+    private static Trajectory open(File file, long hash) {
+        if (!file.isFile()) return null;
+        try {
+            MappedByteBuffer buffer;
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            } finally {
+                // The mapping stays valid after the file is closed
+                raf.close();
+            }
+
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getLong(8) != hash) {
+                return null;
+            }
+            int count = buffer.getInt(16);
+            double step = buffer.getDouble(24);
+            double duration = buffer.getDouble(32);
+            if (count < 2 || buffer.remaining() < HEADER_BYTES + count * SampledTrajectorySegment.CHANNELS * 4) {
+                return null;
+            }
+
+            buffer.position(HEADER_BYTES);
+            SampledTrajectorySegment segment = new SampledTrajectorySegment(
+                    buffer.slice().asFloatBuffer(), count, step, duration);
+            return new Trajectory(Collections.<TrajectorySegment>singletonList(segment));
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "could not open " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Generates a trajectory from YAML and writes its binary. If the binary cannot be written,
+     * the generated trajectory is returned as is.
+     */
+    private static Trajectory compile(String name, byte[] yaml, long hash) throws IOException {
+        Trajectory trajectory = MAPPER.readValue(yaml, TrajectoryConfig.class).toTrajectory();
+
+        File file = binaryFile(name);
+        int count = SampledTrajectorySegment.sampleCount(trajectory.duration(), SAMPLE_STEP);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + count * SampledTrajectorySegment.CHANNELS * 4);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(hash).putInt(count).putInt(0)
+                .putDouble(SAMPLE_STEP).putDouble(trajectory.duration());
+        SampledTrajectorySegment.sample(trajectory, SAMPLE_STEP, buffer.asFloatBuffer());
+        buffer.rewind();
+
+        // Write to a temporary file first so that a half-written binary is never mapped
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            file.getParentFile().mkdirs();
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.getChannel().write(buffer);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) throw new IOException("could not replace " + file);
+        } catch (IOException e) {
+            Log.w(TAG, "could not write " + file, e);
+            temp.delete();
+            return trajectory;
+        }
+
+        Trajectory compiled = open(file, hash);
+        return compiled != null ? compiled : trajectory;
+    }
+
+    private static byte[] readAsset(String name) throws IOException {
+        InputStream in = AppUtil.getDefContext().getAssets().open(ASSET_DIR + "/" + name + ".yaml");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) != -1) out.write(chunk, 0, read);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash.
+     */
+    private static long hash(byte[] data) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : data) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 }
@@ -5,43 +5,178 @@ import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.path.Path;
 import com.acmerobotics.roadrunner.trajectory.Trajectory;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /**
  * Set of helper functions for drawing Road Runner paths and trajectories on dashboard canvases.
+ *
+ * The polyline of each path or trajectory is computed on the first draw and reused afterwards, so
+ * drawing every dashboard packet only passes the cached arrays to the canvas. Without a sample
+ * count, the polyline is sampled adaptively: points are added where the path curves until every
+ * segment is within TOLERANCE of it, so straights take a few points and tight curves many.
+ * Entries are dropped with the path or trajectory they belong to.
  */
 public class DashboardUtil {
-    private static final int DEFAULT_SAMPLES = 1000;
+    /* Adaptive sampling */
+    // Largest distance in inches between a drawn segment and the path it stands for
+    private static final double TOLERANCE = 0.25;
+    // Uniform segments checked before subdividing, so that an S-bend cannot hide between two samples
+    private static final int INITIAL_SEGMENTS = 8;
+    private static final int MAX_DEPTH = 10;
+    private static final int ADAPTIVE = -1;
+
+    private static final Map<Object, Polyline> CACHE = new WeakHashMap<>();
+
+    /**
+     * Points of a cached polyline and the sample count they were computed for.
+     */
+    private static class Polyline {
+        final int samples;
+        final double[] x, y;
+
+        Polyline(int samples, double[] x, double[] y) {
+            this.samples = samples;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /**
+     * A path or trajectory as a function of its parameter (displacement or time).
+     */
+    private interface Curve {
+        Pose2d get(double parameter);
+    }
 
     public static void drawSampledTrajectory(Canvas canvas, Trajectory trajectory, int samples) {
-        double[] xPoints = new double[samples];
-        double[] yPoints = new double[samples];
-        double dt = trajectory.duration() / (samples - 1);
-        for (int i = 0; i < samples; i++) {
-            double time = i * dt;
-            Pose2d pose = trajectory.get(time);
-            xPoints[i] = pose.getX();
-            yPoints[i] = pose.getY();
+        Polyline polyline = lookup(trajectory, samples);
+        if (polyline == null) {
+            polyline = store(trajectory, sample(trajectoryCurve(trajectory), trajectory.duration(), samples));
         }
-        canvas.strokePolyline(xPoints, yPoints);
+        canvas.strokePolyline(polyline.x, polyline.y);
     }
 
     public static void drawSampledTrajectory(Canvas canvas, Trajectory trajectory) {
-        drawSampledTrajectory(canvas, trajectory, DEFAULT_SAMPLES);
+        drawSampledTrajectory(canvas, trajectory, ADAPTIVE);
     }
 
     public static void drawSampledPath(Canvas canvas, Path path, int samples) {
+        Polyline polyline = lookup(path, samples);
+        if (polyline == null) {
+            polyline = store(path, sample(pathCurve(path), path.length(), samples));
+        }
+        canvas.strokePolyline(polyline.x, polyline.y);
+    }
+
+    public static void drawSampledPath(Canvas canvas, Path path) {
+        drawSampledPath(canvas, path, ADAPTIVE);
+    }
+
+    /**
+     * Drops every cached polyline.
+     */
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private static Curve trajectoryCurve(final Trajectory trajectory) {
+        return new Curve() {
+            @Override
+            public Pose2d get(double time) { return trajectory.get(time); }
+        };
+    }
+
+    private static Curve pathCurve(final Path path) {
+        return new Curve() {
+            @Override
+            public Pose2d get(double displacement) { return path.get(displacement); }
+        };
+    }
+
+    private static Polyline lookup(Object key, int samples) {
+        synchronized (CACHE) {
+            Polyline polyline = CACHE.get(key);
+            return polyline != null && polyline.samples == samples ? polyline : null;
+        }
+    }
+
+    private static Polyline store(Object key, Polyline polyline) {
+        synchronized (CACHE) {
+            CACHE.put(key, polyline);
+        }
+        return polyline;
+    }
+
+    private static Polyline sample(Curve curve, double length, int samples) {
+        return samples == ADAPTIVE ? sampleAdaptive(curve, length) : sampleUniform(curve, length, samples);
+    }
+
+    private static Polyline sampleUniform(Curve curve, double length, int samples) {
         double[] xPoints = new double[samples];
         double[] yPoints = new double[samples];
-        double dx = path.length() / (samples - 1);
+        double step = length / (samples - 1);
         for (int i = 0; i < samples; i++) {
-            double displacement = i * dx;
-            Pose2d pose = path.get(displacement);
+            Pose2d pose = curve.get(i * step);
             xPoints[i] = pose.getX();
             yPoints[i] = pose.getY();
         }
-        canvas.strokePolyline(xPoints, yPoints);
+        return new Polyline(samples, xPoints, yPoints);
     }
 
-    public static void drawSampledPath(Canvas canvas, Path path) {
-        drawSampledPath(canvas, path, DEFAULT_SAMPLES);
+    private static Polyline sampleAdaptive(Curve curve, double length) {
+        Points points = new Points();
+        Pose2d start = curve.get(0);
+        points.add(start);
+        for (int i = 0; i < INITIAL_SEGMENTS; i++) {
+            double a = length * i / INITIAL_SEGMENTS;
+            double b = length * (i + 1) / INITIAL_SEGMENTS;
+            Pose2d end = curve.get(b);
+            subdivide(curve, a, start, b, end, 0, points);
+            points.add(end);
+            start = end;
+        }
+        return new Polyline(ADAPTIVE, Arrays.copyOf(points.x, points.size), Arrays.copyOf(points.y, points.size));
+    }
+
+    /**
+     * Adds the points strictly between a and b needed to stay within TOLERANCE of the curve.
+     */
+    private static void subdivide(Curve curve, double a, Pose2d start, double b, Pose2d end, int depth, Points points) {
+        double middle = (a + b) / 2;
+        Pose2d pose = curve.get(middle);
+        if (depth >= MAX_DEPTH || distanceToSegment(pose, start, end) <= TOLERANCE) return;
+        subdivide(curve, a, start, middle, pose, depth + 1, points);
+        points.add(pose);
+        subdivide(curve, middle, pose, b, end, depth + 1, points);
+    }
+
+    private static double distanceToSegment(Pose2d point, Pose2d start, Pose2d end) {
+        double dx = end.getX() - start.getX(), dy = end.getY() - start.getY();
+        double px = point.getX() - start.getX(), py = point.getY() - start.getY();
+        double lengthSquared = dx * dx + dy * dy;
+        double along = lengthSquared > 0 ? Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared)) : 0;
+        return Math.hypot(px - along * dx, py - along * dy);
+    }
+
+    /**
+     * Growable x and y arrays used while sampling.
+     */
+    private static class Points {
+        double[] x = new double[64], y = new double[64];
+        int size = 0;
+
+        void add(Pose2d pose) {
+            if (size == x.length) {
+                x = Arrays.copyOf(x, size * 2);
+                y = Arrays.copyOf(y, size * 2);
+            }
+            x[size] = pose.getX();
+            y[size] = pose.getY();
+            size++;
+        }
     }
 }
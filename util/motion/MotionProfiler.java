@@ -1,11 +1,278 @@
 package org.firstinspires.ftc.teamcode.util.motion;
 
-import com.acmerobotics.roadrunner.profile.MotionProfile;
-import com.acmerobotics.roadrunner.profile.MotionProfileGenerator;
-import com.acmerobotics.roadrunner.profile.MotionState;
-import com.acmerobotics.roadrunner.path.Path;
-
+/**
+ * MotionProfiler plans jerk-limited (S-curve) moves of a single axis, such as a lift or a slide,
+ * from any position, velocity and acceleration to a target where it comes to rest. A plan is at
+ * most seven constant-jerk segments: change velocity to a peak, cruise, and slow down to zero.
+ * Each velocity change is solved in closed form; the peak velocity of a move too short to reach
+ * the velocity limit is found by bisection over those closed forms, so planning takes a few
+ * microseconds and allocates nothing.
+ *
+ * Moves can be replanned at any time from the state the current plan is in, so that a new target
+ * does not cause a jump in velocity or acceleration. Lookups by time allocate nothing either.
+ *
+ * Units are up to the caller (usually encoder ticks and seconds); times are absolute, for example
+ * from <code>System.nanoTime() / 1e9</code>.
+ */
 public class MotionProfiler {
 
+    /* CONSTANTS */
+    private static final int MAX_SEGMENTS = 7;
+    private static final int ITERATIONS = 60;
+    private static final double EPSILON = 1e-9;
+
+    private double maxVelocity, maxAcceleration, maxJerk;
+
+    /* Plan: start time and jerk of each segment, and the state at its start */
+    private double startTime = 0;
+    private final double[] times = new double[MAX_SEGMENTS + 1];
+    private final double[] jerks = new double[MAX_SEGMENTS];
+    private final double[] positions = new double[MAX_SEGMENTS + 1];
+    private final double[] velocities = new double[MAX_SEGMENTS + 1];
+    private final double[] accelerations = new double[MAX_SEGMENTS + 1];
+    private int count = 0;
+    private double target = 0;
+    private boolean planned = false;
+
+    /* Scratch segments of one velocity change */
+    private final double[] changeTimes = new double[3];
+    private final double[] changeJerks = new double[3];
+
+    /**
+     * Constructor for MotionProfiler.
+     * @param maxVelocity       largest velocity
+     * @param maxAcceleration   largest acceleration
+     * @param maxJerk           largest jerk
+     */
+    public MotionProfiler(double maxVelocity, double maxAcceleration, double maxJerk) {
+        setLimits(maxVelocity, maxAcceleration, maxJerk);
+    }
+
+    /**
+     * Sets the limits used by the next plan. The current plan is not changed.
+     * @param maxVelocity       largest velocity
+     * @param maxAcceleration   largest acceleration
+     * @param maxJerk           largest jerk
+     */
+    public void setLimits(double maxVelocity, double maxAcceleration, double maxJerk) {
+        if (maxVelocity <= 0 || maxAcceleration <= 0 || maxJerk <= 0) {
+            throw new IllegalArgumentException("limits must be positive");
+        }
+        this.maxVelocity = maxVelocity;
+        this.maxAcceleration = maxAcceleration;
+        this.maxJerk = maxJerk;
+    }
+
+    /**
+     * Plans a move from a given state to rest at a target.
+     * @param time          time at which the move starts
+     * @param position      position at the start
+     * @param velocity      velocity at the start
+     * @param acceleration  acceleration at the start; clipped to the acceleration limit
+     * @param target        position to stop at
+     */
+    public void plan(double time, double position, double velocity, double acceleration, double target) {
+        acceleration = Math.max(-maxAcceleration, Math.min(maxAcceleration, acceleration));
+        double distance = target - position;
+
+        // Distance covered without cruising for the fastest peak velocity in each direction
+        double forward = distance(velocity, acceleration, maxVelocity);
+        double backward = distance(velocity, acceleration, -maxVelocity);
+        double peak, cruise = 0;
+        if (distance >= forward) {
+            peak = maxVelocity;
+            cruise = (distance - forward) / maxVelocity;
+        } else if (distance <= backward) {
+            peak = -maxVelocity;
+            cruise = (backward - distance) / maxVelocity;
+        } else {
+            // Distance grows with the peak velocity, so the right peak lies between the two
+            double low = -maxVelocity, high = maxVelocity;
+            for (int i = 0; i < ITERATIONS; i++) {
+                peak = (low + high) / 2;
+                if (distance(velocity, acceleration, peak) < distance) low = peak;
+                else high = peak;
+            }
+            peak = (low + high) / 2;
+        }
+
+        startTime = time;
+        this.target = target;
+        count = 0;
+        times[0] = 0;
+        positions[0] = position;
+        velocities[0] = velocity;
+        accelerations[0] = acceleration;
+        append(velocityChange(velocity, acceleration, peak));
+        if (cruise > 0) {
+            changeTimes[0] = cruise;
+            changeJerks[0] = 0;
+            append(1);
+        }
+        append(velocityChange(peak, 0, 0));
+        // Rest exactly at the target rather than where the bisection and rounding left it
+        positions[count] = target;
+        velocities[count] = 0;
+        accelerations[count] = 0;
+        planned = true;
+    }
+
+    /**
+     * Plans a move to a new target from the state of the current plan at the given time. Plans
+     * from rest at the target of the current plan if there is no plan yet.
+     * @param time      time at which the new move starts
+     * @param target    position to stop at
+     */
+    public void replan(double time, double target) {
+        if (!planned) {
+            plan(time, this.target, 0, 0, target);
+            return;
+        }
+        plan(time, getPosition(time), getVelocity(time), getAcceleration(time), target);
+    }
+
+    /**
+     * Returns the planned position at a time.
+     */
+    public double getPosition(double time) {
+        int i = segment(time);
+        if (i == count) return positions[count];
+        double t = time - startTime - times[i];
+        return positions[i] + t * (velocities[i] + t * (accelerations[i] / 2 + t * jerks[i] / 6));
+    }
+
+    /**
+     * Returns the planned velocity at a time.
+     */
+    public double getVelocity(double time) {
+        int i = segment(time);
+        if (i == count) return velocities[count];
+        double t = time - startTime - times[i];
+        return velocities[i] + t * (accelerations[i] + t * jerks[i] / 2);
+    }
+
+    /**
+     * Returns the planned acceleration at a time.
+     */
+    public double getAcceleration(double time) {
+        int i = segment(time);
+        if (i == count) return accelerations[count];
+        double t = time - startTime - times[i];
+        return accelerations[i] + t * jerks[i];
+    }
+
+    /**
+     * Returns whether the planned move is over at a time.
+     */
+    public boolean isFinished(double time) { return time - startTime >= times[count]; }
+
+    /**
+     * Returns the length of the planned move in seconds.
+     */
+    public double getDuration() { return times[count]; }
+
+    /**
+     * Returns the time at which the planned move ends.
+     */
+    public double getEndTime() { return startTime + times[count]; }
+
+    /**
+     * Returns the target of the planned move.
+     */
+    public double getTarget() { return target; }
+
+    /**
+     * Returns the number of constant-jerk segments in the planned move.
+     */
+    public int getSegmentCount() { return count; }
+
+    /**
+     * Returns the segment that contains a time, or count once the move is over.
+     */
+    private int segment(double time) {
+        double t = time - startTime;
+        if (t >= times[count]) return count;
+        int i = 0;
+        while (i < count - 1 && t >= times[i + 1]) i++;
+        return i;
+    }
+
+    /**
+     * Appends the scratch segments to the plan, integrating the state at the end of each.
+     */
+    private void append(int segments) {
+        for (int k = 0; k < segments; k++) {
+            double t = changeTimes[k];
+            if (t <= EPSILON) continue;
+            int i = count++;
+            double j = changeJerks[k];
+            jerks[i] = j;
+            times[i + 1] = times[i] + t;
+            positions[i + 1] = positions[i] + t * (velocities[i] + t * (accelerations[i] / 2 + t * j / 6));
+            velocities[i + 1] = velocities[i] + t * (accelerations[i] + t * j / 2);
+            accelerations[i + 1] = accelerations[i] + t * j;
+        }
+    }
+
+    /**
+     * Returns the distance covered by changing velocity to a peak and then slowing down to zero.
+     */
+    private double distance(double velocity, double acceleration, double peak) {
+        return displacement(velocityChange(velocity, acceleration, peak), velocity, acceleration)
+                + displacement(velocityChange(peak, 0, 0), peak, 0);
+    }
+
+    /**
+     * Returns the distance covered by the scratch segments from a given velocity and acceleration.
+     */
+    private double displacement(int segments, double velocity, double acceleration) {
+        double position = 0;
+        for (int k = 0; k < segments; k++) {
+            double t = changeTimes[k], j = changeJerks[k];
+            position += t * (velocity + t * (acceleration / 2 + t * j / 6));
+            velocity += t * (acceleration + t * j / 2);
+            acceleration += t * j;
+        }
+        return position;
+    }
+
+    /**
+     * Solves the fastest change from a velocity and acceleration to another velocity at zero
+     * acceleration: jerk towards a peak acceleration, hold it if it reaches the limit, and jerk
+     * back to zero. The segments are left in the scratch arrays.
+     * @return number of segments
+     */
+    private int velocityChange(double v0, double a0, double v1) {
+        double j = maxJerk, aMax = maxAcceleration;
+
+        // Velocity reached by only bringing the acceleration back to zero
+        double settled = v0 + a0 * Math.abs(a0) / (2 * j);
+        if (Math.abs(v1 - settled) <= EPSILON * maxVelocity) {
+            changeTimes[0] = Math.abs(a0) / j;
+            changeJerks[0] = -Math.signum(a0) * j;
+            return 1;
+        }
+
+        // Work in the direction of the change
+        double sign = Math.signum(v1 - settled);
+        double a = sign * a0;
+        double dv = sign * (v1 - v0);
+        double peak, hold;
+        double rampChange = (2 * aMax * aMax - a * a) / (2 * j);
+        if (rampChange <= dv) {
+            peak = aMax;
+            hold = (dv - rampChange) / aMax;
+        } else {
+            peak = Math.sqrt((2 * j * dv + a * a) / 2);
+            hold = 0;
+        }
 
+        changeTimes[0] = (peak - a) / j;
+        changeJerks[0] = sign * j;
+        changeTimes[1] = hold;
+        changeJerks[1] = 0;
+        changeTimes[2] = peak / j;
+        changeJerks[2] = -sign * j;
+        return 3;
+    }
 }
@@ -0,0 +1,255 @@
+package org.firstinspires.ftc.teamcode.util.motion;
+
+/**
+ * MultiAxisPID runs any number of independent PID loops (e.g. x, y, heading, lift, slides) whose
+ * state is packed into primitive arrays. No call allocates, so it is safe to run every cycle.
+ *
+ * Unlike {@link PIDController}, gains are per second: the integral and derivative terms use the
+ * time between calls, so behavior does not change with the loop rate. The derivative is taken on
+ * the measurement (no kick when the setpoint changes) and passed through a first order low-pass
+ * filter. The integral is clamped and stops accumulating while the output is saturated.
+ *
+ * Gains tuned on {@link PIDController} at a fixed loop period <code>dt</code> convert as
+ * <code>kI = ki / dt</code> and <code>kD = kd * dt</code>.
+ */
+public class MultiAxisPID {
+
+    /* CONSTANTS */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final int axes;
+
+    /* Gains and limits */
+    private final double[] kP, kI, kD;
+    private final double[] outMin, outMax;
+    private final double[] integralMax;
+    private final double[] filterTime;
+    private final double[] range;
+    private final double[] tolerance;
+
+    /* Loop state */
+    private final double[] setpoint;
+    private final double[] error;
+    private final double[] integral;
+    private final double[] derivative;
+    private final double[] lastMeasurement;
+    private final double[] output;
+    private final long[] lastTime;
+    private final boolean[] started;
+
+    /**
+     * Constructor for MultiAxisPID. All gains start at zero and outputs are limited to [-1, 1].
+     * @param axes      number of independent axes
+     */
+    public MultiAxisPID(int axes) {
+        this.axes = axes;
+        kP = new double[axes];
+        kI = new double[axes];
+        kD = new double[axes];
+        outMin = new double[axes];
+        outMax = new double[axes];
+        integralMax = new double[axes];
+        filterTime = new double[axes];
+        range = new double[axes];
+        tolerance = new double[axes];
+        setpoint = new double[axes];
+        error = new double[axes];
+        integral = new double[axes];
+        derivative = new double[axes];
+        lastMeasurement = new double[axes];
+        output = new double[axes];
+        lastTime = new long[axes];
+        started = new boolean[axes];
+
+        for (int axis = 0; axis < axes; axis++) {
+            outMin[axis] = -1;
+            outMax[axis] = 1;
+            integralMax[axis] = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Returns the number of axes.
+     */
+    public int getAxes() { return axes; }
+
+    /**
+     * Sets the gains of an axis. Gains may be changed at any time without resetting the axis.
+     * @param axis      axis number
+     * @param p         proportional gain (output per unit of error)
+     * @param i         integral gain (output per unit of error per second)
+     * @param d         derivative gain (output per unit of error per second of change)
+     */
+    public void setGains(int axis, double p, double i, double d) {
+        kP[axis] = p;
+        kI[axis] = i;
+        kD[axis] = d;
+    }
+
+    public double getP(int axis) { return kP[axis]; }
+
+    public double getI(int axis) { return kI[axis]; }
+
+    public double getD(int axis) { return kD[axis]; }
+
+    /**
+     * Sets the limits of an axis's output.
+     * @param axis      axis number
+     * @param min       minimum output
+     * @param max       maximum output
+     */
+    public void setOutputRange(int axis, double min, double max) {
+        outMin[axis] = min;
+        outMax[axis] = max;
+    }
+
+    /**
+     * Limits the contribution of the integral term to the output.
+     * @param axis      axis number
+     * @param max       maximum magnitude of <code>kI * integral</code>
+     */
+    public void setIntegralLimit(int axis, double max) {
+        integralMax[axis] = Math.abs(max);
+    }
+
+    /**
+     * Sets the time constant of the derivative low-pass filter.
+     * @param axis      axis number
+     * @param seconds   filter time constant, 0 for no filtering
+     */
+    public void setDerivativeFilter(int axis, double seconds) {
+        filterTime[axis] = Math.max(0, seconds);
+    }
+
+    /**
+     * Makes an axis continuous, so that errors wrap around and the shortest way to the setpoint
+     * is always taken (e.g. 360 for a heading in degrees, 2 * PI in radians).
+     * @param axis      axis number
+     * @param period    size of one full turn, 0 to turn wrapping off
+     */
+    public void setContinuous(int axis, double period) {
+        range[axis] = Math.abs(period);
+    }
+
+    /**
+     * Sets the absolute error within which an axis is considered on target.
+     * @param axis      axis number
+     * @param tolerance allowed error
+     */
+    public void setTolerance(int axis, double tolerance) {
+        this.tolerance[axis] = Math.abs(tolerance);
+    }
+
+    /**
+     * Sets the setpoint of an axis.
+     * @param axis      axis number
+     * @param value     desired value
+     */
+    public void setSetpoint(int axis, double value) { setpoint[axis] = value; }
+
+    public double getSetpoint(int axis) { return setpoint[axis]; }
+
+    /**
+     * Returns the error of an axis from its last update.
+     */
+    public double getError(int axis) { return error[axis]; }
+
+    /**
+     * Returns the output of an axis from its last update.
+     */
+    public double getOutput(int axis) { return output[axis]; }
+
+    /**
+     * Returns true if the error of an axis is within its tolerance.
+     */
+    public boolean onTarget(int axis) {
+        return started[axis] && Math.abs(error[axis]) <= tolerance[axis];
+    }
+
+    /**
+     * Clears the integral, derivative and timing state of an axis. Gains and limits are kept.
+     * @param axis      axis number
+     */
+    public void reset(int axis) {
+        error[axis] = 0;
+        integral[axis] = 0;
+        derivative[axis] = 0;
+        output[axis] = 0;
+        started[axis] = false;
+    }
+
+    /**
+     * Clears the state of every axis.
+     */
+    public void reset() {
+        for (int axis = 0; axis < axes; axis++) reset(axis);
+    }
+
+    /**
+     * Updates one axis with a new measurement.
+     * @param axis          axis number
+     * @param measurement   measured value
+     * @param nanoTime      time of the measurement from <code>System.nanoTime()</code>
+     * @return the new output
+     */
+    public double update(int axis, double measurement, long nanoTime) {
+        double period = range[axis];
+        double e = wrap(setpoint[axis] - measurement, period);
+        error[axis] = e;
+
+        // First sample: nothing to differentiate or integrate against
+        if (!started[axis]) {
+            started[axis] = true;
+            lastMeasurement[axis] = measurement;
+            lastTime[axis] = nanoTime;
+            return output[axis] = clip(kP[axis] * e + kI[axis] * integral[axis], outMin[axis], outMax[axis]);
+        }
+
+        double dt = (nanoTime - lastTime[axis]) / NANOS_PER_SECOND;
+        lastTime[axis] = nanoTime;
+        if (dt <= 0) return output[axis];
+
+        // Derivative on measurement, filtered
+        double rate = -wrap(measurement - lastMeasurement[axis], period) / dt;
+        lastMeasurement[axis] = measurement;
+        double tau = filterTime[axis];
+        derivative[axis] += (rate - derivative[axis]) * (tau > 0 ? dt / (tau + dt) : 1);
+
+        // Integrate unless the last output was saturated in the direction of the error
+        double ki = kI[axis];
+        if (ki != 0) {
+            boolean saturated = (output[axis] >= outMax[axis] && e > 0) || (output[axis] <= outMin[axis] && e < 0);
+            if (!saturated) {
+                double limit = integralMax[axis] / Math.abs(ki);
+                integral[axis] = clip(integral[axis] + e * dt, -limit, limit);
+            }
+        }
+
+        double result = kP[axis] * e + ki * integral[axis] + kD[axis] * derivative[axis];
+        return output[axis] = clip(result, outMin[axis], outMax[axis]);
+    }
+
+    /**
+     * Updates every axis with a new set of measurements taken at the same time.
+     * @param measurements  measured value of each axis
+     * @param nanoTime      time of the measurements from <code>System.nanoTime()</code>
+     * @param out           array to write each axis's output to
+     */
+    public void update(double[] measurements, long nanoTime, double[] out) {
+        for (int axis = 0; axis < axes; axis++) {
+            out[axis] = update(axis, measurements[axis], nanoTime);
+        }
+    }
+
+    private static double wrap(double value, double period) {
+        if (period <= 0) return value;
+        value %= period;
+        if (value > period / 2) value -= period;
+        else if (value < -period / 2) value += period;
+        return value;
+    }
+
+    private static double clip(double value, double min, double max) {
+        return value < min ? min : value > max ? max : value;
+    }
+}
@@ -1,4 +1,320 @@
 package org.firstinspires.ftc.teamcode.util.motion;
 
-public class Odometry {
+import android.util.Log;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.drive.Localizer;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Odometry tracks the pose of a mecanum drivetrain from its four wheel encoders. Each step turns
+ * the wheel deltas into a robot relative twist and integrates it along an arc (the pose
+ * exponential), so a robot that drives and turns at the same time does not build up the error of
+ * straight-line integration. When an IMU heading is available it replaces the wheel heading every
+ * few steps, as wheel slip shows up mostly in the heading.
+ *
+ * Odometry can be updated by the control loop through <code>update()</code> like any other
+ * {@link Localizer}, or run on its own thread at a fixed rate with <code>start()</code>. Every step
+ * publishes an immutable {@link Snapshot}, so the pose can be read from any thread without locks.
+ *
+ * Resetting the wheel encoders would look like one large wheel movement, so a reset must be
+ * wrapped in <code>beginWheelReset()</code> and <code>endWheelReset()</code>. The first reading
+ * after it becomes the new baseline and the pose is kept.
+ */
+public class Odometry implements Localizer {
+
+    /* CONSTANTS */
+    private static final String TAG = "Odometry";
+    /**
+     * Default steps per second of the odometry thread.
+     */
+    public static final double DEFAULT_RATE = 200;
+    /**
+     * Default number of steps between IMU heading reads.
+     */
+    public static final int DEFAULT_HEADING_INTERVAL = 4;
+
+    /**
+     * Source of wheel positions and heading. Implemented by the drivetrain.
+     */
+    public interface Source {
+        /**
+         * Reads the wheel positions in inches.
+         * @param positions array filled in the order lf, lb, rf, rb
+         * @return whether the positions were read
+         */
+        boolean getWheelPositions(double[] positions);
+
+        /**
+         * Returns the heading in radians, counterclockwise positive, or NaN if there is no IMU.
+         */
+        double getHeading();
+    }
+
+    /**
+     * Pose of the robot at one step.
+     */
+    public static class Snapshot {
+        /**
+         * Field relative pose in inches and radians.
+         */
+        public final Pose2d pose;
+        /**
+         * Robot relative velocity in inches and radians per second.
+         */
+        public final Pose2d velocity;
+        /**
+         * System.nanoTime() of the wheel reading.
+         */
+        public final long timestamp;
+        /**
+         * Number of steps taken so far.
+         */
+        public final long sequence;
+
+        Snapshot(Pose2d pose, Pose2d velocity, long timestamp, long sequence) {
+            this.pose = pose;
+            this.velocity = velocity;
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+        }
+    }
+
+    private final Source source;
+    // Half of the track width plus the wheel base
+    private final double k;
+
+    /* Integrator state, owned by the thread that steps */
+    private final double[] positions = new double[4];
+    private final double[] lastPositions = new double[4];
+    private boolean primed = false;
+    private double x = 0, y = 0, heading = 0;
+    private double headingOffset = 0;
+    private boolean headingKnown = false;
+    private long lastTime = 0;
+    private long sequence = 0;
+    private int lastWheelResets = 0;
+
+    /* Published state */
+    private volatile Snapshot snapshot = new Snapshot(new Pose2d(0, 0, 0), new Pose2d(0, 0, 0), 0, 0);
+    private final AtomicReference<Pose2d> reset = new AtomicReference<>();
+    // Odd while the wheel encoders are being reset
+    private final AtomicInteger wheelResets = new AtomicInteger();
+
+    /* Thread */
+    private long periodNs = (long) (1e9 / DEFAULT_RATE);
+    private int headingInterval = DEFAULT_HEADING_INTERVAL;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    /**
+     * Constructor for Odometry on a drivetrain with a square wheel layout.
+     * @param source        wheel positions and heading
+     * @param trackWidth    distance between the left and right wheels in inches
+     */
+    public Odometry(Source source, double trackWidth) {
+        this(source, trackWidth, trackWidth);
+    }
+
+    /**
+     * Constructor for Odometry.
+     * @param source        wheel positions and heading
+     * @param trackWidth    distance between the left and right wheels in inches
+     * @param wheelBase     distance between the front and back wheels in inches
+     */
+    public Odometry(Source source, double trackWidth, double wheelBase) {
+        this.source = source;
+        this.k = (trackWidth + wheelBase) / 2;
+    }
+
+    /**
+     * Sets how many times per second the odometry thread steps.
+     * @param hz        steps per second
+     */
+    public void setRate(double hz) { periodNs = (long) (1e9 / hz); }
+
+    /**
+     * Sets how many steps pass between IMU heading reads. 0 uses the wheel heading only.
+     * @param steps     steps between heading reads
+     */
+    public void setHeadingInterval(int steps) { headingInterval = steps; }
+
+    /**
+     * Starts stepping on the odometry thread. <code>update()</code> does nothing while it runs.
+     */
+    public void start() {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() { loop(); }
+        }, "Odometry");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stops the odometry thread. The pose is kept and <code>update()</code> steps again.
+     */
+    public void stop() {
+        if (thread == null) return;
+        running = false;
+        try {
+            thread.join(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Returns whether the odometry thread is running.
+     */
+    public boolean isRunning() { return running; }
+
+    /**
+     * Returns the most recently published snapshot.
+     */
+    public Snapshot getSnapshot() { return snapshot; }
+
+    @NotNull
+    @Override
+    public Pose2d getPoseEstimate() {
+        // A pose that was set but not yet applied wins over the last step
+        Pose2d pending = reset.get();
+        return pending != null ? pending : snapshot.pose;
+    }
+
+    @Override
+    public void setPoseEstimate(@NotNull Pose2d pose) {
+        reset.set(pose);
+    }
+
+    /**
+     * Marks the start of a wheel encoder reset. Readings taken until <code>endWheelReset()</code>
+     * are thrown away.
+     */
+    public void beginWheelReset() { wheelResets.incrementAndGet(); }
+
+    /**
+     * Marks the end of a wheel encoder reset. The next reading becomes the new baseline.
+     */
+    public void endWheelReset() { wheelResets.incrementAndGet(); }
+
+    /**
+     * Takes one step, unless the odometry thread is running.
+     */
+    @Override
+    public void update() {
+        if (!running) step();
+    }
+
+    private void loop() {
+        long next = System.nanoTime();
+        while (running) {
+            try {
+                step();
+            } catch (RuntimeException e) {
+                // A failed read skips a step; the next delta covers it
+                Log.e(TAG, "step failed", e);
+            }
+
+            next += periodNs;
+            long now = System.nanoTime();
+            if (next - now > 0) {
+                LockSupport.parkNanos(next - now);
+            } else if (now - next > periodNs) {
+                // Too far behind to catch up; keep the rate from here
+                next = now;
+            }
+        }
+    }
+
+    private void step() {
+        Pose2d pending = reset.get();
+        if (pending != null) {
+            x = pending.getX();
+            y = pending.getY();
+            heading = pending.getHeading();
+            headingKnown = false;
+        }
+
+        long time = System.nanoTime();
+        int resets = wheelResets.get();
+        if (!source.getWheelPositions(positions)) return;
+        // A reset began before or during the reading; wait for it to end
+        if ((resets & 1) != 0 || wheelResets.get() != resets) {
+            primed = false;
+            return;
+        }
+        if (resets != lastWheelResets) {
+            lastWheelResets = resets;
+            primed = false;
+        }
+        if (!primed) {
+            System.arraycopy(positions, 0, lastPositions, 0, 4);
+            primed = true;
+            lastTime = time;
+            publish(pending, 0, 0, 0, time);
+            return;
+        }
+
+        double lf = positions[0] - lastPositions[0];
+        double lb = positions[1] - lastPositions[1];
+        double rf = positions[2] - lastPositions[2];
+        double rb = positions[3] - lastPositions[3];
+        System.arraycopy(positions, 0, lastPositions, 0, 4);
+
+        // Robot relative twist from the mecanum forward kinematics
+        double dx = (lf + lb + rf + rb) / 4;
+        double dy = (-lf + lb + rf - rb) / 4;
+        double dTheta = (-lf - lb + rf + rb) / (4 * k);
+
+        if (headingInterval > 0 && sequence % headingInterval == 0) {
+            double imuHeading = source.getHeading();
+            if (!Double.isNaN(imuHeading)) {
+                if (headingKnown) {
+                    dTheta = Math.IEEEremainder(imuHeading + headingOffset - heading, 2 * Math.PI);
+                } else {
+                    // The first reading after a reset lines the IMU up with the pose
+                    headingOffset = heading + dTheta - imuHeading;
+                    headingKnown = true;
+                }
+            }
+        }
+
+        // Pose exponential: follow the arc with constant twist instead of a straight line
+        double sinTerm, cosTerm;
+        if (Math.abs(dTheta) < 1e-6) {
+            sinTerm = 1 - dTheta * dTheta / 6;
+            cosTerm = dTheta / 2;
+        } else {
+            sinTerm = Math.sin(dTheta) / dTheta;
+            cosTerm = (1 - Math.cos(dTheta)) / dTheta;
+        }
+        double forward = sinTerm * dx - cosTerm * dy;
+        double left = cosTerm * dx + sinTerm * dy;
+
+        double cos = Math.cos(heading), sin = Math.sin(heading);
+        x += cos * forward - sin * left;
+        y += sin * forward + cos * left;
+        heading = Math.IEEEremainder(heading + dTheta, 2 * Math.PI);
+
+        double dt = (time - lastTime) / 1e9;
+        lastTime = time;
+        if (dt > 0) publish(pending, dx / dt, dy / dt, dTheta / dt, time);
+        else publish(pending, 0, 0, 0, time);
+    }
+
+    private void publish(Pose2d pending, double vx, double vy, double omega, long time) {
+        snapshot = new Snapshot(new Pose2d(x, y, heading), new Pose2d(vx, vy, omega), time, ++sequence);
+        // Clear the reset only after the pose it set is visible
+        if (pending != null) reset.compareAndSet(pending, null);
+    }
 }
@@ -0,0 +1,320 @@
+package org.firstinspires.ftc.teamcode.util.motion;
+
+/**
+ * PoseEKF is an extended Kalman filter on the field pose (x, y, heading) of the robot. It predicts
+ * from the motion measured by odometry and corrects with absolute pose measurements, such as a
+ * Vuforia target fix.
+ *
+ * Absolute measurements usually arrive late: a camera frame is processed tens of milliseconds
+ * after it was taken. The filter keeps a ring buffer of the last HISTORY steps (time, motion,
+ * state and covariance), applies a measurement at the step it was taken, and replays the motion
+ * recorded since then. Nothing is allocated after construction.
+ */
+public class PoseEKF {
+
+    /* CONSTANTS */
+    /**
+     * Default number of steps kept for late measurements.
+     */
+    public static final int DEFAULT_HISTORY = 128;
+    // Chi-squared value for 3 degrees of freedom at 99.9%; measurements further out are rejected
+    private static final double GATE = 16.27;
+    // Rejections in a row after which a measurement is trusted anyway, as the estimate has drifted
+    private static final int MAX_REJECTIONS = 5;
+    // Uncertainty of a pose given to reset()
+    private static final double INITIAL_DEVIATION = 1;
+    private static final double INITIAL_HEADING_DEVIATION = Math.toRadians(2);
+
+    /* Noise */
+    private double translationNoise = 0.1;       // in of standard deviation per in travelled
+    private double headingNoise = 0.02;          // rad of standard deviation per rad turned
+    private double headingDriftNoise = 0.005;    // rad of standard deviation per in travelled
+    private double measurementNoise = 2;         // in of standard deviation
+    private double measurementHeadingNoise = Math.toRadians(4);
+
+    /* Current state */
+    private double x, y, heading;
+    private final double[] p = new double[9];
+
+    /* History ring buffer: entry k holds the motion that led to it and the state after it */
+    private final int capacity;
+    private final long[] times;
+    private final double[] motions;
+    private final double[] states;
+    private final double[] covariances;
+    private int newest = -1;
+    private int size = 0;
+
+    /* Scratch */
+    private final double[] f = new double[9];
+    private final double[] s = new double[9];
+    private final double[] sInverse = new double[9];
+    private final double[] gain = new double[9];
+    private final double[] scratch = new double[9];
+
+    private long rejected = 0;
+    private int rejectedInRow = 0;
+
+    /**
+     * Constructor for PoseEKF with DEFAULT_HISTORY steps of history.
+     */
+    public PoseEKF() {
+        this(DEFAULT_HISTORY);
+    }
+
+    /**
+     * Constructor for PoseEKF.
+     * @param history   number of steps kept for late measurements
+     */
+    public PoseEKF(int history) {
+        capacity = history;
+        times = new long[history];
+        motions = new double[history * 3];
+        states = new double[history * 3];
+        covariances = new double[history * 9];
+    }
+
+    /**
+     * Sets how quickly uncertainty grows with motion.
+     * @param translation   standard deviation of position per inch travelled
+     * @param heading       standard deviation of heading per radian turned
+     * @param headingDrift  standard deviation of heading in radians per inch travelled
+     */
+    public void setProcessNoise(double translation, double heading, double headingDrift) {
+        translationNoise = translation;
+        headingNoise = heading;
+        headingDriftNoise = headingDrift;
+    }
+
+    /**
+     * Sets the standard deviation of absolute measurements.
+     * @param translation   standard deviation of position in inches
+     * @param heading       standard deviation of heading in radians
+     */
+    public void setMeasurementNoise(double translation, double heading) {
+        measurementNoise = translation;
+        measurementHeadingNoise = heading;
+    }
+
+    /**
+     * Sets the pose and clears the history.
+     * @param x             x in inches
+     * @param y             y in inches
+     * @param heading       heading in radians
+     * @param time          System.nanoTime() of the pose
+     */
+    public void reset(double x, double y, double heading, long time) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        for (int i = 0; i < 9; i++) p[i] = 0;
+        p[0] = p[4] = INITIAL_DEVIATION * INITIAL_DEVIATION;
+        p[8] = INITIAL_HEADING_DEVIATION * INITIAL_HEADING_DEVIATION;
+        size = 0;
+        newest = -1;
+        record(time, 0, 0, 0);
+    }
+
+    /**
+     * Moves the pose by the motion measured since the last step.
+     * @param forward   chord of the motion along the robot's mean heading, in inches
+     * @param left      chord of the motion to the left of the robot's mean heading, in inches
+     * @param turn      change of heading in radians
+     * @param time      System.nanoTime() at the end of the motion
+     */
+    public void predict(double forward, double left, double turn, long time) {
+        propagate(forward, left, turn);
+        record(time, forward, left, turn);
+    }
+
+    /**
+     * Corrects the pose with an absolute measurement taken at a time in the past. The state at
+     * that time is corrected and the motion since is replayed.
+     * @param mx        measured x in inches
+     * @param my        measured y in inches
+     * @param mHeading  measured heading in radians
+     * @param time      System.nanoTime() at which the measurement was taken
+     * @return whether the measurement was used; it is dropped if it is older than the history or
+     *         too far from the estimate, unless the last few were dropped as well
+     */
+    public boolean correct(double mx, double my, double mHeading, long time) {
+        if (size == 0) return false;
+
+        // Newest step at or before the measurement
+        int back = 0;
+        int index = newest;
+        while (times[index] - time > 0) {
+            if (++back == size) return false;
+            index = (index - 1 + capacity) % capacity;
+        }
+
+        load(index);
+        if (!update(mx, my, mHeading)) {
+            // Put the current state back
+            load(newest);
+            rejected++;
+            rejectedInRow++;
+            return false;
+        }
+        rejectedInRow = 0;
+        store(index);
+
+        // Replay the motion recorded after the measurement
+        for (int k = 0; k < back; k++) {
+            index = (index + 1) % capacity;
+            propagate(motions[index * 3], motions[index * 3 + 1], motions[index * 3 + 2]);
+            store(index);
+        }
+        return true;
+    }
+
+    public double getX() { return x; }
+
+    public double getY() { return y; }
+
+    public double getHeading() { return heading; }
+
+    /**
+     * Returns an entry of the covariance of (x, y, heading), row major.
+     */
+    public double getCovariance(int row, int column) { return p[row * 3 + column]; }
+
+    /**
+     * Returns how many measurements were rejected as outliers.
+     */
+    public long getRejectedCount() { return rejected; }
+
+    /**
+     * Returns the time of the oldest step a measurement can still be applied to.
+     */
+    public long getOldestTime() {
+        return size == 0 ? 0 : times[(newest - size + 1 + capacity) % capacity];
+    }
+
+    private void propagate(double forward, double left, double turn) {
+        // The chord of an arc points along the mean heading
+        double mean = heading + turn / 2;
+        double cos = Math.cos(mean), sin = Math.sin(mean);
+        double dx = cos * forward - sin * left;
+        double dy = sin * forward + cos * left;
+        x += dx;
+        y += dy;
+        heading = Math.IEEEremainder(heading + turn, 2 * Math.PI);
+
+        // P = F P F^T + Q, with F the identity plus the heading column
+        f[0] = 1; f[1] = 0; f[2] = -dy;
+        f[3] = 0; f[4] = 1; f[5] = dx;
+        f[6] = 0; f[7] = 0; f[8] = 1;
+        multiply(f, p, scratch);
+        multiplyTransposed(scratch, f, p);
+
+        double distance = Math.abs(forward) + Math.abs(left);
+        double translation = translationNoise * translationNoise * distance;
+        p[0] += translation;
+        p[4] += translation;
+        p[8] += headingNoise * headingNoise * Math.abs(turn) + headingDriftNoise * headingDriftNoise * distance;
+    }
+
+    private boolean update(double mx, double my, double mHeading) {
+        double r = measurementNoise * measurementNoise;
+        double rHeading = measurementHeadingNoise * measurementHeadingNoise;
+        for (int i = 0; i < 9; i++) s[i] = p[i];
+        s[0] += r;
+        s[4] += r;
+        s[8] += rHeading;
+        if (!invert(s, sInverse)) return false;
+
+        double ex = mx - x;
+        double ey = my - y;
+        double eHeading = Math.IEEEremainder(mHeading - heading, 2 * Math.PI);
+
+        // Mahalanobis distance of the innovation
+        double distance = ex * (sInverse[0] * ex + sInverse[1] * ey + sInverse[2] * eHeading)
+                + ey * (sInverse[3] * ex + sInverse[4] * ey + sInverse[5] * eHeading)
+                + eHeading * (sInverse[6] * ex + sInverse[7] * ey + sInverse[8] * eHeading);
+        if (distance > GATE && rejectedInRow < MAX_REJECTIONS) return false;
+
+        // K = P S^-1, x += K e, P = (I - K) P
+        multiply(p, sInverse, gain);
+        x += gain[0] * ex + gain[1] * ey + gain[2] * eHeading;
+        y += gain[3] * ex + gain[4] * ey + gain[5] * eHeading;
+        heading = Math.IEEEremainder(heading + gain[6] * ex + gain[7] * ey + gain[8] * eHeading, 2 * Math.PI);
+
+        multiply(gain, p, scratch);
+        for (int i = 0; i < 9; i++) p[i] -= scratch[i];
+        // Keep P symmetric against rounding
+        p[1] = p[3] = (p[1] + p[3]) / 2;
+        p[2] = p[6] = (p[2] + p[6]) / 2;
+        p[5] = p[7] = (p[5] + p[7]) / 2;
+        return true;
+    }
+
+    private void record(long time, double forward, double left, double turn) {
+        newest = (newest + 1) % capacity;
+        if (size < capacity) size++;
+        times[newest] = time;
+        motions[newest * 3] = forward;
+        motions[newest * 3 + 1] = left;
+        motions[newest * 3 + 2] = turn;
+        store(newest);
+    }
+
+    private void store(int index) {
+        states[index * 3] = x;
+        states[index * 3 + 1] = y;
+        states[index * 3 + 2] = heading;
+        System.arraycopy(p, 0, covariances, index * 9, 9);
+    }
+
+    private void load(int index) {
+        x = states[index * 3];
+        y = states[index * 3 + 1];
+        heading = states[index * 3 + 2];
+        System.arraycopy(covariances, index * 9, p, 0, 9);
+    }
+
+    /**
+     * out = a b for 3x3 matrices.
+     */
+    private static void multiply(double[] a, double[] b, double[] out) {
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                out[i * 3 + j] = a[i * 3] * b[j] + a[i * 3 + 1] * b[3 + j] + a[i * 3 + 2] * b[6 + j];
+            }
+        }
+    }
+
+    /**
+     * out = a b^T for 3x3 matrices.
+     */
+    private static void multiplyTransposed(double[] a, double[] b, double[] out) {
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                out[i * 3 + j] = a[i * 3] * b[j * 3] + a[i * 3 + 1] * b[j * 3 + 1] + a[i * 3 + 2] * b[j * 3 + 2];
+            }
+        }
+    }
+
+    /**
+     * Inverts a 3x3 matrix by cofactors.
+     * @return false if the matrix is singular
+     */
+    private static boolean invert(double[] m, double[] out) {
+        double c0 = m[4] * m[8] - m[5] * m[7];
+        double c1 = m[5] * m[6] - m[3] * m[8];
+        double c2 = m[3] * m[7] - m[4] * m[6];
+        double determinant = m[0] * c0 + m[1] * c1 + m[2] * c2;
+        if (Math.abs(determinant) < 1e-12) return false;
+        double inverse = 1 / determinant;
+        out[0] = c0 * inverse;
+        out[1] = (m[2] * m[7] - m[1] * m[8]) * inverse;
+        out[2] = (m[1] * m[5] - m[2] * m[4]) * inverse;
+        out[3] = c1 * inverse;
+        out[4] = (m[0] * m[8] - m[2] * m[6]) * inverse;
+        out[5] = (m[2] * m[3] - m[0] * m[5]) * inverse;
+        out[6] = c2 * inverse;
+        out[7] = (m[1] * m[6] - m[0] * m[7]) * inverse;
+        out[8] = (m[0] * m[4] - m[1] * m[3]) * inverse;
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package org.firstinspires.ftc.teamcode.util.motion;
+
+import com.qualcomm.robotcore.util.Range;
+
+/**
+ * ProfileFollower drives a motor along a {@link MotionProfiler} plan. The power is the
+ * feedforward for the planned velocity and acceleration plus a proportional correction of the
+ * position error, so the motor already moves at the right speed before any error builds up.
+ *
+ * A new target given while a move is still running, or right after it was stopped to make way
+ * for the new one, is planned from the state of that move, so the motor changes direction
+ * smoothly instead of jumping. Any later target is planned from rest.
+ */
+public class ProfileFollower {
+
+    /* CONSTANTS */
+    /**
+     * Time after <code>stop()</code> within which a new target still takes over the stopped move.
+     */
+    public static final double HANDOFF_S = 0.001;
+
+    private final MotionProfiler profile;
+    private final double kV, kA, kStatic, kP;
+    private boolean moving = false;
+    private double stopTime = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Constructor for ProfileFollower.
+     * @param profile   profiler with the limits of the mechanism
+     * @param kV        power per unit of velocity
+     * @param kA        power per unit of acceleration
+     * @param kStatic   power needed to start moving
+     * @param kP        power per unit of position error
+     */
+    public ProfileFollower(MotionProfiler profile, double kV, double kA, double kStatic, double kP) {
+        this.profile = profile;
+        this.kV = kV;
+        this.kA = kA;
+        this.kStatic = kStatic;
+        this.kP = kP;
+    }
+
+    /**
+     * Starts a move to a target. Continues from the current move if there is one or if it was
+     * stopped within HANDOFF_S, otherwise starts from rest at the measured position.
+     * @param time      current time in seconds
+     * @param position  measured position
+     * @param target    position to stop at
+     */
+    public void setTarget(double time, double position, double target) {
+        boolean current = moving || time - stopTime <= HANDOFF_S;
+        if (current && !profile.isFinished(time)) profile.replan(time, target);
+        else profile.plan(time, position, 0, 0, target);
+        moving = true;
+    }
+
+    /**
+     * Returns the power that follows the move at a time.
+     * @param time      current time in seconds
+     * @param position  measured position
+     */
+    public double update(double time, double position) {
+        double velocity = profile.getVelocity(time);
+        double power = kV * velocity + kA * profile.getAcceleration(time)
+                + kP * (profile.getPosition(time) - position);
+        if (velocity != 0) power += Math.signum(velocity) * kStatic;
+        return Range.clip(power, -1, 1);
+    }
+
+    /**
+     * Returns whether the move is over and the measured position is within a tolerance of the
+     * target.
+     */
+    public boolean isFinished(double time, double position, double tolerance) {
+        return profile.isFinished(time) && Math.abs(profile.getTarget() - position) <= tolerance;
+    }
+
+    /**
+     * Ends the move. A target given later than HANDOFF_S from now is planned from rest.
+     * @param time      current time in seconds
+     */
+    public void stop(double time) {
+        moving = false;
+        stopTime = time;
+    }
+
+    /**
+     * Returns the profiler of the follower.
+     */
+    public MotionProfiler getProfile() { return profile; }
+}
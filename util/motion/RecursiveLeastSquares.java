@@ -0,0 +1,108 @@
+package org.firstinspires.ftc.teamcode.util.motion;
+
+/**
+ * RecursiveLeastSquares fits y = theta . x one sample at a time. After every sample the parameters
+ * are the ordinary least squares solution of all samples so far, so a fit can be watched while
+ * the data is still being collected and no sample has to be kept.
+ *
+ * Each update is O(n^2) in the number of parameters and allocates nothing. For a fit with an
+ * intercept, pass a constant 1 as one of the inputs and construct with <code>hasIntercept</code>
+ * so that R^2 is computed the same way as by a regression with an intercept.
+ */
+public class RecursiveLeastSquares {
+
+    /* CONSTANTS */
+    // Starting covariance; large enough that the first samples decide the fit
+    private static final double INITIAL_COVARIANCE = 1e6;
+
+    private final int n;
+    private final boolean hasIntercept;
+    private final double[] theta;
+    private final double[] p;
+    private final double[] px;
+
+    private long count;
+    private double sumY, sumYY, residualSumSquares;
+
+    /**
+     * Constructor for RecursiveLeastSquares.
+     * @param parameters    number of parameters to fit
+     * @param hasIntercept  true if one of the inputs is a constant 1
+     */
+    public RecursiveLeastSquares(int parameters, boolean hasIntercept) {
+        this.n = parameters;
+        this.hasIntercept = hasIntercept;
+        theta = new double[n];
+        p = new double[n * n];
+        px = new double[n];
+        reset();
+    }
+
+    /**
+     * Adds one sample and updates the fit.
+     * @param x         inputs, one per parameter
+     * @param y         output
+     */
+    public void update(double[] x, double y) {
+        // Gain k = P x / (1 + x' P x)
+        double denominator = 1;
+        double predicted = 0;
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            for (int j = 0; j < n; j++) sum += p[i * n + j] * x[j];
+            px[i] = sum;
+            denominator += x[i] * sum;
+            predicted += theta[i] * x[i];
+        }
+        double error = y - predicted;
+
+        for (int i = 0; i < n; i++) theta[i] += px[i] / denominator * error;
+        // P = P - k x' P, kept symmetric so rounding cannot make it indefinite on long runs
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                double value = p[i * n + j] - px[i] * px[j] / denominator;
+                p[i * n + j] = value;
+                p[j * n + i] = value;
+            }
+        }
+
+        residualSumSquares += error * error / denominator;
+        count++;
+        sumY += y;
+        sumYY += y * y;
+    }
+
+    /**
+     * Returns a fitted parameter.
+     * @param i         index of the parameter, in the order of the inputs
+     */
+    public double getParameter(int i) { return theta[i]; }
+
+    /**
+     * Returns the coefficient of determination of the fit, or NaN with fewer than two samples.
+     */
+    public double getRSquared() {
+        if (count < 2) return Double.NaN;
+        double total = hasIntercept ? sumYY - sumY * sumY / count : sumYY;
+        return total > 0 ? 1 - residualSumSquares / total : Double.NaN;
+    }
+
+    /**
+     * Returns the number of samples added.
+     */
+    public long getCount() { return count; }
+
+    /**
+     * Clears the fit and all samples.
+     */
+    public void reset() {
+        for (int i = 0; i < n; i++) {
+            theta[i] = 0;
+            for (int j = 0; j < n; j++) p[i * n + j] = i == j ? INITIAL_COVARIANCE : 0;
+        }
+        count = 0;
+        sumY = 0;
+        sumYY = 0;
+        residualSumSquares = 0;
+    }
+}
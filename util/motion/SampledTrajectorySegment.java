@@ -0,0 +1,113 @@
+package org.firstinspires.ftc.teamcode.util.motion;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.trajectory.Trajectory;
+import com.acmerobotics.roadrunner.trajectory.TrajectorySegment;
+
+import java.nio.FloatBuffer;
+
+/**
+ * SampledTrajectorySegment replays a trajectory from samples taken at a fixed time step. Pose,
+ * velocity and acceleration are linearly interpolated between samples; heading takes the short
+ * way around.
+ *
+ * Samples are stored as nine float arrays, one after another: x, y, heading, then the same for
+ * velocity and acceleration. The buffer may be a view of a memory-mapped file, in which case
+ * samples are read straight from the file.
+ */
+public class SampledTrajectorySegment implements TrajectorySegment {
+
+    /* CONSTANTS */
+    /**
+     * Number of floats per sample.
+     */
+    public static final int CHANNELS = 9;
+
+    private final FloatBuffer samples;
+    private final int count;
+    private final double step;
+    private final double duration;
+
+    /**
+     * Constructor for SampledTrajectorySegment.
+     * @param samples   CHANNELS arrays of count floats each
+     * @param count     number of samples, at least two
+     * @param step      time between samples in seconds
+     * @param duration  time of the last sample in seconds
+     */
+    public SampledTrajectorySegment(FloatBuffer samples, int count, double step, double duration) {
+        if (samples.remaining() < count * CHANNELS) throw new IllegalArgumentException("not enough samples");
+        this.samples = samples;
+        this.count = count;
+        this.step = step;
+        this.duration = duration;
+    }
+
+    /**
+     * Samples a trajectory. Every sample is written to <code>out</code> in the layout read by
+     * the constructor.
+     * @param trajectory    trajectory to sample
+     * @param step          time between samples in seconds
+     * @param out           buffer with room for CHANNELS * sampleCount() floats
+     */
+    public static void sample(Trajectory trajectory, double step, FloatBuffer out) {
+        double duration = trajectory.duration();
+        int count = sampleCount(duration, step);
+        int base = out.position();
+        for (int i = 0; i < count; i++) {
+            double t = Math.min(i * step, duration);
+            put(out, base, count, 0, i, trajectory.get(t));
+            put(out, base, count, 3, i, trajectory.velocity(t));
+            put(out, base, count, 6, i, trajectory.acceleration(t));
+        }
+        out.position(base + count * CHANNELS);
+    }
+
+    /**
+     * Returns the number of samples needed to cover a duration, including both ends.
+     */
+    public static int sampleCount(double duration, double step) {
+        return Math.max(2, (int) Math.ceil(duration / step - 1e-9) + 1);
+    }
+
+    private static void put(FloatBuffer out, int base, int count, int channel, int i, Pose2d pose) {
+        out.put(base + channel * count + i, (float) pose.getX());
+        out.put(base + (channel + 1) * count + i, (float) pose.getY());
+        out.put(base + (channel + 2) * count + i, (float) pose.getHeading());
+    }
+
+    @Override
+    public double duration() { return duration; }
+
+    @Override
+    public Pose2d get(double time) { return interpolate(0, time); }
+
+    @Override
+    public Pose2d velocity(double time) { return interpolate(3, time); }
+
+    @Override
+    public Pose2d acceleration(double time) { return interpolate(6, time); }
+
+    private Pose2d interpolate(int channel, double time) {
+        time = Math.max(0, Math.min(duration, time));
+        int i = Math.min((int) (time / step), count - 2);
+        double t0 = i * step;
+        double t1 = Math.min((i + 1) * step, duration);
+        double fraction = t1 > t0 ? Math.min(1, (time - t0) / (t1 - t0)) : 0;
+
+        int x = channel * count + i, y = x + count, heading = y + count;
+        double headingDelta = samples.get(heading + 1) - samples.get(heading);
+        if (channel == 0) {
+            // Shortest way around for the pose heading; rates are not wrapped
+            headingDelta = Math.IEEEremainder(headingDelta, 2 * Math.PI);
+        }
+        return new Pose2d(
+                lerp(samples.get(x), samples.get(x + 1), fraction),
+                lerp(samples.get(y), samples.get(y + 1), fraction),
+                samples.get(heading) + headingDelta * fraction);
+    }
+
+    private static double lerp(double a, double b, double fraction) {
+        return a + (b - a) * fraction;
+    }
+}
@@ -7,6 +7,10 @@ import java.util.List;
 
 /**
  * Collection of utility methods for feedforward constan "tuning."
+ *
+ * The <code>fit</code> methods work on a finished run. {@link RampFitter} and
+ * {@link ConstantPowerFitter} fit the same constants while the run is in progress, one sample at a
+ * time and without allocating, so a tuning OpMode can sample at the full loop rate.
  */
 public class TuningUtil {
 
@@ -37,6 +41,182 @@ public class TuningUtil {
         }
     }
 
+    /**
+     * Central difference over a stream of samples. Each sample carries a payload (e.g. the motor
+     * power) that is returned alongside the derivative it lines up with. The derivative is for the
+     * middle of the last three samples, so results lag the input by one sample.
+     */
+    public static class CentralDifference {
+        // Ring buffer of the last three samples
+        private final double[] t = new double[3];
+        private final double[] value = new double[3];
+        private final double[] payload = new double[3];
+        private int head = 0, size = 0;
+        private double derivative;
+
+        /**
+         * Adds a sample.
+         * @param time      sample time in seconds
+         * @param sample    sampled value
+         * @param extra     payload that belongs to this sample
+         * @return true if a new derivative is available
+         */
+        public boolean add(double time, double sample, double extra) {
+            head = (head + 1) % 3;
+            t[head] = time;
+            value[head] = sample;
+            payload[head] = extra;
+            if (size < 3) size++;
+            if (size < 3) return false;
+
+            int oldest = (head + 1) % 3;
+            double dt = t[head] - t[oldest];
+            if (dt <= 0) return false;
+            derivative = (value[head] - value[oldest]) / dt;
+            return true;
+        }
+
+        /**
+         * Returns the derivative at the middle sample.
+         */
+        public double getDerivative() { return derivative; }
+
+        /**
+         * Returns the time of the middle sample.
+         */
+        public double getTime() { return t[(head + 2) % 3]; }
+
+        /**
+         * Returns the value of the middle sample.
+         */
+        public double getValue() { return value[(head + 2) % 3]; }
+
+        /**
+         * Returns the payload of the middle sample.
+         */
+        public double getPayload() { return payload[(head + 2) % 3]; }
+
+        /**
+         * Clears all samples.
+         */
+        public void reset() { size = 0; }
+    }
+
+    /**
+     * Streaming version of {@link TuningUtil#fitRampData(List, List, List, boolean)}.
+     */
+    public static class RampFitter {
+        private final boolean fitKStatic;
+        private final CentralDifference velocity = new CentralDifference();
+        private final RecursiveLeastSquares regression;
+        private final double[] x;
+
+        /**
+         * Constructor for RampFitter.
+         * @param fitKStatic true if kStatic should be fit (note: this affects the kV computation)
+         */
+        public RampFitter(boolean fitKStatic) {
+            this.fitKStatic = fitKStatic;
+            regression = new RecursiveLeastSquares(fitKStatic ? 2 : 1, fitKStatic);
+            x = new double[fitKStatic ? 2 : 1];
+            if (fitKStatic) x[1] = 1;
+        }
+
+        /**
+         * Adds a sample from the ramp test.
+         * @param time      sample time in seconds
+         * @param position  motor position in real distance units (not encoder ticks)
+         * @param power     power in the range [0.0, 1.0]
+         */
+        public void addSample(double time, double position, double power) {
+            if (!velocity.add(time, position, power)) return;
+            x[0] = velocity.getDerivative();
+            regression.update(x, velocity.getPayload());
+        }
+
+        public double getKV() { return regression.getParameter(0); }
+
+        public double getKStatic() { return fitKStatic ? regression.getParameter(1) : 0; }
+
+        public double getRSquared() { return regression.getRSquared(); }
+
+        /**
+         * Returns the number of samples in the fit.
+         */
+        public long getCount() { return regression.getCount(); }
+
+        public RampFFResult getResult() {
+            return new RampFFResult(getKV(), getKStatic(), getRSquared());
+        }
+
+        public void reset() {
+            velocity.reset();
+            regression.reset();
+        }
+    }
+
+    /**
+     * Streaming version of {@link TuningUtil#fitConstantPowerData(List, List, double, double, double)}.
+     */
+    public static class ConstantPowerFitter {
+        private final double kV, kStatic;
+        private final CentralDifference velocity = new CentralDifference();
+        private final CentralDifference acceleration = new CentralDifference();
+        private final RecursiveLeastSquares regression = new RecursiveLeastSquares(1, false);
+        private final double[] x = new double[1];
+        private double power;
+
+        /**
+         * Constructor for ConstantPowerFitter.
+         * @param kV        feedforward velocity constant
+         * @param kStatic   feedforward static constant
+         */
+        public ConstantPowerFitter(double kV, double kStatic) {
+            this.kV = kV;
+            this.kStatic = kStatic;
+        }
+
+        /**
+         * Adds a sample from the constant power test.
+         * @param time      sample time in seconds
+         * @param position  motor position in real distance units (not encoder ticks)
+         * @param power     power in the range [0.0, 1.0]
+         */
+        public void addSample(double time, double position, double power) {
+            if (!velocity.add(time, position, power)) return;
+            if (!acceleration.add(velocity.getTime(), velocity.getDerivative(), velocity.getPayload())) return;
+
+            double velocityPower = kV * acceleration.getValue();
+            if (Math.abs(velocityPower) > 1e-2) {
+                velocityPower += Math.signum(velocityPower) * kStatic;
+            } else {
+                velocityPower = 0;
+            }
+            this.power = acceleration.getPayload();
+            x[0] = acceleration.getDerivative();
+            regression.update(x, this.power - velocityPower);
+        }
+
+        public double getKA() { return Math.signum(power) * regression.getParameter(0); }
+
+        public double getRSquared() { return regression.getRSquared(); }
+
+        /**
+         * Returns the number of samples in the fit.
+         */
+        public long getCount() { return regression.getCount(); }
+
+        public AccelFFResult getResult() {
+            return new AccelFFResult(getKA(), getRSquared());
+        }
+
+        public void reset() {
+            velocity.reset();
+            acceleration.reset();
+            regression.reset();
+        }
+    }
+
     private TuningUtil() { }
 
     /**
@@ -47,13 +227,17 @@ public class TuningUtil {
      * @return derivative values
      */
     public static List<Double> numericalDerivative(List<Double> x, List<Double> y) {
-        List<Double> deriv = new ArrayList<>();
-        for (int i = 2; i < x.size(); i++) {
-            deriv.add((y.get(i) - y.get(i-2)) / (x.get(i) - x.get(i-2)));
+        int n = x.size();
+        double[] deriv = new double[n];
+        for (int i = 1; i < n - 1; i++) {
+            deriv[i] = (y.get(i+1) - y.get(i-1)) / (x.get(i+1) - x.get(i-1));
         }
-        deriv.add(0, deriv.get(0));
-        deriv.add(deriv.get(deriv.size() - 1));
-        return deriv;
+        deriv[0] = deriv[1];
+        deriv[n - 1] = deriv[n - 2];
+
+        List<Double> result = new ArrayList<>(n);
+        for (double value : deriv) result.add(value);
+        return result;
     }
 
     /**
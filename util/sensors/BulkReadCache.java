@@ -0,0 +1,227 @@
+package org.firstinspires.ftc.teamcode.util.sensors;
+
+import android.util.Log;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorController;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import org.firstinspires.ftc.teamcode.hardware.RCConfig;
+import org.openftc.revextensions2.ExpansionHubEx;
+import org.openftc.revextensions2.RevBulkData;
+import org.openftc.revextensions2.RevExtensions2;
+
+import static org.firstinspires.ftc.teamcode.util.sensors.BulkSnapshot.ANALOG_CHANNELS;
+import static org.firstinspires.ftc.teamcode.util.sensors.BulkSnapshot.DIGITAL_CHANNELS;
+import static org.firstinspires.ftc.teamcode.util.sensors.BulkSnapshot.MAX_HUBS;
+import static org.firstinspires.ftc.teamcode.util.sensors.BulkSnapshot.MOTOR_PORTS;
+
+/**
+ * BulkReadCache takes one bulk read per Expansion Hub each control cycle and shares the result
+ * with every mechanism on the robot. <code>update()</code> should be called exactly once at the
+ * start of each loop; every encoder, velocity, digital and analog read after that comes from the
+ * cached {@link BulkSnapshot} instead of its own USB transaction.
+ *
+ * Motors are registered once during init, possibly by several mechanisms at once. Registration
+ * returns a slot number which indexes a precomputed (hub, port, sign) table, so a lookup never
+ * touches a map or the controller.
+ */
+public class BulkReadCache {
+
+    /* CONSTANTS */
+    private static final String TAG = "BulkReadCache";
+    private static final int MAX_MOTORS = MAX_HUBS * MOTOR_PORTS;
+
+    /* Hubs */
+    private final ExpansionHubEx[] hubs = new ExpansionHubEx[MAX_HUBS];
+    private final DcMotorController[] controllers = new DcMotorController[MAX_HUBS];
+
+    /* Motor index table */
+    private final DcMotor[] motors = new DcMotor[MAX_MOTORS];
+    private final int[] motorIndex = new int[MAX_MOTORS];
+    private final int[] motorSign = new int[MAX_MOTORS];
+    private int motorCount = 0;
+
+    /* Double buffered snapshots; one is published while the other is being filled */
+    private final BulkSnapshot[] buffers = { new BulkSnapshot(), new BulkSnapshot() };
+    private volatile BulkSnapshot snapshot = buffers[0];
+    private long cycle = 0;
+
+    /**
+     * Default constructor for BulkReadCache.
+     */
+    public BulkReadCache() { }
+
+    /**
+     * Retrieves both Expansion Hubs from the hardware map. A hub that cannot be found is skipped
+     * and motors on it fall back to direct reads.
+     * @param hwMap     robot's hardware map
+     */
+    public void init(HardwareMap hwMap) {
+        RevExtensions2.init();
+        addHub(hwMap, 0, RCConfig.EXPANSION_HUB_1);
+        addHub(hwMap, 1, RCConfig.EXPANSION_HUB_2);
+    }
+
+    private void addHub(HardwareMap hwMap, int hub, String name) {
+        try {
+            hubs[hub] = hwMap.get(ExpansionHubEx.class, name);
+            controllers[hub] = hwMap.get(DcMotorController.class, name);
+        } catch (Exception e) {
+            hubs[hub] = null;
+            controllers[hub] = null;
+            Log.e(TAG, "problem with " + name);
+        }
+    }
+
+    /**
+     * Registers a motor with the cache. The motor's direction must already be set, as the sign is
+     * stored in the index table. Registering the same motor twice returns the same slot.
+     * @param motor     motor to register
+     * @return slot to use for lookups, or -1 if the motor is not on a known hub
+     */
+    public synchronized int register(DcMotor motor) {
+        for (int slot = 0; slot < motorCount; slot++) {
+            if (motors[slot] == motor) return slot;
+        }
+        for (int hub = 0; hub < MAX_HUBS; hub++) {
+            if (controllers[hub] != null && controllers[hub] == motor.getController()) {
+                int slot = motorCount++;
+                motors[slot] = motor;
+                motorIndex[slot] = hub * MOTOR_PORTS + motor.getPortNumber();
+                motorSign[slot] = motor.getDirection() == DcMotorSimple.Direction.FORWARD ? 1 : -1;
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Takes one bulk read per hub and publishes the result as the current snapshot.
+     * @return the new snapshot
+     */
+    public BulkSnapshot update() {
+        BulkSnapshot next = buffers[(int) (++cycle & 1)];
+        for (int hub = 0; hub < MAX_HUBS; hub++) {
+            RevBulkData data = null;
+            if (hubs[hub] != null) {
+                try {
+                    data = hubs[hub].getBulkInputData();
+                } catch (Exception e) {
+                    Log.e(TAG, "get bulk data error");
+                }
+            }
+            next.valid[hub] = data != null;
+            if (data == null) continue;
+
+            for (int port = 0; port < MOTOR_PORTS; port++) {
+                int index = hub * MOTOR_PORTS + port;
+                next.encoders[index] = data.getMotorCurrentPosition(port);
+                next.velocities[index] = data.getMotorVelocity(port);
+                next.atTarget[index] = data.isMotorAtTarget(port);
+            }
+            for (int channel = 0; channel < DIGITAL_CHANNELS; channel++) {
+                next.digital[hub * DIGITAL_CHANNELS + channel] = data.getDigitalInputState(channel);
+            }
+            for (int channel = 0; channel < ANALOG_CHANNELS; channel++) {
+                next.analog[hub * ANALOG_CHANNELS + channel] = data.getAnalogInputValue(channel);
+            }
+        }
+        next.timestamp = System.nanoTime();
+        next.cycle = cycle;
+        snapshot = next;
+        return next;
+    }
+
+    /**
+     * Returns the most recently published snapshot.
+     */
+    public BulkSnapshot getSnapshot() { return snapshot; }
+
+    /**
+     * Returns whether a slot's hub was read successfully in the current snapshot.
+     */
+    public boolean isValid(int slot) { return isValid(snapshot, slot); }
+
+    /**
+     * Returns whether a slot's hub was read successfully in a snapshot. Lookups that take a
+     * snapshot let a caller read several values from the same cycle.
+     */
+    public boolean isValid(BulkSnapshot snapshot, int slot) {
+        return slot >= 0 && snapshot.valid[motorIndex[slot] / MOTOR_PORTS];
+    }
+
+    /**
+     * Returns the encoder position of a registered motor, accounting for its direction.
+     */
+    public int getEncoder(int slot) { return getEncoder(snapshot, slot); }
+
+    public int getEncoder(BulkSnapshot snapshot, int slot) {
+        return snapshot.encoders[motorIndex[slot]] * motorSign[slot];
+    }
+
+    /**
+     * Returns the encoder position of a motor from the current snapshot, or from the motor itself
+     * if it is not registered or its hub was not read.
+     * @param slot      slot of the motor, or -1
+     * @param motor     motor to read if the snapshot cannot be used
+     */
+    public int getEncoder(int slot, DcMotor motor) {
+        BulkSnapshot current = snapshot;
+        return isValid(current, slot) ? getEncoder(current, slot) : motor.getCurrentPosition();
+    }
+
+    /**
+     * Returns the velocity (ticks per second) of a registered motor, accounting for its direction.
+     */
+    public int getVelocity(int slot) { return getVelocity(snapshot, slot); }
+
+    public int getVelocity(BulkSnapshot snapshot, int slot) {
+        return snapshot.velocities[motorIndex[slot]] * motorSign[slot];
+    }
+
+    /**
+     * Returns the velocity (ticks per second) of a motor from the current snapshot, or from the
+     * motor itself if it is not registered or its hub was not read.
+     * @param slot      slot of the motor, or -1
+     * @param motor     motor to read if the snapshot cannot be used
+     */
+    public double getVelocity(int slot, DcMotorEx motor) {
+        BulkSnapshot current = snapshot;
+        return isValid(current, slot) ? getVelocity(current, slot) : motor.getVelocity();
+    }
+
+    /**
+     * Returns whether a registered motor is still running to its target. Only meaningful while
+     * the motor is in RUN_TO_POSITION.
+     */
+    public boolean isBusy(int slot) { return !snapshot.atTarget[motorIndex[slot]]; }
+
+    /**
+     * Returns whether a motor is still running to its target from the current snapshot, or from
+     * the motor itself if it is not registered or its hub was not read.
+     * @param slot      slot of the motor, or -1
+     * @param motor     motor to read if the snapshot cannot be used
+     */
+    public boolean isBusy(int slot, DcMotor motor) {
+        BulkSnapshot current = snapshot;
+        return isValid(current, slot) ? !current.atTarget[motorIndex[slot]] : motor.isBusy();
+    }
+
+    /**
+     * Returns the state of a digital channel on a hub.
+     */
+    public boolean getDigital(int hub, int channel) { return snapshot.getDigital(hub, channel); }
+
+    /**
+     * Returns the value of an analog channel on a hub in millivolts.
+     */
+    public int getAnalog(int hub, int channel) { return snapshot.getAnalog(hub, channel); }
+
+    /**
+     * Returns the Expansion Hub with the given number, or null if it was not found.
+     */
+    public ExpansionHubEx getHub(int hub) { return hubs[hub]; }
+}
@@ -0,0 +1,77 @@
+package org.firstinspires.ftc.teamcode.util.sensors;
+
+/**
+ * BulkSnapshot holds the bulk input data of every Expansion Hub on the robot for a single control
+ * cycle. It is filled by {@link BulkReadCache} and is read-only for everyone else.
+ *
+ * Data is stored in flat primitive arrays indexed by <code>hub * PORTS + port</code> so that a
+ * lookup never touches a map or the motor controller.
+ */
+public class BulkSnapshot {
+
+    /* CONSTANTS */
+    public static final int MAX_HUBS = 2;
+    public static final int MOTOR_PORTS = 4;
+    public static final int DIGITAL_CHANNELS = 8;
+    public static final int ANALOG_CHANNELS = 4;
+
+    /* Hub data */
+    final int[] encoders = new int[MAX_HUBS * MOTOR_PORTS];
+    final int[] velocities = new int[MAX_HUBS * MOTOR_PORTS];
+    final boolean[] atTarget = new boolean[MAX_HUBS * MOTOR_PORTS];
+    final boolean[] digital = new boolean[MAX_HUBS * DIGITAL_CHANNELS];
+    final int[] analog = new int[MAX_HUBS * ANALOG_CHANNELS];
+    final boolean[] valid = new boolean[MAX_HUBS];
+
+    long timestamp;
+    long cycle;
+
+    BulkSnapshot() { }
+
+    /**
+     * Returns the raw encoder count of a motor port.
+     * @param index     hub * MOTOR_PORTS + port
+     */
+    public int getEncoder(int index) { return encoders[index]; }
+
+    /**
+     * Returns the raw velocity (ticks per second) of a motor port.
+     * @param index     hub * MOTOR_PORTS + port
+     */
+    public int getVelocity(int index) { return velocities[index]; }
+
+    /**
+     * Returns whether a motor port in RUN_TO_POSITION has reached its target.
+     * @param index     hub * MOTOR_PORTS + port
+     */
+    public boolean isAtTarget(int index) { return atTarget[index]; }
+
+    /**
+     * Returns the state of a digital channel.
+     * @param hub       hub number
+     * @param channel   digital channel (0 - 7)
+     */
+    public boolean getDigital(int hub, int channel) { return digital[hub * DIGITAL_CHANNELS + channel]; }
+
+    /**
+     * Returns the value of an analog channel in millivolts.
+     * @param hub       hub number
+     * @param channel   analog channel (0 - 3)
+     */
+    public int getAnalog(int hub, int channel) { return analog[hub * ANALOG_CHANNELS + channel]; }
+
+    /**
+     * Returns whether the bulk read of a hub succeeded this cycle.
+     */
+    public boolean isValid(int hub) { return valid[hub]; }
+
+    /**
+     * Returns the System.nanoTime() at which this snapshot was taken.
+     */
+    public long getTimestamp() { return timestamp; }
+
+    /**
+     * Returns the number of the cycle this snapshot belongs to.
+     */
+    public long getCycle() { return cycle; }
+}
@@ -1,7 +1,295 @@
 package org.firstinspires.ftc.teamcode.util.sensors.imu;
 
-public class DoubleIMU {
-    SingleIMU imu1;
-    SingleIMU imu2;
-    SingleIMU[] imus = {imu1, imu2};
+import android.util.Log;
+
+import com.qualcomm.hardware.bosch.BNO055IMU;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+
+/**
+ * DoubleIMU fuses the built in IMUs of both Expansion Hubs into one heading.
+ *
+ * Each IMU sits on the I2C bus of its own hub, so the two can be read at the same time. With
+ * <code>start()</code> each unit gets its own sampler thread, the second started half an output
+ * period after the first; the heading then comes from whichever unit was read last, which gives a
+ * new heading twice as often as one IMU does.
+ *
+ * The two units never agree exactly, so the offset of the second from the first (its bias) is
+ * tracked and removed from its readings. A unit is dropped when it stops producing frames, when
+ * its heading jumps faster than the robot can turn, or when it drifts away from the other one
+ * (the one repeating the same heading, or else the second, is blamed). The other unit then
+ * carries on alone with the last bias, and a dropped unit is taken back once it produces sane
+ * frames again.
+ */
+public class DoubleIMU implements IMU {
+
+    /* CONSTANTS */
+    private static final String TAG = "DoubleIMU";
+    // Frames older than this mean the unit or its hub stopped responding
+    private static final long FREEZE_TIMEOUT_NS = 100000000;
+    // Fastest turn the robot can make; faster heading changes are glitches or resets
+    private static final double MAX_RATE = 1000;                // deg/s
+    // Difference from the tracked bias beyond which the units disagree
+    private static final double DISAGREEMENT = 2;               // deg
+    private static final int DISAGREEMENT_FRAMES = 5;
+    // Weight of each new difference in the bias
+    private static final double BIAS_GAIN = 0.02;
+    private static final int RECOVERY_FRAMES = 50;
+
+    public SingleIMU imu1;
+    public SingleIMU imu2;
+    public SingleIMU[] imus = new SingleIMU[2];
+
+    /* Per unit state, indexed like imus */
+    private final long[] lastSequence = { -1, -1 };
+    private final double[] lastHeading = new double[2];
+    private final double[] previousHeading = new double[2];
+    private final long[] lastTime = new long[2];
+    private final long[] previousTime = new long[2];
+    private final int[] unchanged = new int[2];
+    private final boolean[] healthy = { false, false };
+    private final int[] recovery = new int[2];
+    private final long[] failures = new long[2];
+
+    // Heading of each unit where the fused heading is zero; the first stays at zero unless it was dropped
+    private final double[] offsets = new double[2];
+    private boolean biasSet = false;
+    private int disagreements = 0;
+    private double heading = 0;
+
+    /**
+     * Default constructor for DoubleIMU. <code>init()</code> must be called before use.
+     */
+    public DoubleIMU() { }
+
+    /**
+     * Constructor for DoubleIMU on two IMUs that have already been initialized.
+     * @param imu1      IMU of the first hub, the reference for the bias
+     * @param imu2      IMU of the second hub, or null to run on one IMU
+     */
+    public DoubleIMU(SingleIMU imu1, SingleIMU imu2) {
+        attach(imu1, imu2);
+    }
+
+    /**
+     * Initializes only the first IMU; the fused heading is then that of the first IMU.
+     */
+    @Override
+    public void init(BNO055IMU imu, AxesOrder axesOrder, double heading) {
+        init(imu, null, axesOrder, heading);
+    }
+
+    /**
+     * Initializes both IMUs. They are initialized on two threads, as each takes a while.
+     * @param first     IMU of the first hub
+     * @param second    IMU of the second hub, or null to run on one IMU
+     * @param axesOrder order of the axes
+     * @param heading   heading of the robot at the start, in degrees
+     */
+    public void init(final BNO055IMU first, final BNO055IMU second, final AxesOrder axesOrder, final double heading) {
+        final SingleIMU unit1 = new SingleIMU();
+        final SingleIMU unit2 = second == null ? null : new SingleIMU();
+        Thread other = null;
+        if (unit2 != null) {
+            other = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    unit2.init(second, axesOrder, heading);
+                }
+            }, "IMU init");
+            other.start();
+        }
+        unit1.init(first, axesOrder, heading);
+        if (other != null) {
+            try {
+                other.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        attach(unit1, unit2);
+    }
+
+    private synchronized void attach(SingleIMU imu1, SingleIMU imu2) {
+        this.imu1 = imu1;
+        this.imu2 = imu2;
+        imus[0] = imu1;
+        imus[1] = imu2;
+        for (int i = 0; i < 2; i++) {
+            lastSequence[i] = -1;
+            healthy[i] = imus[i] != null;
+            recovery[i] = 0;
+            offsets[i] = 0;
+        }
+        biasSet = false;
+        disagreements = 0;
+    }
+
+    /**
+     * Starts a sampler thread on each IMU, the second half an output period after the first.
+     */
+    public void start() {
+        imu1.startSampler();
+        if (imu2 == null) return;
+        try {
+            Thread.sleep(SingleIMU.FRAME_PERIOD_NS / 2000000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        imu2.startSampler();
+    }
+
+    /**
+     * Stops the sampler threads. Headings are then read on demand, one IMU after the other.
+     */
+    public void stop() {
+        for (SingleIMU imu : imus) {
+            if (imu != null) imu.stopSampler();
+        }
+    }
+
+    /**
+     * Marks the cached frames as old so that the next read without samplers gets new ones.
+     */
+    public void invalidate() {
+        for (SingleIMU imu : imus) {
+            if (imu != null) imu.invalidate();
+        }
+    }
+
+    /**
+     * Returns the fused heading in degrees, counterclockwise positive, in the frame of the first
+     * IMU.
+     */
+    @Override
+    public synchronized double getHeading() {
+        long now = System.nanoTime();
+        int newest = -1;
+        for (int i = 0; i < 2; i++) {
+            if (imus[i] == null) continue;
+            ImuFrame frame;
+            try {
+                frame = imus[i].getFrame();
+            } catch (Exception e) {
+                fail(i, "read error");
+                continue;
+            }
+            if (frame != null && frame.sequence != lastSequence[i]) accept(i, frame);
+            if (healthy[i] && now - lastTime[i] > FREEZE_TIMEOUT_NS) fail(i, "frozen");
+            if (healthy[i] && (newest < 0 || lastTime[i] - lastTime[newest] > 0)) newest = i;
+        }
+        // Nothing healthy: hold the last heading rather than follow a broken unit
+        if (newest >= 0) heading = normalize(lastHeading[newest] - offsets[newest]);
+        return heading;
+    }
+
+    /**
+     * Returns the shortest signed angle from the current heading to a target heading.
+     * @param targetAngle   target heading in degrees
+     */
+    @Override
+    public double getError(double targetAngle) {
+        return normalize(targetAngle - getHeading());
+    }
+
+    /**
+     * Returns the tracked heading offset of the second IMU from the first, in degrees.
+     */
+    public synchronized double getBias() { return normalize(offsets[1] - offsets[0]); }
+
+    /**
+     * Returns whether a unit is in use.
+     * @param unit      0 for the first IMU, 1 for the second
+     */
+    public synchronized boolean isHealthy(int unit) { return healthy[unit]; }
+
+    /**
+     * Returns how many times a unit has been dropped.
+     * @param unit      0 for the first IMU, 1 for the second
+     */
+    public synchronized long getFailureCount(int unit) { return failures[unit]; }
+
+    /**
+     * Takes in a new frame of a unit and checks it against its own history and the other unit.
+     */
+    private void accept(int i, ImuFrame frame) {
+        boolean first = lastSequence[i] < 0;
+        double dt = (frame.acquisitionTime - lastTime[i]) / 1e9;
+        double step = normalize(frame.heading - lastHeading[i]);
+
+        previousHeading[i] = first ? frame.heading : lastHeading[i];
+        previousTime[i] = first ? frame.acquisitionTime : lastTime[i];
+        lastHeading[i] = frame.heading;
+        lastTime[i] = frame.acquisitionTime;
+        lastSequence[i] = frame.sequence;
+        unchanged[i] = first || step != 0 ? 0 : unchanged[i] + 1;
+
+        if (!first && Math.abs(step) > MAX_RATE * Math.max(dt, SingleIMU.FRAME_PERIOD_NS / 1e9)) {
+            fail(i, "jump");
+            return;
+        }
+        if (!healthy[i] && ++recovery[i] < RECOVERY_FRAMES) return;
+
+        int other = 1 - i;
+        if (imus[other] == null || lastSequence[other] < 0 || !healthy[other]) {
+            if (!healthy[i]) restore(i);
+            return;
+        }
+
+        // Fused heading given by the other unit at the time of this frame
+        double expected = normalize(headingAt(other, frame.acquisitionTime) - offsets[other]);
+        if (!healthy[i] || !biasSet) {
+            // Newly in use: the unit may have reset, so line it up with the other one as it is
+            offsets[i] = normalize(frame.heading - expected);
+            biasSet = true;
+            if (!healthy[i]) restore(i);
+            return;
+        }
+
+        double error = normalize(frame.heading - offsets[i] - expected);
+        if (Math.abs(error) > DISAGREEMENT) {
+            if (++disagreements >= DISAGREEMENT_FRAMES) {
+                // A unit repeating the same heading while the other moves is stuck; otherwise
+                // trust the first
+                fail(unchanged[0] > unchanged[1] ? 0 : 1, "disagreement");
+            }
+            return;
+        }
+        disagreements = 0;
+        // The second unit follows the first; a difference seen from either side moves its offset
+        offsets[1] = normalize(offsets[1] + (i == 1 ? BIAS_GAIN : -BIAS_GAIN) * error);
+    }
+
+    /**
+     * Returns the heading of a unit at a time, interpolated from its last two frames.
+     */
+    private double headingAt(int i, long time) {
+        long span = lastTime[i] - previousTime[i];
+        if (span <= 0) return lastHeading[i];
+        double fraction = (double) (time - previousTime[i]) / span;
+        // Do not extrapolate further than one frame
+        fraction = Math.max(0, Math.min(2, fraction));
+        return previousHeading[i] + fraction * normalize(lastHeading[i] - previousHeading[i]);
+    }
+
+    private void fail(int i, String reason) {
+        recovery[i] = 0;
+        disagreements = 0;
+        if (!healthy[i]) return;
+        healthy[i] = false;
+        failures[i]++;
+        Log.w(TAG, "imu " + (i + 1) + " dropped: " + reason);
+    }
+
+    private void restore(int i) {
+        healthy[i] = true;
+        recovery[i] = 0;
+        disagreements = 0;
+        Log.i(TAG, "imu " + (i + 1) + " back in use");
+    }
+
+    private static double normalize(double degrees) {
+        return AngleUnit.DEGREES.normalize(degrees);
+    }
 }
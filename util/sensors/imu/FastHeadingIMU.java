@@ -0,0 +1,138 @@
+package org.firstinspires.ftc.teamcode.util.sensors.imu;
+
+import com.qualcomm.hardware.bosch.BNO055IMU;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.teamcode.util.sensors.LynxOptimizedI2cFactory;
+import org.openftc.revextensions2.ExpansionHubEx;
+
+/**
+ * FastHeadingIMU reads only the heading of the built in IMU. Instead of the whole orientation
+ * block, each call reads the 2-byte Euler heading register (or 4 bytes for heading and Z rate).
+ *
+ * It should be used on a device made by {@link LynxOptimizedI2cFactory}; the stock I2C device
+ * reads its whole read window regardless of how many registers are asked for.
+ */
+public class FastHeadingIMU implements IMU {
+
+    /* CONSTANTS */
+    private static final double LSB_PER_DEGREE = 16.0;
+    private static final double LSB_PER_DPS = 16.0;
+
+    /**
+     * Source of raw register reads. Implemented by the IMU itself on the robot and by
+     * {@link SimulatedImuRegisters} off of it.
+     */
+    public interface Registers {
+        /**
+         * Reads a block of consecutive registers.
+         * @param register  first register to read
+         * @param count     number of registers to read
+         */
+        byte[] read(BNO055IMU.Register register, int count);
+    }
+
+    public BNO055IMU imu;
+    private Registers registers;
+    private double init_heading = 0D;
+
+    /**
+     * Default constructor for FastHeadingIMU. <code>init()</code> must be called before use.
+     */
+    public FastHeadingIMU() { }
+
+    /**
+     * Constructor for FastHeadingIMU on an IMU that has already been initialized, for example by
+     * {@link SingleIMU}.
+     * @param imu       initialized IMU
+     */
+    public FastHeadingIMU(final BNO055IMU imu) {
+        attach(imu);
+    }
+
+    /**
+     * Constructor for FastHeadingIMU on any register source.
+     * @param registers register source
+     */
+    public FastHeadingIMU(Registers registers) {
+        this.registers = registers;
+    }
+
+    /**
+     * Initializes the optimized IMU on the hub's I2C bus 0.
+     * @param hub       Expansion Hub with the IMU
+     * @param axesOrder order of the axes
+     * @param heading   heading of the robot at the start, in degrees
+     */
+    public void init(ExpansionHubEx hub, AxesOrder axesOrder, double heading) {
+        init(IMUSession.getEmbeddedImu(hub.getStandardModule()), axesOrder, heading);
+    }
+
+    @Override
+    public void init(BNO055IMU imu, AxesOrder axesOrder, double heading) {
+        BNO055IMU.Parameters parameters = new BNO055IMU.Parameters();
+        parameters.mode = BNO055IMU.SensorMode.IMU;
+        parameters.angleUnit = BNO055IMU.AngleUnit.DEGREES;
+        parameters.calibrationDataFile = ImuCalibration.JSON_FILE;
+        this.init_heading = IMUSession.initialize(imu, parameters, heading);
+        attach(imu);
+    }
+
+    private void attach(final BNO055IMU imu) {
+        this.imu = imu;
+        this.registers = new Registers() {
+            @Override
+            public byte[] read(BNO055IMU.Register register, int count) {
+                return imu.read(register, count);
+            }
+        };
+    }
+
+    /**
+     * Returns the heading in degrees, counterclockwise positive, in the range [-180, 180). Matches
+     * the first angle of an intrinsic ZYX orientation.
+     */
+    @Override
+    public double getHeading() {
+        byte[] data = registers.read(BNO055IMU.Register.EUL_H_LSB, 2);
+        return toHeading(data, 0);
+    }
+
+    /**
+     * Returns the rotation rate about the z axis in degrees per second, counterclockwise positive.
+     */
+    public double getHeadingVelocity() {
+        byte[] data = registers.read(BNO055IMU.Register.GYR_DATA_Z_LSB, 2);
+        return toShort(data, 0) / LSB_PER_DPS;
+    }
+
+    /**
+     * Reads the heading and the z rotation rate in one transaction. The gyro Z registers are
+     * directly before the Euler heading registers.
+     * @param out       array of at least 2; receives heading (degrees) and rate (degrees/s)
+     */
+    public void getHeadingAndVelocity(double[] out) {
+        byte[] data = registers.read(BNO055IMU.Register.GYR_DATA_Z_LSB, 4);
+        out[0] = toHeading(data, 2);
+        out[1] = toShort(data, 0) / LSB_PER_DPS;
+    }
+
+    /**
+     * Returns the shortest signed angle from the current heading to a target heading.
+     * @param targetAngle   target heading in degrees
+     */
+    @Override
+    public double getError(double targetAngle) {
+        return AngleUnit.DEGREES.normalize(targetAngle - getHeading());
+    }
+
+    private double toHeading(byte[] data, int offset) {
+        // The BNO055 reports heading clockwise from 0 to 360
+        return AngleUnit.DEGREES.normalize(-toShort(data, offset) / LSB_PER_DEGREE + init_heading);
+    }
+
+    private static int toShort(byte[] data, int offset) {
+        return (short) ((data[offset] & 0xFF) | (data[offset + 1] << 8));
+    }
+}
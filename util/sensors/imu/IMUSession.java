@@ -0,0 +1,112 @@
+package org.firstinspires.ftc.teamcode.util.sensors.imu;
+
+import android.util.Log;
+
+import com.qualcomm.hardware.bosch.BNO055IMU;
+import com.qualcomm.hardware.lynx.LynxModule;
+
+import org.firstinspires.ftc.teamcode.util.sensors.LynxOptimizedI2cFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * IMUSession keeps BNO055s initialized from one OpMode to the next, usually from autonomous to
+ * TeleOp. Initializing a BNO055 takes over a second, but the IMU keeps running between OpModes:
+ * one that is still in the mode it was initialized in, with sensor fusion running, is picked up
+ * as it is. This is read from its operating mode and system status registers, so an IMU that
+ * lost power or was reset is initialized again.
+ *
+ * The session also keeps the heading each IMU was initialized with, so that TeleOp carries on in
+ * autonomous's heading frame. Calibration comes from {@link ImuCalibration} rather than the
+ * SDK's JSON file.
+ */
+public class IMUSession {
+
+    /* CONSTANTS */
+    private static final String TAG = "IMUSession";
+    private static final int OPR_MODE_MASK = 0x0F;
+
+    private static class Entry {
+        final BNO055IMU.SensorMode mode;
+        final double heading;
+
+        Entry(BNO055IMU.SensorMode mode, double heading) {
+            this.mode = mode;
+            this.heading = heading;
+        }
+    }
+
+    private static final Map<BNO055IMU, Entry> initialized = new HashMap<>();
+    private static final Map<LynxModule, BNO055IMU> embedded = new HashMap<>();
+
+    private IMUSession() { }
+
+    /**
+     * Returns the read-window-less embedded IMU of a hub, the same instance every time for the
+     * same hub so that it can be picked up again. See
+     * {@link LynxOptimizedI2cFactory#createLynxEmbeddedImu}.
+     * @param module    hub with the IMU
+     */
+    public static synchronized BNO055IMU getEmbeddedImu(LynxModule module) {
+        BNO055IMU imu = embedded.get(module);
+        if (imu == null) {
+            imu = LynxOptimizedI2cFactory.createLynxEmbeddedImu(module, 0);
+            embedded.put(module, imu);
+        }
+        return imu;
+    }
+
+    /**
+     * Initializes an IMU with saved calibration, unless it was initialized before in this session
+     * and is still running.
+     * @param imu           IMU to initialize
+     * @param parameters    parameters to initialize it with
+     * @param heading       heading of the robot at the start, in degrees
+     * @return heading of the robot at the start of the session: the one given, or the one the
+     *         IMU was first initialized with if it was picked up
+     */
+    public static double initialize(BNO055IMU imu, BNO055IMU.Parameters parameters, double heading) {
+        long start = System.nanoTime();
+        Entry entry;
+        synchronized (IMUSession.class) { entry = initialized.get(imu); }
+        if (entry != null && entry.mode == parameters.mode && isRunning(imu, parameters.mode)) {
+            Log.i(TAG, String.format("imu picked up in %.1f ms", (System.nanoTime() - start) / 1e6));
+            return entry.heading;
+        }
+
+        BNO055IMU.CalibrationData calibration = ImuCalibration.load();
+        if (calibration != null) {
+            parameters.calibrationData = calibration;
+            parameters.calibrationDataFile = null;
+        }
+        // Not under the lock; both hubs' IMUs may be initializing at the same time
+        imu.initialize(parameters);
+        synchronized (IMUSession.class) { initialized.put(imu, new Entry(parameters.mode, heading)); }
+        Log.i(TAG, String.format("imu initialized in %.1f ms", (System.nanoTime() - start) / 1e6));
+        return heading;
+    }
+
+    /**
+     * Returns whether an IMU is in a sensor mode with sensor fusion running.
+     * @param imu       IMU to check
+     * @param mode      sensor mode it should be in
+     */
+    public static boolean isRunning(BNO055IMU imu, BNO055IMU.SensorMode mode) {
+        try {
+            return (imu.read8(BNO055IMU.Register.OPR_MODE) & OPR_MODE_MASK) == mode.bVal
+                    && imu.read8(BNO055IMU.Register.SYS_STAT) == BNO055IMU.SystemStatus.RUNNING_FUSION.bVal;
+        } catch (Exception e) {
+            Log.e(TAG, "imu read error");
+            return false;
+        }
+    }
+
+    /**
+     * Forgets every IMU, so that each is initialized again. Should be called by anything that
+     * initializes an IMU with other parameters, such as a calibration OpMode.
+     */
+    public static synchronized void invalidate() {
+        initialized.clear();
+    }
+}
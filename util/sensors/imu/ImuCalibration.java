@@ -0,0 +1,166 @@
+package org.firstinspires.ftc.teamcode.util.sensors.imu;
+
+import android.util.Log;
+
+import com.qualcomm.hardware.bosch.BNO055IMU;
+import com.qualcomm.robotcore.util.ReadWriteFile;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+/**
+ * ImuCalibration stores BNO055 calibration in a small binary file instead of the SDK's JSON file.
+ * The file holds a magic number, the 11 calibration values in the order of the IMU's offset
+ * registers, and a CRC32 of those values; a file that does not check out is ignored.
+ *
+ * The file is parsed once and the result is kept for as long as the app runs, so initializing
+ * the IMU in a later OpMode does not touch the file at all. If there is no binary file yet, the
+ * JSON file written by the SDK's calibration samples is converted once.
+ */
+public class ImuCalibration {
+
+    /* CONSTANTS */
+    private static final String TAG = "ImuCalibration";
+    public static final String FILE = "BNO055IMUCalibration.bin";
+    public static final String JSON_FILE = "BNO055IMUCalibration.json";
+    private static final int MAGIC = 0x424E4F43; // "BNOC"
+    private static final int VALUES = 11;
+    private static final int SIZE = 4 + 2 * VALUES + 4;
+
+    private static BNO055IMU.CalibrationData cached;
+    private static boolean loaded = false;
+
+    private ImuCalibration() { }
+
+    /**
+     * Returns the saved calibration, reading the file only the first time.
+     * @return calibration, or null if none has been saved
+     */
+    public static synchronized BNO055IMU.CalibrationData load() {
+        if (loaded) return cached;
+        loaded = true;
+        try {
+            File file = AppUtil.getInstance().getSettingsFile(FILE);
+            if (file.exists()) {
+                cached = read(file);
+            } else {
+                File json = AppUtil.getInstance().getSettingsFile(JSON_FILE);
+                if (json.exists()) {
+                    // Only happens once; from then on the binary file is read
+                    cached = BNO055IMU.CalibrationData.deserialize(ReadWriteFile.readFile(json));
+                    if (cached != null) write(file, cached);
+                }
+            }
+        } catch (Exception e) {
+            cached = null;
+            Log.e(TAG, "problem loading calibration", e);
+        }
+        return cached;
+    }
+
+    /**
+     * Saves calibration to the binary file, and to the JSON file for the SDK's own samples. The
+     * saved calibration is used from now on without reading it back.
+     * @param data      calibration read from the IMU
+     */
+    public static synchronized void save(BNO055IMU.CalibrationData data) {
+        cached = data;
+        loaded = true;
+        try {
+            write(AppUtil.getInstance().getSettingsFile(FILE), data);
+            ReadWriteFile.writeFile(AppUtil.getInstance().getSettingsFile(JSON_FILE), data.serialize());
+        } catch (IOException e) {
+            Log.e(TAG, "problem saving calibration", e);
+        }
+    }
+
+    /**
+     * Reads calibration from a binary file.
+     * @param file      file written by <code>write()</code>
+     * @return calibration, or null if the file is not valid
+     * @throws IOException if the file cannot be read
+     */
+    public static BNO055IMU.CalibrationData read(File file) throws IOException {
+        byte[] bytes = new byte[SIZE];
+        int length = 0;
+        InputStream in = new FileInputStream(file);
+        try {
+            int read;
+            while (length < SIZE && (read = in.read(bytes, length, SIZE - length)) > 0) length += read;
+        } finally {
+            in.close();
+        }
+        if (length != SIZE) {
+            Log.e(TAG, file.getName() + " is " + length + " bytes");
+            return null;
+        }
+        return decode(bytes);
+    }
+
+    /**
+     * Writes calibration to a binary file.
+     * @param file      file to write
+     * @param data      calibration to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, BNO055IMU.CalibrationData data) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(encode(data));
+        } finally {
+            out.close();
+        }
+    }
+
+    static byte[] encode(BNO055IMU.CalibrationData data) {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        // Same order as the offset and radius registers, ACC_OFFSET_X_LSB onwards
+        buffer.putShort(data.dxAccel).putShort(data.dyAccel).putShort(data.dzAccel);
+        buffer.putShort(data.dxMag).putShort(data.dyMag).putShort(data.dzMag);
+        buffer.putShort(data.dxGyro).putShort(data.dyGyro).putShort(data.dzGyro);
+        buffer.putShort(data.radiusAccel).putShort(data.radiusMag);
+        buffer.putInt((int) checksum(buffer.array()));
+        return buffer.array();
+    }
+
+    static BNO055IMU.CalibrationData decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != MAGIC) {
+            Log.e(TAG, "not a calibration file");
+            return null;
+        }
+        if (buffer.getInt(SIZE - 4) != (int) checksum(bytes)) {
+            Log.e(TAG, "calibration checksum mismatch");
+            return null;
+        }
+        BNO055IMU.CalibrationData data = new BNO055IMU.CalibrationData();
+        data.dxAccel = buffer.getShort();
+        data.dyAccel = buffer.getShort();
+        data.dzAccel = buffer.getShort();
+        data.dxMag = buffer.getShort();
+        data.dyMag = buffer.getShort();
+        data.dzMag = buffer.getShort();
+        data.dxGyro = buffer.getShort();
+        data.dyGyro = buffer.getShort();
+        data.dzGyro = buffer.getShort();
+        data.radiusAccel = buffer.getShort();
+        data.radiusMag = buffer.getShort();
+        return data;
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 4, 2 * VALUES);
+        return crc.getValue();
+    }
+}
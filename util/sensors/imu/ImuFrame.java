@@ -0,0 +1,52 @@
+package org.firstinspires.ftc.teamcode.util.sensors.imu;
+
+/**
+ * ImuFrame is one orientation reading of the IMU. All angles are in degrees, taken from a single
+ * intrinsic ZYX read, so heading, pitch and roll always belong to the same instant.
+ *
+ * Frames are immutable and safe to share between threads.
+ */
+public class ImuFrame {
+
+    /**
+     * Rotation about the z axis (first angle).
+     */
+    public final double heading;
+    /**
+     * Rotation about the y axis (second angle).
+     */
+    public final double pitch;
+    /**
+     * Rotation about the x axis (third angle).
+     */
+    public final double roll;
+    /**
+     * System.nanoTime() at which the IMU reported the reading.
+     */
+    public final long acquisitionTime;
+    /**
+     * Number of the read, increasing by one for every frame taken from the IMU.
+     */
+    public final long sequence;
+
+    /**
+     * Constructor for ImuFrame.
+     * @param heading           rotation about the z axis in degrees
+     * @param pitch             rotation about the y axis in degrees
+     * @param roll              rotation about the x axis in degrees
+     * @param acquisitionTime   System.nanoTime() of the reading
+     * @param sequence          number of the read
+     */
+    public ImuFrame(double heading, double pitch, double roll, long acquisitionTime, long sequence) {
+        this.heading = heading;
+        this.pitch = pitch;
+        this.roll = roll;
+        this.acquisitionTime = acquisitionTime;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the age of the frame in milliseconds.
+     */
+    public double getAgeMs() { return (System.nanoTime() - acquisitionTime) / 1e6; }
+}
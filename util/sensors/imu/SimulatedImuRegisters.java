@@ -0,0 +1,101 @@
+package org.firstinspires.ftc.teamcode.util.sensors.imu;
+
+import com.qualcomm.hardware.bosch.BNO055IMU;
+
+/**
+ * SimulatedImuRegisters stands in for the BNO055 when no robot is attached. The robot turns at a
+ * constant rate unless a subclass supplies the heading, and every read blocks for as long as an
+ * Expansion Hub I2C read of the same size would, which is a fixed overhead plus a cost per register.
+ *
+ * Only the gyro Z and Euler heading registers hold data; all other registers read as zero.
+ */
+public class SimulatedImuRegisters implements FastHeadingIMU.Registers {
+
+    /* CONSTANTS */
+    /**
+     * Default fixed cost of one I2C read transaction in nanoseconds.
+     */
+    public static final long DEFAULT_FIXED_NS = 1200000;
+    /**
+     * Default cost of each register read in nanoseconds.
+     */
+    public static final long DEFAULT_PER_REGISTER_NS = 50000;
+
+    // Register addresses from the BNO055 datasheet
+    private static final int GYR_DATA_Z_LSB = 0x18;
+    private static final int EUL_H_LSB = 0x1A;
+
+    private final long fixedNs;
+    private final long perRegisterNs;
+    private final double degreesPerSecond;
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Constructor for SimulatedImuRegisters with the default latency model.
+     * @param degreesPerSecond  turning rate of the simulated robot
+     */
+    public SimulatedImuRegisters(double degreesPerSecond) {
+        this(degreesPerSecond, DEFAULT_FIXED_NS, DEFAULT_PER_REGISTER_NS);
+    }
+
+    /**
+     * Constructor for SimulatedImuRegisters.
+     * @param degreesPerSecond  turning rate of the simulated robot
+     * @param fixedNs           fixed cost of a read in nanoseconds
+     * @param perRegisterNs     cost of each register in nanoseconds
+     */
+    public SimulatedImuRegisters(double degreesPerSecond, long fixedNs, long perRegisterNs) {
+        this.degreesPerSecond = degreesPerSecond;
+        this.fixedNs = fixedNs;
+        this.perRegisterNs = perRegisterNs;
+    }
+
+    @Override
+    public byte[] read(BNO055IMU.Register register, int count) {
+        long start = System.nanoTime();
+        byte[] data = new byte[count];
+        int address = address(register);
+
+        // Heading is clockwise from 0 to 360 on the BNO055
+        double heading = -getHeading(start) % 360;
+        if (heading < 0) heading += 360;
+        put(data, address, GYR_DATA_Z_LSB, (int) Math.round(getHeadingVelocity() * 16));
+        put(data, address, EUL_H_LSB, (int) Math.round(heading * 16));
+
+        // Hold the caller for as long as the hub would
+        long done = start + fixedNs + perRegisterNs * count;
+        while (System.nanoTime() < done) { }
+        return data;
+    }
+
+    /**
+     * Returns the heading of the simulated robot in degrees, counterclockwise positive.
+     * @param nanoTime  time of the read
+     */
+    protected double getHeading(long nanoTime) { return (nanoTime - startTime) / 1e9 * degreesPerSecond; }
+
+    /**
+     * Returns the turning rate of the simulated robot in degrees per second, counterclockwise
+     * positive.
+     */
+    protected double getHeadingVelocity() { return degreesPerSecond; }
+
+    /**
+     * Returns the time one read of a number of registers takes in nanoseconds.
+     */
+    public long getReadTime(int count) { return fixedNs + perRegisterNs * count; }
+
+    private static int address(BNO055IMU.Register register) {
+        switch (register) {
+            case GYR_DATA_Z_LSB: return GYR_DATA_Z_LSB;
+            case EUL_H_LSB: return EUL_H_LSB;
+            default: return register.bVal & 0xFF;
+        }
+    }
+
+    private static void put(byte[] data, int start, int register, int value) {
+        int index = register - start;
+        if (index >= 0 && index < data.length) data[index] = (byte) value;
+        if (index + 1 >= 0 && index + 1 < data.length) data[index + 1] = (byte) (value >> 8);
+    }
+}
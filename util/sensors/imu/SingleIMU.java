@@ -1,5 +1,7 @@
 package org.firstinspires.ftc.teamcode.util.sensors.imu;
 
+import android.util.Log;
+
 import com.qualcomm.hardware.bosch.BNO055IMU;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
@@ -7,39 +9,91 @@ import org.firstinspires.ftc.robotcore.external.navigation.Acceleration;
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
 import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
-import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
 import org.firstinspires.ftc.robotcore.external.navigation.Position;
 import org.firstinspires.ftc.robotcore.external.navigation.Velocity;
-import org.firstinspires.ftc.teamcode.util.sensors.LynxOptimizedI2cFactory;
-import org.firstinspires.ftc.teamcode.util.sensors.imu.util.NaiveAccelerationIntegrator;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.util.ZuptAccelerationIntegrator;
 import org.openftc.revextensions2.ExpansionHubEx;
 
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * SingleIMU handles all methods pertaining to the built in IMU in the REV Expansion Hub.
+ *
+ * Orientation is read once into an {@link ImuFrame} and every angle is computed from that frame.
+ * A new frame is read when the cached one has been invalidated for a new control cycle, or when it
+ * is older than the IMU's own output period. Alternatively, <code>startSampler()</code> reads frames
+ * on a dedicated thread and the getters only pick up the latest one.
+ *
+ * Acceleration is only integrated between <code>startIntegration()</code> and
+ * <code>stopIntegration()</code>, by a {@link ZuptAccelerationIntegrator} that the drivetrain tells
+ * when the robot is standing still.
  */
-public class SingleIMU {
+public class SingleIMU implements IMU {
+
+    /* CONSTANTS */
+    private static final String TAG = "SingleIMU";
+    /**
+     * Orientation output period of the BNO055 in IMU mode (100 Hz). Reading faster than this only
+     * returns the same data.
+     */
+    public static final long FRAME_PERIOD_NS = 10000000;
+    /**
+     * Period at which acceleration is read and integrated, matching the BNO055's output rate.
+     */
+    public static final int INTEGRATION_PERIOD_MS = 10;
+
     public double x_location, y_location, init_heading = 0D;
     public double globalAngle;
     public static double startingAngle;
 
     public BNO055IMU imu;
     public AxesOrder axesOrder;
-    public Orientation lastAngles = new Orientation();
+
+    /* Frame cache */
+    private final AtomicReference<ImuFrame> frame = new AtomicReference<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean stale = true;
+    /* Held while a frame is read on demand, so that threads sharing the IMU read it once */
+    private final Object readLock = new Object();
+    private volatile boolean sampling = false;
+    private Thread sampler;
+    private FastHeadingIMU fastHeading;
+
+    /* Cumulative angle tracking */
+    private double lastHeading;
+    private long lastSequence = -1;
+
     public Acceleration acceleration = new Acceleration();
     public Velocity velocity = new Velocity();
     public Position position = new Position();
     public BNO055IMU.Parameters parameters = new BNO055IMU.Parameters();
+    /**
+     * Integrator of the IMU's acceleration. Position and velocity are in meters.
+     */
+    public ZuptAccelerationIntegrator integrator = new ZuptAccelerationIntegrator();
+    private volatile boolean integrating = false;
 
     public SingleIMU() { }
 
     public void init(ExpansionHubEx hub, HardwareMap hwMap, AxesOrder axesOrder, double heading) {
+        init(hwMap.get(BNO055IMU.class, "imu"), axesOrder, heading);
+    }
+
+    /**
+     * Initializes an IMU through {@link IMUSession}, which picks up an IMU that is still running
+     * from the previous OpMode instead. Use with {@link IMUSession#getEmbeddedImu} for the
+     * read-window-less I2C device.
+     * @param imu       IMU to initialize
+     * @param axesOrder order of the axes
+     * @param heading   heading of the robot at the start, in degrees
+     */
+    @Override
+    public void init(BNO055IMU imu, AxesOrder axesOrder, double heading) {
         this.axesOrder = axesOrder;
-//        this.imu = LynxOptimizedI2cFactory.createLynxEmbeddedImu(hub.getStandardModule(), 0);
-        this.imu = hwMap.get(BNO055IMU.class, "imu");
-        this.init_heading = heading;
+        this.imu = imu;
 
         /**
          * In the IMU mode the relative orientation of the BNO055
@@ -49,23 +103,50 @@ public class SingleIMU {
         parameters.mode = BNO055IMU.SensorMode.IMU;
         parameters.angleUnit           = BNO055IMU.AngleUnit.DEGREES;
         parameters.accelUnit           = BNO055IMU.AccelUnit.METERS_PERSEC_PERSEC;
-        parameters.calibrationDataFile = "BNO055IMUCalibration.json";
-        parameters.loggingEnabled      = true;
+        parameters.calibrationDataFile = ImuCalibration.JSON_FILE;
+        parameters.loggingEnabled      = false;
         parameters.loggingTag          = "IMU";
-        parameters.accelerationIntegrationAlgorithm = new NaiveAccelerationIntegrator();
+        parameters.accelerationIntegrationAlgorithm = integrator;
 
-        imu.initialize(parameters);
+        // Skipped if the IMU is still running from the previous OpMode
+        init_heading = IMUSession.initialize(imu, parameters, heading);
+        // A picked up IMU keeps the integrator it was first initialized with
+        BNO055IMU.Parameters active = imu.getParameters();
+        if (active != null && active.accelerationIntegrationAlgorithm instanceof ZuptAccelerationIntegrator) {
+            integrator = (ZuptAccelerationIntegrator) active.accelerationIntegrationAlgorithm;
+        }
 
 //        while (!imu.isGyroCalibrated() && !imu.isAccelerometerCalibrated()) { }
+    }
 
-        position.toUnit(DistanceUnit.INCH);
-        velocity.toUnit(DistanceUnit.METER);
-        acceleration.toUnit(DistanceUnit.METER);
+    /**
+     * Starts integrating acceleration on the SDK's integration thread, from zero position and
+     * velocity. The bias estimate is kept from the last run.
+     * @return false if there is no IMU to integrate
+     */
+    public boolean startIntegration() {
+        if (imu == null) return false;
+        if (!integrating) {
+            integrating = true;
+            imu.startAccelerationIntegration(position, velocity, INTEGRATION_PERIOD_MS);
+        }
+        return true;
+    }
 
-        // Start the logging of measured acceleration
-        imu.startAccelerationIntegration(position, velocity, 1000);
+    /**
+     * Stops integrating acceleration. Position and velocity keep their last values.
+     */
+    public void stopIntegration() {
+        if (!integrating) return;
+        integrating = false;
+        imu.stopAccelerationIntegration();
     }
 
+    /**
+     * Returns whether acceleration is being integrated.
+     */
+    public boolean isIntegrating() { return integrating; }
+
     /**
      *  Returns a text string giving the calibration status of the sensor. The string is in
      * the format, “IMU Calibration Status : sx gx ax mx” where s stands for system, g for gyro, a
@@ -78,12 +159,116 @@ public class SingleIMU {
         return imu.getCalibrationStatus();
     }
 
+    /**
+     * Reads one orientation frame from the IMU and publishes it.
+     */
+    private ImuFrame readFrame() {
+        if (fastHeading != null) {
+            double heading = fastHeading.getHeading();
+            ImuFrame next = new ImuFrame(heading, Double.NaN, Double.NaN, System.nanoTime(), sequence.incrementAndGet());
+            frame.set(next);
+            return next;
+        }
+        Orientation angles = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES);
+        long time = angles.acquisitionTime != 0 ? angles.acquisitionTime : System.nanoTime();
+        ImuFrame next = new ImuFrame(angles.firstAngle, angles.secondAngle, angles.thirdAngle, time, sequence.incrementAndGet());
+        frame.set(next);
+        return next;
+    }
+
+    /**
+     * Returns the current orientation frame, reading a new one from the IMU only if needed. The
+     * control and odometry threads both call this; only one of them reads at a time, and a thread
+     * that waited on the other's read uses the frame it published.
+     */
+    public ImuFrame getFrame() {
+        ImuFrame current = frame.get();
+        if (sampling && current != null) return current;
+        if (!needsRead(current)) return current;
+        synchronized (readLock) {
+            current = frame.get();
+            if (needsRead(current)) {
+                stale = false;
+                current = readFrame();
+            }
+        }
+        return current;
+    }
+
+    private boolean needsRead(ImuFrame current) {
+        return current == null || stale || System.nanoTime() - current.acquisitionTime > FRAME_PERIOD_NS;
+    }
+
+    /**
+     * Returns the last frame that was read, without reading a new one.
+     * @return the frame, or null if none has been read yet
+     */
+    public ImuFrame peekFrame() { return frame.get(); }
+
+    /**
+     * Reads frames through a heading-only reader. Frames then carry only the heading; pitch and
+     * roll are read on demand by <code>getXAxis()</code> and <code>getYAxis()</code>.
+     * @param fastHeading   heading reader on the same IMU, or null for full orientation reads
+     */
+    public void setFastHeading(FastHeadingIMU fastHeading) {
+        this.fastHeading = fastHeading;
+        stale = true;
+    }
+
+    /**
+     * Marks the cached frame as old so that the next getter reads a new one. Should be called once
+     * at the start of each control cycle.
+     */
+    public void invalidate() { stale = true; }
+
+    /**
+     * Starts a thread that reads a frame every IMU output period and publishes it. While it runs,
+     * getters never wait on I2C.
+     */
+    public void startSampler() {
+        if (sampler != null) return;
+        sampling = true;
+        sampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (sampling) {
+                    long start = System.nanoTime();
+                    try {
+                        readFrame();
+                    } catch (Exception e) {
+                        Log.e(TAG, "imu read error");
+                    }
+                    long remaining = FRAME_PERIOD_NS - (System.nanoTime() - start);
+                    if (remaining > 0) {
+                        try {
+                            Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }, "IMU sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Stops the sampler thread. Getters go back to reading frames on demand.
+     */
+    public void stopSampler() {
+        sampling = false;
+        if (sampler != null) {
+            sampler.interrupt();
+            sampler = null;
+        }
+    }
+
     /**
      * Resets starting angle because startingAngle is a static variable and must be cleared for every use.
      */
     public void setStartingAngle() {
-        Orientation angles = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES);
-        startingAngle = angles.firstAngle;
+        startingAngle = getFrame().heading;
     }
 
     /**
@@ -97,18 +282,15 @@ public class SingleIMU {
      * Returns the change in angular rotation from the robots current position to starting position(auton).
      */
     public double getDeltaStartingAngle() {
-        Orientation angles = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES);
+        ImuFrame current = getFrame();
         // calculates the difference from when we first initialized the rotation to where we are at now
-        double deltaAngle = angles.firstAngle - startingAngle;
+        double deltaAngle = current.heading - startingAngle;
 
         if (deltaAngle < -180) deltaAngle += 360;
         else if (deltaAngle > 180) deltaAngle -= 360;
 
         globalAngle += deltaAngle;
 
-        // set new last angle to current angle
-        lastAngles = angles;
-
         double returnAngle = globalAngle;
         resetAngle();
         return returnAngle;
@@ -118,22 +300,25 @@ public class SingleIMU {
      * Returns the z axis for rotation.
      */
     public double getHeading() {
-        Orientation angles = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES);
-        return angles.firstAngle;
+        return getFrame().heading;
     }
     /**
      * Returns the x axis for rotation.
      */
     public double getXAxis() {
-        Orientation angles = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES);
-        return angles.thirdAngle;
+        if (fastHeading != null) {
+            return imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES).thirdAngle;
+        }
+        return getFrame().roll;
     }
     /**
      * Returns the y axis for rotation.
      */
     public double getYAxis() {
-        Orientation angles = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES);
-        return angles.secondAngle;
+        if (fastHeading != null) {
+            return imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES).secondAngle;
+        }
+        return getFrame().pitch;
     }
     /**
      * Returns the linear acceleration of the robot of the x axis.
@@ -157,54 +342,50 @@ public class SingleIMU {
         return acceleration.zAccel;
     }
     /**
-     * Returns the linear velocity of the robot of the x axis.
+     * Returns the integrated velocity in meters per second of the x axis.
      */
     public double getXVel() {
-        velocity = imu.getVelocity();
-        return velocity.xVeloc;
+        return integrator.getVelocityX();
     }
     /**
-     * Returns the linear velocity of the robot of the y axis.
+     * Returns the integrated velocity in meters per second of the y axis.
      */
     public double getYVel() {
-        velocity = imu.getVelocity();
-        return velocity.yVeloc;
+        return integrator.getVelocityY();
     }
     /**
-     * Returns the linear velocity of the robot of the z axis.
+     * Returns the integrated velocity in meters per second of the z axis.
      */
     public double getZVel() {
-        velocity = imu.getVelocity();
-        return velocity.zVeloc;
+        return integrator.getVelocityZ();
     }
 
     /**
-     * Returns the distance traveled in the x axis.
+     * Returns the integrated distance in meters traveled in the x axis.
      */
     public double getXDistance() {
-        position = imu.getPosition();
-        return position.x;
+        return integrator.getX();
     }
     /**
-     * Returns the distance traveled in the y axis.
+     * Returns the integrated distance in meters traveled in the y axis.
      */
     public double getYDistance() {
-        position = imu.getPosition();
-        return position.y;
+        return integrator.getY();
     }
     /**
-     * Returns the distance traveled in the z axis.
+     * Returns the integrated distance in meters traveled in the z axis.
      */
     public double getZDistance() {
-        position = imu.getPosition();
-        return position.z;
+        return integrator.getZ();
     }
 
     /**
      * Resets the cumulative angle tracking to zero.
      */
     public void resetAngle() {
-        lastAngles = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES);
+        ImuFrame current = getFrame();
+        lastHeading = current.heading;
+        lastSequence = current.sequence;
         globalAngle = 0;
     }
 
@@ -213,9 +394,11 @@ public class SingleIMU {
      * @return Angle in degrees. + = left, - = right.
      */
     public double getAngle() {
-        Orientation angles = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES);
+        ImuFrame current = getFrame();
+        if (current.sequence == lastSequence) return globalAngle;
+
         // calculates the difference from when we first initialized the rotation to where we are at now
-        double deltaAngle = angles.firstAngle - lastAngles.firstAngle;
+        double deltaAngle = current.heading - lastHeading;
 
         if (deltaAngle < -180) deltaAngle += 360;
         else if (deltaAngle > 180) deltaAngle -= 360;
@@ -223,7 +406,8 @@ public class SingleIMU {
         globalAngle += deltaAngle;
 
         // set new last angle to current angle
-        lastAngles = angles;
+        lastHeading = current.heading;
+        lastSequence = current.sequence;
 
         return globalAngle;
     }
@@ -1,86 +0,0 @@
-package org.firstinspires.ftc.teamcode.util.sensors.imu.util;
-
-import static org.firstinspires.ftc.robotcore.external.navigation.NavUtil.meanIntegrate;
-import static org.firstinspires.ftc.robotcore.external.navigation.NavUtil.plus;
-
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
-
-import com.qualcomm.hardware.bosch.BNO055IMU;
-import com.qualcomm.robotcore.util.RobotLog;
-
-import org.firstinspires.ftc.robotcore.external.navigation.Acceleration;
-import org.firstinspires.ftc.robotcore.external.navigation.Position;
-import org.firstinspires.ftc.robotcore.external.navigation.Velocity;
-
-/**
- * {@link NaiveAccelerationIntegrator} provides a very naive implementation of
- * an acceleration integration algorithm. It just does the basic physics.
- * One you would actually want to use in a robot would, for example, likely
- * filter noise out the acceleration data or more sophisticated processing.
- */
-public class NaiveAccelerationIntegrator implements BNO055IMU.AccelerationIntegrator
-{
-    //------------------------------------------------------------------------------------------
-    // State
-    //------------------------------------------------------------------------------------------
-
-    BNO055IMU.Parameters parameters;
-    Position position;
-    Velocity velocity;
-    Acceleration acceleration;
-
-    public Position getPosition() { return this.position; }
-    public Velocity getVelocity() { return this.velocity; }
-    public Acceleration getAcceleration() { return this.acceleration; }
-
-    //------------------------------------------------------------------------------------------
-    // Construction
-    //------------------------------------------------------------------------------------------
-
-    public NaiveAccelerationIntegrator() {
-        this.parameters = null;
-        this.position = new Position();
-        this.velocity = new Velocity();
-        this.acceleration = null;
-    }
-
-    //------------------------------------------------------------------------------------------
-    // Operations
-    //------------------------------------------------------------------------------------------
-
-    @Override public void initialize(@NonNull BNO055IMU.Parameters parameters, @Nullable Position initialPosition, @Nullable Velocity initialVelocity) {
-        this.parameters = parameters;
-        this.position = initialPosition != null ? initialPosition : this.position;
-        this.velocity = initialVelocity != null ? initialVelocity : this.velocity;
-        this.acceleration = null;
-    }
-
-    @Override public void update(Acceleration linearAcceleration) {
-        // We should always be given a timestamp here
-        if (linearAcceleration.acquisitionTime != 0) {
-            // We can only integrate if we have a previous acceleration to baseline from
-            if (acceleration != null) {
-                Acceleration accelPrev    = acceleration;
-                Velocity     velocityPrev = velocity;
-
-                acceleration = linearAcceleration;
-
-                if (accelPrev.acquisitionTime != 0) {
-                    Velocity deltaVelocity = meanIntegrate(acceleration, accelPrev);
-                    velocity = plus(velocity, deltaVelocity);
-                }
-
-                if (velocityPrev.acquisitionTime != 0) {
-                    Position deltaPosition = meanIntegrate(velocity, velocityPrev);
-                    position = plus(position, deltaPosition);
-                }
-
-                if (parameters != null && parameters.loggingEnabled) {
-                    RobotLog.vv(parameters.loggingTag, "dt=%.3fs accel=%s vel=%s pos=%s", (acceleration.acquisitionTime - accelPrev.acquisitionTime)*1e-9, acceleration, velocity, position);
-                }
-            }
-            else acceleration = linearAcceleration;
-        }
-    }
-}
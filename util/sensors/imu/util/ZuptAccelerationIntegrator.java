@@ -0,0 +1,271 @@
+package org.firstinspires.ftc.teamcode.util.sensors.imu.util;
+
+import android.util.Log;
+
+import com.qualcomm.hardware.bosch.BNO055IMU;
+
+import org.firstinspires.ftc.robotcore.external.navigation.Acceleration;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Position;
+import org.firstinspires.ftc.robotcore.external.navigation.Velocity;
+
+import java.util.Locale;
+
+/**
+ * ZuptAccelerationIntegrator integrates the IMU's linear acceleration into velocity and position
+ * without allocating: its state is kept in primitives, and the Position, Velocity and
+ * Acceleration it hands out are the same objects every time, filled in on each call.
+ *
+ * The wheel encoders report through <code>setStationary()</code> whether the robot is standing
+ * still. While it is, velocity is held at zero (a zero velocity update) and the acceleration read
+ * is taken as accelerometer bias, which is subtracted from every sample once the robot moves.
+ * A report that is not renewed within STATIONARY_TIMEOUT_NS counts as moving.
+ *
+ * Samples go to an in-memory ring buffer rather than the log; <code>dump()</code> writes the
+ * buffer to the log on demand.
+ */
+public class ZuptAccelerationIntegrator implements BNO055IMU.AccelerationIntegrator {
+
+    /* CONSTANTS */
+    private static final String TAG = "ZuptIntegrator";
+    /**
+     * Weight of each stationary sample in the bias estimate.
+     */
+    public static final double BIAS_GAIN = 0.05;
+    /**
+     * Number of stationary samples after which the bias estimate is considered settled.
+     */
+    public static final int SETTLED_SAMPLES = 20;
+    /**
+     * Age after which a stationary report no longer counts.
+     */
+    public static final long STATIONARY_TIMEOUT_NS = 100000000;
+    /**
+     * Gap between samples beyond which integration starts over from the next sample.
+     */
+    private static final double MAX_DT = 0.1;
+    public static final int LOG_CAPACITY = 256;
+
+    /* State, in meters and seconds */
+    private double vx, vy, vz;
+    private double px, py, pz;
+    private double ax, ay, az;
+    private double biasX, biasY, biasZ;
+    private int biasSamples = 0;
+    private long zeroVelocityUpdates = 0;
+    private long lastTime = 0;
+
+    private volatile boolean stationary = false;
+    private volatile long stationaryTime = 0;
+
+    /* Objects handed out, filled in on each call */
+    private final Position position = new Position();
+    private final Velocity velocity = new Velocity();
+    private final Acceleration acceleration = new Acceleration();
+
+    /* Sample ring buffer */
+    private final long[] logTime = new long[LOG_CAPACITY];
+    private final double[] logAccel = new double[3 * LOG_CAPACITY];
+    private final double[] logVelocity = new double[3 * LOG_CAPACITY];
+    private final boolean[] logStationary = new boolean[LOG_CAPACITY];
+    private int logHead = 0, logCount = 0;
+
+    /**
+     * Default constructor for ZuptAccelerationIntegrator.
+     */
+    public ZuptAccelerationIntegrator() { }
+
+    /**
+     * Starts over from a position and velocity. The bias estimate is kept, as it belongs to the
+     * sensor rather than to the run.
+     */
+    @Override
+    public synchronized void initialize(BNO055IMU.Parameters parameters, Position initialPosition, Velocity initialVelocity) {
+        px = py = pz = 0;
+        vx = vy = vz = 0;
+        if (initialPosition != null) {
+            double scale = toMeters(initialPosition.unit);
+            px = initialPosition.x * scale;
+            py = initialPosition.y * scale;
+            pz = initialPosition.z * scale;
+        }
+        if (initialVelocity != null) {
+            double scale = toMeters(initialVelocity.unit);
+            vx = initialVelocity.xVeloc * scale;
+            vy = initialVelocity.yVeloc * scale;
+            vz = initialVelocity.zVeloc * scale;
+        }
+        ax = ay = az = 0;
+        lastTime = 0;
+    }
+
+    /**
+     * Reports whether the robot is standing still. Should be called every control cycle while
+     * integrating.
+     * @param stationary    true if no wheel is turning
+     */
+    public void setStationary(boolean stationary) {
+        this.stationaryTime = System.nanoTime();
+        this.stationary = stationary;
+    }
+
+    @Override
+    public void update(Acceleration linearAcceleration) {
+        long time = linearAcceleration.acquisitionTime;
+        if (time == 0) return;
+        double scale = toMeters(linearAcceleration.unit);
+        double x = linearAcceleration.xAccel * scale;
+        double y = linearAcceleration.yAccel * scale;
+        double z = linearAcceleration.zAccel * scale;
+        boolean still = stationary && System.nanoTime() - stationaryTime < STATIONARY_TIMEOUT_NS;
+
+        synchronized (this) {
+            double dt = lastTime != 0 ? (time - lastTime) * 1e-9 : 0;
+            lastTime = time;
+            if (still) {
+                if (biasSamples == 0) {
+                    biasX = x;
+                    biasY = y;
+                    biasZ = z;
+                } else {
+                    biasX += BIAS_GAIN * (x - biasX);
+                    biasY += BIAS_GAIN * (y - biasY);
+                    biasZ += BIAS_GAIN * (z - biasZ);
+                }
+                biasSamples++;
+                zeroVelocityUpdates++;
+                vx = vy = vz = 0;
+                ax = ay = az = 0;
+            } else {
+                x -= biasX;
+                y -= biasY;
+                z -= biasZ;
+                if (dt > 0 && dt < MAX_DT) {
+                    // Trapezoidal steps, from acceleration to velocity and from velocity to position
+                    double nextVx = vx + 0.5 * (x + ax) * dt;
+                    double nextVy = vy + 0.5 * (y + ay) * dt;
+                    double nextVz = vz + 0.5 * (z + az) * dt;
+                    px += 0.5 * (vx + nextVx) * dt;
+                    py += 0.5 * (vy + nextVy) * dt;
+                    pz += 0.5 * (vz + nextVz) * dt;
+                    vx = nextVx;
+                    vy = nextVy;
+                    vz = nextVz;
+                }
+                ax = x;
+                ay = y;
+                az = z;
+            }
+            record(time, still);
+        }
+    }
+
+    private void record(long time, boolean still) {
+        int i = logHead;
+        logTime[i] = time;
+        logAccel[3 * i] = ax;
+        logAccel[3 * i + 1] = ay;
+        logAccel[3 * i + 2] = az;
+        logVelocity[3 * i] = vx;
+        logVelocity[3 * i + 1] = vy;
+        logVelocity[3 * i + 2] = vz;
+        logStationary[i] = still;
+        logHead = (logHead + 1) % LOG_CAPACITY;
+        if (logCount < LOG_CAPACITY) logCount++;
+    }
+
+    /**
+     * Returns the position, in meters. The same object is filled in on every call.
+     */
+    @Override
+    public synchronized Position getPosition() {
+        position.unit = DistanceUnit.METER;
+        position.x = px;
+        position.y = py;
+        position.z = pz;
+        position.acquisitionTime = lastTime;
+        return position;
+    }
+
+    /**
+     * Returns the velocity, in meters per second. The same object is filled in on every call.
+     */
+    @Override
+    public synchronized Velocity getVelocity() {
+        velocity.unit = DistanceUnit.METER;
+        velocity.xVeloc = vx;
+        velocity.yVeloc = vy;
+        velocity.zVeloc = vz;
+        velocity.acquisitionTime = lastTime;
+        return velocity;
+    }
+
+    /**
+     * Returns the last acceleration with the bias taken out, in meters per second squared. The
+     * same object is filled in on every call.
+     */
+    @Override
+    public synchronized Acceleration getAcceleration() {
+        acceleration.unit = DistanceUnit.METER;
+        acceleration.xAccel = ax;
+        acceleration.yAccel = ay;
+        acceleration.zAccel = az;
+        acceleration.acquisitionTime = lastTime;
+        return acceleration;
+    }
+
+    public synchronized double getX() { return px; }
+
+    public synchronized double getY() { return py; }
+
+    public synchronized double getZ() { return pz; }
+
+    public synchronized double getVelocityX() { return vx; }
+
+    public synchronized double getVelocityY() { return vy; }
+
+    public synchronized double getVelocityZ() { return vz; }
+
+    /**
+     * Returns the estimated accelerometer bias along an axis, in meters per second squared.
+     * @param axis      0, 1 or 2 for x, y or z
+     */
+    public synchronized double getBias(int axis) {
+        return axis == 0 ? biasX : axis == 1 ? biasY : biasZ;
+    }
+
+    /**
+     * Returns whether enough stationary samples have been seen for the bias estimate to be
+     * trusted.
+     */
+    public synchronized boolean isSettled() { return biasSamples >= SETTLED_SAMPLES; }
+
+    /**
+     * Returns the number of samples that were zero velocity updates.
+     */
+    public synchronized long getZeroVelocityUpdates() { return zeroVelocityUpdates; }
+
+    /**
+     * Writes the samples in the ring buffer to the log, oldest first.
+     */
+    public void dump() {
+        StringBuilder lines = new StringBuilder();
+        synchronized (this) {
+            int start = (logHead - logCount + LOG_CAPACITY) % LOG_CAPACITY;
+            for (int n = 0; n < logCount; n++) {
+                int i = (start + n) % LOG_CAPACITY;
+                lines.append(String.format(Locale.US, "t=%.3f a=(%.3f %.3f %.3f) v=(%.3f %.3f %.3f)%s%n",
+                        logTime[i] * 1e-9, logAccel[3 * i], logAccel[3 * i + 1], logAccel[3 * i + 2],
+                        logVelocity[3 * i], logVelocity[3 * i + 1], logVelocity[3 * i + 2],
+                        logStationary[i] ? " zupt" : ""));
+            }
+        }
+        for (String line : lines.toString().split("\n")) {
+            if (!line.isEmpty()) Log.i(TAG, line);
+        }
+    }
+
+    private static double toMeters(DistanceUnit unit) {
+        return unit == null || unit == DistanceUnit.METER ? 1 : unit.toMeters(1);
+    }
+}
@@ -2,18 +2,211 @@ package org.firstinspires.ftc.teamcode.util.signals;
 
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * This class handles the robot's telemetry, reducing the amount of telemetry based calls in teleop and autonomous.
+ *
+ * Items are added once during init with a format and the values to show. In the loop,
+ * <code>update()</code> samples the values at a fixed rate (4 Hz by default) and hands the ones
+ * that changed to a publisher thread, which formats them and sends the telemetry. The control loop
+ * never formats a string or waits on a transmit. Values are read on the control thread, so they do
+ * not need to be thread safe.
  */
 public class TelemetryManager {
-    protected LinearOpMode opMode;
+
+    /* CONSTANTS */
+    /**
+     * Default number of samples per second.
+     */
+    public static final double DEFAULT_RATE = 4;
+
+    /**
+     * A value shown by an item. Read on the control thread when a sample is taken.
+     */
+    public interface Value {
+        double get();
+    }
+
+    protected Telemetry telemetry;
+
+    /* Items, added during init */
+    private final List<String> captions = new ArrayList<>();
+    private final List<String> formats = new ArrayList<>();
+    private final List<Value> values = new ArrayList<>();
+    private final List<Integer> offsets = new ArrayList<>();
+    private Telemetry.Item[] items;
+    private Value[] sources;
+    private int[] first;
+
+    /* Control thread */
+    private double[] sampled;
+    private boolean[] changed;
+    private boolean primed = false;
+    private long periodNs = (long) (1e9 / DEFAULT_RATE);
+    private long lastSample = 0;
+
+    /* Double buffered snapshot; back is filled by the control thread, front is read by the publisher */
+    private final Object lock = new Object();
+    private double[] backValues, frontValues;
+    private boolean[] backDirty, frontDirty;
+    private boolean ready = false;
+    private volatile boolean running = false;
+    private Thread publisher;
 
     public TelemetryManager(LinearOpMode opMode) {
-        this.opMode = opMode;
+        this(opMode.telemetry);
+    }
+
+    public TelemetryManager(Telemetry telemetry) {
+        this.telemetry = telemetry;
     }
 
     public void addStatus(String message) {
-        opMode.telemetry.addData("Status", message);
-        opMode.telemetry.update();
+        telemetry.addData("Status", message);
+        telemetry.update();
+    }
+
+    /**
+     * Sets how many times per second values are sampled and sent.
+     * @param hz        samples per second
+     */
+    public void setRate(double hz) { periodNs = (long) (1e9 / hz); }
+
+    /**
+     * Adds an item. Must be called before <code>start()</code>.
+     * @param caption   caption shown on the driver station
+     * @param format    format of the values, e.g. "%.2f in"
+     * @param values    values to format
+     */
+    public void addItem(String caption, String format, Value... values) {
+        if (publisher != null) throw new IllegalStateException("items must be added before start()");
+        captions.add(caption);
+        formats.add(format);
+        offsets.add(this.values.size());
+        for (Value value : values) this.values.add(value);
+    }
+
+    /**
+     * Creates the items on the driver station and starts the publisher thread.
+     */
+    public void start() {
+        if (publisher != null) return;
+        int itemCount = captions.size();
+        int valueCount = values.size();
+        items = new Telemetry.Item[itemCount];
+        first = new int[itemCount + 1];
+        for (int i = 0; i < itemCount; i++) {
+            items[i] = telemetry.addData(captions.get(i), "").setRetained(true);
+            first[i] = offsets.get(i);
+        }
+        first[itemCount] = valueCount;
+        sources = values.toArray(new Value[valueCount]);
+        sampled = new double[valueCount];
+        changed = new boolean[itemCount];
+        backValues = new double[valueCount];
+        frontValues = new double[valueCount];
+        backDirty = new boolean[itemCount];
+        frontDirty = new boolean[itemCount];
+        primed = false;
+        lastSample = 0;
+
+        running = true;
+        publisher = new Thread(new Runnable() {
+            @Override
+            public void run() { publish(); }
+        }, "Telemetry");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    /**
+     * Samples every value if a sample is due and hands the changed items to the publisher.
+     * Should be called once every loop; between samples it only reads the clock.
+     */
+    public void update() {
+        if (!running) return;
+        long now = System.nanoTime();
+        if (primed && now - lastSample < periodNs) return;
+        lastSample = now;
+
+        boolean any = false;
+        for (int i = 0; i < items.length; i++) {
+            changed[i] = !primed;
+            for (int k = first[i]; k < first[i + 1]; k++) {
+                double value = sources[k].get();
+                if (Double.compare(value, sampled[k]) != 0) {
+                    sampled[k] = value;
+                    changed[i] = true;
+                }
+            }
+            any |= changed[i];
+        }
+        primed = true;
+        if (!any) return;
+
+        synchronized (lock) {
+            for (int i = 0; i < items.length; i++) {
+                if (!changed[i]) continue;
+                for (int k = first[i]; k < first[i + 1]; k++) backValues[k] = sampled[k];
+                backDirty[i] = true;
+            }
+            ready = true;
+            lock.notify();
+        }
+    }
+
+    /**
+     * Stops the publisher thread and removes the items. Waits for the publisher to finish any
+     * send in progress, so that it never touches an item after it is removed. If the calling
+     * thread is interrupted while waiting, the items are left in place.
+     */
+    public void stop() {
+        if (publisher == null) return;
+        running = false;
+        synchronized (lock) { lock.notify(); }
+        try {
+            publisher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        publisher = null;
+        for (Telemetry.Item item : items) telemetry.removeItem(item);
+    }
+
+    private void publish() {
+        while (running) {
+            synchronized (lock) {
+                while (!ready && running) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) return;
+                double[] values = backValues;
+                backValues = frontValues;
+                frontValues = values;
+                boolean[] dirty = backDirty;
+                backDirty = frontDirty;
+                frontDirty = dirty;
+                ready = false;
+            }
+
+            for (int i = 0; i < items.length; i++) {
+                if (!frontDirty[i]) continue;
+                Object[] args = new Object[first[i + 1] - first[i]];
+                for (int k = 0; k < args.length; k++) args[k] = frontValues[first[i] + k];
+                items[i].setValue(String.format(Locale.US, formats.get(i), args));
+                frontDirty[i] = false;
+            }
+            telemetry.update();
+        }
     }
 }
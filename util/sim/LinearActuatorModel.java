@@ -0,0 +1,91 @@
+package org.firstinspires.ftc.teamcode.util.sim;
+
+import com.qualcomm.robotcore.util.Range;
+
+/**
+ * LinearActuatorModel is a motor driving a linear mechanism between two hard stops, such as the
+ * lift leadscrew or a set of slides. The shaft speed follows the power with a first-order lag and
+ * stops dead at either end of travel.
+ *
+ * A leadscrew cannot be back-driven, so it stops as quickly at zero power whether the motor
+ * brakes or floats. Slides coast when the motor floats.
+ */
+public class LinearActuatorModel implements MotorModel {
+
+    /* CONSTANTS */
+    // Time constants of the shaft speed in seconds
+    private static final double DRIVE_TIME_CONSTANT = 0.08;
+    private static final double BRAKE_TIME_CONSTANT = 0.03;
+    private static final double COAST_TIME_CONSTANT = 0.3;
+
+    private final double maxVelocity;
+    private final double minPosition, maxPosition;
+    private final boolean backdrivable;
+
+    private double power;
+    private boolean brake;
+    private double position, velocity;
+
+    /**
+     * Constructor for LinearActuatorModel. The mechanism starts at its minimum position.
+     * @param maxVelocity   shaft speed at full power in encoder ticks per second
+     * @param minPosition   lower hard stop in encoder ticks
+     * @param maxPosition   upper hard stop in encoder ticks
+     * @param backdrivable  whether the mechanism moves when the motor floats
+     */
+    public LinearActuatorModel(double maxVelocity, double minPosition, double maxPosition, boolean backdrivable) {
+        this.maxVelocity = maxVelocity;
+        this.minPosition = minPosition;
+        this.maxPosition = maxPosition;
+        this.backdrivable = backdrivable;
+        this.position = minPosition;
+    }
+
+    /**
+     * Advances the model.
+     * @param dt        time step in seconds
+     */
+    public void update(double dt) {
+        double timeConstant = DRIVE_TIME_CONSTANT;
+        if (power == 0) timeConstant = brake || !backdrivable ? BRAKE_TIME_CONSTANT : COAST_TIME_CONSTANT;
+        velocity += (power * maxVelocity - velocity) * (1 - Math.exp(-dt / timeConstant));
+        position += velocity * dt;
+
+        if (position <= minPosition) {
+            position = minPosition;
+            velocity = Math.max(velocity, 0);
+        } else if (position >= maxPosition) {
+            position = maxPosition;
+            velocity = Math.min(velocity, 0);
+        }
+    }
+
+    /**
+     * Moves the mechanism to a position and stops it.
+     * @param position  position in encoder ticks
+     */
+    public void setPosition(double position) {
+        this.position = Range.clip(position, minPosition, maxPosition);
+        velocity = 0;
+    }
+
+    @Override
+    public void setPower(double power) { this.power = Range.clip(power, -1, 1); }
+
+    @Override
+    public void setBrake(boolean brake) { this.brake = brake; }
+
+    @Override
+    public double getPosition() { return position; }
+
+    @Override
+    public double getVelocity() { return velocity; }
+
+    @Override
+    public double getMaxVelocity() { return maxVelocity; }
+
+    /**
+     * Returns whether the mechanism is against either hard stop.
+     */
+    public boolean atLimit() { return position <= minPosition || position >= maxPosition; }
+}
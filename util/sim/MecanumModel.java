@@ -0,0 +1,163 @@
+package org.firstinspires.ftc.teamcode.util.sim;
+
+import com.qualcomm.robotcore.util.Range;
+
+import org.firstinspires.ftc.teamcode.hardware.Constants;
+import org.firstinspires.ftc.teamcode.hardware.mecanum.DriveConstants;
+
+/**
+ * MecanumModel is a rigid-body model of the mecanum drivetrain. The wheel powers set a target
+ * body velocity through the mecanum forward kinematics, which the body reaches with a first-order
+ * lag. The wheels then turn at the speeds the body motion requires, so the encoders always agree
+ * with the pose, as they do when the rollers slip on a real robot.
+ *
+ * Distances are in inches, angles in radians counterclockwise, and the robot frame has x forward
+ * and y to the left.
+ */
+public class MecanumModel {
+
+    /* CONSTANTS */
+    public static final int LEFT_FRONT = 0;
+    public static final int LEFT_BACK = 1;
+    public static final int RIGHT_FRONT = 2;
+    public static final int RIGHT_BACK = 3;
+    // Time constants of the body velocity in seconds
+    private static final double DRIVE_TIME_CONSTANT = 0.15;
+    private static final double BRAKE_TIME_CONSTANT = 0.05;
+    private static final double COAST_TIME_CONSTANT = 0.6;
+
+    private final double maxWheelSpeed;
+    private final double trackWidth;
+    private final double ticksPerInch;
+    // Right motors are mounted mirrored, so positive power turns their wheels backwards
+    private final double[] mountSign = { 1, 1, -1, -1 };
+
+    /* Wheel state (lf, lb, rf, rb) */
+    private final double[] power = new double[4];
+    private final boolean[] brake = new boolean[4];
+    private final double[] target = new double[4];
+    private final double[] wheelSpeed = new double[4];
+    private final double[] ticks = new double[4];
+    private final Wheel[] wheels = new Wheel[4];
+
+    /* Body state, field frame pose and robot frame velocity */
+    private double x, y, heading;
+    private double vx, vy, omega;
+
+    /**
+     * Constructor for MecanumModel using the drive constants.
+     */
+    public MecanumModel() {
+        this(DriveConstants.rpmToVelocity(DriveConstants.getMaxRpm()), DriveConstants.TRACK_WIDTH,
+                Constants.TICKS_PER_INCH_26);
+    }
+
+    /**
+     * Constructor for MecanumModel.
+     * @param maxWheelSpeed     wheel surface speed at full power in inches per second
+     * @param trackWidth        distance between the left and right wheels in inches
+     * @param ticksPerInch      encoder ticks per inch of wheel travel
+     */
+    public MecanumModel(double maxWheelSpeed, double trackWidth, double ticksPerInch) {
+        this.maxWheelSpeed = maxWheelSpeed;
+        this.trackWidth = trackWidth;
+        this.ticksPerInch = ticksPerInch;
+        for (int i = 0; i < wheels.length; i++) wheels[i] = new Wheel(i);
+    }
+
+    /**
+     * Advances the model.
+     * @param dt        time step in seconds
+     */
+    public void update(double dt) {
+        boolean allBrake = true;
+        for (int i = 0; i < 4; i++) {
+            target[i] = mountSign[i] * power[i] * maxWheelSpeed;
+            allBrake &= brake[i];
+        }
+
+        // Forward kinematics of the commanded wheel speeds
+        double targetVx = (target[0] + target[1] + target[2] + target[3]) / 4;
+        double targetVy = (-target[0] + target[1] + target[2] - target[3]) / 4;
+        double targetOmega = (-target[0] - target[1] + target[2] + target[3]) / (4 * trackWidth);
+
+        double timeConstant = DRIVE_TIME_CONSTANT;
+        if (targetVx == 0 && targetVy == 0 && targetOmega == 0) {
+            timeConstant = allBrake ? BRAKE_TIME_CONSTANT : COAST_TIME_CONSTANT;
+        }
+        double alpha = 1 - Math.exp(-dt / timeConstant);
+        vx += (targetVx - vx) * alpha;
+        vy += (targetVy - vy) * alpha;
+        omega += (targetOmega - omega) * alpha;
+
+        // Integrate the pose about the heading at the middle of the step
+        double midHeading = heading + omega * dt / 2;
+        double cos = Math.cos(midHeading), sin = Math.sin(midHeading);
+        x += (vx * cos - vy * sin) * dt;
+        y += (vx * sin + vy * cos) * dt;
+        heading += omega * dt;
+
+        // Inverse kinematics of the body velocity
+        wheelSpeed[LEFT_FRONT] = vx - vy - trackWidth * omega;
+        wheelSpeed[LEFT_BACK] = vx + vy - trackWidth * omega;
+        wheelSpeed[RIGHT_FRONT] = vx + vy + trackWidth * omega;
+        wheelSpeed[RIGHT_BACK] = vx - vy + trackWidth * omega;
+        for (int i = 0; i < 4; i++) {
+            ticks[i] += mountSign[i] * wheelSpeed[i] * ticksPerInch * dt;
+        }
+    }
+
+    /**
+     * Places the robot on the field and stops it.
+     * @param x         x position in inches
+     * @param y         y position in inches
+     * @param heading   heading in radians
+     */
+    public void setPose(double x, double y, double heading) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        vx = vy = omega = 0;
+    }
+
+    public double getX() { return x; }
+
+    public double getY() { return y; }
+
+    /**
+     * Returns the heading in radians, counterclockwise positive and not wrapped.
+     */
+    public double getHeading() { return heading; }
+
+    /**
+     * Returns the rotation rate in radians per second, counterclockwise positive.
+     */
+    public double getHeadingVelocity() { return omega; }
+
+    /**
+     * Returns the motor model of a wheel.
+     * @param wheel     LEFT_FRONT, LEFT_BACK, RIGHT_FRONT or RIGHT_BACK
+     */
+    public MotorModel getWheel(int wheel) { return wheels[wheel]; }
+
+    private class Wheel implements MotorModel {
+        private final int index;
+
+        Wheel(int index) { this.index = index; }
+
+        @Override
+        public void setPower(double power) { MecanumModel.this.power[index] = Range.clip(power, -1, 1); }
+
+        @Override
+        public void setBrake(boolean brake) { MecanumModel.this.brake[index] = brake; }
+
+        @Override
+        public double getPosition() { return ticks[index]; }
+
+        @Override
+        public double getVelocity() { return mountSign[index] * wheelSpeed[index] * ticksPerInch; }
+
+        @Override
+        public double getMaxVelocity() { return maxWheelSpeed * ticksPerInch; }
+    }
+}
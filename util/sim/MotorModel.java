@@ -0,0 +1,33 @@
+package org.firstinspires.ftc.teamcode.util.sim;
+
+/**
+ * MotorModel is a simulated motor shaft behind one port of a {@link SimMotorController}. The
+ * controller applies the run mode and direction; the model only turns power into motion.
+ */
+public interface MotorModel {
+    /**
+     * Sets the power applied to the motor.
+     * @param power     power with range of (-1 to 1), after the motor's direction is applied
+     */
+    void setPower(double power);
+
+    /**
+     * Sets whether the motor brakes (true) or floats (false) at zero power.
+     */
+    void setBrake(boolean brake);
+
+    /**
+     * Returns the shaft position in encoder ticks.
+     */
+    double getPosition();
+
+    /**
+     * Returns the shaft velocity in encoder ticks per second.
+     */
+    double getVelocity();
+
+    /**
+     * Returns the shaft velocity at full power in encoder ticks per second.
+     */
+    double getMaxVelocity();
+}
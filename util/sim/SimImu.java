@@ -0,0 +1,57 @@
+package org.firstinspires.ftc.teamcode.util.sim;
+
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+
+import org.firstinspires.ftc.teamcode.util.sensors.imu.FastHeadingIMU;
+import org.firstinspires.ftc.teamcode.util.sensors.imu.SimulatedImuRegisters;
+
+/**
+ * SimImu is the built in IMU of a simulated robot. It serves the heading registers read by
+ * {@link FastHeadingIMU} from the pose of a {@link MecanumModel}, without any I2C delay.
+ */
+public class SimImu extends SimulatedImuRegisters implements HardwareDevice {
+
+    private final MecanumModel drive;
+    private final Object lock;
+
+    /**
+     * Constructor for SimImu.
+     * @param drive     drivetrain model carrying the IMU
+     * @param lock      lock shared with the simulation step
+     */
+    public SimImu(MecanumModel drive, Object lock) {
+        super(0, 0, 0);
+        this.drive = drive;
+        this.lock = lock;
+    }
+
+    @Override
+    protected double getHeading(long nanoTime) {
+        synchronized (lock) { return Math.toDegrees(drive.getHeading()); }
+    }
+
+    @Override
+    protected double getHeadingVelocity() {
+        synchronized (lock) { return Math.toDegrees(drive.getHeadingVelocity()); }
+    }
+
+    /* HardwareDevice */
+
+    @Override
+    public Manufacturer getManufacturer() { return Manufacturer.Other; }
+
+    @Override
+    public String getDeviceName() { return "Simulated IMU"; }
+
+    @Override
+    public String getConnectionInfo() { return "simulated"; }
+
+    @Override
+    public int getVersion() { return 1; }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() { }
+
+    @Override
+    public void close() { }
+}
@@ -0,0 +1,309 @@
+package org.firstinspires.ftc.teamcode.util.sim;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorControllerEx;
+import com.qualcomm.robotcore.hardware.PIDCoefficients;
+import com.qualcomm.robotcore.hardware.PIDFCoefficients;
+import com.qualcomm.robotcore.hardware.configuration.typecontainers.MotorConfigurationType;
+import com.qualcomm.robotcore.util.Range;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SimMotorController stands in for the motor controller of an Expansion Hub. The SDK's own motor
+ * classes (<code>DcMotorImplEx</code>) are created on top of it, so mechanisms drive it exactly as
+ * they would a hub. Each port is backed by a {@link MotorModel}.
+ *
+ * Run modes behave like the hub's: RUN_TO_POSITION runs a proportional position loop limited by
+ * the set power and reports busy until the motor is within the target tolerance, and
+ * STOP_AND_RESET_ENCODER zeroes the encoder and holds the motor at zero power.
+ */
+public class SimMotorController implements DcMotorControllerEx {
+
+    /* CONSTANTS */
+    public static final int PORTS = 4;
+    private static final int DEFAULT_TOLERANCE = 5;
+    // Hub defaults; the position P gain is in (ticks per second) per tick of error
+    private static final double DEFAULT_POSITION_P = 10;
+    private static final double DEFAULT_VELOCITY_P = 10, DEFAULT_VELOCITY_I = 3;
+
+    private final String name;
+    private final Object lock;
+
+    /* Port state */
+    private final MotorModel[] models = new MotorModel[PORTS];
+    private final DcMotor.RunMode[] modes = new DcMotor.RunMode[PORTS];
+    private final DcMotor.ZeroPowerBehavior[] zeroPowerBehaviors = new DcMotor.ZeroPowerBehavior[PORTS];
+    private final MotorConfigurationType[] motorTypes = new MotorConfigurationType[PORTS];
+    private final PIDFCoefficients[] velocityCoefficients = new PIDFCoefficients[PORTS];
+    private final PIDFCoefficients[] positionCoefficients = new PIDFCoefficients[PORTS];
+    private final double[] powers = new double[PORTS];
+    private final double[] offsets = new double[PORTS];
+    private final int[] targets = new int[PORTS];
+    private final int[] tolerances = new int[PORTS];
+    private final boolean[] enabled = new boolean[PORTS];
+
+    private volatile long transactionTime = 0;
+
+    /**
+     * Constructor for SimMotorController.
+     * @param name      name of the simulated hub
+     * @param lock      lock shared with the simulation step
+     */
+    public SimMotorController(String name, Object lock) {
+        this.name = name;
+        this.lock = lock;
+        for (int port = 0; port < PORTS; port++) resetPort(port);
+    }
+
+    /**
+     * Connects a motor model to a port.
+     * @param port      motor port (0 - 3)
+     * @param model     model driven by the port
+     */
+    public void attach(int port, MotorModel model) {
+        synchronized (lock) {
+            models[port] = model;
+        }
+    }
+
+    /**
+     * Sets how long a power write takes, like the USB transaction of a hub. Writes return at once
+     * by default.
+     * @param nanos     duration of a write in nanoseconds
+     */
+    public void setTransactionTime(long nanos) { transactionTime = nanos; }
+
+    /**
+     * Applies each port's run mode to its model. Called by the simulation before each step.
+     */
+    void update() {
+        for (int port = 0; port < PORTS; port++) {
+            MotorModel model = models[port];
+            if (model == null) continue;
+
+            double power = 0;
+            if (enabled[port]) {
+                switch (modes[port]) {
+                    case RUN_TO_POSITION:
+                        double limit = Math.abs(powers[port]) * model.getMaxVelocity();
+                        double velocity = positionCoefficients[port].p * (targets[port] - position(port));
+                        power = Range.clip(velocity, -limit, limit) / model.getMaxVelocity();
+                        break;
+                    case STOP_AND_RESET_ENCODER:
+                        break;
+                    default:
+                        power = powers[port];
+                        break;
+                }
+            }
+            model.setBrake(zeroPowerBehaviors[port] == DcMotor.ZeroPowerBehavior.BRAKE);
+            model.setPower(power);
+        }
+    }
+
+    private void resetPort(int port) {
+        modes[port] = DcMotor.RunMode.RUN_WITHOUT_ENCODER;
+        zeroPowerBehaviors[port] = DcMotor.ZeroPowerBehavior.FLOAT;
+        motorTypes[port] = MotorConfigurationType.getUnspecifiedMotorType();
+        velocityCoefficients[port] = new PIDFCoefficients(DEFAULT_VELOCITY_P, DEFAULT_VELOCITY_I, 0, 0);
+        positionCoefficients[port] = new PIDFCoefficients(DEFAULT_POSITION_P, 0, 0, 0);
+        powers[port] = 0;
+        targets[port] = 0;
+        tolerances[port] = DEFAULT_TOLERANCE;
+        enabled[port] = true;
+    }
+
+    private int position(int port) {
+        return models[port] == null ? 0 : (int) Math.round(models[port].getPosition() - offsets[port]);
+    }
+
+    /* DcMotorController */
+
+    @Override
+    public void setMotorType(int motor, MotorConfigurationType motorType) {
+        synchronized (lock) { motorTypes[motor] = motorType; }
+    }
+
+    @Override
+    public MotorConfigurationType getMotorType(int motor) {
+        synchronized (lock) { return motorTypes[motor]; }
+    }
+
+    @Override
+    public void setMotorMode(int motor, DcMotor.RunMode mode) {
+        synchronized (lock) {
+            if (mode == DcMotor.RunMode.STOP_AND_RESET_ENCODER) {
+                offsets[motor] = models[motor] == null ? 0 : models[motor].getPosition();
+                powers[motor] = 0;
+            }
+            modes[motor] = mode;
+        }
+    }
+
+    @Override
+    public DcMotor.RunMode getMotorMode(int motor) {
+        synchronized (lock) { return modes[motor]; }
+    }
+
+    @Override
+    public void setMotorPower(int motor, double power) {
+        long end = System.nanoTime() + transactionTime;
+        synchronized (lock) { powers[motor] = Range.clip(power, -1, 1); }
+        // Outside the lock, so the simulation keeps stepping while the write is in flight
+        while (end - System.nanoTime() > 0) LockSupport.parkNanos(end - System.nanoTime());
+    }
+
+    @Override
+    public double getMotorPower(int motor) {
+        synchronized (lock) { return powers[motor]; }
+    }
+
+    @Override
+    public boolean isBusy(int motor) {
+        synchronized (lock) {
+            return modes[motor] == DcMotor.RunMode.RUN_TO_POSITION
+                    && Math.abs(targets[motor] - position(motor)) > tolerances[motor];
+        }
+    }
+
+    @Override
+    public void setMotorZeroPowerBehavior(int motor, DcMotor.ZeroPowerBehavior zeroPowerBehavior) {
+        synchronized (lock) { zeroPowerBehaviors[motor] = zeroPowerBehavior; }
+    }
+
+    @Override
+    public DcMotor.ZeroPowerBehavior getMotorZeroPowerBehavior(int motor) {
+        synchronized (lock) { return zeroPowerBehaviors[motor]; }
+    }
+
+    @Override
+    public boolean getMotorPowerFloat(int motor) {
+        synchronized (lock) {
+            return powers[motor] == 0 && zeroPowerBehaviors[motor] == DcMotor.ZeroPowerBehavior.FLOAT;
+        }
+    }
+
+    @Override
+    public void setMotorTargetPosition(int motor, int position) {
+        synchronized (lock) { targets[motor] = position; }
+    }
+
+    @Override
+    public int getMotorTargetPosition(int motor) {
+        synchronized (lock) { return targets[motor]; }
+    }
+
+    @Override
+    public int getMotorCurrentPosition(int motor) {
+        synchronized (lock) { return position(motor); }
+    }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode(int motor) {
+        synchronized (lock) { resetPort(motor); }
+    }
+
+    /* DcMotorControllerEx */
+
+    @Override
+    public void setMotorEnable(int motor) {
+        synchronized (lock) { enabled[motor] = true; }
+    }
+
+    @Override
+    public void setMotorDisable(int motor) {
+        synchronized (lock) { enabled[motor] = false; }
+    }
+
+    @Override
+    public boolean isMotorEnabled(int motor) {
+        synchronized (lock) { return enabled[motor]; }
+    }
+
+    @Override
+    public void setMotorVelocity(int motor, double ticksPerSecond) {
+        synchronized (lock) {
+            double maxVelocity = models[motor] == null ? 1 : models[motor].getMaxVelocity();
+            modes[motor] = DcMotor.RunMode.RUN_USING_ENCODER;
+            powers[motor] = Range.clip(ticksPerSecond / maxVelocity, -1, 1);
+        }
+    }
+
+    @Override
+    public void setMotorVelocity(int motor, double angularRate, AngleUnit unit) {
+        double ticksPerRev = getMotorType(motor).getTicksPerRev();
+        setMotorVelocity(motor, unit.toDegrees(angularRate) / 360 * ticksPerRev);
+    }
+
+    @Override
+    public double getMotorVelocity(int motor) {
+        synchronized (lock) { return models[motor] == null ? 0 : models[motor].getVelocity(); }
+    }
+
+    @Override
+    public double getMotorVelocity(int motor, AngleUnit unit) {
+        double ticksPerRev = getMotorType(motor).getTicksPerRev();
+        return unit.fromDegrees(getMotorVelocity(motor) / ticksPerRev * 360);
+    }
+
+    @Override
+    public void setPIDCoefficients(int motor, DcMotor.RunMode mode, PIDCoefficients pidCoefficients) {
+        setPIDFCoefficients(motor, mode, new PIDFCoefficients(pidCoefficients.p, pidCoefficients.i, pidCoefficients.d, 0));
+    }
+
+    @Override
+    public void setPIDFCoefficients(int motor, DcMotor.RunMode mode, PIDFCoefficients pidfCoefficients) {
+        synchronized (lock) {
+            if (mode == DcMotor.RunMode.RUN_TO_POSITION) positionCoefficients[motor] = pidfCoefficients;
+            else velocityCoefficients[motor] = pidfCoefficients;
+        }
+    }
+
+    @Override
+    public PIDCoefficients getPIDCoefficients(int motor, DcMotor.RunMode mode) {
+        PIDFCoefficients coefficients = getPIDFCoefficients(motor, mode);
+        return new PIDCoefficients(coefficients.p, coefficients.i, coefficients.d);
+    }
+
+    @Override
+    public PIDFCoefficients getPIDFCoefficients(int motor, DcMotor.RunMode mode) {
+        synchronized (lock) {
+            return mode == DcMotor.RunMode.RUN_TO_POSITION ? positionCoefficients[motor] : velocityCoefficients[motor];
+        }
+    }
+
+    @Override
+    public void setMotorTargetPosition(int motor, int position, int tolerance) {
+        synchronized (lock) {
+            targets[motor] = position;
+            tolerances[motor] = tolerance;
+        }
+    }
+
+    /* HardwareDevice */
+
+    @Override
+    public Manufacturer getManufacturer() { return Manufacturer.Other; }
+
+    @Override
+    public String getDeviceName() { return "Simulated Motor Controller"; }
+
+    @Override
+    public String getConnectionInfo() { return name; }
+
+    @Override
+    public int getVersion() { return 1; }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+        synchronized (lock) {
+            for (int port = 0; port < PORTS; port++) resetPort(port);
+        }
+    }
+
+    @Override
+    public void close() { }
+}
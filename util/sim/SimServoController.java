@@ -0,0 +1,140 @@
+package org.firstinspires.ftc.teamcode.util.sim;
+
+import com.qualcomm.robotcore.hardware.PwmControl;
+import com.qualcomm.robotcore.hardware.ServoControllerEx;
+import com.qualcomm.robotcore.hardware.configuration.typecontainers.ServoConfigurationType;
+import com.qualcomm.robotcore.util.Range;
+
+/**
+ * SimServoController stands in for the servo controller of an Expansion Hub. The SDK's own servo
+ * classes (<code>ServoImplEx</code>, <code>CRServoImpl</code>) are created on top of it. Servos
+ * reach their commanded position immediately; a continuous rotation servo's power can be read
+ * back from its position, where 0.5 is stopped.
+ */
+public class SimServoController implements ServoControllerEx {
+
+    /* CONSTANTS */
+    public static final int PORTS = 6;
+
+    private final String name;
+    private final Object lock;
+
+    /* Port state */
+    private final double[] positions = new double[PORTS];
+    private final boolean[] pwmEnabled = new boolean[PORTS];
+    private final PwmControl.PwmRange[] ranges = new PwmControl.PwmRange[PORTS];
+    private final ServoConfigurationType[] servoTypes = new ServoConfigurationType[PORTS];
+
+    /**
+     * Constructor for SimServoController.
+     * @param name      name of the simulated hub
+     * @param lock      lock shared with the simulation step
+     */
+    public SimServoController(String name, Object lock) {
+        this.name = name;
+        this.lock = lock;
+        for (int port = 0; port < PORTS; port++) resetPort(port);
+    }
+
+    private void resetPort(int port) {
+        positions[port] = Double.NaN;
+        pwmEnabled[port] = false;
+        ranges[port] = PwmControl.PwmRange.defaultRange;
+        servoTypes[port] = ServoConfigurationType.getStandardServoType();
+    }
+
+    /* ServoController */
+
+    @Override
+    public void pwmEnable() {
+        synchronized (lock) {
+            for (int port = 0; port < PORTS; port++) pwmEnabled[port] = true;
+        }
+    }
+
+    @Override
+    public void pwmDisable() {
+        synchronized (lock) {
+            for (int port = 0; port < PORTS; port++) pwmEnabled[port] = false;
+        }
+    }
+
+    @Override
+    public PwmStatus getPwmStatus() {
+        synchronized (lock) {
+            int count = 0;
+            for (int port = 0; port < PORTS; port++) if (pwmEnabled[port]) count++;
+            return count == 0 ? PwmStatus.DISABLED : count == PORTS ? PwmStatus.ENABLED : PwmStatus.MIXED;
+        }
+    }
+
+    @Override
+    public void setServoPosition(int servo, double position) {
+        synchronized (lock) {
+            // Like the hub, commanding a position enables the port
+            positions[servo] = Range.clip(position, 0, 1);
+            pwmEnabled[servo] = true;
+        }
+    }
+
+    @Override
+    public double getServoPosition(int servo) {
+        synchronized (lock) { return positions[servo]; }
+    }
+
+    /* ServoControllerEx */
+
+    @Override
+    public void setServoPwmRange(int servo, PwmControl.PwmRange range) {
+        synchronized (lock) { ranges[servo] = range; }
+    }
+
+    @Override
+    public PwmControl.PwmRange getServoPwmRange(int servo) {
+        synchronized (lock) { return ranges[servo]; }
+    }
+
+    @Override
+    public void setServoPwmEnable(int servo) {
+        synchronized (lock) { pwmEnabled[servo] = true; }
+    }
+
+    @Override
+    public void setServoPwmDisable(int servo) {
+        synchronized (lock) { pwmEnabled[servo] = false; }
+    }
+
+    @Override
+    public boolean isServoPwmEnabled(int servo) {
+        synchronized (lock) { return pwmEnabled[servo]; }
+    }
+
+    @Override
+    public void setServoType(int servo, ServoConfigurationType servoType) {
+        synchronized (lock) { servoTypes[servo] = servoType; }
+    }
+
+    /* HardwareDevice */
+
+    @Override
+    public Manufacturer getManufacturer() { return Manufacturer.Other; }
+
+    @Override
+    public String getDeviceName() { return "Simulated Servo Controller"; }
+
+    @Override
+    public String getConnectionInfo() { return name; }
+
+    @Override
+    public int getVersion() { return 1; }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+        synchronized (lock) {
+            for (int port = 0; port < PORTS; port++) resetPort(port);
+        }
+    }
+
+    @Override
+    public void close() { }
+}
@@ -0,0 +1,216 @@
+package org.firstinspires.ftc.teamcode.util.sim;
+
+import android.util.Log;
+
+import com.qualcomm.robotcore.hardware.CRServoImpl;
+import com.qualcomm.robotcore.hardware.DcMotorImplEx;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.ServoImplEx;
+import com.qualcomm.robotcore.hardware.configuration.typecontainers.ServoConfigurationType;
+
+import org.firstinspires.ftc.teamcode.hardware.LiftConstants;
+import org.firstinspires.ftc.teamcode.hardware.RCConfig;
+
+/**
+ * SimulatedRobot is a hardware map of simulated devices, backed by physics models of the
+ * drivetrain, lift and slides. Passing <code>getHardwareMap()</code> to a mechanism's
+ * <code>init()</code> runs it without a robot.
+ *
+ * The simulation only moves when it is stepped. <code>advance()</code> steps it by a given amount
+ * of simulated time, which lets a control loop run faster than real time; <code>start()</code>
+ * instead steps it on its own thread at a multiple of real time.
+ *
+ * The Expansion Hub extensions (bulk reads, hub motors) cannot be simulated. Mechanisms fall back
+ * to the standard motor interfaces when the hubs are missing from the hardware map.
+ *
+ * The simulation runs inside the robot controller app, from test OpModes, with no hardware
+ * attached; it is not a desktop harness, as the SDK's OpMode runtime and android.util.Log need
+ * the app. It runs the hardware classes, not the competition OpModes:
+ * <ul>
+ *  <li>Only the BNO055's heading registers are simulated, and the range sensors and the webcam
+ *  are not, so CraterMain and DepotMain cannot run against it.</li>
+ *  <li>Its hardware map has no app context, which TeleopMain needs for the background color.</li>
+ *  <li>Timeouts and sleeps use the real clock, so only moves that end on encoder or IMU
+ *  readings run faster than real time.</li>
+ * </ul>
+ */
+public class SimulatedRobot {
+
+    /* CONSTANTS */
+    private static final String TAG = "SimulatedRobot";
+    /**
+     * Largest time step of the physics in seconds.
+     */
+    public static final double STEP = 0.005;
+
+    // Lift: NeveRest 20 on the leadscrew. Travel covers the landing target of 12020 ticks
+    private static final double LIFT_MAX_VELOCITY = LiftConstants.TICKS_PER_LEADSCREW * 340 / 60.0;
+    private static final double LIFT_TRAVEL = 12500;
+    // Cascading slides: 19.2:1 motor, 537.6 ticks per revolution at 312 rpm
+    private static final double CASCADE_MAX_VELOCITY = 537.6 * 312 / 60.0;
+    private static final double CASCADE_TRAVEL = 2600;
+    // Drawer slides: 3.7:1 motor, 103.6 ticks per revolution at 1620 rpm
+    private static final double DRAWER_MAX_VELOCITY = 103.6 * 1620 / 60.0;
+    private static final double DRAWER_TRAVEL = 560;
+
+    /* Models */
+    public final MecanumModel drive = new MecanumModel();
+    public final LinearActuatorModel lift = new LinearActuatorModel(LIFT_MAX_VELOCITY, 0, LIFT_TRAVEL, false);
+    public final LinearActuatorModel cascadingSlides = new LinearActuatorModel(CASCADE_MAX_VELOCITY, 0, CASCADE_TRAVEL, true);
+    public final LinearActuatorModel drawerSlide = new LinearActuatorModel(DRAWER_MAX_VELOCITY, 0, DRAWER_TRAVEL, true);
+
+    /* Simulated devices */
+    private final Object lock = new Object();
+    private final SimMotorController hub1Motors = new SimMotorController(RCConfig.EXPANSION_HUB_1, lock);
+    private final SimMotorController hub2Motors = new SimMotorController(RCConfig.EXPANSION_HUB_2, lock);
+    private final SimServoController hub1Servos = new SimServoController(RCConfig.EXPANSION_HUB_1, lock);
+    private final SimServoController hub2Servos = new SimServoController(RCConfig.EXPANSION_HUB_2, lock);
+    private final SimImu imu = new SimImu(drive, lock);
+    private final HardwareMap hardwareMap = new HardwareMap(null);
+
+    private double time = 0;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    /**
+     * Constructor for SimulatedRobot. Creates every device in {@link RCConfig} except the range
+     * sensors and the webcam.
+     */
+    public SimulatedRobot() {
+        hardwareMap.put(RCConfig.EXPANSION_HUB_1, hub1Motors);
+        hardwareMap.put(RCConfig.EXPANSION_HUB_2, hub2Motors);
+
+        // Drivetrain on hub 1, mechanisms on hub 2
+        addMotor(RCConfig.LEFT_FRONT, hub1Motors, 0, drive.getWheel(MecanumModel.LEFT_FRONT));
+        addMotor(RCConfig.LEFT_BACK, hub1Motors, 1, drive.getWheel(MecanumModel.LEFT_BACK));
+        addMotor(RCConfig.RIGHT_FRONT, hub1Motors, 2, drive.getWheel(MecanumModel.RIGHT_FRONT));
+        addMotor(RCConfig.RIGHT_BACK, hub1Motors, 3, drive.getWheel(MecanumModel.RIGHT_BACK));
+        addMotor(RCConfig.LIFT, hub2Motors, 0, lift);
+        addMotor(RCConfig.DRAWER_SLIDES, hub2Motors, 1, drawerSlide);
+        addMotor(RCConfig.CASCADING_SLIDES, hub2Motors, 2, cascadingSlides);
+
+        addServo(RCConfig.MARKER, hub1Servos, 0);
+        addServo(RCConfig.ACQUIRER_ROTATION, hub1Servos, 1);
+        addServo(RCConfig.HOPPER_ROTATION, hub1Servos, 2);
+        addCRServo(RCConfig.INTAKE_MOTOR, hub1Servos, 3);
+        addServo(RCConfig.HORZ_PHONE_GIMBAL, hub2Servos, 0);
+        addServo(RCConfig.VERT_PHONE_GIMBAL, hub2Servos, 1);
+        addServo(RCConfig.FRONT_RIGHT_RANGE, hub2Servos, 2);
+        addServo(RCConfig.BACK_LEFT_RANGE, hub2Servos, 3);
+
+        hardwareMap.put(RCConfig.IMU, imu);
+    }
+
+    private void addMotor(String name, SimMotorController controller, int port, MotorModel model) {
+        controller.attach(port, model);
+        DcMotorImplEx motor = new DcMotorImplEx(controller, port);
+        hardwareMap.dcMotor.put(name, motor);
+        hardwareMap.put(name, motor);
+    }
+
+    private void addServo(String name, SimServoController controller, int port) {
+        ServoImplEx servo = new ServoImplEx(controller, port, ServoConfigurationType.getStandardServoType());
+        hardwareMap.servo.put(name, servo);
+        hardwareMap.put(name, servo);
+    }
+
+    private void addCRServo(String name, SimServoController controller, int port) {
+        CRServoImpl servo = new CRServoImpl(controller, port);
+        hardwareMap.crservo.put(name, servo);
+        hardwareMap.put(name, servo);
+    }
+
+    /**
+     * Returns the hardware map of the simulated devices.
+     */
+    public HardwareMap getHardwareMap() { return hardwareMap; }
+
+    /**
+     * Sets how long each motor power write takes, to model the hubs' USB transactions.
+     * @param seconds   duration of a write in seconds
+     */
+    public void setTransactionTime(double seconds) {
+        hub1Motors.setTransactionTime((long) (seconds * 1e9));
+        hub2Motors.setTransactionTime((long) (seconds * 1e9));
+    }
+
+    /**
+     * Returns the simulated time in seconds.
+     */
+    public double getTime() {
+        synchronized (lock) { return time; }
+    }
+
+    /**
+     * Advances the simulation by one step.
+     * @param dt        time step in seconds
+     */
+    public void step(double dt) {
+        synchronized (lock) {
+            hub1Motors.update();
+            hub2Motors.update();
+            drive.update(dt);
+            lift.update(dt);
+            cascadingSlides.update(dt);
+            drawerSlide.update(dt);
+            time += dt;
+        }
+    }
+
+    /**
+     * Advances the simulation by an amount of simulated time, in steps of at most STEP.
+     * @param seconds   simulated time to advance
+     */
+    public void advance(double seconds) {
+        while (seconds > 1e-9) {
+            double dt = Math.min(STEP, seconds);
+            step(dt);
+            seconds -= dt;
+        }
+    }
+
+    /**
+     * Starts stepping the simulation on its own thread.
+     * @param timeScale     simulated seconds per real second
+     */
+    public void start(final double timeScale) {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long period = (long) (STEP / timeScale * 1e9);
+                long next = System.nanoTime();
+                while (running) {
+                    step(STEP);
+                    next += period;
+                    long remaining = next - System.nanoTime();
+                    if (remaining > 0) {
+                        try {
+                            Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    } else if (remaining < -period * 10) {
+                        // Fell far behind; drop the backlog rather than racing to catch up
+                        Log.w(TAG, "simulation running slower than requested");
+                        next = System.nanoTime();
+                    }
+                }
+            }
+        }, "Simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation thread.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.firstinspires.ftc.teamcode.util.vision;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.drive.Localizer;
+
+import org.firstinspires.ftc.robotcore.external.matrices.OpenGLMatrix;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaLocalizer;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackable;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackableDefaultListener;
+import org.firstinspires.ftc.teamcode.util.motion.Odometry;
+import org.firstinspires.ftc.teamcode.util.motion.PoseEKF;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/*
+ * Localizer that fuses odometry (drive encoders and IMU heading) with Vuforia target fixes in an
+ * extended Kalman filter (see PoseEKF). Odometry motion predicts the pose every update; a target
+ * fix corrects it at the time its camera frame was taken, CAMERA_LATENCY before it is read, and
+ * the motion since is replayed. How much a fix moves the pose depends on how uncertain the pose
+ * has become, rather than on a fixed weight.
+ *
+ * Updates allocate nothing while no target is visible, apart from the pose returned by
+ * getPoseEstimate() after it changed.
+ */
+@Config
+public class EKFVuforiaLocalizer implements Localizer {
+    public static double CAMERA_LATENCY = 0.1;              // s between a frame being taken and its pose being read
+    public static double VUFORIA_DEVIATION = 2;             // in
+    public static double VUFORIA_HEADING_DEVIATION = 4;     // deg
+
+    private final Odometry odometry;
+    private final VuforiaTrackableDefaultListener[] listeners;
+    private final PoseEKF filter = new PoseEKF();
+
+    /* Last odometry snapshot used */
+    private long lastSequence = -1;
+    private double lastX, lastY, lastHeading;
+
+    private Pose2d poseEstimate = new Pose2d(0, 0, 0);
+    private boolean poseChanged = false;
+    private long corrections = 0;
+
+    public EKFVuforiaLocalizer(VuforiaLocalizer vuforiaLocalizer, VuforiaLocalizer.CameraDirection cameraDirection, Odometry odometry) {
+        this.odometry = odometry;
+
+        List<VuforiaTrackable> allTrackables = VuforiaTargets.load(vuforiaLocalizer, cameraDirection);
+        listeners = new VuforiaTrackableDefaultListener[allTrackables.size()];
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i] = (VuforiaTrackableDefaultListener) allTrackables.get(i).getListener();
+        }
+        filter.reset(0, 0, 0, System.nanoTime());
+    }
+
+    @NotNull
+    @Override
+    public Pose2d getPoseEstimate() {
+        if (poseChanged) {
+            poseEstimate = new Pose2d(filter.getX(), filter.getY(), filter.getHeading());
+            poseChanged = false;
+        }
+        return poseEstimate;
+    }
+
+    @Override
+    public void setPoseEstimate(@NotNull Pose2d pose2d) {
+        filter.reset(pose2d.getX(), pose2d.getY(), pose2d.getHeading(), System.nanoTime());
+        poseEstimate = pose2d;
+        poseChanged = false;
+    }
+
+    @Override
+    public void update() {
+        // Steps odometry here unless it runs on its own thread
+        odometry.update();
+        Odometry.Snapshot snapshot = odometry.getSnapshot();
+        if (snapshot.sequence != lastSequence) {
+            Pose2d pose = snapshot.pose;
+            if (lastSequence >= 0) {
+                // Odometry motion as a chord along the mean heading, independent of its frame
+                double turn = Math.IEEEremainder(pose.getHeading() - lastHeading, 2 * Math.PI);
+                double mean = lastHeading + turn / 2;
+                double dx = pose.getX() - lastX, dy = pose.getY() - lastY;
+                double cos = Math.cos(mean), sin = Math.sin(mean);
+                filter.predict(cos * dx + sin * dy, -sin * dx + cos * dy, turn, snapshot.timestamp);
+                poseChanged = true;
+            }
+            lastSequence = snapshot.sequence;
+            lastX = pose.getX();
+            lastY = pose.getY();
+            lastHeading = pose.getHeading();
+        }
+
+        for (VuforiaTrackableDefaultListener listener : listeners) {
+            if (!listener.isVisible()) continue;
+            OpenGLMatrix robotLocation = listener.getUpdatedRobotLocation();
+            if (robotLocation == null) continue;
+
+            long frameTime = System.nanoTime() - (long) (CAMERA_LATENCY * 1e9);
+            filter.setMeasurementNoise(VUFORIA_DEVIATION, Math.toRadians(VUFORIA_HEADING_DEVIATION));
+            if (filter.correct(VuforiaTargets.getX(robotLocation), VuforiaTargets.getY(robotLocation),
+                    VuforiaTargets.getHeading(robotLocation), frameTime)) {
+                corrections++;
+                poseChanged = true;
+            }
+            break;
+        }
+    }
+
+    /**
+     * Returns the filter, for example to show the covariance.
+     */
+    public PoseEKF getFilter() { return filter; }
+
+    /**
+     * Returns how many Vuforia fixes have been applied.
+     */
+    public long getCorrectionCount() { return corrections; }
+}
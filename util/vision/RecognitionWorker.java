@@ -0,0 +1,197 @@
+package org.firstinspires.ftc.teamcode.util.vision;
+
+import android.util.Log;
+
+import org.firstinspires.ftc.robotcore.external.tfod.Recognition;
+import org.firstinspires.ftc.robotcore.external.tfod.TFObjectDetector;
+import org.firstinspires.ftc.teamcode.util.vision.TensorFlowManager.TFLocation;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * RecognitionWorker drains a TensorFlow detector on its own thread. Each new set of recognitions
+ * is classified into a {@link TFLocation} and added to a sliding window of recent frames. The
+ * location with the most votes in the window is published as a {@link Vote}, which the control
+ * thread can read at any time without waiting on inference.
+ *
+ * While the worker runs it is the only user of the detector.
+ */
+public class RecognitionWorker {
+
+    /* CONSTANTS */
+    private static final String TAG = "RecognitionWorker";
+    private static final String LABEL_GOLD_MINERAL = "Gold Mineral";
+    /**
+     * Number of classified frames kept in the voting window.
+     */
+    public static final int WINDOW = 15;
+    /**
+     * Time to wait for the detector when it has nothing new, in milliseconds.
+     */
+    private static final long POLL_MS = 10;
+
+    // Gold recognitions must be low enough in the image and confident enough to count
+    private static final float MIN_GOLD_TOP = 80;
+    private static final float MIN_GOLD_CONFIDENCE = 0.3f;
+    private static final float RIGHT_GOLD_LEFT = 600;
+
+    /**
+     * Result of a vote over the window.
+     */
+    public static class Vote {
+        /**
+         * Location with the most votes, NONE before any frame was classified.
+         */
+        public final TFLocation location;
+        /**
+         * Fraction of the frames in the window that voted for the location (0 - 1).
+         */
+        public final double confidence;
+        /**
+         * Number of frames in the window.
+         */
+        public final int frames;
+
+        Vote(TFLocation location, double confidence, int frames) {
+            this.location = location;
+            this.confidence = confidence;
+            this.frames = frames;
+        }
+    }
+
+    private static final TFLocation[] LOCATIONS = TFLocation.values();
+
+    private final TFObjectDetector tfod;
+    private final AtomicReference<Vote> vote = new AtomicReference<>(new Vote(TFLocation.NONE, 0, 0));
+
+    /* Voting window, only touched by the worker thread */
+    private final int[] window = new int[WINDOW];
+    private final int[] counts = new int[LOCATIONS.length];
+    private int head = 0, size = 0;
+
+    private volatile boolean clearRequested = false;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    /**
+     * Constructor for RecognitionWorker.
+     * @param tfod      activated TensorFlow detector
+     */
+    public RecognitionWorker(TFObjectDetector tfod) {
+        this.tfod = tfod;
+    }
+
+    /**
+     * Starts the worker thread.
+     */
+    public void start() {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running) {
+                    List<Recognition> recognitions = null;
+                    try {
+                        recognitions = tfod.getUpdatedRecognitions();
+                    } catch (Exception e) {
+                        Log.e(TAG, "recognition error");
+                    }
+
+                    // getUpdatedRecognitions() returns null until the detector has a new frame
+                    if (recognitions == null) {
+                        try {
+                            Thread.sleep(POLL_MS);
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                        continue;
+                    }
+
+                    TFLocation location = classify(recognitions);
+                    if (location != TFLocation.NONE) addVote(location);
+                }
+            }
+        }, "TensorFlow worker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the worker thread and waits for it to finish its current frame.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    /**
+     * Returns whether the worker thread is running.
+     */
+    public boolean isRunning() { return thread != null; }
+
+    /**
+     * Returns the latest vote.
+     */
+    public Vote getVote() { return vote.get(); }
+
+    /**
+     * Clears the window, e.g. after the robot has moved.
+     */
+    public void clear() {
+        // Cleared on the next frame by the worker so that the window is never touched by two threads
+        clearRequested = true;
+    }
+
+    /**
+     * Classifies one frame of recognitions. The most confident gold mineral decides between
+     * CENTER and RIGHT; a frame with minerals but no gold mineral means the gold mineral is LEFT.
+     */
+    static TFLocation classify(List<Recognition> recognitions) {
+        if (recognitions.isEmpty()) return TFLocation.NONE;
+
+        Recognition gold = null;
+        for (int i = 0; i < recognitions.size(); i++) {
+            Recognition recognition = recognitions.get(i);
+            if (recognition.getLabel().equals(LABEL_GOLD_MINERAL)
+                    && recognition.getTop() > MIN_GOLD_TOP
+                    && recognition.getConfidence() > MIN_GOLD_CONFIDENCE
+                    && (gold == null || recognition.getConfidence() > gold.getConfidence())) {
+                gold = recognition;
+            }
+        }
+        if (gold == null) return TFLocation.LEFT;
+        return gold.getLeft() > RIGHT_GOLD_LEFT ? TFLocation.RIGHT : TFLocation.CENTER;
+    }
+
+    private void addVote(TFLocation location) {
+        if (clearRequested) {
+            clearRequested = false;
+            head = 0;
+            size = 0;
+            for (int i = 0; i < counts.length; i++) counts[i] = 0;
+        }
+
+        // Drop the oldest frame once the window is full
+        if (size == WINDOW) counts[window[head]]--;
+        else size++;
+        window[head] = location.ordinal();
+        counts[location.ordinal()]++;
+        head = (head + 1) % WINDOW;
+
+        int best = 0;
+        for (int i = 1; i < counts.length; i++) {
+            if (counts[i] > counts[best]) best = i;
+        }
+        vote.set(new Vote(LOCATIONS[best], counts[best] / (double) size, size));
+    }
+}
@@ -26,6 +26,8 @@ public class TensorFlowManager {
     private static final String LABEL_SILVER_MINERAL = "Silver Mineral";
     private static final String VUFORIA_KEY = "AZg2Pg7/////AAABmUJNdV5U3UdZuILyo65XAwgrRZJyRDvOUmdlSJISRf2lUECnalP9t4Vq+TPV2IXxriMQEqJFLiWzA30Qs7Kyx9qYi3HYgACR8ifSGJWZRgCDFa46j2xEo1xBP5S5z3bDl/7evo6bhaf3z5y9pdc1LKUVWx4woR0VN36y/IvcNI8FU4rUA5Big4AB4XKIlYpESWAYTj8hnAQSlXkKrG3CDKv7F2IDbZmtCv2SpZgfZEj+OPNlPRO41izEPeMX/svz6UoaugAfOt3M7ZwyX/+ZBZRJfgDRA7OiEPFi4aoACzWUBY2mSODV1n+BJN3+GRR2arcgSDUIJ7mTJ2nwNVdNblXSj18nOVLlS1WpLxCWEDzo\n";
 
+    private static final RecognitionWorker.Vote NO_VOTE = new RecognitionWorker.Vote(TFLocation.NONE, 0, 0);
+
     private VuforiaLocalizer vuforia;
     private TFObjectDetector tfod;
 
@@ -37,6 +39,10 @@ public class TensorFlowManager {
      * Instance variable containing TensorFlow's detector
      */
     private TFDetector detector;
+    /**
+     * Background recognition worker, null unless started.
+     */
+    private RecognitionWorker worker;
 
     /**
      * Default constructor for TensorFlowManager.
@@ -60,7 +66,38 @@ public class TensorFlowManager {
     /**
      * Deactivate TensorFlow interface.
      */
-    public void stop() { if (tfod != null) tfod.shutdown(); }
+    public void stop() {
+        stopWorker();
+        if (tfod != null) tfod.shutdown();
+    }
+
+    /**
+     * Starts draining the detector on a background thread. While the worker runs, locations
+     * should be read with <code>getVote()</code> or <code>getTensorFlow()</code>.
+     */
+    public void startWorker() {
+        if (tfod == null || worker != null) return;
+        worker = new RecognitionWorker(tfod);
+        worker.start();
+    }
+
+    /**
+     * Stops the background worker.
+     */
+    public void stopWorker() {
+        if (worker != null) {
+            worker.stop();
+            worker = null;
+        }
+    }
+
+    /**
+     * Returns the latest voted location of the gold mineral from the background worker, or a vote
+     * for NONE when the worker is not running.
+     */
+    public RecognitionWorker.Vote getVote() {
+        return worker != null ? worker.getVote() : NO_VOTE;
+    }
 
     /**
      * Enum containing all possible detections of the minerals .
@@ -150,6 +187,13 @@ public class TensorFlowManager {
     public String goldPos = "Bad";
 
     public String getTensorFlow() {
+        // With the worker running, return the vote instead of touching the detector
+        if (worker != null) {
+            TFLocation voted = worker.getVote().location;
+            if (voted != TFLocation.NONE) goldPos = voted.name();
+            return goldPos;
+        }
+
         List<Recognition> updatedRecognitions = tfod.getUpdatedRecognitions();
         if (updatedRecognitions != null) {
 //            opMode.telemetry.addData("# Object Detected", updatedRecognitions.size());